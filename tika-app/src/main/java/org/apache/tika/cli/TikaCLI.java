@@ -78,6 +78,7 @@ import org.apache.tika.io.IOUtils;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.language.LanguageProfilerBuilder;
 import org.apache.tika.language.ProfilingHandler;
+import org.apache.tika.language.ProfilingWriter;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.serialization.JsonMetadata;
 import org.apache.tika.metadata.serialization.JsonMetadataList;
@@ -268,16 +269,29 @@ public class TikaCLI {
 
     private final OutputType LANGUAGE = new OutputType() {
         @Override
-        protected ContentHandler getContentHandler(
-                OutputStream output, Metadata metadata) throws Exception {
-            final PrintWriter writer =
-                new PrintWriter(getOutputWriter(output, encoding));
-            return new ProfilingHandler() {
-                public void endDocument() {
-                    writer.println(getLanguage().getLanguage());
-                    writer.flush();
+        public void process(
+                InputStream input, OutputStream output, Metadata metadata)
+                throws Exception {
+            Parser p = parser;
+            if (fork) {
+                p = new ForkParser(TikaCLI.class.getClassLoader(), p);
+            }
+            // Stop parsing as soon as the language is known, unless the
+            // handler lives in a forked process and can't tell its own
+            // stop signal apart from other parse failures
+            ProfilingHandler handler =
+                new ProfilingHandler(new ProfilingWriter(), !fork);
+            try {
+                p.parse(input, handler, metadata, context);
+            } catch (Exception e) {
+                if (!handler.isLanguageStable(e)) {
+                    throw e;
                 }
-            };
+            }
+            PrintWriter writer =
+                new PrintWriter(getOutputWriter(output, encoding));
+            writer.println(handler.getLanguage().getLanguage());
+            writer.flush();
         }
     };
 
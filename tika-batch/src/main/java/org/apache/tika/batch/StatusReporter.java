@@ -22,6 +22,7 @@ import java.util.Date;
 import java.util.Locale;
 import java.util.concurrent.Callable;
 
+import org.apache.tika.metrics.ParseMetrics;
 import org.apache.tika.util.DurationFormatUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +49,9 @@ public class StatusReporter implements Callable<IFileProcessorFutureResult> {
     //how long before considering a parse "stale" (potentially hung forever)
     private long staleThresholdMillis = 100000;
 
+    //how long between reports of the parse metrics, -1 for never
+    private long metricsMillis = -1;
+
     private volatile boolean isShuttingDown = false;
 
     /**
@@ -78,6 +82,7 @@ public class StatusReporter implements Callable<IFileProcessorFutureResult> {
      */
     public IFileProcessorFutureResult call() {
         NumberFormat numberFormat = NumberFormat.getNumberInstance(Locale.ROOT);
+        long lastMetrics = start;
         try {
             while (true) {
                 Thread.sleep(sleepMillis);
@@ -138,6 +143,11 @@ public class StatusReporter implements Callable<IFileProcessorFutureResult> {
                     msg = "The directory crawler has completed its crawl.\n";
                     report(msg);
                 }
+                long now = new Date().getTime();
+                if (metricsMillis > -1 && now - lastMetrics >= metricsMillis) {
+                    report("Parse metrics:\n" + ParseMetrics.getDefault() + "\n");
+                    lastMetrics = now;
+                }
                 if (isShuttingDown) {
                     msg = "Process is shutting down now.";
                     report(msg);
@@ -158,6 +168,16 @@ public class StatusReporter implements Callable<IFileProcessorFutureResult> {
         this.sleepMillis = sleepMillis;
     }
 
+    /**
+     * Set the amount of time between reports of the parse metrics
+     * collected by {@link ParseMetrics}.
+     * @param metricsMillis length between metrics reports in milliseconds,
+     *                      or -1 to never report the metrics
+     */
+    public void setMetricsMillis(long metricsMillis) {
+        this.metricsMillis = metricsMillis;
+    }
+
     /**
      * Set the amount of time in milliseconds to use as the threshold for determining
      * a stale parse.
@@ -35,9 +35,11 @@ public class SimpleLogReporterBuilder implements StatusReporterBuilder {
         Map<String, String> attributes = XMLDOMUtil.mapifyAttrs(n, commandlineArguments);
         long sleepMillis = PropsUtil.getLong(attributes.get("reporterSleepMillis"), 1000L);
         long staleThresholdMillis = PropsUtil.getLong(attributes.get("reporterStaleThresholdMillis"), 500000L);
+        long metricsMillis = PropsUtil.getLong(attributes.get("reporterMetricsMillis"), -1L);
         StatusReporter reporter = new StatusReporter(crawler, consumersManager);
         reporter.setSleepMillis(sleepMillis);
         reporter.setStaleThresholdMillis(staleThresholdMillis);
+        reporter.setMetricsMillis(metricsMillis);
         return reporter;
     }
 }
@@ -33,6 +33,7 @@ import org.apache.tika.io.IOUtils;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.TikaCoreProperties;
 import org.apache.tika.metadata.serialization.JsonMetadataList;
+import org.apache.tika.metadata.serialization.JsonMetadataListWriter;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
 import org.apache.tika.parser.RecursiveParserWrapper;
@@ -55,6 +56,7 @@ public class RecursiveParserWrapperFSConsumer extends AbstractFSConsumer {
     private final OutputStreamFactory fsOSFactory;
     private final TikaConfig tikaConfig;
     private String outputEncoding = "UTF-8";
+    private boolean streaming = false;
 
 
     public RecursiveParserWrapperFSConsumer(ArrayBlockingQueue<FileResource> queue,
@@ -97,6 +99,10 @@ public class RecursiveParserWrapperFSConsumer extends AbstractFSConsumer {
             return false;
         }
 
+        if (streaming) {
+            return processStreaming(fileResource, parser, context, is, os);
+        }
+
         Throwable thrown = null;
         List<Metadata> metadataList = null;
         Metadata containerMetadata = fileResource.getMetadata();
@@ -149,6 +155,53 @@ public class RecursiveParserWrapperFSConsumer extends AbstractFSConsumer {
         return true;
     }
 
+    /**
+     * Parses the file with the metadata of each embedded document
+     * written out as soon as it has been parsed, so that the metadata
+     * list is never held in memory. The container document is written
+     * last.
+     */
+    private boolean processStreaming(FileResource fileResource, RecursiveParserWrapper parser,
+                                     ParseContext context, InputStream is, OutputStream os) {
+        Throwable thrown = null;
+        Metadata containerMetadata = fileResource.getMetadata();
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(os, getOutputEncoding());
+            JsonMetadataListWriter jsonWriter = new JsonMetadataListWriter(writer);
+            parser.setListener(jsonWriter);
+            try {
+                parse(fileResource.getResourceId(), parser, is, new DefaultHandler(),
+                        containerMetadata, context);
+            } catch (Throwable t) {
+                thrown = t;
+                //the container is only written when its parse completes
+                String stackTrace = ExceptionUtils.getFilteredStackTrace(t);
+                containerMetadata.add(TikaCoreProperties.TIKA_META_EXCEPTION_PREFIX+"runtime", stackTrace);
+                jsonWriter.write(containerMetadata);
+            } finally {
+                IOUtils.closeQuietly(is);
+            }
+            jsonWriter.finish();
+        } catch (Exception e) {
+            //this is a stop the world kind of thing
+            logger.error("{}", getXMLifiedLogMsg(IO_OS+"json",
+                    fileResource.getResourceId(), e));
+            throw new RuntimeException(e);
+        } finally {
+            flushAndClose(writer);
+        }
+
+        if (thrown != null) {
+            if (thrown instanceof Error) {
+                throw (Error) thrown;
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public String getOutputEncoding() {
         return outputEncoding;
     }
@@ -156,4 +209,20 @@ public class RecursiveParserWrapperFSConsumer extends AbstractFSConsumer {
     public void setOutputEncoding(String outputEncoding) {
         this.outputEncoding = outputEncoding;
     }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Whether to write the metadata of each embedded document as soon as
+     * it has been parsed, instead of collecting the metadata list of the
+     * whole file in memory. When streaming, the container document is the
+     * last element of the output list instead of the first.
+     *
+     * @param streaming whether to stream the metadata list
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
 }
@@ -62,6 +62,19 @@ public class BasicTikaFSConsumersBuilder extends AbstractConsumersBuilder {
             }
         }
 
+        //with the recursiveParserWrapper, whether to stream the metadata
+        //of each embedded document as soon as it has been parsed
+        boolean streaming = false;
+        String streamingString = runtimeAttributes.get("streaming");
+        if (streamingString != null) {
+            streaming = PropsUtil.getBoolean(streamingString, streaming);
+        } else {
+            Node streamingNode = node.getAttributes().getNamedItem("streaming");
+            if (streamingNode != null) {
+                streaming = PropsUtil.getBoolean(streamingNode.getNodeValue(), streaming);
+            }
+        }
+
         //how long to let the consumersManager run on init() and shutdown()
         Long consumersManagerMaxMillis = null;
         String consumersManagerMaxMillisString = runtimeAttributes.get("consumersManagerMaxMillis");
@@ -125,8 +138,9 @@ public class BasicTikaFSConsumersBuilder extends AbstractConsumersBuilder {
 
         if (recursiveParserWrapper) {
             for (int i = 0; i < numConsumers; i++) {
-                FileResourceConsumer c = new RecursiveParserWrapperFSConsumer(queue,
+                RecursiveParserWrapperFSConsumer c = new RecursiveParserWrapperFSConsumer(queue,
                         parserFactory, contentHandlerFactory, outputStreamFactory, config);
+                c.setStreaming(streaming);
                 consumers.add(c);
             }
         } else {
@@ -117,5 +117,25 @@ public class HandlerBuilderTest extends FSBatchTestBase {
         assertTrue(resultString.contains("tika-batch\\u0027s first test file"));
     }
 
+    @Test
+    public void testStreamingRecursiveParserWrapper() throws Exception {
+        File outputDir = getNewOutputDir("handler-recursive-parser-streaming");
+
+        Map<String, String> args = getDefaultArgs("basic", outputDir);
+        args.put("basicHandlerType", "txt");
+        args.put("outputSuffix", "json");
+        args.put("recursiveParserWrapper", "true");
+        args.put("streaming", "true");
+
+        BatchProcess runner = getNewBatchRunner("/tika-batch-config-test.xml", args);
+        ParallelFileProcessingResult result = run(runner);
+        File outputFile = new File(outputDir, "test0.xml.json");
+        String resultString = FileUtils.readFileToString(outputFile, IOUtils.UTF_8.toString());
+        assertTrue(resultString.startsWith("["));
+        assertTrue(resultString.endsWith("]"));
+        assertTrue(resultString.contains("\"author\":\"Nikolai Lobachevsky\""));
+        assertTrue(resultString.contains("tika-batch\\u0027s first test file"));
+    }
+
 
 }
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.cache.ParseResult;
+import org.apache.tika.parser.cache.ParseResultRecorder;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.ToHTMLContentHandler;
+import org.apache.tika.sax.ToTextContentHandler;
+import org.apache.tika.sax.ToXMLContentHandler;
+import org.apache.tika.sax.WriteOutContentHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Measures the SAX output paths on their own. The XHTML events of a
+ * corpus document are recorded once, and each operation replays them
+ * into a fresh content handler chain, so parsing does not contribute
+ * to the measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContentHandlerBenchmark {
+
+    @Param({ "testPDF.pdf", "testWORD_various.docx", "testHTML.html" })
+    private String document;
+
+    private ParseResult events;
+
+    @Setup
+    public void setUp() throws Exception {
+        ParseResultRecorder recorder =
+                new ParseResultRecorder(new DefaultHandler(), Long.MAX_VALUE);
+        Metadata metadata = new Metadata();
+        new AutoDetectParser().parse(
+                new ByteArrayInputStream(TestDocuments.load(document)),
+                recorder, metadata, new ParseContext());
+        events = recorder.getResult(new Metadata(), metadata);
+    }
+
+    @Benchmark
+    public String toXML() throws Exception {
+        return replay(new ToXMLContentHandler());
+    }
+
+    @Benchmark
+    public String toHTML() throws Exception {
+        return replay(new ToHTMLContentHandler());
+    }
+
+    @Benchmark
+    public String toText() throws Exception {
+        return replay(new ToTextContentHandler());
+    }
+
+    @Benchmark
+    public String body() throws Exception {
+        return replay(new BodyContentHandler(-1));
+    }
+
+    @Benchmark
+    public String writeOut() throws Exception {
+        StringWriter writer = new StringWriter();
+        replay(new WriteOutContentHandler(writer, -1));
+        return writer.toString();
+    }
+
+    private String replay(ContentHandler handler) throws Exception {
+        events.replay(handler, new Metadata());
+        return handler.toString();
+    }
+
+}
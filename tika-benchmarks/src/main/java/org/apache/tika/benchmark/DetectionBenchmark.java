@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tika.detect.DefaultDetector;
+import org.apache.tika.detect.Detector;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MimeTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures type detection over the whole benchmark corpus, with the
+ * magic and glob based {@link MimeTypes} registry on its own and with
+ * the {@link DefaultDetector} that also inspects container formats.
+ * Each operation detects every document of the corpus once, with and
+ * without a file name hint.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DetectionBenchmark {
+
+    private MimeTypes mimeTypes;
+
+    private Detector defaultDetector;
+
+    private byte[][] documents;
+
+    @Setup
+    public void setUp() throws IOException {
+        mimeTypes = MimeTypes.getDefaultMimeTypes();
+        defaultDetector = new DefaultDetector(mimeTypes);
+        documents = TestDocuments.loadCorpus();
+    }
+
+    @Benchmark
+    public void mimeTypesMagic(Blackhole blackhole) throws IOException {
+        detect(mimeTypes, false, blackhole);
+    }
+
+    @Benchmark
+    public void mimeTypesWithName(Blackhole blackhole) throws IOException {
+        detect(mimeTypes, true, blackhole);
+    }
+
+    @Benchmark
+    public void defaultDetectorMagic(Blackhole blackhole) throws IOException {
+        detect(defaultDetector, false, blackhole);
+    }
+
+    @Benchmark
+    public void defaultDetectorWithName(Blackhole blackhole)
+            throws IOException {
+        detect(defaultDetector, true, blackhole);
+    }
+
+    private void detect(Detector detector, boolean name, Blackhole blackhole)
+            throws IOException {
+        for (int i = 0; i < documents.length; i++) {
+            Metadata metadata = new Metadata();
+            if (name) {
+                metadata.set(
+                        Metadata.RESOURCE_NAME_KEY, TestDocuments.CORPUS[i]);
+            }
+            TikaInputStream stream = TikaInputStream.get(
+                    new ByteArrayInputStream(documents[i]));
+            try {
+                MediaType type = detector.detect(stream, metadata);
+                blackhole.consume(type);
+            } finally {
+                stream.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.serialization.JsonMetadataList;
+import org.apache.tika.metadata.serialization.JsonMetadataListWriter;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.RecursiveParserWrapper;
+import org.apache.tika.sax.BasicContentHandlerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Measures the construction, copying and serialization of
+ * {@link Metadata}. The input is the metadata list produced by a
+ * {@link RecursiveParserWrapper} for an archive of the corpus, including
+ * the extracted text of every document.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetadataBenchmark {
+
+    private List<Metadata> metadataList;
+
+    private String json;
+
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws Exception {
+        RecursiveParserWrapper wrapper = new RecursiveParserWrapper(
+                new AutoDetectParser(), new BasicContentHandlerFactory(
+                        BasicContentHandlerFactory.HANDLER_TYPE.TEXT, -1));
+        wrapper.parse(
+                new ByteArrayInputStream(
+                        TestDocuments.load("test-documents.zip")),
+                new DefaultHandler(), new Metadata(), new ParseContext());
+        metadataList = wrapper.getMetadata();
+        json = jsonWrite();
+        serialized = javaWrite();
+    }
+
+    @Benchmark
+    public List<Metadata> build() {
+        List<Metadata> list = new ArrayList<Metadata>(metadataList.size());
+        for (Metadata source : metadataList) {
+            Metadata metadata = new Metadata();
+            for (String name : source.names()) {
+                for (String value : source.getValues(name)) {
+                    metadata.add(name, value);
+                }
+            }
+            list.add(metadata);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public int lookup() {
+        int found = 0;
+        for (Metadata metadata : metadataList) {
+            for (String name : metadata.names()) {
+                if (metadata.get(name) != null) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public String jsonWrite() throws Exception {
+        StringWriter writer = new StringWriter();
+        JsonMetadataList.toJson(metadataList, writer);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public String jsonStreamingWrite() throws Exception {
+        StringWriter writer = new StringWriter();
+        JsonMetadataListWriter listWriter = new JsonMetadataListWriter(writer);
+        for (Metadata metadata : metadataList) {
+            listWriter.write(metadata);
+        }
+        listWriter.finish();
+        return writer.toString();
+    }
+
+    @Benchmark
+    public List<Metadata> jsonRead() throws Exception {
+        return JsonMetadataList.fromJson(new StringReader(json));
+    }
+
+    @Benchmark
+    public byte[] javaWrite() throws Exception {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(buffer);
+        try {
+            for (Metadata metadata : metadataList) {
+                output.writeObject(metadata);
+            }
+        } finally {
+            output.close();
+        }
+        return buffer.toByteArray();
+    }
+
+    @Benchmark
+    public List<Metadata> javaRead() throws Exception {
+        List<Metadata> list = new ArrayList<Metadata>(metadataList.size());
+        ObjectInputStream input = new ObjectInputStream(
+                new ByteArrayInputStream(serialized));
+        try {
+            for (int i = 0; i < metadataList.size(); i++) {
+                list.add((Metadata) input.readObject());
+            }
+        } finally {
+            input.close();
+        }
+        return list;
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.html.HtmlParser;
+import org.apache.tika.parser.microsoft.OfficeParser;
+import org.apache.tika.parser.microsoft.ooxml.OOXMLParser;
+import org.apache.tika.parser.odf.OpenDocumentParser;
+import org.apache.tika.parser.pdf.PDFParser;
+import org.apache.tika.parser.pkg.PackageParser;
+import org.apache.tika.parser.rtf.RTFParser;
+import org.apache.tika.parser.txt.TXTParser;
+import org.apache.tika.parser.xml.DcXMLParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Measures the parse throughput of the individual format parsers. The
+ * format parameter selects both the parser and the corpus document it
+ * parses. The output goes to a handler that discards all events, so
+ * only the cost of the parser itself is measured. Embedded documents
+ * are parsed with an {@link AutoDetectParser}, as they would be in a
+ * normal parse.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({
+        "pdf", "docx", "xlsx", "pptx", "doc", "xls", "ppt",
+        "odt", "rtf", "html", "xml", "txt", "zip"
+    })
+    private String format;
+
+    private Parser parser;
+
+    private ParseContext context;
+
+    private byte[] document;
+
+    @Setup
+    public void setUp() throws Exception {
+        String name;
+        if ("pdf".equals(format)) {
+            parser = new PDFParser();
+            name = "testPDF.pdf";
+        } else if ("docx".equals(format)) {
+            parser = new OOXMLParser();
+            name = "testWORD.docx";
+        } else if ("xlsx".equals(format)) {
+            parser = new OOXMLParser();
+            name = "testEXCEL.xlsx";
+        } else if ("pptx".equals(format)) {
+            parser = new OOXMLParser();
+            name = "testPPT.pptx";
+        } else if ("doc".equals(format)) {
+            parser = new OfficeParser();
+            name = "testWORD.doc";
+        } else if ("xls".equals(format)) {
+            parser = new OfficeParser();
+            name = "testEXCEL.xls";
+        } else if ("ppt".equals(format)) {
+            parser = new OfficeParser();
+            name = "testPPT.ppt";
+        } else if ("odt".equals(format)) {
+            parser = new OpenDocumentParser();
+            name = "testOpenOffice2.odt";
+        } else if ("rtf".equals(format)) {
+            parser = new RTFParser();
+            name = "testRTF.rtf";
+        } else if ("html".equals(format)) {
+            parser = new HtmlParser();
+            name = "testHTML.html";
+        } else if ("xml".equals(format)) {
+            parser = new DcXMLParser();
+            name = "testXML.xml";
+        } else if ("txt".equals(format)) {
+            parser = new TXTParser();
+            name = "english.cp500.txt";
+        } else if ("zip".equals(format)) {
+            parser = new PackageParser();
+            name = "test-documents.zip";
+        } else {
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+        document = TestDocuments.load(name);
+        context = new ParseContext();
+        context.set(Parser.class, new AutoDetectParser());
+    }
+
+    @Benchmark
+    public Metadata parse() throws Exception {
+        Metadata metadata = new Metadata();
+        parser.parse(
+                new ByteArrayInputStream(document), new DefaultHandler(),
+                metadata, context);
+        return metadata;
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.tika.io.IOUtils;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.DefaultParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.gdal.GDALParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Measures the cost of dispatching documents to the matching component
+ * parser of an {@link AutoDetectParser}, both on its own and as part of
+ * parsing small documents and deeply nested archives, where every
+ * embedded document goes through the dispatch again. The same is measured
+ * with a {@link GDALParser} registered next to the {@link DefaultParser},
+ * as an example of a component parser that reports its supported types
+ * with a large set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserDispatchBenchmark {
+
+    /**
+     * Exposes the protected parser lookup of the auto-detecting parser.
+     */
+    private static class DispatchingParser extends AutoDetectParser {
+
+        private static final long serialVersionUID = 1L;
+
+        DispatchingParser() {
+        }
+
+        DispatchingParser(Parser... parsers) {
+            super(parsers);
+        }
+
+        Parser lookup(Metadata metadata, ParseContext context) {
+            return getParser(metadata, context);
+        }
+
+    }
+
+    private DispatchingParser parser;
+
+    private DispatchingParser gdalParser;
+
+    private byte[] text;
+
+    private byte[] html;
+
+    private byte[] nestedZip;
+
+    @Setup
+    public void setUp() throws IOException {
+        parser = new DispatchingParser();
+        gdalParser = new DispatchingParser(
+                new DefaultParser(), new GDALParser());
+        text = "Hello, World!\n".getBytes(IOUtils.UTF_8);
+        html = ("<html><head><title>Hello</title></head>"
+                + "<body><p>World!</p></body></html>").getBytes(IOUtils.UTF_8);
+        nestedZip = createNestedZip(5, 10);
+    }
+
+    @Benchmark
+    public Parser getParser() {
+        return lookup(parser);
+    }
+
+    @Benchmark
+    public Parser getParserWithGDAL() {
+        return lookup(gdalParser);
+    }
+
+    @Benchmark
+    public Metadata parseSmallText() throws Exception {
+        return parse(text);
+    }
+
+    @Benchmark
+    public Metadata parseSmallHtml() throws Exception {
+        return parse(html);
+    }
+
+    @Benchmark
+    public Metadata parseNestedZip() throws Exception {
+        return parse(parser, nestedZip);
+    }
+
+    @Benchmark
+    public Metadata parseNestedZipWithGDAL() throws Exception {
+        return parse(gdalParser, nestedZip);
+    }
+
+    private Parser lookup(DispatchingParser parser) {
+        Metadata metadata = new Metadata();
+        metadata.set(Metadata.CONTENT_TYPE, "application/vnd.ms-excel");
+        return parser.lookup(metadata, createContext(parser));
+    }
+
+    private Metadata parse(byte[] data) throws Exception {
+        return parse(parser, data);
+    }
+
+    private Metadata parse(DispatchingParser parser, byte[] data)
+            throws Exception {
+        Metadata metadata = new Metadata();
+        parser.parse(
+                new ByteArrayInputStream(data), new DefaultHandler(),
+                metadata, createContext(parser));
+        return metadata;
+    }
+
+    private ParseContext createContext(Parser parser) {
+        ParseContext context = new ParseContext();
+        context.set(Parser.class, parser);
+        return context;
+    }
+
+    /**
+     * Creates a zip archive with the given number of small text entries
+     * and a nested archive of the same shape, down to the given depth.
+     */
+    private static byte[] createNestedZip(int depth, int entries)
+            throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(buffer);
+        try {
+            for (int i = 0; i < entries; i++) {
+                zip.putNextEntry(new ZipEntry("entry-" + i + ".txt"));
+                zip.write(("Entry " + i + " at depth " + depth)
+                        .getBytes(IOUtils.UTF_8));
+                zip.closeEntry();
+            }
+            if (depth > 1) {
+                zip.putNextEntry(new ZipEntry("nested.zip"));
+                zip.write(createNestedZip(depth - 1, entries));
+                zip.closeEntry();
+            }
+        } finally {
+            zip.close();
+        }
+        return buffer.toByteArray();
+    }
+
+}
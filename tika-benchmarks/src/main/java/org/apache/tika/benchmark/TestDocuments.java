@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.tika.io.IOUtils;
+
+/**
+ * Access to the test-documents corpus of the tika-parsers test jar,
+ * which every benchmark reads its input from. Using a fixed corpus
+ * keeps the results comparable across commits.
+ */
+final class TestDocuments {
+
+    /**
+     * A fixed selection of documents covering the common formats,
+     * used by the benchmarks that iterate over a whole corpus.
+     */
+    static final String[] CORPUS = {
+        "testPDF.pdf", "testWORD.doc", "testWORD.docx", "testEXCEL.xls",
+        "testEXCEL.xlsx", "testPPT.ppt", "testPPT.pptx", "testRTF.rtf",
+        "testOpenOffice2.odt", "testEPUB.epub", "test-outlook.msg",
+        "testHTML.html", "testXML.xml", "rsstest.rss", "testTXT.txt",
+        "testCSV.csv", "testC.c", "english.cp500.txt", "russian.cp866.txt",
+        "test-documents.zip", "test-documents.tar", "test-documents.tgz",
+        "test-documents.7z", "testJPEG.jpg", "testPNG.png",
+        "testMP3id3v2.mp3", "testMP4.m4a", "testWAV.wav", "testFLAC.flac"
+    };
+
+    private TestDocuments() {
+    }
+
+    /**
+     * Reads a document of the corpus into memory.
+     *
+     * @param name document name
+     * @return document contents
+     * @throws IOException if the document is not available
+     */
+    static byte[] load(String name) throws IOException {
+        InputStream stream =
+                TestDocuments.class.getResourceAsStream("/test-documents/" + name);
+        if (stream == null) {
+            throw new IOException("Test document not found: " + name);
+        }
+        try {
+            return IOUtils.toByteArray(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Reads all the documents of the {@link #CORPUS} into memory.
+     *
+     * @return document contents, in corpus order
+     * @throws IOException if a document is not available
+     */
+    static byte[][] loadCorpus() throws IOException {
+        byte[][] documents = new byte[CORPUS.length][];
+        for (int i = 0; i < CORPUS.length; i++) {
+            documents[i] = load(CORPUS[i]);
+        }
+        return documents;
+    }
+
+}
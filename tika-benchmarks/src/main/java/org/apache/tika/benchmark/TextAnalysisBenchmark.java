@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tika.language.LanguageIdentifier;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.txt.CharsetDetector;
+import org.apache.tika.parser.txt.CharsetMatch;
+import org.apache.tika.sax.BodyContentHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the text analysis components: language identification of
+ * extracted text with {@link LanguageIdentifier}, and character
+ * encoding detection of raw bytes with {@link CharsetDetector}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextAnalysisBenchmark {
+
+    @Param({ "english.cp500.txt", "russian.cp866.txt", "testHTML.html" })
+    private String document;
+
+    private byte[] bytes;
+
+    private String text;
+
+    @Setup
+    public void setUp() throws Exception {
+        bytes = TestDocuments.load(document);
+        BodyContentHandler handler = new BodyContentHandler(-1);
+        new AutoDetectParser().parse(
+                new ByteArrayInputStream(bytes), handler,
+                new Metadata(), new ParseContext());
+        text = handler.toString();
+        // Load the language profiles outside of the measurements
+        new LanguageIdentifier(text);
+    }
+
+    @Benchmark
+    public String identifyLanguage() {
+        return new LanguageIdentifier(text).getLanguage();
+    }
+
+    @Benchmark
+    public String detectCharset() {
+        CharsetMatch match = new CharsetDetector().setText(bytes).detect();
+        return match != null ? match.getName() : null;
+    }
+
+    @Benchmark
+    public CharsetMatch[] detectAllCharsets() {
+        return new CharsetDetector().setText(bytes).detectAll();
+    }
+
+}
@@ -104,14 +104,34 @@ public class ServiceLoader {
         contextClassLoader = loader;
     }
 
+    /**
+     * Number of changes made to the dynamic set of services.
+     */
+    private static volatile int dynamicServiceChanges = 0;
+
+    /**
+     * Returns the number of changes made so far to the dynamic set of
+     * services available in an OSGi environment. Components that cache
+     * information derived from dynamic service providers can compare this
+     * counter to know when the cached information needs to be refreshed.
+     *
+     * @since Apache Tika 1.10
+     * @return number of dynamic service changes
+     */
+    public static int getDynamicServiceChanges() {
+        return dynamicServiceChanges;
+    }
+
     static void addService(Object reference, Object service, int rank) {
         synchronized (services) {
             services.put(reference, new RankedService(service, rank));
+            dynamicServiceChanges++;
         }
     }
 
     static Object removeService(Object reference) {
         synchronized (services) {
+            dynamicServiceChanges++;
             return services.remove(reference);
         }
     }
@@ -272,7 +292,7 @@ public class ServiceLoader {
      * @param iface service provider interface
      * @return static list of uninitialised service providers
      */
-    protected <T> List<String> identifyStaticServiceProviders(Class<T> iface) {
+    public <T> List<String> identifyStaticServiceProviders(Class<T> iface) {
         List<String> names = new ArrayList<String>();
 
         if (loader != null) {
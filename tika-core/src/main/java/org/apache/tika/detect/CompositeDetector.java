@@ -22,9 +22,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
 import org.apache.tika.mime.MediaTypeRegistry;
+import org.apache.tika.mime.MimeTypes;
 
 /**
  * Content type detector that combines multiple different detection mechanisms.
@@ -56,6 +58,16 @@ public class CompositeDetector implements Detector {
 
     public MediaType detect(InputStream input, Metadata metadata)
             throws IOException { 
+        TikaInputStream tis = TikaInputStream.cast(input);
+        if (tis != null && !tis.hasFile()) {
+            // Read the longest prefix needed by the component detectors
+            // just once, so they can all peek at it
+            int length = getPrefixLength(this);
+            if (length > 0) {
+                tis.peek(tis.getPosition(), length);
+            }
+        }
+
         MediaType type = MediaType.OCTET_STREAM;
         for (Detector detector : getDetectors()) {
             MediaType detected = detector.detect(input, metadata);
@@ -66,6 +78,29 @@ public class CompositeDetector implements Detector {
         return type;
     }
 
+    /**
+     * Returns the number of bytes at the start of a document that the
+     * given detector is known to look at, or zero if not known.
+     */
+    private static int getPrefixLength(Detector detector) {
+        if (detector instanceof MimeTypes) {
+            return ((MimeTypes) detector).getMinLength();
+        } else if (detector instanceof MagicDetector) {
+            return ((MagicDetector) detector).getPrefixLength();
+        } else if (detector instanceof TextDetector) {
+            return ((TextDetector) detector).getPrefixLength();
+        } else if (detector instanceof CompositeDetector) {
+            int length = 0;
+            for (Detector component
+                    : ((CompositeDetector) detector).getDetectors()) {
+                length = Math.max(length, getPrefixLength(component));
+            }
+            return length;
+        } else {
+            return 0;
+        }
+    }
+
     /**
      * Returns the component detectors.
      */
@@ -26,6 +26,7 @@ import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.tika.io.IOUtils;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
 
@@ -246,6 +247,12 @@ public class MagicDetector implements Detector {
      */
     private final int offsetRangeEnd;
 
+    /**
+     * Compiled form of the {@link #pattern} if this is a regular expression
+     * match, or <code>null</code> otherwise.
+     */
+    private final Pattern regex;
+
     /**
      * Creates a detector for input documents that have the exact given byte
      * pattern at the beginning of the document stream.
@@ -342,6 +349,28 @@ public class MagicDetector implements Detector {
 
         this.offsetRangeBegin = offsetRangeBegin;
         this.offsetRangeEnd = offsetRangeEnd;
+
+        if (this.isRegex) {
+            int flags = 0;
+            if (this.isStringIgnoreCase) {
+                flags = Pattern.CASE_INSENSITIVE;
+            }
+            this.regex = Pattern.compile(
+                    new String(this.pattern, IOUtils.UTF_8), flags);
+        } else {
+            this.regex = null;
+        }
+    }
+
+    /**
+     * Returns the number of bytes at the start of a document that this
+     * detector looks at.
+     *
+     * @since Apache Tika 1.10
+     * @return end of the offset range plus the pattern length
+     */
+    public int getPrefixLength() {
+        return offsetRangeEnd + length;
     }
 
     /**
@@ -355,6 +384,21 @@ public class MagicDetector implements Detector {
             return MediaType.OCTET_STREAM;
         }
 
+        TikaInputStream tis = TikaInputStream.cast(input);
+        if (tis != null) {
+            // Look at the file or the shared prefix directly instead of
+            // reading the stream
+            ByteBuffer view =
+                tis.peek(tis.getPosition(), offsetRangeEnd + length);
+            byte[] data = new byte[view.remaining()];
+            view.get(data);
+            if (matches(data)) {
+                return type;
+            } else {
+                return MediaType.OCTET_STREAM;
+            }
+        }
+
         input.mark(offsetRangeEnd + length);
         try {
             int offset = 0;
@@ -389,16 +433,9 @@ public class MagicDetector implements Detector {
             }
 
             if (this.isRegex) {
-                int flags = 0;
-                if (this.isStringIgnoreCase) {
-                    flags = Pattern.CASE_INSENSITIVE;
-                }
-                
-                Pattern p = Pattern.compile(new String(this.pattern, IOUtils.UTF_8), flags);
-
                 ByteBuffer bb = ByteBuffer.wrap(buffer);
                 CharBuffer result = ISO_8859_1.decode(bb);
-                Matcher m = p.matcher(result);
+                Matcher m = regex.matcher(result);
 
                 boolean match = false;
                 // Loop until we've covered the entire offset range
@@ -436,10 +473,154 @@ public class MagicDetector implements Detector {
         }
     }
 
+    /**
+     * Checks whether the given prefix of a document matches this magic.
+     * The result is the same as that of passing the prefix to
+     * {@link #detect(InputStream, Metadata)} as a stream, but the bytes
+     * are evaluated in place, without any stream or buffer copies.
+     *
+     * @since Apache Tika 1.10
+     * @param data first few bytes of a document
+     * @return <code>true</code> if the magic matches, <code>false</code> otherwise
+     */
+    public boolean matches(byte[] data) {
+        if (this.isRegex) {
+            if (data.length < offsetRangeBegin) {
+                return false;
+            }
+            Matcher m = regex.matcher(new WindowSequence(
+                    data, offsetRangeBegin,
+                    length + (offsetRangeEnd - offsetRangeBegin)));
+            for (int i = 0; i <= offsetRangeEnd - offsetRangeBegin; i++) {
+                m.region(i, length + i);
+                if (m.lookingAt()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        if (data.length < offsetRangeBegin + length) {
+            return false;
+        }
+        for (int i = offsetRangeBegin; i <= offsetRangeEnd; i++) {
+            boolean match = true;
+            int masked;
+            for (int j = 0; match && j < length; j++) {
+                // Bytes past the end of the data compare as zeros, like
+                // the unfilled tail of the buffer in detect()
+                int k = i + j;
+                masked = (k < data.length ? data[k] : 0) & mask[j];
+                if (this.isStringIgnoreCase) {
+                    masked = Character.toLowerCase(masked);
+                }
+                match = (masked == pattern[j]);
+            }
+            if (match) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the given byte value could start a match of this
+     * magic, i.e. whether it passes the masked (and possibly case-folded)
+     * comparison against the first byte of the pattern. Always returns
+     * <code>true</code> for regular expressions and empty patterns.
+     *
+     * @since Apache Tika 1.10
+     * @param value byte value, between 0 and 255
+     * @return <code>false</code> if no match can start with the given byte
+     */
+    public boolean matchesFirstByte(int value) {
+        if (this.isRegex || length == 0) {
+            return true;
+        }
+        int masked = ((byte) value) & mask[0];
+        if (this.isStringIgnoreCase) {
+            masked = Character.toLowerCase(masked);
+        }
+        return masked == pattern[0];
+    }
+
+    /**
+     * Returns <code>true</code> if this is a regular expression match.
+     *
+     * @since Apache Tika 1.10
+     */
+    public boolean isRegex() {
+        return isRegex;
+    }
+
+    /**
+     * Returns the first offset (inclusive) of the comparison window.
+     *
+     * @since Apache Tika 1.10
+     */
+    public int getOffsetRangeBegin() {
+        return offsetRangeBegin;
+    }
+
+    /**
+     * Returns the last offset (inclusive) at which a match may start.
+     *
+     * @since Apache Tika 1.10
+     */
+    public int getOffsetRangeEnd() {
+        return offsetRangeEnd;
+    }
+
     public int getLength() {
         return this.patternLength;
     }
 
+    /**
+     * Read-only ISO-8859-1 view of a window of a byte array, padded with
+     * zeros past the end of the array. Used to run regular expression
+     * matches directly against a document prefix.
+     */
+    private static class WindowSequence implements CharSequence {
+
+        private final byte[] data;
+
+        private final int start;
+
+        private final int length;
+
+        WindowSequence(byte[] data, int start, int length) {
+            this.data = data;
+            this.start = start;
+            this.length = length;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public char charAt(int index) {
+            int i = start + index;
+            if (i < data.length) {
+                return (char) (data[i] & 0xff);
+            } else {
+                return 0;
+            }
+        }
+
+        public CharSequence subSequence(int begin, int end) {
+            return new WindowSequence(data, start + begin, end - begin);
+        }
+
+        public String toString() {
+            StringBuilder builder = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                builder.append(charAt(i));
+            }
+            return builder.toString();
+        }
+
+    }
+
     /**
      * Returns a string representation of the Detection Rule.
      * Should sort nicely by type and details, as we sometimes
@@ -18,8 +18,10 @@ package org.apache.tika.detect;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
 
@@ -114,6 +116,20 @@ public class TextDetector implements Detector {
             return MediaType.OCTET_STREAM;
         }
 
+        TikaInputStream tis = TikaInputStream.cast(input);
+        if (tis != null) {
+            // Look at the shared prefix instead of reading the stream
+            ByteBuffer view = tis.peek(tis.getPosition(), bytesToTest);
+            TextStatistics stats = new TextStatistics();
+            byte[] buffer = new byte[1024];
+            while (view.hasRemaining()) {
+                int m = Math.min(view.remaining(), buffer.length);
+                view.get(buffer, 0, m);
+                stats.addData(buffer, 0, m);
+            }
+            return getType(stats);
+        }
+
         input.mark(bytesToTest);
         try {
             TextStatistics stats = new TextStatistics();
@@ -127,14 +143,29 @@ public class TextDetector implements Detector {
                 m = input.read(buffer, 0, Math.min(bytesToTest - n, buffer.length));
             }
 
-            if (stats.isMostlyAscii() || stats.looksLikeUTF8()) {
-                return MediaType.TEXT_PLAIN;
-            } else {
-                return MediaType.OCTET_STREAM;
-            }
+            return getType(stats);
         } finally {
             input.reset();
         }
     }
 
+    private MediaType getType(TextStatistics stats) {
+        if (stats.isMostlyAscii() || stats.looksLikeUTF8()) {
+            return MediaType.TEXT_PLAIN;
+        } else {
+            return MediaType.OCTET_STREAM;
+        }
+    }
+
+    /**
+     * Returns the number of bytes at the start of a document that this
+     * detector looks at.
+     *
+     * @since Apache Tika 1.10
+     * @return number of bytes to test
+     */
+    public int getPrefixLength() {
+        return bytesToTest;
+    }
+
 }
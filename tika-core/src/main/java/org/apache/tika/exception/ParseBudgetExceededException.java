@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.exception;
+
+/**
+ * Exception thrown when a parse is aborted because it has exceeded the
+ * limits of its {@link org.apache.tika.parser.ParseBudget}.
+ *
+ * @since Apache Tika 1.10
+ */
+public class ParseBudgetExceededException extends TikaException {
+
+    /** Serial version UID */
+    private static final long serialVersionUID = 4651409447306346946L;
+
+    public ParseBudgetExceededException(String msg) {
+        super(msg);
+    }
+
+    public ParseBudgetExceededException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+
+}
@@ -0,0 +1,727 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.extractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tika.exception.ParseBudgetExceededException;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.CloseShieldInputStream;
+import org.apache.tika.io.TemporaryResources;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.DelegatingParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.cache.ParseResult;
+import org.apache.tika.parser.cache.ParseResultRecorder;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.EmbeddedContentHandler;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Embedded document extractor that parses the embedded documents of
+ * a container concurrently on a given executor. Each embedded document
+ * is spooled into memory or a temporary file, parsed in the background,
+ * and its output is passed to the content handler of the container in
+ * the original order of the embedded documents.
+ * <p>
+ * Keeping that order requires the content handler returned by
+ * {@link #getContentHandler(ContentHandler)} to be used for the
+ * container, as it holds back the output of the container until the
+ * embedded documents before it have been parsed:
+ * <pre>
+ * ConcurrentEmbeddedDocumentExtractor extractor =
+ *     new ConcurrentEmbeddedDocumentExtractor(context, executor);
+ * context.set(EmbeddedDocumentExtractor.class, extractor);
+ * try {
+ *     parser.parse(stream, extractor.getContentHandler(handler), metadata, context);
+ * } finally {
+ *     extractor.cancel();
+ * }
+ * </pre>
+ * Otherwise embedded documents are parsed on the calling thread just like
+ * with {@link ParsingEmbeddedDocumentExtractor}. The same applies to the
+ * documents embedded in embedded documents, and to embedded documents
+ * whose container keeps an open container object for them.
+ * <p>
+ * The parse context is shared with the background tasks, so it should
+ * not be modified while parsing. A failure to parse an embedded document
+ * is reported when its output is passed on, which may be during a later
+ * call to {@link #parseEmbedded(InputStream, ContentHandler, Metadata, boolean)}
+ * or at the end of the container document. If the container parse fails,
+ * {@link #cancel()} stops the embedded documents that are still pending
+ * and releases the memory held for them.
+ * <p>
+ * Once the {@link #setMaxMemory(long) memory limit} is reached, the
+ * background tasks wait for the output held in memory to be passed on,
+ * except for the next embedded document in order whose output is passed
+ * on while it is being parsed. The executor should run the tasks in the
+ * order they are submitted, so that this document is not left waiting
+ * behind the others.
+ *
+ * @since Apache Tika 1.10
+ */
+public class ConcurrentEmbeddedDocumentExtractor
+        extends ParsingEmbeddedDocumentExtractor {
+
+    /**
+     * Default maximum number of embedded documents being parsed or
+     * waiting to be passed on at the same time.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT =
+            2 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Default maximum number of bytes of spooled embedded documents and
+     * parse output held in memory.
+     */
+    public static final long DEFAULT_MAX_MEMORY = 64 * 1024 * 1024;
+
+    private static final Parser DELEGATING_PARSER = new DelegatingParser();
+
+    private final ParseContext context;
+
+    private final ExecutorService executor;
+
+    private volatile int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+    private volatile long maxMemory = DEFAULT_MAX_MEMORY;
+
+    /** Bytes of memory used by spooled documents and parse output */
+    private final AtomicLong memory = new AtomicLong();
+
+    /** Lock for waiting on the memory use and on the embedded documents */
+    private final Object lock = new Object();
+
+    private volatile OrderingContentHandler ordering = null;
+
+    public ConcurrentEmbeddedDocumentExtractor(
+            ParseContext context, ExecutorService executor) {
+        super(context);
+        this.context = context;
+        this.executor = executor;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Sets the maximum number of embedded documents that are being parsed
+     * or are waiting for their output to be passed on at the same time.
+     * The container parser is blocked when this limit is reached.
+     *
+     * @param maxInFlight maximum number of embedded documents
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException(
+                    "Maximum number of embedded documents must be positive: "
+                    + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Sets the amount of memory used for spooled embedded documents and
+     * buffered parse output beyond which the container parser and the
+     * parsing of embedded documents are blocked until the output of
+     * earlier embedded documents has been passed on. The parse output is
+     * accounted for as it is produced, so the limit may be exceeded by up
+     * to one SAX event for each document being parsed, and by the size of
+     * the embedded document being spooled. Embedded documents larger than the
+     * {@link TikaInputStream#setSpillThreshold(int) spill threshold} of
+     * {@link TikaInputStream} are spooled into temporary files instead
+     * of memory.
+     *
+     * @param maxMemory maximum amount of memory, in bytes
+     */
+    public void setMaxMemory(long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Returns the amount of memory currently used for spooled embedded
+     * documents and buffered parse output.
+     *
+     * @return memory use in bytes
+     */
+    public long getMemoryUsed() {
+        return memory.get();
+    }
+
+    /**
+     * Returns a content handler to be given to the container parser, that
+     * passes all output to the given handler in the correct order. Only
+     * one container document at a time can be parsed with this extractor.
+     *
+     * @param handler content handler for the container document
+     * @return ordering content handler
+     */
+    public ContentHandler getContentHandler(ContentHandler handler) {
+        cancel();
+        OrderingContentHandler ordering = new OrderingContentHandler(handler);
+        this.ordering = ordering;
+        return ordering;
+    }
+
+    /**
+     * Cancels the embedded documents of the current container document
+     * whose output has not been passed on yet, and releases the memory
+     * held for them. To be called once the container parse is over, as
+     * otherwise a failed container parse would leave them pending. Does
+     * nothing if the container document was parsed completely.
+     */
+    public void cancel() {
+        OrderingContentHandler ordering = this.ordering;
+        if (ordering != null) {
+            ordering.cancel();
+        }
+    }
+
+    @Override
+    public void parseEmbedded(
+            InputStream stream, ContentHandler handler, Metadata metadata,
+            boolean outputHtml) throws SAXException, IOException {
+        OrderingContentHandler ordering = this.ordering;
+        if (ordering == null || !ordering.isParsingThread()
+                || (stream instanceof TikaInputStream
+                        && ((TikaInputStream) stream).getOpenContainer() != null)) {
+            super.parseEmbedded(stream, handler, metadata, outputHtml);
+            return;
+        }
+
+        addEmbeddedDocument(context);
+
+        // Make room for this document, by waiting for earlier documents
+        ordering.flush(maxInFlight - 1, maxMemory);
+
+        if (outputHtml) {
+            startEntry(handler, metadata);
+        }
+
+        TemporaryResources tmp = new TemporaryResources();
+        Entry entry = null;
+        try {
+            TikaInputStream newStream = TikaInputStream.get(
+                    new CloseShieldInputStream(stream), tmp);
+            long length = newStream.getLength();
+            entry = new Entry(newStream, tmp, handler, metadata);
+            if (!newStream.hasFile()) {
+                entry.charge(length);
+            }
+            entry.future = executor.submit(entry, null);
+            ordering.add(entry);
+        } catch (RejectedExecutionException e) {
+            // No room in the executor, so parse on this thread instead
+            entry.inline = true;
+            entry.run();
+            entry.replay();
+        } finally {
+            if (entry == null) {
+                tmp.close();
+            }
+        }
+
+        if (outputHtml) {
+            endEntry(handler);
+        }
+    }
+
+    /**
+     * An embedded document that is parsed in the background.
+     */
+    private class Entry implements Runnable {
+
+        private final TikaInputStream stream;
+
+        private final TemporaryResources tmp;
+
+        private final ContentHandler handler;
+
+        private final Metadata metadata;
+
+        private final Metadata before = new Metadata();
+
+        private final Metadata after = new Metadata();
+
+        private final ParseResultRecorder recorder =
+            new ParseResultRecorder(new DefaultHandler(), Long.MAX_VALUE) {
+                @Override
+                protected void afterRecord(int size) throws SAXException {
+                    recorded(size);
+                }
+            };
+
+        private Future<?> future;
+
+        private ParseResult result;
+
+        private Exception failure;
+
+        /** Parts of the output that are ready to be passed on */
+        private final LinkedList<ParseResult> parts =
+            new LinkedList<ParseResult>();
+
+        /** Bytes of output in the recorder, not yet in a part */
+        private long buffered = 0;
+
+        /** Bytes of memory charged for this document */
+        private long size = 0;
+
+        /** Whether the memory of this document has been released */
+        private boolean released = false;
+
+        /** Whether this document is parsed on the container thread */
+        private boolean inline = false;
+
+        /** Whether the container thread is waiting for the output */
+        private boolean draining = false;
+
+        /** Whether the parsing of this document is over */
+        private boolean finished = false;
+
+        /** Whether this document has started to be parsed, or cancelled */
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        public Entry(
+                TikaInputStream stream, TemporaryResources tmp,
+                ContentHandler handler, Metadata metadata) {
+            this.stream = stream;
+            this.tmp = tmp;
+            this.handler = handler;
+            this.metadata = metadata;
+            for (String name : metadata.names()) {
+                for (String value : metadata.getValues(name)) {
+                    before.add(name, value);
+                    after.add(name, value);
+                }
+            }
+        }
+
+        private void charge(long bytes) {
+            synchronized (lock) {
+                if (!released) {
+                    size += bytes;
+                    memory.addAndGet(bytes);
+                    if (bytes < 0) {
+                        lock.notifyAll();
+                    }
+                }
+            }
+        }
+
+        private void release() {
+            synchronized (lock) {
+                memory.addAndGet(-size);
+                size = 0;
+                released = true;
+                lock.notifyAll();
+            }
+        }
+
+        /**
+         * Charges a recorded event, and waits while the memory limit is
+         * exceeded. If the container thread is already waiting for this
+         * document, the output so far is handed over to it instead.
+         */
+        private void recorded(int bytes) throws SAXException {
+            synchronized (lock) {
+                charge(bytes);
+                buffered += bytes;
+                try {
+                    while (!inline && !released && memory.get() > maxMemory
+                            && (!draining || buffered > 0 || !parts.isEmpty())) {
+                        if (draining && buffered > 0) {
+                            parts.add(recorder.takeEvents());
+                            buffered = 0;
+                            lock.notifyAll();
+                        } else {
+                            lock.wait();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    throw new SAXException(
+                            "Interrupted while waiting for memory", e);
+                }
+            }
+        }
+
+        public void run() {
+            if (!started.compareAndSet(false, true)) {
+                return; // cancelled
+            }
+            try {
+                DELEGATING_PARSER.parse(stream, recorder, after, context);
+            } catch (ParseBudgetExceededException e) {
+                // Abort the whole parse instead of just skipping this entry
+                failure = new IOException(e.getMessage(), e);
+            } catch (TikaException e) {
+                // Could not parse the entry, just skip the rest of the
+                // content like ParsingEmbeddedDocumentExtractor does
+            } catch (IOException e) {
+                failure = e;
+            } catch (SAXException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                try {
+                    tmp.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+                synchronized (lock) {
+                    result = recorder.getResult(before, after);
+                    charge(result.getSize() - buffered);
+                    finished = true;
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Waits for the next part of the output of this document.
+         *
+         * @return next part, or <code>null</code> once the parse is over
+         */
+        private ParseResult nextPart() throws SAXException {
+            synchronized (lock) {
+                draining = true;
+                lock.notifyAll();
+                try {
+                    while (parts.isEmpty() && !finished) {
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    if (future != null) {
+                        future.cancel(true);
+                    }
+                    throw new SAXException(
+                            "Interrupted while parsing an embedded document", e);
+                }
+                return parts.poll();
+            }
+        }
+
+        /**
+         * Waits for the parsing of this document to complete, and passes
+         * its output and metadata on. Output that was handed over while
+         * the document was being parsed is passed on as it arrives.
+         */
+        public void replay() throws SAXException {
+            try {
+                ContentHandler target = new EmbeddedContentHandler(
+                        new BodyContentHandler(handler));
+                ParseResult part = nextPart();
+                while (part != null) {
+                    part.replay(target, new Metadata());
+                    charge(-part.getSize());
+                    part = nextPart();
+                }
+                if (future != null) {
+                    try {
+                        future.get();
+                    } catch (InterruptedException e) {
+                        future.cancel(true);
+                        throw new SAXException(
+                                "Interrupted while parsing an embedded document", e);
+                    } catch (ExecutionException e) {
+                        failure = e;
+                    }
+                }
+                if (failure instanceof SAXException) {
+                    throw (SAXException) failure;
+                } else if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                } else if (failure != null) {
+                    throw new SAXException(failure);
+                }
+                result.replay(target, metadata);
+            } finally {
+                release();
+            }
+        }
+
+        /**
+         * Stops this document from being parsed, or interrupts the parse
+         * if it is already running, and releases its memory.
+         */
+        public void cancel() {
+            if (started.compareAndSet(false, true)) {
+                // Never going to run, so clean up for it
+                try {
+                    tmp.close();
+                } catch (IOException e) {
+                    // ignore, as the container parse failed already
+                }
+            }
+            if (future != null) {
+                future.cancel(true);
+            }
+            release();
+        }
+
+    }
+
+    /**
+     * Content handler that holds back the output of the container document
+     * while there are embedded documents before it that are still being
+     * parsed. The pending output and embedded documents are kept in a queue
+     * that is only accessed from the thread parsing the container.
+     */
+    private class OrderingContentHandler extends DefaultHandler {
+
+        private final ContentHandler handler;
+
+        /** Pending embedded documents and recorded container output */
+        private final LinkedList<Object> pending = new LinkedList<Object>();
+
+        private int entries = 0;
+
+        private Thread thread = null;
+
+        /** Whether the output of an embedded document is being passed on */
+        private boolean replaying = false;
+
+        public OrderingContentHandler(ContentHandler handler) {
+            this.handler = handler;
+        }
+
+        public boolean isParsingThread() {
+            return thread == Thread.currentThread() && !replaying;
+        }
+
+        public void add(Entry entry) {
+            pending.add(entry);
+            entries++;
+        }
+
+        /**
+         * Passes on all pending output up to the first embedded document
+         * that is still being parsed, and then keeps waiting for embedded
+         * documents until there are at most the given number of them left
+         * and the memory use is within the given limit.
+         */
+        public void flush(int maxEntries, long maxMemory) throws SAXException {
+            try {
+                doFlush(maxEntries, maxMemory);
+            } catch (SAXException e) {
+                cancel();
+                throw e;
+            } catch (RuntimeException e) {
+                cancel();
+                throw e;
+            }
+        }
+
+        private void doFlush(int maxEntries, long maxMemory)
+                throws SAXException {
+            while (!pending.isEmpty()) {
+                Object head = pending.getFirst();
+                if (head instanceof Entry) {
+                    Entry entry = (Entry) head;
+                    if (!entry.future.isDone()
+                            && entries <= maxEntries
+                            && memory.get() <= maxMemory) {
+                        return;
+                    }
+                    pending.removeFirst();
+                    entries--;
+                    replaying = true;
+                    try {
+                        entry.replay();
+                    } finally {
+                        replaying = false;
+                    }
+                } else {
+                    pending.removeFirst();
+                    HeldOutput output = (HeldOutput) head;
+                    Metadata metadata = new Metadata();
+                    try {
+                        output.getResult(metadata, metadata).replay(
+                                handler, metadata);
+                    } finally {
+                        output.release();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Cancels all pending embedded documents, drops the pending
+         * container output and detaches this handler from the thread
+         * parsing the container.
+         */
+        public void cancel() {
+            for (Object item : pending) {
+                if (item instanceof Entry) {
+                    ((Entry) item).cancel();
+                } else {
+                    ((HeldOutput) item).release();
+                }
+            }
+            pending.clear();
+            entries = 0;
+            thread = null;
+        }
+
+        /**
+         * Returns the content handler for the next container output
+         * event: the decorated handler if nothing is pending, or a
+         * recorder at the end of the queue otherwise. Waits for earlier
+         * embedded documents first if the memory limit is exceeded.
+         */
+        private ContentHandler target() throws SAXException {
+            if (replaying || pending.isEmpty()) {
+                return handler;
+            }
+            if (memory.get() > maxMemory) {
+                flush(maxInFlight, maxMemory);
+                if (pending.isEmpty()) {
+                    return handler;
+                }
+            }
+            Object last = pending.getLast();
+            if (last instanceof HeldOutput) {
+                return (HeldOutput) last;
+            }
+            HeldOutput output = new HeldOutput();
+            pending.add(output);
+            return output;
+        }
+
+        /**
+         * Container output that is held back, and charged to the memory
+         * use as it is recorded.
+         */
+        private class HeldOutput extends ParseResultRecorder {
+
+            private long size = 0;
+
+            public HeldOutput() {
+                super(new DefaultHandler(), Long.MAX_VALUE);
+            }
+
+            @Override
+            protected void afterRecord(int bytes) {
+                size += bytes;
+                memory.addAndGet(bytes);
+            }
+
+            public void release() {
+                synchronized (lock) {
+                    memory.addAndGet(-size);
+                    size = 0;
+                    lock.notifyAll();
+                }
+            }
+
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            handler.setDocumentLocator(locator);
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            thread = Thread.currentThread();
+            target().startDocument();
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            target().endDocument();
+            if (!replaying) {
+                try {
+                    flush(0, 0);
+                } finally {
+                    thread = null;
+                }
+            }
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri)
+                throws SAXException {
+            target().startPrefixMapping(prefix, uri);
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            target().endPrefixMapping(prefix);
+        }
+
+        @Override
+        public void startElement(
+                String uri, String localName, String name, Attributes atts)
+                throws SAXException {
+            target().startElement(uri, localName, name, atts);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String name)
+                throws SAXException {
+            target().endElement(uri, localName, name);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length)
+                throws SAXException {
+            target().characters(ch, start, length);
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length)
+                throws SAXException {
+            target().ignorableWhitespace(ch, start, length);
+        }
+
+        @Override
+        public void processingInstruction(String target, String data)
+                throws SAXException {
+            target().processingInstruction(target, data);
+        }
+
+        @Override
+        public void skippedEntity(String name) throws SAXException {
+            target().skippedEntity(name);
+        }
+
+    }
+
+}
@@ -22,12 +22,14 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.apache.tika.exception.EncryptedDocumentException;
+import org.apache.tika.exception.ParseBudgetExceededException;
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.io.CloseShieldInputStream;
 import org.apache.tika.io.TemporaryResources;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.DelegatingParser;
+import org.apache.tika.parser.ParseBudget;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
 import org.apache.tika.sax.BodyContentHandler;
@@ -76,18 +78,10 @@ public class ParsingEmbeddedDocumentExtractor implements EmbeddedDocumentExtract
     public void parseEmbedded(
             InputStream stream, ContentHandler handler, Metadata metadata, boolean outputHtml)
             throws SAXException, IOException {
-        if(outputHtml) {
-           AttributesImpl attributes = new AttributesImpl();
-           attributes.addAttribute("", "class", "class", "CDATA", "package-entry");
-           handler.startElement(XHTML, "div", "div", attributes);
-        }
+        addEmbeddedDocument(context);
 
-        String name = metadata.get(Metadata.RESOURCE_NAME_KEY);
-        if (name != null && name.length() > 0 && outputHtml) {
-            handler.startElement(XHTML, "h1", "h1", new AttributesImpl());
-            char[] chars = name.toCharArray();
-            handler.characters(chars, 0, chars.length);
-            handler.endElement(XHTML, "h1", "h1");
+        if(outputHtml) {
+           startEntry(handler, metadata);
         }
 
         // Use the delegate parser to parse this entry
@@ -104,6 +98,9 @@ public class ParsingEmbeddedDocumentExtractor implements EmbeddedDocumentExtract
                                     newStream,
                                     new EmbeddedContentHandler(new BodyContentHandler(handler)),
                                     metadata, context);
+        } catch (ParseBudgetExceededException e) {
+            // Abort the whole parse instead of just skipping this entry
+            throw new IOException(e.getMessage(), e);
         } catch (EncryptedDocumentException ede) {
             // TODO: can we log a warning that we lack the password?
             // For now, just skip the content
@@ -115,8 +112,48 @@ public class ParsingEmbeddedDocumentExtractor implements EmbeddedDocumentExtract
         }
 
         if(outputHtml) {
-           handler.endElement(XHTML, "div", "div");
+           endEntry(handler);
+        }
+    }
+
+    /**
+     * Records an embedded document in the {@link ParseBudget} of the
+     * given context, if any.
+     *
+     * @throws IOException if the parse budget is exceeded
+     */
+    static void addEmbeddedDocument(ParseContext context) throws IOException {
+        ParseBudget budget = context.get(ParseBudget.class);
+        if (budget != null) {
+            try {
+                budget.addEmbeddedDocument();
+            } catch (ParseBudgetExceededException e) {
+                throw new IOException(e.getMessage(), e);
+            }
         }
     }
 
+    /**
+     * Outputs the start of the package entry element of an embedded
+     * document, including its name if known.
+     */
+    static void startEntry(ContentHandler handler, Metadata metadata)
+            throws SAXException {
+        AttributesImpl attributes = new AttributesImpl();
+        attributes.addAttribute("", "class", "class", "CDATA", "package-entry");
+        handler.startElement(XHTML, "div", "div", attributes);
+
+        String name = metadata.get(Metadata.RESOURCE_NAME_KEY);
+        if (name != null && name.length() > 0) {
+            handler.startElement(XHTML, "h1", "h1", new AttributesImpl());
+            char[] chars = name.toCharArray();
+            handler.characters(chars, 0, chars.length);
+            handler.endElement(XHTML, "h1", "h1");
+        }
+    }
+
+    static void endEntry(ContentHandler handler) throws SAXException {
+        handler.endElement(XHTML, "div", "div");
+    }
+
 }
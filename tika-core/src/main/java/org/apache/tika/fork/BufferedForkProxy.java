@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.fork;
+
+import java.io.IOException;
+
+/**
+ * A {@link ForkProxy} that does not make a full round trip to the parent
+ * process for every operation, but instead has the parent push data ahead
+ * of time or collects outgoing data into larger batches. The forked server
+ * process uses these callbacks to keep such buffered traffic consistent
+ * with everything else sent over the same communication channel.
+ *
+ * @since Apache Tika 1.10
+ */
+public interface BufferedForkProxy extends ForkProxy {
+
+    /**
+     * Receives all the data that the parent process has already been asked
+     * to send to this proxy. Called before anything else is written to the
+     * parent process, to avoid both processes blocking on full pipes and
+     * to keep the pushed data from getting mixed up with later responses.
+     *
+     * @throws IOException if the data could not be received
+     */
+    void drain() throws IOException;
+
+    /**
+     * Sends all the data buffered by this proxy to the parent process.
+     * Called before the result of a call is reported to the parent.
+     *
+     * @throws IOException if the data could not be sent
+     */
+    void flush() throws IOException;
+
+}
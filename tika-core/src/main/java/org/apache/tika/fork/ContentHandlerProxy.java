@@ -16,6 +16,7 @@
  */
 package org.apache.tika.fork;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -25,7 +26,19 @@ import org.xml.sax.ContentHandler;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 
-class ContentHandlerProxy implements ContentHandler, ForkProxy {
+/**
+ * Content handler in the forked server process that forwards all SAX
+ * events to the content handler of the parent process.
+ * <p>
+ * With the original protocol every event is sent as a separate message,
+ * with strings limited to 64kB of modified UTF-8. With the batched
+ * protocol the events are collected into a local buffer that is sent as
+ * a single framed message whenever it grows beyond {@link #BATCH_SIZE}
+ * bytes, and when the forked server reports the result of the call.
+ * Strings are then sent as plain UTF-16 code units with an integer
+ * length, so there is no limit on their size.
+ */
+class ContentHandlerProxy implements ContentHandler, BufferedForkProxy {
 
     public static final int START_DOCUMENT         =  1;
     public static final int END_DOCUMENT           =  2;
@@ -38,26 +51,70 @@ class ContentHandlerProxy implements ContentHandler, ForkProxy {
     public static final int PROCESSING_INSTRUCTION =  9;
     public static final int SKIPPED_ENTITY         = 10;
 
+    /** Size after which a batch of events is sent to the parent. */
+    static final int BATCH_SIZE = 32 * 1024;
+
     /** Serial version UID */
     private static final long serialVersionUID = 737511106054617524L;
 
     private final int resource;
 
+    private final int protocol;
+
     private transient DataOutputStream output;
 
+    /** Buffer of batched events, or <code>null</code> if not batching */
+    private transient ByteArrayOutputStream batch;
+
+    /** Destination of the events, either the output or the batch */
+    private transient DataOutputStream events;
+
+    private transient byte[] chars;
+
     public ContentHandlerProxy(int resource) {
+        this(resource, ForkServer.PROTOCOL_1);
+    }
+
+    public ContentHandlerProxy(int resource, int protocol) {
         this.resource = resource;
+        this.protocol = protocol;
     }
 
     public void init(DataInputStream input, DataOutputStream output) {
         this.output = output;
+        if (protocol == ForkServer.PROTOCOL_1) {
+            this.events = output;
+        } else {
+            this.batch = new ByteArrayOutputStream(BATCH_SIZE + 1024);
+            this.events = new DataOutputStream(batch);
+            this.chars = new byte[1024];
+        }
     }
 
-    private void sendRequest(int type) throws SAXException {
-        try {
+    public void drain() {
+    }
+
+    /**
+     * Sends the current batch of events, if any, to the parent process.
+     */
+    public void flush() throws IOException {
+        if (batch != null && batch.size() > 0) {
             output.writeByte(ForkServer.RESOURCE);
             output.writeByte(resource);
-            output.writeByte(type);
+            output.writeInt(batch.size());
+            batch.writeTo(output);
+            output.flush();
+            batch.reset();
+        }
+    }
+
+    private void sendRequest(int type) throws SAXException {
+        try {
+            if (batch == null) {
+                output.writeByte(ForkServer.RESOURCE);
+                output.writeByte(resource);
+            }
+            events.writeByte(type);
         } catch (IOException e) {
             throw new SAXException("Unexpected fork proxy problem", e);
         }
@@ -65,7 +122,13 @@ class ContentHandlerProxy implements ContentHandler, ForkProxy {
 
     private void sendString(String string) throws SAXException {
         try {
-            if (string != null) {
+            if (batch != null) {
+                if (string != null) {
+                    writeChars(string.toCharArray(), 0, string.length());
+                } else {
+                    events.writeInt(-1);
+                }
+            } else if (string != null) {
                 output.writeBoolean(true);
                 output.writeUTF(string);
             } else {
@@ -79,18 +142,44 @@ class ContentHandlerProxy implements ContentHandler, ForkProxy {
     private void sendCharacters(char[] ch, int start, int length)
             throws SAXException {
         try {
-            output.writeInt(length);
-            for (int i = 0; i < length; i++) {
-                output.writeChar(ch[start + i]);
+            if (batch != null) {
+                writeChars(ch, start, length);
+            } else {
+                output.writeInt(length);
+                for (int i = 0; i < length; i++) {
+                    output.writeChar(ch[start + i]);
+                }
             }
         } catch (IOException e) {
             throw new SAXException("Unexpected fork proxy problem", e);
         }
     }
 
+    /**
+     * Writes the given characters to the batch as an integer length
+     * followed by big-endian UTF-16 code units.
+     */
+    private void writeChars(char[] ch, int start, int length)
+            throws IOException {
+        events.writeInt(length);
+        if (chars.length < 2 * length) {
+            chars = new byte[2 * length];
+        }
+        for (int i = 0; i < length; i++) {
+            char c = ch[start + i];
+            chars[2 * i] = (byte) (c >>> 8);
+            chars[2 * i + 1] = (byte) c;
+        }
+        events.write(chars, 0, 2 * length);
+    }
+
     private void doneSending() throws SAXException {
         try {
-            output.flush();
+            if (batch == null) {
+                output.flush();
+            } else if (batch.size() >= BATCH_SIZE) {
+                flush();
+            }
         } catch (IOException e) {
             throw new SAXException("Unexpected fork proxy problem", e);
         }
@@ -136,7 +225,7 @@ class ContentHandlerProxy implements ContentHandler, ForkProxy {
             n = atts.getLength();
         }
         try {
-            output.writeInt(n);
+            events.writeInt(n);
         } catch (IOException e) {
             throw new SAXException("Unexpected fork proxy problem", e);
         }
@@ -16,6 +16,7 @@
  */
 package org.apache.tika.fork;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -28,12 +29,24 @@ class ContentHandlerResource implements ForkResource {
 
     private final ContentHandler handler;
 
+    private final int protocol;
+
+    private byte[] buffer;
+
     public ContentHandlerResource(ContentHandler handler) {
+        this(handler, ForkServer.PROTOCOL_1);
+    }
+
+    public ContentHandlerResource(ContentHandler handler, int protocol) {
         this.handler = handler;
+        this.protocol = protocol;
     }
 
     public Throwable process(DataInputStream input, DataOutputStream output)
             throws IOException {
+        if (protocol != ForkServer.PROTOCOL_1) {
+            return processBatch(input);
+        }
         try {
             internalProcess(input);
             return null;
@@ -42,6 +55,30 @@ class ContentHandlerResource implements ForkResource {
         }
     }
 
+    /**
+     * Reads a whole batch of events before passing them on to the handler,
+     * so that the channel is left in a consistent state even if the
+     * handler fails.
+     */
+    private Throwable processBatch(DataInputStream input) throws IOException {
+        int n = input.readInt();
+        if (buffer == null || buffer.length < n) {
+            buffer = new byte[Math.max(n, ContentHandlerProxy.BATCH_SIZE)];
+        }
+        input.readFully(buffer, 0, n);
+
+        DataInputStream events =
+                new DataInputStream(new ByteArrayInputStream(buffer, 0, n));
+        try {
+            while (events.available() > 0) {
+                internalProcess(events);
+            }
+            return null;
+        } catch (SAXException e) {
+            return e;
+        }
+    }
+
     private void internalProcess(DataInputStream input)
             throws IOException, SAXException {
         int type = input.readUnsignedByte();
@@ -88,7 +125,10 @@ class ContentHandlerResource implements ForkResource {
     }
 
     private String readString(DataInputStream input) throws IOException {
-        if (input.readBoolean()) {
+        if (protocol != ForkServer.PROTOCOL_1) {
+            char[] ch = readCharacters(input);
+            return ch != null ? new String(ch) : null;
+        } else if (input.readBoolean()) {
             return input.readUTF();
         } else {
             return null;
@@ -97,9 +137,20 @@ class ContentHandlerResource implements ForkResource {
 
     private char[] readCharacters(DataInputStream input) throws IOException {
         int n = input.readInt();
+        if (n < 0) {
+            return null;
+        }
         char[] ch = new char[n];
-        for (int i = 0; i < n; i++) {
-            ch[i] = input.readChar();
+        if (protocol != ForkServer.PROTOCOL_1) {
+            byte[] b = new byte[2 * n];
+            input.readFully(b);
+            for (int i = 0; i < n; i++) {
+                ch[i] = (char) (((b[2 * i] & 0xff) << 8) | (b[2 * i + 1] & 0xff));
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                ch[i] = input.readChar();
+            }
         }
         return ch;
     }
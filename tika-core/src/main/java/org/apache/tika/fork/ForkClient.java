@@ -25,6 +25,8 @@ import java.io.InputStream;
 import java.io.NotSerializableException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import java.util.zip.ZipEntry;
@@ -36,6 +38,15 @@ import org.xml.sax.ContentHandler;
 
 class ForkClient {
 
+    /** Counter used to number the started processes */
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * Jar file used to bootstrap all forked server processes. Created when
+     * the first process is started, and removed when this JVM exits.
+     */
+    private static File bootstrapJar = null;
+
     private final List<ForkResource> resources = new ArrayList<ForkResource>();
 
     private final ClassLoader loader;
@@ -50,12 +61,60 @@ class ForkClient {
 
     private final InputStream error;
 
+    /** Protocol version agreed on with the forked server process */
+    private int protocol = ForkServer.PROTOCOL_1;
+
+    private final int id = counter.incrementAndGet();
+
+    private final long startTime = System.currentTimeMillis();
+
+    private final AtomicLong filesProcessed = new AtomicLong();
+
+    private final AtomicLong parseNanos = new AtomicLong();
+
+    /** Heap use last reported by the forked server process, or -1 */
+    private volatile long heapUsed = -1;
+
+    /** Time of the last communication with the forked server process */
+    private volatile long lastActive = startTime;
+
     public ForkClient(ClassLoader loader, Object object, List<String> java)
             throws IOException, TikaException {
+        this(loader, object, java, ForkServer.PROTOCOL);
+    }
+
+    /**
+     * Starts a forked server process.
+     *
+     * @param loader class loader of the parser
+     * @param object object on which the calls are made
+     * @param java java command line
+     * @param maxProtocol newest protocol version to use
+     */
+    ForkClient(
+            ClassLoader loader, Object object, List<String> java,
+            int maxProtocol) throws IOException, TikaException {
+        this(loader, serialize(object), java, maxProtocol);
+    }
+
+    /**
+     * Starts a forked server process for an object that has already been
+     * serialized with {@link #serialize(Object)}. This way an object can
+     * be passed to any number of processes without serializing it again
+     * each time.
+     *
+     * @param loader class loader of the parser
+     * @param object serialized object on which the calls are made
+     * @param java java command line
+     * @param maxProtocol newest protocol version to use
+     */
+    ForkClient(
+            ClassLoader loader, byte[] object, List<String> java,
+            int maxProtocol) throws IOException, TikaException {
         boolean ok = false;
         try {
             this.loader = loader;
-            this.jar = createBootstrapJar();
+            this.jar = getBootstrapJar();
 
             ProcessBuilder builder = new ProcessBuilder();
             List<String> command = new ArrayList<String>();
@@ -69,10 +128,11 @@ class ForkClient {
             this.input = new DataInputStream(process.getInputStream());
             this.error = process.getErrorStream();
 
-            waitForStartBeacon();
+            waitForStartBeacon(maxProtocol);
 
             sendObject(loader, resources);
-            sendObject(object, resources);
+            ForkObjectInputStream.sendSerialized(object, output);
+            waitForResponse(resources);
 
             ok = true;
         } finally {
@@ -82,17 +142,93 @@ class ForkClient {
         }
     }
 
-    private void waitForStartBeacon() throws IOException {
+    /**
+     * Waits for the forked server process to start, and agrees on the
+     * protocol version to use: the newest one supported by both processes.
+     */
+    private void waitForStartBeacon(int maxProtocol) throws IOException {
         while (true) {
             consumeErrorStream();
             int type = input.read();
-            if ((byte) type == ForkServer.READY) {
+            if (type == -1) {
+                throw new IOException(
+                        "Forked server process exited before starting");
+            } else if ((byte) type == ForkServer.READY) {
+                protocol = Math.min(input.readUnsignedByte(), maxProtocol);
+                output.writeByte(protocol);
+                output.flush();
                 consumeErrorStream();
                 return;
             }
         }
     }
 
+    /**
+     * Returns the protocol version used with the forked server process.
+     */
+    int getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * Serializes an object to be passed to forked server processes.
+     *
+     * @param object object on which the calls are made
+     * @return serialized object
+     * @throws IOException if the object could not be serialized
+     * @throws TikaException if the object is not serializable
+     */
+    static byte[] serialize(Object object)
+            throws IOException, TikaException {
+        try {
+            return ForkObjectInputStream.serialize(object);
+        } catch(NotSerializableException nse) {
+            // Build a more friendly error message for this
+            throw new TikaException(
+                    "Unable to serialize " + object.getClass().getSimpleName()
+                    + " to pass to the Forked Parser", nse);
+        }
+    }
+
+    /**
+     * Records the completion of a parsing request by this process.
+     *
+     * @param nanos time taken by the request, in nanoseconds
+     */
+    void recordParse(long nanos) {
+        filesProcessed.incrementAndGet();
+        parseNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Returns the number of parsing requests made to this process.
+     */
+    long getFilesProcessed() {
+        return filesProcessed.get();
+    }
+
+    /**
+     * Returns the heap use reported by the last ping of the forked server
+     * process, or -1 if the protocol version in use does not report it.
+     */
+    long getHeapUsed() {
+        return heapUsed;
+    }
+
+    /**
+     * Returns the time of the last communication with the forked server
+     * process, in milliseconds since the epoch.
+     */
+    long getLastActive() {
+        return lastActive;
+    }
+
+    ForkParserStatistics.ProcessStatistics getStatistics(boolean idle) {
+        return new ForkParserStatistics.ProcessStatistics(
+                id, startTime, filesProcessed.get(),
+                parseNanos.get() / 1000000, heapUsed, idle);
+    }
+
     public synchronized boolean ping() {
         try {
             output.writeByte(ForkServer.PING);
@@ -101,6 +237,10 @@ class ForkClient {
                 consumeErrorStream();
                 int type = input.read();
                 if (type == ForkServer.PING) {
+                    if (protocol >= ForkServer.PROTOCOL_2) {
+                        heapUsed = input.readLong();
+                    }
+                    lastActive = System.currentTimeMillis();
                     consumeErrorStream();
                     return true;
                 } else {
@@ -121,7 +261,11 @@ class ForkClient {
         for (int i = 0; i < args.length; i++) {
             sendObject(args[i], r);
         }
-        return waitForResponse(r);
+        try {
+            return waitForResponse(r);
+        } finally {
+            lastActive = System.currentTimeMillis();
+        }
     }
 
     /**
@@ -136,11 +280,13 @@ class ForkClient {
             throws IOException, TikaException {
         int n = resources.size();
         if (object instanceof InputStream) {
-            resources.add(new InputStreamResource((InputStream) object));
-            object = new InputStreamProxy(n);
+            resources.add(new InputStreamResource(
+                    (InputStream) object, protocol));
+            object = new InputStreamProxy(n, protocol);
         } else if (object instanceof ContentHandler) {
-            resources.add(new ContentHandlerResource((ContentHandler) object));
-            object = new ContentHandlerProxy(n);
+            resources.add(new ContentHandlerResource(
+                    (ContentHandler) object, protocol));
+            object = new ContentHandlerProxy(n, protocol);
         } else if (object instanceof ClassLoader) {
             resources.add(new ClassLoaderResource((ClassLoader) object));
             object = new ClassLoaderProxy(n);
@@ -174,9 +320,6 @@ class ForkClient {
         if (process != null) {
             process.destroy();
         }
-        if (jar != null) {
-            jar.delete();
-        }
     }
 
     private Throwable waitForResponse(List<ForkResource> resources)
@@ -227,6 +370,23 @@ class ForkClient {
         }
     }
 
+    /**
+     * Returns the jar file used to bootstrap forked server processes,
+     * creating it if it does not yet exist. The file is shared by all
+     * processes, and recreated if it has been removed in the meantime,
+     * for example by a cleanup of the temporary directory.
+     *
+     * @return the bootstrap jar file
+     * @throws IOException if the bootstrap archive could not be created
+     */
+    private static synchronized File getBootstrapJar() throws IOException {
+        if (bootstrapJar == null || !bootstrapJar.isFile()) {
+            bootstrapJar = createBootstrapJar();
+            bootstrapJar.deleteOnExit();
+        }
+        return bootstrapJar;
+    }
+
     /**
      * Creates a temporary jar file that can be used to bootstrap the forked
      * server process. Remember to remove the file when no longer used.
@@ -266,7 +426,9 @@ class ForkClient {
 
             Class<?>[] bootstrap = {
                     ForkServer.class, ForkObjectInputStream.class,
-                    ForkProxy.class, ClassLoaderProxy.class,
+                    ForkServer.DrainingOutputStream.class,
+                    ForkProxy.class, BufferedForkProxy.class,
+                    ClassLoaderProxy.class,
                     MemoryURLConnection.class,
                     MemoryURLStreamHandler.class,
                     MemoryURLStreamHandlerFactory.class,
@@ -79,12 +79,34 @@ class ForkObjectInputStream extends ObjectInputStream {
      */
     public static void sendObject(Object object, DataOutputStream output)
             throws IOException {
+        sendSerialized(serialize(object), output);
+    }
+
+    /**
+     * Serializes the object into an in-memory buffer.
+     *
+     * @param object object to be serialized
+     * @return serialized form of the object
+     * @throws IOException if the object could not be serialized
+     */
+    public static byte[] serialize(Object object) throws IOException {
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
         ObjectOutputStream serializer = new ObjectOutputStream(buffer);
         serializer.writeObject(object);
         serializer.close();
+        return buffer.toByteArray();
+    }
 
-        byte[] data = buffer.toByteArray();
+    /**
+     * Writes an already serialized object to the output stream with
+     * a preceding size integer.
+     *
+     * @param data serialized form of the object
+     * @param output output stream
+     * @throws IOException if the object could not be written
+     */
+    public static void sendSerialized(byte[] data, DataOutputStream output)
+            throws IOException {
         output.writeInt(data.length);
         output.write(data);
     }
@@ -21,10 +21,16 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.metadata.Metadata;
@@ -37,11 +43,32 @@ import org.apache.tika.sax.TeeContentHandler;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 
+/**
+ * Parser that runs the actual parsing in a pool of separate Java processes,
+ * so that a parser that crashes or runs out of memory does not bring down
+ * the calling application.
+ * <p>
+ * By default forked server processes are started lazily as parsing
+ * requests need them. For lower latency the pool can be warmed up with
+ * {@link #prestart(int)} and kept warm with {@link #setWarmSpares(int)},
+ * in which case a background thread starts spare processes ahead of time
+ * and regularly pings the idle ones. Processes can also be recycled after
+ * a number of documents or once their heap use grows too large, see
+ * {@link #setMaxFilesProcessedPerClient(int)} and
+ * {@link #setMaxHeapUsedPerClient(long)}. The state of the pool is
+ * available from {@link #getStatistics()}.
+ */
 public class ForkParser extends AbstractParser {
 
     /** Serial version UID */
     private static final long serialVersionUID = -4962742892274663950L;
 
+    /**
+     * Milliseconds to wait for a process to be released, before checking
+     * again whether a new one could be started instead.
+     */
+    private static final long RELEASE_WAIT = 100;
+
     private final ClassLoader loader;
 
     private final Parser parser;
@@ -50,12 +77,48 @@ public class ForkParser extends AbstractParser {
     private List<String> java = Arrays.asList("java", "-Xmx32m");
 
     /** Process pool size */
-    private int poolSize = 5;
+    private volatile int poolSize = 5;
+
+    /** Number of idle processes to keep ready for new parsing requests */
+    private volatile int warmSpares = 0;
+
+    /** Number of documents after which a process is replaced, or -1 */
+    private volatile int maxFilesProcessedPerClient = -1;
+
+    /** Heap use in bytes after which a process is replaced, or -1 */
+    private volatile long maxHeapUsedPerClient = -1;
+
+    /** Milliseconds between pings of idle processes */
+    private volatile long healthCheckInterval = 2000;
+
+    /** Number of processes alive or being started, idle or in use */
+    private final AtomicInteger currentClients = new AtomicInteger();
+
+    /** Idle processes, the most recently used ones first */
+    private final BlockingDeque<ForkClient> pool =
+        new LinkedBlockingDeque<ForkClient>();
+
+    /** All processes that are alive, for statistics */
+    private final Set<ForkClient> clients = Collections.newSetFromMap(
+            new ConcurrentHashMap<ForkClient, Boolean>());
+
+    private final AtomicLong startedClients = new AtomicLong();
+
+    private final AtomicLong restartedClients = new AtomicLong();
+
+    private final AtomicLong recycledClients = new AtomicLong();
+
+    /** The parser, serialized once for all the processes */
+    private volatile byte[] serializedParser = null;
+
+    /** Background thread that maintains the idle processes, if any */
+    private final AtomicReference<Thread> maintenance =
+        new AtomicReference<Thread>();
 
-    private int currentlyInUse = 0;
+    /** Signals the maintenance thread that the pool has changed */
+    private final Semaphore wakeup = new Semaphore(0);
 
-    private final Queue<ForkClient> pool =
-        new LinkedList<ForkClient>();
+    private volatile boolean closed = false;
 
     /**
      * @param loader The ClassLoader to use 
@@ -82,7 +145,7 @@ public class ForkParser extends AbstractParser {
      *
      * @return process pool size
      */
-    public synchronized int getPoolSize() {
+    public int getPoolSize() {
         return poolSize;
     }
 
@@ -91,10 +154,115 @@ public class ForkParser extends AbstractParser {
      *
      * @param poolSize process pool size
      */
-    public synchronized void setPoolSize(int poolSize) {
+    public void setPoolSize(int poolSize) {
         this.poolSize = poolSize;
     }
 
+    /**
+     * Returns the number of idle processes kept ready for new parsing
+     * requests.
+     *
+     * @return number of warm spare processes
+     * @since Apache Tika 1.10
+     */
+    public int getWarmSpares() {
+        return warmSpares;
+    }
+
+    /**
+     * Sets the number of idle processes to keep ready for new parsing
+     * requests, within the limits of the pool size. When positive, a
+     * background thread starts new processes whenever there are fewer
+     * idle ones, so parsing requests rarely need to wait for a process
+     * to start. The default is zero, which starts processes only when
+     * they are needed.
+     *
+     * @param warmSpares number of warm spare processes
+     * @since Apache Tika 1.10
+     */
+    public void setWarmSpares(int warmSpares) {
+        this.warmSpares = warmSpares;
+        if (warmSpares > 0) {
+            startMaintenance();
+        }
+    }
+
+    /**
+     * Returns the number of documents after which a process is replaced
+     * with a new one.
+     *
+     * @return maximum number of documents per process, or -1 for no limit
+     * @since Apache Tika 1.10
+     */
+    public int getMaxFilesProcessedPerClient() {
+        return maxFilesProcessedPerClient;
+    }
+
+    /**
+     * Sets the number of documents after which a process is replaced with
+     * a new one, to limit the effect of any resources leaked by parsers.
+     * The default is -1, for no limit.
+     *
+     * @param maxFiles maximum number of documents per process,
+     *                 or -1 for no limit
+     * @since Apache Tika 1.10
+     */
+    public void setMaxFilesProcessedPerClient(int maxFiles) {
+        this.maxFilesProcessedPerClient = maxFiles;
+    }
+
+    /**
+     * Returns the heap use after which a process is replaced with
+     * a new one.
+     *
+     * @return maximum heap use in bytes, or -1 for no limit
+     * @since Apache Tika 1.10
+     */
+    public long getMaxHeapUsedPerClient() {
+        return maxHeapUsedPerClient;
+    }
+
+    /**
+     * Sets the heap use after which a process is replaced with a new one.
+     * The heap use is reported by the process when pinged after each
+     * parsing request, and includes garbage that has not been collected
+     * yet, so the limit should be set close to the maximum heap size of
+     * the processes. The default is -1, for no limit.
+     *
+     * @param maxHeapUsed maximum heap use in bytes, or -1 for no limit
+     * @since Apache Tika 1.10
+     */
+    public void setMaxHeapUsedPerClient(long maxHeapUsed) {
+        this.maxHeapUsedPerClient = maxHeapUsed;
+    }
+
+    /**
+     * Returns the interval between health checks of idle processes.
+     *
+     * @return health check interval in milliseconds
+     * @since Apache Tika 1.10
+     */
+    public long getHealthCheckInterval() {
+        return healthCheckInterval;
+    }
+
+    /**
+     * Sets the interval at which the background thread pings idle
+     * processes, to keep them alive and to replace the ones that have
+     * stopped responding. An idle process exits on its own after five
+     * to ten seconds without being pinged. The default is two seconds.
+     *
+     * @param interval health check interval in milliseconds
+     * @since Apache Tika 1.10
+     */
+    public void setHealthCheckInterval(long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException(
+                    "Health check interval must be positive: " + interval);
+        }
+        this.healthCheckInterval = interval;
+    }
+
     /**
      * Returns the command used to start the forked server process.
      *
@@ -166,6 +334,7 @@ public class ForkParser extends AbstractParser {
 
         boolean alive = false;
         ForkClient client = acquireClient();
+        long start = System.nanoTime();
         try {
             ContentHandler tee = new TeeContentHandler(
                     handler, new MetadataContentHandler(metadata));
@@ -183,6 +352,7 @@ public class ForkParser extends AbstractParser {
                     + " like running out of memory. A new process will be"
                     + " started for the next parsing request.", e);
         } finally {
+            client.recordParse(System.nanoTime() - start);
             releaseClient(client, alive);
         }
 
@@ -198,51 +368,233 @@ public class ForkParser extends AbstractParser {
         }
     }
 
-    public synchronized void close() {
-        for (ForkClient client : pool) {
-            client.close();
+    /**
+     * Starts processes ahead of the first parsing requests, and the
+     * background thread that keeps idle processes alive. No more processes
+     * are started than allowed by the pool size.
+     *
+     * @param count number of processes to start
+     * @throws IOException if a process could not be started
+     * @throws TikaException if the parser could not be passed to a process
+     * @since Apache Tika 1.10
+     */
+    public void prestart(int count) throws IOException, TikaException {
+        startMaintenance();
+        for (int i = 0; i < count && reserveClient(); i++) {
+            addIdleClient(startClient());
+        }
+    }
+
+    /**
+     * Returns a snapshot of the processes of this parser.
+     *
+     * @return process statistics
+     * @since Apache Tika 1.10
+     */
+    public ForkParserStatistics getStatistics() {
+        List<ForkParserStatistics.ProcessStatistics> processes =
+            new ArrayList<ForkParserStatistics.ProcessStatistics>();
+        for (ForkClient client : clients) {
+            processes.add(client.getStatistics(pool.contains(client)));
         }
-        pool.clear();
+        return new ForkParserStatistics(
+                poolSize, pool.size(), startedClients.get(),
+                restartedClients.get(), recycledClients.get(), processes);
+    }
+
+    public void close() {
+        closed = true;
         poolSize = 0;
+        wakeup.release();
+        ForkClient client = pool.pollFirst();
+        while (client != null) {
+            discardClient(client);
+            client = pool.pollFirst();
+        }
     }
 
-    private synchronized ForkClient acquireClient()
+    private ForkClient acquireClient()
             throws IOException, TikaException {
         while (true) {
-            ForkClient client = pool.poll();
-
-            // Create a new process if there's room in the pool
-            if (client == null && currentlyInUse < poolSize) {
-                client = new ForkClient(loader, parser, java);
-            }
+            ForkClient client = pool.pollFirst();
 
-            // Ping the process, and get rid of it if it's inactive
-            if (client != null && !client.ping()) {
-                client.close();
-                client = null;
-            }
+            if (client == null) {
+                // Start a new process if there's room in the pool
+                if (reserveClient()) {
+                    ForkClient started = startClient();
+                    wakeMaintenance();
+                    return started;
+                }
 
-            if (client != null) {
-                currentlyInUse++;
-                return client;
-            } else if (currentlyInUse >= poolSize) {
+                // Otherwise wait for another request to release a process
                 try {
-                    wait();
+                    client = pool.pollFirst(
+                            RELEASE_WAIT, TimeUnit.MILLISECONDS);
                 } catch (InterruptedException e) {
                     throw new TikaException(
                             "Interrupted while waiting for a fork parser", e);
                 }
             }
+
+            // Ping the process, and get rid of it if it's inactive
+            if (client != null) {
+                if (client.ping()) {
+                    wakeMaintenance();
+                    return client;
+                }
+                restartedClients.incrementAndGet();
+                discardClient(client);
+            }
         }
     }
 
-    private synchronized void releaseClient(ForkClient client, boolean alive) {
-        currentlyInUse--;
-        if (currentlyInUse + pool.size() < poolSize && alive) {
-            pool.offer(client);
-            notifyAll();
+    private void releaseClient(ForkClient client, boolean alive) {
+        if (alive && maxHeapUsedPerClient > 0) {
+            // Have the process report its current heap use
+            alive = client.ping();
+        }
+
+        if (!alive) {
+            restartedClients.incrementAndGet();
+            discardClient(client);
+        } else if (isWornOut(client)) {
+            recycledClients.incrementAndGet();
+            discardClient(client);
+        } else if (currentClients.get() > poolSize) {
+            discardClient(client);
         } else {
-            client.close();
+            pool.offerFirst(client);
+            if (closed && pool.remove(client)) {
+                discardClient(client);
+            }
+        }
+        wakeMaintenance();
+    }
+
+    private boolean isWornOut(ForkClient client) {
+        int maxFiles = maxFilesProcessedPerClient;
+        long maxHeap = maxHeapUsedPerClient;
+        return (maxFiles > 0 && client.getFilesProcessed() >= maxFiles)
+                || (maxHeap > 0 && client.getHeapUsed() > maxHeap);
+    }
+
+    /**
+     * Reserves room in the pool for a new process.
+     *
+     * @return <code>true</code> if there was room for a new process
+     */
+    private boolean reserveClient() {
+        while (true) {
+            int current = currentClients.get();
+            if (current >= poolSize) {
+                return false;
+            } else if (currentClients.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Starts a new process in room reserved with {@link #reserveClient()}.
+     * The reservation is cancelled if the process can not be started.
+     */
+    private ForkClient startClient() throws IOException, TikaException {
+        boolean ok = false;
+        try {
+            byte[] object = serializedParser;
+            if (object == null) {
+                object = ForkClient.serialize(parser);
+                serializedParser = object;
+            }
+            ForkClient client =
+                new ForkClient(loader, object, java, ForkServer.PROTOCOL);
+            clients.add(client);
+            startedClients.incrementAndGet();
+            ok = true;
+            return client;
+        } finally {
+            if (!ok) {
+                currentClients.decrementAndGet();
+            }
+        }
+    }
+
+    private void addIdleClient(ForkClient client) {
+        pool.offerLast(client);
+        if (closed && pool.remove(client)) {
+            discardClient(client);
+        }
+    }
+
+    private void discardClient(ForkClient client) {
+        clients.remove(client);
+        client.close();
+        currentClients.decrementAndGet();
+    }
+
+    private void wakeMaintenance() {
+        if (maintenance.get() != null) {
+            wakeup.release();
+        }
+    }
+
+    private void startMaintenance() {
+        if (!closed && maintenance.get() == null) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    maintain();
+                }
+            }, "Apache Tika ForkParser maintenance");
+            thread.setDaemon(true);
+            if (maintenance.compareAndSet(null, thread)) {
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Background task that keeps the configured number of warm spare
+     * processes ready, and pings the idle processes to keep them alive.
+     */
+    private void maintain() {
+        try {
+            while (!closed) {
+                while (!closed && pool.size() < warmSpares
+                        && reserveClient()) {
+                    try {
+                        addIdleClient(startClient());
+                    } catch (IOException e) {
+                        // Try again later
+                        break;
+                    } catch (TikaException e) {
+                        break;
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                for (ForkClient client : pool) {
+                    if (now - client.getLastActive() >= healthCheckInterval
+                            && pool.remove(client)) {
+                        if (!client.ping()) {
+                            restartedClients.incrementAndGet();
+                            discardClient(client);
+                        } else if (isWornOut(client)) {
+                            recycledClients.incrementAndGet();
+                            discardClient(client);
+                        } else {
+                            addIdleClient(client);
+                        }
+                    }
+                }
+
+                wakeup.tryAcquire(
+                        healthCheckInterval, TimeUnit.MILLISECONDS);
+                wakeup.drainPermits();
+            }
+        } catch (InterruptedException e) {
+            // Stop maintaining the pool
+        } finally {
+            maintenance.compareAndSet(Thread.currentThread(), null);
         }
     }
 
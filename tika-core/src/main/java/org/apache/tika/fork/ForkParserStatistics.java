@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.fork;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Snapshot of the forked server processes of a {@link ForkParser},
+ * as returned by {@link ForkParser#getStatistics()}.
+ *
+ * @since Apache Tika 1.10
+ */
+public class ForkParserStatistics {
+
+    private final int poolSize;
+
+    private final int idleProcesses;
+
+    private final long startedProcesses;
+
+    private final long restartedProcesses;
+
+    private final long recycledProcesses;
+
+    private final List<ProcessStatistics> processes;
+
+    ForkParserStatistics(
+            int poolSize, int idleProcesses, long startedProcesses,
+            long restartedProcesses, long recycledProcesses,
+            List<ProcessStatistics> processes) {
+        this.poolSize = poolSize;
+        this.idleProcesses = idleProcesses;
+        this.startedProcesses = startedProcesses;
+        this.restartedProcesses = restartedProcesses;
+        this.recycledProcesses = recycledProcesses;
+        this.processes = Collections.unmodifiableList(processes);
+    }
+
+    /**
+     * Returns the maximum number of forked server processes.
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Returns the number of forked server processes that are currently
+     * alive, whether idle or busy with a parsing request.
+     */
+    public int getProcesses() {
+        return processes.size();
+    }
+
+    /**
+     * Returns the number of forked server processes that are ready for
+     * new parsing requests.
+     */
+    public int getIdleProcesses() {
+        return idleProcesses;
+    }
+
+    /**
+     * Returns the total number of forked server processes started.
+     */
+    public long getStartedProcesses() {
+        return startedProcesses;
+    }
+
+    /**
+     * Returns the number of forked server processes that had to be
+     * replaced because they crashed or stopped responding.
+     */
+    public long getRestartedProcesses() {
+        return restartedProcesses;
+    }
+
+    /**
+     * Returns the number of forked server processes that were replaced
+     * after reaching the configured document count or heap use.
+     *
+     * @see ForkParser#setMaxFilesProcessedPerClient(int)
+     * @see ForkParser#setMaxHeapUsedPerClient(long)
+     */
+    public long getRecycledProcesses() {
+        return recycledProcesses;
+    }
+
+    /**
+     * Returns the statistics of the forked server processes that are
+     * currently alive.
+     *
+     * @return unmodifiable list of process statistics
+     */
+    public List<ProcessStatistics> getProcessStatistics() {
+        return processes;
+    }
+
+    /**
+     * Returns the total number of documents parsed by the forked server
+     * processes that are currently alive.
+     */
+    public long getFilesProcessed() {
+        long files = 0;
+        for (ProcessStatistics process : processes) {
+            files += process.getFilesProcessed();
+        }
+        return files;
+    }
+
+    @Override
+    public String toString() {
+        return "ForkParserStatistics[poolSize=" + poolSize
+                + ", processes=" + processes.size()
+                + ", idle=" + idleProcesses
+                + ", started=" + startedProcesses
+                + ", restarted=" + restartedProcesses
+                + ", recycled=" + recycledProcesses + "]";
+    }
+
+    /**
+     * Statistics of a single forked server process.
+     */
+    public static class ProcessStatistics {
+
+        private final int id;
+
+        private final long startTime;
+
+        private final long filesProcessed;
+
+        private final long parseTime;
+
+        private final long heapUsed;
+
+        private final boolean idle;
+
+        ProcessStatistics(
+                int id, long startTime, long filesProcessed,
+                long parseTime, long heapUsed, boolean idle) {
+            this.id = id;
+            this.startTime = startTime;
+            this.filesProcessed = filesProcessed;
+            this.parseTime = parseTime;
+            this.heapUsed = heapUsed;
+            this.idle = idle;
+        }
+
+        /**
+         * Returns the number that identifies this process. Processes are
+         * numbered in the order they were started.
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Returns the time this process was started, in milliseconds
+         * since the epoch.
+         */
+        public long getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * Returns the number of documents parsed by this process.
+         */
+        public long getFilesProcessed() {
+            return filesProcessed;
+        }
+
+        /**
+         * Returns the total time this process has spent parsing documents,
+         * in milliseconds.
+         */
+        public long getParseTime() {
+            return parseTime;
+        }
+
+        /**
+         * Returns the number of documents parsed per second of parsing
+         * time, or zero if no documents have been parsed yet.
+         */
+        public double getFilesPerSecond() {
+            if (parseTime > 0) {
+                return filesProcessed * 1000.0 / parseTime;
+            } else {
+                return 0.0;
+            }
+        }
+
+        /**
+         * Returns the heap use in bytes last reported by this process,
+         * or -1 if not known.
+         */
+        public long getHeapUsed() {
+            return heapUsed;
+        }
+
+        /**
+         * Returns <code>true</code> if this process was waiting for new
+         * parsing requests when the statistics were collected.
+         */
+        public boolean isIdle() {
+            return idle;
+        }
+
+        @Override
+        public String toString() {
+            return "ProcessStatistics[id=" + id
+                    + ", files=" + filesProcessed
+                    + ", parseTime=" + parseTime
+                    + ", heapUsed=" + heapUsed
+                    + ", idle=" + idle + "]";
+        }
+
+    }
+
+}
@@ -19,6 +19,7 @@ package org.apache.tika.fork;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.NotSerializableException;
@@ -26,6 +27,8 @@ import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.zip.CheckedInputStream;
 import java.util.zip.CheckedOutputStream;
 import java.util.zip.Checksum;
@@ -46,6 +49,31 @@ class ForkServer implements Runnable, Checksum {
 
     public static final byte READY = 4;
 
+    /**
+     * Original protocol, with a round trip to the parent process for every
+     * read from the document stream and a message for every SAX event.
+     */
+    public static final int PROTOCOL_1 = 1;
+
+    /**
+     * Batched protocol, where the parent pushes the document stream in
+     * chunks as credit is granted by the forked process, and SAX events
+     * are sent in batches. Replies to pings include the heap use of the
+     * forked process.
+     *
+     * @see InputStreamProxy
+     * @see ContentHandlerProxy
+     */
+    public static final int PROTOCOL_2 = 2;
+
+    /**
+     * Newest protocol version supported. The version to use is agreed on
+     * right after the {@link #READY} beacon: the forked server sends the
+     * newest version it supports, and the parent replies with the version
+     * it has chosen.
+     */
+    public static final int PROTOCOL = PROTOCOL_2;
+
     /**
      * Starts a forked server process using the standard input and output
      * streams for communication with the parent process. Any attempts by
@@ -75,6 +103,13 @@ class ForkServer implements Runnable, Checksum {
     /** Output stream for writing to the parent process */
     private final DataOutputStream output;
 
+    /** Buffered proxies involved in the current call */
+    private final List<BufferedForkProxy> buffered =
+        new ArrayList<BufferedForkProxy>();
+
+    /** Protocol version agreed on with the parent process */
+    private int protocol = PROTOCOL_1;
+
     private volatile boolean active = true;
 
     /**
@@ -89,8 +124,8 @@ class ForkServer implements Runnable, Checksum {
             throws IOException {
         this.input =
             new DataInputStream(new CheckedInputStream(input, this));
-        this.output =
-            new DataOutputStream(new CheckedOutputStream(output, this));
+        this.output = new DataOutputStream(new DrainingOutputStream(
+                new CheckedOutputStream(output, this), buffered));
     }
 
     public void run() {
@@ -107,8 +142,15 @@ class ForkServer implements Runnable, Checksum {
     public void processRequests() {
         try {
             output.writeByte(READY);
+            output.writeByte(PROTOCOL);
             output.flush();
 
+            protocol = input.readUnsignedByte();
+            if (protocol < PROTOCOL_1 || protocol > PROTOCOL) {
+                throw new IllegalStateException(
+                        "Unsupported protocol version " + protocol);
+            }
+
             ClassLoader loader = (ClassLoader) readObject(
                     ForkServer.class.getClassLoader());
             Thread.currentThread().setContextClassLoader(loader);
@@ -120,6 +162,13 @@ class ForkServer implements Runnable, Checksum {
                     break;
                 } else if (request == PING) {
                     output.writeByte(PING);
+                    if (protocol >= PROTOCOL_2) {
+                        // Report the heap use, so the parent can recycle
+                        // processes that have grown too large
+                        Runtime runtime = Runtime.getRuntime();
+                        output.writeLong(
+                                runtime.totalMemory() - runtime.freeMemory());
+                    }
                 } else if (request == CALL) {
                     call(loader, object);
                 } else {
@@ -134,6 +183,7 @@ class ForkServer implements Runnable, Checksum {
     }
 
     private void call(ClassLoader loader, Object object) throws Exception {
+        buffered.clear();
         Method method = getMethod(object, input.readUTF());
         Object[] args =
             new Object[method.getParameterTypes().length];
@@ -142,8 +192,10 @@ class ForkServer implements Runnable, Checksum {
         }
         try {
             method.invoke(object, args);
+            flushBuffered();
             output.write(DONE);
         } catch (InvocationTargetException e) {
+            flushBuffered();
             output.write(ERROR);
             
             // Try to send the underlying Exception itself
@@ -159,6 +211,12 @@ class ForkServer implements Runnable, Checksum {
         }
     }
 
+    private void flushBuffered() throws IOException {
+        for (BufferedForkProxy proxy : buffered) {
+            proxy.flush();
+        }
+    }
+
     private Method getMethod(Object object, String name) {
         Class<?> klass = object.getClass();
         while (klass != null) {
@@ -190,6 +248,9 @@ class ForkServer implements Runnable, Checksum {
         if (object instanceof ForkProxy) {
             ((ForkProxy) object).init(input, output);
         }
+        if (object instanceof BufferedForkProxy) {
+            buffered.add((BufferedForkProxy) object);
+        }
 
         // Tell the parent process that we successfully received this object
         output.writeByte(ForkServer.DONE);
@@ -215,4 +276,40 @@ class ForkServer implements Runnable, Checksum {
     public void reset() {
     }
 
+    /**
+     * Output stream to the parent process that makes the buffered proxies
+     * receive any data pushed by the parent before anything is written.
+     * Otherwise both processes could end up blocked writing to each other,
+     * or a response could be confused with pushed data.
+     */
+    static class DrainingOutputStream extends FilterOutputStream {
+
+        private final List<BufferedForkProxy> proxies;
+
+        public DrainingOutputStream(
+                OutputStream out, List<BufferedForkProxy> proxies) {
+            super(out);
+            this.proxies = proxies;
+        }
+
+        private void drain() throws IOException {
+            for (BufferedForkProxy proxy : proxies) {
+                proxy.drain();
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            drain();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            drain();
+            out.write(b, off, len);
+        }
+
+    }
+
 }
@@ -21,51 +21,194 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
-class InputStreamProxy extends InputStream implements ForkProxy {
+/**
+ * Input stream in the forked server process that reads the document
+ * stream of the parent process.
+ * <p>
+ * With the original protocol every read is a separate request to the
+ * parent. With the batched protocol the proxy instead grants the parent
+ * credit for up to {@link #WINDOW} bytes, which the parent then pushes
+ * over as one or more chunks followed by an end of grant marker. A new
+ * grant is made as soon as less than half a window of data is left in
+ * the local buffer, so the parent can read ahead while the parser is
+ * still working on the earlier data. At most one grant is outstanding
+ * at any time, so at most one and a half windows are buffered.
+ */
+class InputStreamProxy extends InputStream implements BufferedForkProxy {
 
     /** Serial version UID */
     private static final long serialVersionUID = 4350939227765568438L;
 
+    /**
+     * Size of a single credit grant. Kept below the typical pipe buffer
+     * size so that the parent can usually push a whole grant without
+     * blocking.
+     */
+    static final int WINDOW = 32 * 1024;
+
+    /** Chunk length marking the end of a grant. */
+    static final int END_OF_GRANT = 0;
+
+    /** Chunk length marking the end of the stream. */
+    static final int END_OF_STREAM = -1;
+
+    /** Chunk length marking a failure to read the stream. */
+    static final int STREAM_ERROR = -2;
+
     private final int resource;
 
+    private final int protocol;
+
     private transient DataInputStream input;
 
     private transient DataOutputStream output;
 
+    private transient byte[] buffer;
+
+    private transient int position;
+
+    private transient int limit;
+
+    private transient boolean granted;
+
+    private transient boolean eof;
+
+    private transient boolean failed;
+
     public InputStreamProxy(int resource) {
+        this(resource, ForkServer.PROTOCOL_1);
+    }
+
+    public InputStreamProxy(int resource, int protocol) {
         this.resource = resource;
+        this.protocol = protocol;
     }
 
     public void init(DataInputStream input, DataOutputStream output) {
         this.input = input;
         this.output = output;
+        this.buffer = new byte[WINDOW + WINDOW / 2];
     }
 
     @Override
     public int read() throws IOException {
-        output.writeByte(ForkServer.RESOURCE);
-        output.writeByte(resource);
-        output.writeInt(1);
-        output.flush();
-        int n = input.readInt();
-        if (n == 1) {
-            return input.readUnsignedByte();
+        if (protocol == ForkServer.PROTOCOL_1) {
+            output.writeByte(ForkServer.RESOURCE);
+            output.writeByte(resource);
+            output.writeInt(1);
+            output.flush();
+            int n = input.readInt();
+            if (n == 1) {
+                return input.readUnsignedByte();
+            } else {
+                return n;
+            }
+        } else if (fill()) {
+            return buffer[position++] & 0xff;
         } else {
-            return n;
+            return -1;
         }
     }
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
+        if (protocol == ForkServer.PROTOCOL_1) {
+            output.writeByte(ForkServer.RESOURCE);
+            output.writeByte(resource);
+            output.writeInt(len);
+            output.flush();
+            int n = input.readInt();
+            if (n > 0) {
+                input.readFully(b, off, n);
+            }
+            return n;
+        } else if (len == 0) {
+            return 0;
+        } else if (fill()) {
+            int n = Math.min(len, limit - position);
+            System.arraycopy(buffer, position, b, off, n);
+            position += n;
+            return n;
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public int available() {
+        if (protocol == ForkServer.PROTOCOL_1) {
+            return 0;
+        } else {
+            return limit - position;
+        }
+    }
+
+    public void drain() throws IOException {
+        while (granted) {
+            receive();
+        }
+    }
+
+    public void flush() {
+    }
+
+    /**
+     * Makes sure that there is some data in the local buffer, and grants
+     * the parent more credit when the buffer is running low.
+     *
+     * @return <code>false</code> if the end of the stream has been reached
+     */
+    private boolean fill() throws IOException {
+        while (position == limit) {
+            if (failed) {
+                throw new IOException(
+                        "Failed to read the document stream"
+                        + " in the parent process");
+            } else if (!granted) {
+                if (eof) {
+                    return false;
+                }
+                grant();
+            }
+            receive();
+        }
+        if (!granted && !eof && limit - position < WINDOW / 2) {
+            grant();
+        }
+        return true;
+    }
+
+    private void grant() throws IOException {
         output.writeByte(ForkServer.RESOURCE);
         output.writeByte(resource);
-        output.writeInt(len);
+        output.writeInt(WINDOW);
         output.flush();
+        granted = true;
+    }
+
+    private void receive() throws IOException {
         int n = input.readInt();
         if (n > 0) {
-            input.readFully(b, off, n);
+            if (buffer.length - limit < n) {
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                limit -= position;
+                position = 0;
+                if (buffer.length - limit < n) {
+                    byte[] expanded = new byte[limit + n];
+                    System.arraycopy(buffer, 0, expanded, 0, limit);
+                    buffer = expanded;
+                }
+            }
+            input.readFully(buffer, limit, n);
+            limit += n;
+        } else {
+            granted = false;
+            if (n == END_OF_STREAM) {
+                eof = true;
+            } else if (n == STREAM_ERROR) {
+                failed = true;
+            }
         }
-        return n;
     }
 
 }
@@ -25,12 +25,24 @@ class InputStreamResource implements ForkResource {
 
     private final InputStream stream;
 
+    private final int protocol;
+
+    private byte[] buffer;
+
     public InputStreamResource(InputStream stream) {
+        this(stream, ForkServer.PROTOCOL_1);
+    }
+
+    public InputStreamResource(InputStream stream, int protocol) {
         this.stream = stream;
+        this.protocol = protocol;
     }
 
     public Throwable process(DataInputStream input, DataOutputStream output)
             throws IOException {
+        if (protocol != ForkServer.PROTOCOL_1) {
+            return push(input.readInt(), output);
+        }
         int n = input.readInt();
         byte[] buffer = new byte[n];
         int m;
@@ -47,4 +59,38 @@ class InputStreamResource implements ForkResource {
         return null;
     }
 
+    /**
+     * Pushes up to the given number of bytes to the forked process, as
+     * chunks preceded by their length. The grant is terminated with an
+     * end of grant, end of stream or stream error marker.
+     */
+    private Throwable push(int credit, DataOutputStream output)
+            throws IOException {
+        if (buffer == null) {
+            buffer = new byte[InputStreamProxy.WINDOW];
+        }
+        while (credit > 0) {
+            int n;
+            try {
+                n = stream.read(buffer, 0, Math.min(credit, buffer.length));
+            } catch (IOException e) {
+                output.writeInt(InputStreamProxy.STREAM_ERROR);
+                output.flush();
+                return e;
+            }
+            if (n == -1) {
+                output.writeInt(InputStreamProxy.END_OF_STREAM);
+                output.flush();
+                return null;
+            } else if (n > 0) {
+                output.writeInt(n);
+                output.write(buffer, 0, n);
+                credit -= n;
+            }
+        }
+        output.writeInt(InputStreamProxy.END_OF_GRANT);
+        output.flush();
+        return null;
+    }
+
 }
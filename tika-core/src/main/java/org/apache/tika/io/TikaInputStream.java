@@ -18,23 +18,32 @@ package org.apache.tika.io;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.sql.Blob;
 import java.sql.SQLException;
+import java.util.Arrays;
 
+import org.apache.tika.exception.ParseBudgetExceededException;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metrics.ParseMetrics;
+import org.apache.tika.parser.ParseBudget;
 
 /**
  * Input stream with extended capabilities. The purpose of this class is
@@ -113,11 +122,15 @@ public class TikaInputStream extends TaggedInputStream {
         } else {
             // Make sure that the stream is buffered and that it
             // (properly) supports the mark feature
+            boolean wrapped = false;
             if (!(stream instanceof BufferedInputStream)
                     && !(stream instanceof ByteArrayInputStream)) {
                 stream = new BufferedInputStream(stream);
+                wrapped = true;
             }
-            return new TikaInputStream(stream, tmp, -1);
+            TikaInputStream tis = new TikaInputStream(stream, tmp, -1);
+            tis.wrapped = wrapped;
+            return tis;
         }
     }
 
@@ -231,6 +244,70 @@ public class TikaInputStream extends TaggedInputStream {
         return new TikaInputStream(file);
     }
 
+    /**
+     * Creates a TikaInputStream that reads the given file through a
+     * memory mapping instead of buffered file reads. The stream contents
+     * are then available to {@link #peek(long, int)} and the other read
+     * methods without any further system calls or intermediate copies,
+     * which especially helps with files on network file systems.
+     * Files too large to be mapped at once are read normally.
+     *
+     * @since Apache Tika 1.10
+     * @param file input file
+     * @return a TikaInputStream instance
+     * @throws IOException if the file can not be mapped
+     */
+    public static TikaInputStream getMapped(File file) throws IOException {
+        return getMapped(file, new Metadata());
+    }
+
+    /**
+     * Creates a TikaInputStream that reads the given file through a
+     * memory mapping. The file name and length are stored as input
+     * metadata in the given metadata instance.
+     *
+     * @since Apache Tika 1.10
+     * @see #getMapped(File)
+     * @param file input file
+     * @param metadata metadata instance
+     * @return a TikaInputStream instance
+     * @throws IOException if the file can not be mapped
+     */
+    public static TikaInputStream getMapped(File file, Metadata metadata)
+            throws IOException {
+        metadata.set(Metadata.RESOURCE_NAME_KEY, file.getName());
+        metadata.set(Metadata.CONTENT_LENGTH, Long.toString(file.length()));
+        ByteBuffer mapped = map(file);
+        if (mapped != null) {
+            return new TikaInputStream(file, mapped);
+        } else {
+            return new TikaInputStream(file);
+        }
+    }
+
+    /**
+     * Maps the whole given file into memory.
+     *
+     * @param file file to be mapped
+     * @return read-only view of the file,
+     *         or <code>null</code> if the file is too large to be mapped
+     * @throws IOException if the file can not be mapped
+     */
+    private static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } finally {
+            raf.close();
+        }
+    }
+
     /**
      * Creates a TikaInputStream from the given database BLOB.
      * <p>
@@ -433,6 +510,73 @@ public class TikaInputStream extends TaggedInputStream {
      */
     private Object openContainer;
 
+    /**
+     * Read-only memory mapped view of the whole {@link #file}, or
+     * <code>null</code> if this stream was not created by
+     * {@link #getMapped(File)}.
+     */
+    private ByteBuffer mapped;
+
+    /**
+     * Default value of the {@link #setSpillThreshold(int) spill threshold}.
+     *
+     * @since Apache Tika 1.10
+     */
+    public static final int DEFAULT_SPILL_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Largest stream to be buffered fully in memory when random access
+     * to the stream is needed.
+     */
+    private int spillThreshold = DEFAULT_SPILL_THRESHOLD;
+
+    /**
+     * The entire contents of this stream, if buffered in memory by
+     * {@link #spool()}, or <code>null</code>.
+     */
+    private byte[] buffered;
+
+    /**
+     * Channel used to read regions of a {@link #file} that has not been
+     * memory mapped, or <code>null</code>.
+     */
+    private FileChannel channel;
+
+    /**
+     * Budget of the parse that reads this stream, or <code>null</code>.
+     */
+    private ParseBudget budget;
+
+    /**
+     * Bytes read ahead by {@link #peek(long, int)} from a stream that is
+     * neither backed by a file nor buffered in memory, or <code>null</code>.
+     * Kept so that the detectors that all look at the start of a document
+     * share a single read-ahead buffer instead of each reading their own.
+     */
+    private byte[] prefix;
+
+    /**
+     * Whether the underlying stream is a buffer added by this class, whose
+     * marks no caller can rely on.
+     */
+    private boolean wrapped;
+
+    /**
+     * Stream offset of the first byte in {@link #prefix}.
+     */
+    private long prefixOffset;
+
+    /**
+     * Whether the end of stream was reached when reading {@link #prefix}.
+     */
+    private boolean prefixAtEnd;
+
+    /**
+     * Whether {@link #peek(long, int)} is reading ahead. The bytes read
+     * ahead are only charged to the parse budget once actually read.
+     */
+    private boolean peeking;
+
     /**
      * Creates a TikaInputStream instance. This private constructor is used
      * by the static factory methods based on the available information.
@@ -447,6 +591,22 @@ public class TikaInputStream extends TaggedInputStream {
         this.length = file.length();
     }
 
+    /**
+     * Creates a TikaInputStream instance that reads a memory mapped file.
+     * This private constructor is used by the static factory methods based
+     * on the available information.
+     *
+     * @param file the file that contains the stream
+     * @param mapped memory mapped view of the whole file
+     */
+    private TikaInputStream(File file, ByteBuffer mapped) {
+        super(new ByteBufferInputStream(mapped.duplicate()));
+        this.file = file;
+        this.tmp = new TemporaryResources();
+        this.length = mapped.capacity();
+        this.mapped = mapped;
+    }
+
     /**
      * Creates a TikaInputStream instance. This private constructor is used
      * by the static factory methods based on the available information.
@@ -478,10 +638,54 @@ public class TikaInputStream extends TaggedInputStream {
      * @throws IOException if the stream can not be read
      */
     public int peek(byte[] buffer) throws IOException {
-        int n = 0;
+        ByteBuffer view = peek(position, buffer.length);
+        int n = view.remaining();
+        view.get(buffer, 0, n);
+        return n;
+    }
+
+    /**
+     * Returns up to <code>length</code> upcoming bytes from this stream
+     * without advancing the current stream position, like
+     * {@link #peek(byte[])} but in an array of exactly the number of bytes
+     * available. When the bytes have already been read ahead by an earlier
+     * peek, for example by another detector, the returned array may be
+     * shared with that earlier peek, so it must not be modified.
+     *
+     * @since Apache Tika 1.10
+     * @param length maximum number of bytes to return
+     * @return upcoming bytes, not to be modified
+     * @throws IOException if the stream can not be read
+     */
+    public byte[] peekBytes(int length) throws IOException {
+        ByteBuffer view = peek(position, length);
+        if (prefix != null && prefixOffset == position
+                && prefix.length == view.remaining()) {
+            return prefix;
+        }
+        byte[] bytes = new byte[view.remaining()];
+        view.get(bytes);
+        return bytes;
+    }
 
+    /**
+     * Reads upcoming bytes into the given buffer using the mark feature,
+     * without advancing the current stream position.
+     */
+    private int readAhead(byte[] buffer) throws IOException {
         mark(buffer.length);
+        try {
+            return readFully(buffer);
+        } finally {
+            reset();
+        }
+    }
 
+    /**
+     * Reads as many bytes as are available, up to the size of the buffer.
+     */
+    private int readFully(byte[] buffer) throws IOException {
+        int n = 0;
         int m = read(buffer);
         while (m != -1) {
             n += m;
@@ -491,12 +695,133 @@ public class TikaInputStream extends TaggedInputStream {
                 m = -1;
             }
         }
-
-        reset();
-
         return n;
     }
     
+    /**
+     * Returns a read-only view of up to <code>length</code> bytes of this
+     * stream, starting at the given offset from the beginning of the stream,
+     * without advancing the current stream position. Fewer bytes are
+     * returned if the end of stream is encountered before that.
+     * <p>
+     * If this stream is backed by a file (see {@link #hasFile()}), then any
+     * offset can be used, for example to look at a trailer at the end of
+     * the document. The view is then a slice of the memory mapping of a
+     * stream created by {@link #getMapped(File)}, or a copy of the bytes
+     * read from the file otherwise.
+     * The same applies if the stream has been buffered in memory by
+     * {@link #getByteBuffer()} or {@link #getLength()}.
+     * Otherwise the offset must not be before the current position, and
+     * all the bytes up to the end of the view are read ahead and buffered
+     * in memory using the mark feature. The bytes read ahead are kept until
+     * the stream is read past them, so that further peeks within them,
+     * such as by the other detectors looking at the start of a document,
+     * don't need to read the stream again. They are charged to the parse
+     * budget, if any, only once actually read.
+     *
+     * @since Apache Tika 1.10
+     * @param offset offset of the first byte from the beginning of the stream
+     * @param length maximum number of bytes to return
+     * @return read-only byte buffer with the requested bytes
+     * @throws IOException if the stream can not be read, or the requested
+     *                     bytes are no longer available
+     */
+    public ByteBuffer peek(long offset, int length) throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid peek range: " + offset + " + " + length);
+        }
+
+        if (buffered != null) {
+            int start = (int) Math.min(offset, buffered.length);
+            int end = (int) Math.min(start + (long) length, buffered.length);
+            return ByteBuffer.wrap(buffered, start, end - start)
+                    .slice().asReadOnlyBuffer();
+        } else if (mapped != null) {
+            ByteBuffer view = mapped.duplicate();
+            int size = view.capacity();
+            int start = (int) Math.min(offset, size);
+            view.limit((int) Math.min(start + (long) length, size));
+            view.position(start);
+            return view.slice();
+        } else if (hasFile()) {
+            // Read just the requested region, as mapping the file would
+            // lock it against deletion on some platforms until the mapping
+            // gets garbage collected
+            if (channel == null) {
+                channel = getFileChannel();
+            }
+            long size = channel.size();
+            long start = Math.min(offset, size);
+            ByteBuffer data = ByteBuffer.allocate(
+                    (int) Math.min(length, size - start));
+            int n = 0;
+            while (data.hasRemaining() && n != -1) {
+                n = channel.read(data, start + data.position());
+            }
+            data.flip();
+            return data.asReadOnlyBuffer();
+        } else if (prefix != null && offset >= prefixOffset
+                && (prefixAtEnd
+                    || offset + length <= prefixOffset + prefix.length)) {
+            // Already read ahead, for example by another detector
+            int start = (int) Math.min(offset - prefixOffset, prefix.length);
+            int end = (int) Math.min(
+                    offset - prefixOffset + length, prefix.length);
+            return ByteBuffer.wrap(prefix, start, end - start)
+                    .slice().asReadOnlyBuffer();
+        } else if (offset >= position) {
+            long ahead = offset - position;
+            if (ahead + length > Integer.MAX_VALUE) {
+                throw new IOException(
+                        "Unable to peek " + ahead + " bytes ahead"
+                        + " in a stream that is not backed by a file");
+            }
+            byte[] data = new byte[(int) (ahead + length)];
+            int n;
+            peeking = true;
+            try {
+                if (wrapped && mark == -1) {
+                    // Nobody holds a mark on our own buffer, so instead of growing
+                    // it read the bytes straight into the array and push it back
+                    n = readFully(data);
+                    if (n < data.length) {
+                        data = Arrays.copyOf(data, n);
+                    }
+                    position -= n;
+                    // Like in getFile(), the old stream is still closed by close()
+                    // but not when the sequence reaches its end
+                    final InputStream oldStream = in;
+                    in = new FilterInputStream(new BufferedInputStream(
+                            new SequenceInputStream(
+                                    new ByteArrayInputStream(data),
+                                    new CloseShieldInputStream(oldStream)))) {
+                        @Override
+                        public void close() throws IOException {
+                            oldStream.close();
+                        }
+                    };
+                } else {
+                    n = readAhead(data);
+                    if (n < data.length) {
+                        data = Arrays.copyOf(data, n);
+                    }
+                }
+            } finally {
+                peeking = false;
+            }
+            prefix = data;
+            prefixOffset = position;
+            prefixAtEnd = n < ahead + length;
+            int start = (int) Math.min(ahead, n);
+            return ByteBuffer.wrap(data, start, n - start)
+                    .slice().asReadOnlyBuffer();
+        } else {
+            throw new IOException(
+                    "Stream has already been read past offset " + offset);
+        }
+    }
+
     /**
      * Returns the open container object, such as a
      *  POIFS FileSystem in the event of an OLE2
@@ -520,44 +845,167 @@ public class TikaInputStream extends TaggedInputStream {
         }
     }
 
+    /**
+     * Returns the budget of the parse that reads this stream.
+     *
+     * @since Apache Tika 1.10
+     * @return parse budget, or <code>null</code>
+     */
+    public ParseBudget getParseBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the budget of the parse that reads this stream. All bytes read
+     * from this stream are then recorded in the budget, and reads fail
+     * with an {@link IOException} once the budget has been exceeded.
+     *
+     * @since Apache Tika 1.10
+     * @param budget parse budget, or <code>null</code>
+     */
+    public void setParseBudget(ParseBudget budget) {
+        this.budget = budget;
+    }
+
     public boolean hasFile() {
         return file != null;
     }
 
+    /**
+     * Returns the largest stream to be buffered in memory when random
+     * access to the stream is needed.
+     *
+     * @since Apache Tika 1.10
+     * @return spill threshold in bytes
+     */
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    /**
+     * Sets the largest stream to be buffered in memory when random access
+     * to the stream is needed, for example by {@link #getLength()} or
+     * {@link #getByteBuffer()}. Larger streams are spooled into a temporary
+     * file. The default is {@link #DEFAULT_SPILL_THRESHOLD}. A temporary
+     * file is always created when {@link #getFile()} is called.
+     *
+     * @since Apache Tika 1.10
+     * @param spillThreshold spill threshold in bytes, or zero to spool all
+     *                       but empty streams into temporary files
+     */
+    public void setSpillThreshold(int spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+    /**
+     * Returns a read-only view of the entire contents of this stream,
+     * regardless of the current stream position. Streams not backed by a
+     * file are first buffered in memory if they are no larger than the
+     * {@link #setSpillThreshold(int) spill threshold}, or spooled into a
+     * temporary file otherwise. File contents are read into memory, unless
+     * the stream was created by {@link #getMapped(File)}.
+     * This will only work if the stream has not yet been consumed.
+     *
+     * @since Apache Tika 1.10
+     * @return byte buffer with the contents of the stream
+     * @throws IOException if the stream can not be buffered,
+     *                     or it is too large to fit in a byte buffer
+     */
+    public ByteBuffer getByteBuffer() throws IOException {
+        spool();
+        long size = getLength();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(
+                    "Stream is too large for a byte buffer: " + size);
+        }
+        return peek(0, (int) size);
+    }
+
     public File getFile() throws IOException {
         if (file == null) {
-            if (position > 0) {
-                throw new IOException("Stream is already being read");
-            } else {
-                // Spool the entire stream into a temporary file
-                file = tmp.createTemporaryFile();
-                OutputStream out = new FileOutputStream(file);
-                try {
-                    IOUtils.copy(in, out);
-                } finally {
-                    out.close();
-                }
+            spool();
+        }
+        if (file == null) {
+            // The stream is buffered in memory, but the caller needs
+            // a real file, so write the buffered contents out
+            File spill = tmp.createTemporaryFile();
+            OutputStream out = new FileOutputStream(spill);
+            try {
+                out.write(buffered);
+            } finally {
+                out.close();
+            }
+            ParseMetrics.getDefault().addTemporaryFileBytes(buffered.length);
+            file = spill;
+        }
+        return file;
+    }
 
-                // Create a new input stream and make sure it'll get closed
-                FileInputStream newStream = new FileInputStream(file);
-                tmp.addResource(newStream);
-
-                // Replace the spooled stream with the new stream in a way
-                // that still ends up closing the old stream if or when the
-                // close() method is called. The closing of the new stream
-                // is already being handled as noted above.
-                final InputStream oldStream = in;
-                in = new BufferedInputStream(newStream) {
-                    @Override
-                    public void close() throws IOException {
-                        oldStream.close();
-                    }
-                };
+    /**
+     * Makes the entire stream available for random access, by either
+     * buffering it in memory or spooling it into a temporary file,
+     * depending on whether it fits within the spill threshold.
+     * Does nothing if the stream is already backed by a file or buffer.
+     *
+     * @throws IOException if the stream is already being read,
+     *                     or can not be spooled
+     */
+    private void spool() throws IOException {
+        if (file != null || buffered != null) {
+            return;
+        } else if (position > 0) {
+            throw new IOException("Stream is already being read");
+        }
 
-                length = file.length();
+        // Read up to the spill threshold into memory
+        ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        int n = 0;
+        while (memory.size() <= spillThreshold && n != -1) {
+            n = in.read(chunk);
+            if (n > 0) {
+                memory.write(chunk, 0, n);
             }
         }
-        return file;
+
+        InputStream newStream;
+        if (n == -1) {
+            // The whole stream fits within the threshold
+            buffered = memory.toByteArray();
+            length = buffered.length;
+            newStream = new ByteArrayInputStream(buffered);
+        } else {
+            // Spool the entire stream into a temporary file
+            File spill = tmp.createTemporaryFile();
+            OutputStream out = new FileOutputStream(spill);
+            try {
+                memory.writeTo(out);
+                memory = null;
+                IOUtils.copy(in, out);
+            } finally {
+                out.close();
+            }
+            file = spill;
+            length = file.length();
+            ParseMetrics.getDefault().addTemporaryFileBytes(length);
+
+            // Create a new input stream and make sure it'll get closed
+            FileInputStream fileStream = new FileInputStream(file);
+            tmp.addResource(fileStream);
+            newStream = new BufferedInputStream(fileStream);
+        }
+
+        // Replace the spooled stream with the new stream in a way
+        // that still ends up closing the old stream if or when the
+        // close() method is called. The closing of a new file stream
+        // is already being handled as noted above.
+        final InputStream oldStream = in;
+        in = new FilterInputStream(newStream) {
+            @Override
+            public void close() throws IOException {
+                oldStream.close();
+            }
+        };
     }
 
     public FileChannel getFileChannel() throws IOException {
@@ -575,16 +1023,17 @@ public class TikaInputStream extends TaggedInputStream {
     /**
      * Returns the length (in bytes) of this stream. Note that if the length
      * was not available when this stream was instantiated, then this method
-     * will use the {@link #getFile()} method to buffer the entire stream to
-     * a temporary file in order to calculate the stream length. This case
-     * will only work if the stream has not yet been consumed.
+     * will buffer the entire stream in memory or, if it is larger than the
+     * {@link #setSpillThreshold(int) spill threshold}, in a temporary file
+     * in order to calculate the stream length. This case will only work if
+     * the stream has not yet been consumed.
      *
      * @return stream length
      * @throws IOException if the length can not be determined
      */
     public long getLength() throws IOException {
         if (length == -1) {
-            length = getFile().length();
+            spool();
         }
         return length;
     }
@@ -626,6 +1075,10 @@ public class TikaInputStream extends TaggedInputStream {
     @Override
     public void close() throws IOException {
         file = null;
+        mapped = null;
+        buffered = null;
+        channel = null;
+        prefix = null;
         mark = -1;
 
         // The close method was explicitly called, so we indeed
@@ -638,9 +1091,20 @@ public class TikaInputStream extends TaggedInputStream {
     }
 
     @Override
-    protected void afterRead(int n) {
+    protected void afterRead(int n) throws IOException {
         if (n != -1) {
             position += n;
+            if (prefix != null && position > prefixOffset + prefix.length) {
+                // Read past the peeked bytes, so they're no longer needed
+                prefix = null;
+            }
+            if (budget != null && !peeking) {
+                try {
+                    budget.addBytesRead(n);
+                } catch (ParseBudgetExceededException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            }
         }
     }
 
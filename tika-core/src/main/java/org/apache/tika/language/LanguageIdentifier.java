@@ -20,6 +20,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -55,6 +56,12 @@ public class LanguageIdentifier {
     private static final String LANGUAGES_KEY = "languages";
     private static final double CERTAINTY_LIMIT = 0.022;
 
+    /**
+     * The available language profiles as one matrix, built when first
+     * needed after the profiles have changed.
+     */
+    private static volatile ProfileMatrix matrix = null;
+
     private final String language;
 
     private final double distance;
@@ -105,6 +112,7 @@ public class LanguageIdentifier {
      */
     public static void addProfile(String language, LanguageProfile profile) {
         PROFILES.put(language, profile);
+        matrix = null;
     }
     
     /**
@@ -114,11 +122,21 @@ public class LanguageIdentifier {
     public LanguageIdentifier(LanguageProfile profile) {
         String minLanguage = "unknown";
         double minDistance = 1.0;
-        for (Map.Entry<String, LanguageProfile> entry : PROFILES.entrySet()) {
-            double distance = profile.distance(entry.getValue());
-            if (distance < minDistance) {
-                minDistance = distance;
-                minLanguage = entry.getKey();
+        ProfileMatrix matrix = getMatrix();
+        if (matrix != null && matrix.accepts(profile)) {
+            double[] products = new double[matrix.size()];
+            double sumOfSquares = matrix.addProducts(profile, products);
+            LanguageIdentifier closest =
+                    matrix.identify(products, sumOfSquares, profile.getCount());
+            minLanguage = closest.language;
+            minDistance = closest.distance;
+        } else {
+            for (Map.Entry<String, LanguageProfile> entry : PROFILES.entrySet()) {
+                double distance = profile.distance(entry.getValue());
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    minLanguage = entry.getKey();
+                }
             }
         }
 
@@ -126,6 +144,11 @@ public class LanguageIdentifier {
         this.distance = minDistance;
     }
 
+    private LanguageIdentifier(String language, double distance) {
+        this.language = language;
+        this.distance = distance;
+    }
+
     /**
      * Constructs a language identifier based on a String of text content
      * @param content the text
@@ -208,6 +231,7 @@ public class LanguageIdentifier {
      */
     public static void clearProfiles() {
         PROFILES.clear();
+        matrix = null;
     }
     
     /**
@@ -239,4 +263,248 @@ public class LanguageIdentifier {
         return language + " (" + distance + ")";
     }
 
+    /**
+     * Returns the matrix of the current language profiles, or
+     * <code>null</code> if they can not be packed into one.
+     */
+    static ProfileMatrix getMatrix() {
+        ProfileMatrix current = matrix;
+        if (current == null || !current.isCurrent()) {
+            current = ProfileMatrix.build();
+            matrix = current;
+        }
+        return current;
+    }
+
+    /**
+     * The language profiles as one sparse matrix, holding the relative
+     * frequency of each ngram in each language. The distances of a
+     * content profile to all the languages are then computed in a single
+     * sweep over its ngrams, as
+     * <code>sum(lang<sup>2</sup>) + sum(content<sup>2</sup>)
+     * - 2 * sum(lang * content)</code>,
+     * where only the last term depends on both profiles. Keeping the
+     * content sums in raw ngram counts lets them be updated one ngram at
+     * a time, as {@link ProfilingWriter} does.
+     */
+    static class ProfileMatrix {
+
+        private final String[] languages;
+
+        private final LanguageProfile[] profiles;
+
+        private final int[] modifications;
+
+        private final int length;
+
+        /**
+         * Open addressing table from packed ngram to matrix row.
+         */
+        private final long[] keys;
+
+        private final int[] rows;
+
+        /**
+         * Matrix rows in compressed sparse row form: the entries of row r
+         * are from <code>rowStart[r]</code> up to
+         * <code>rowStart[r + 1]</code>.
+         */
+        private final int[] rowStart;
+
+        private final int[] columns;
+
+        private final double[] frequencies;
+
+        private final double[] languageSumOfSquares;
+
+        /**
+         * Builds the matrix of the current language profiles, or returns
+         * <code>null</code> if some profile can not be packed into it.
+         */
+        static ProfileMatrix build() {
+            int length = -1;
+            int entries = 0;
+            for (LanguageProfile profile : PROFILES.values()) {
+                if (!profile.isPacked()
+                        || (length != -1 && profile.getLength() != length)) {
+                    return null;
+                }
+                length = profile.getLength();
+                for (long key : profile.getNgramKeys()) {
+                    if (key != LanguageProfile.FREE) {
+                        entries++;
+                    }
+                }
+            }
+            return new ProfileMatrix(length, entries);
+        }
+
+        private ProfileMatrix(int length, int entries) {
+            int n = PROFILES.size();
+            this.languages = new String[n];
+            this.profiles = new LanguageProfile[n];
+            this.modifications = new int[n];
+            this.length = length;
+
+            int capacity = 64;
+            while (capacity < 2 * entries) {
+                capacity <<= 1;
+            }
+            this.keys = new long[capacity];
+            Arrays.fill(keys, LanguageProfile.FREE);
+            this.rows = new int[capacity];
+
+            // Number the distinct ngrams and count the entries of each row
+            int[] rowSize = new int[entries + 1];
+            int numRows = 0;
+            int column = 0;
+            for (Map.Entry<String, LanguageProfile> entry : PROFILES.entrySet()) {
+                languages[column] = entry.getKey();
+                profiles[column] = entry.getValue();
+                modifications[column] = entry.getValue().getModifications();
+                for (long key : entry.getValue().getNgramKeys()) {
+                    if (key != LanguageProfile.FREE) {
+                        int slot = slot(key);
+                        if (keys[slot] == LanguageProfile.FREE) {
+                            keys[slot] = key;
+                            rows[slot] = numRows++;
+                        }
+                        rowSize[rows[slot]]++;
+                    }
+                }
+                column++;
+            }
+
+            this.rowStart = new int[numRows + 1];
+            for (int row = 0; row < numRows; row++) {
+                rowStart[row + 1] = rowStart[row] + rowSize[row];
+            }
+
+            this.columns = new int[entries];
+            this.frequencies = new double[entries];
+            this.languageSumOfSquares = new double[n];
+            int[] next = Arrays.copyOf(rowStart, numRows);
+            for (column = 0; column < n; column++) {
+                double count = Math.max(profiles[column].getCount(), 1.0);
+                long[] profileKeys = profiles[column].getNgramKeys();
+                long[] profileCounts = profiles[column].getNgramCounts();
+                for (int i = 0; i < profileKeys.length; i++) {
+                    if (profileKeys[i] != LanguageProfile.FREE) {
+                        double frequency = profileCounts[i] / count;
+                        int entry = next[rows[slot(profileKeys[i])]]++;
+                        columns[entry] = column;
+                        frequencies[entry] = frequency;
+                        languageSumOfSquares[column] += frequency * frequency;
+                    }
+                }
+            }
+        }
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            long h = key * 0x9E3779B97F4A7C15L;
+            int slot = (int) (h ^ (h >>> 32)) & mask;
+            while (keys[slot] != LanguageProfile.FREE && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Checks that none of the profiles has changed since the matrix
+         * was built.
+         */
+        boolean isCurrent() {
+            if (PROFILES.size() != profiles.length) {
+                return false;
+            }
+            for (int i = 0; i < profiles.length; i++) {
+                if (profiles[i].getModifications() != modifications[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean accepts(LanguageProfile profile) {
+            return profiles.length == 0
+                    || (profile.isPacked() && profile.getLength() == length);
+        }
+
+        /**
+         * Returns the number of languages in the matrix.
+         */
+        int size() {
+            return profiles.length;
+        }
+
+        /**
+         * Adds the given number of occurrences of an ngram to the
+         * per-language sums of ngram count times language frequency.
+         *
+         * @param ngram packed ngram
+         * @param count number of occurrences
+         * @param products sums to update, one per language
+         */
+        void addProducts(long ngram, double count, double[] products) {
+            int slot = slot(ngram);
+            if (keys[slot] != LanguageProfile.FREE) {
+                int row = rows[slot];
+                for (int entry = rowStart[row]; entry < rowStart[row + 1]; entry++) {
+                    products[columns[entry]] += count * frequencies[entry];
+                }
+            }
+        }
+
+        /**
+         * Adds all the ngrams of the given profile to the per-language sums.
+         *
+         * @param profile packed language profile
+         * @param products sums to update, one per language
+         * @return sum of the squared ngram counts of the profile
+         */
+        double addProducts(LanguageProfile profile, double[] products) {
+            double sumOfSquares = 0.0;
+            long[] profileKeys = profile.getNgramKeys();
+            long[] profileCounts = profile.getNgramCounts();
+            for (int i = 0; i < profileKeys.length; i++) {
+                if (profileKeys[i] != LanguageProfile.FREE) {
+                    double count = profileCounts[i];
+                    sumOfSquares += count * count;
+                    addProducts(profileKeys[i], count, products);
+                }
+            }
+            return sumOfSquares;
+        }
+
+        /**
+         * Identifies the language closest to a content profile, given its
+         * per-language sums.
+         *
+         * @param products sums of ngram count times language frequency
+         * @param sumOfSquares sum of the squared ngram counts
+         * @param count total number of ngrams in the profile
+         * @return closest language
+         */
+        LanguageIdentifier identify(
+                double[] products, double sumOfSquares, long count) {
+            double total = Math.max(count, 1.0);
+            double profileSumOfSquares = sumOfSquares / (total * total);
+
+            String minLanguage = "unknown";
+            double minDistance = 1.0;
+            for (int i = 0; i < profiles.length; i++) {
+                double sum = languageSumOfSquares[i] + profileSumOfSquares
+                        - 2 * products[i] / total;
+                double distance = Math.sqrt(Math.max(sum, 0.0));
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    minLanguage = languages[i];
+                }
+            }
+            return new LanguageIdentifier(minLanguage, minDistance);
+        }
+
+    }
+
 }
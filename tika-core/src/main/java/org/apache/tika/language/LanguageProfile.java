@@ -17,14 +17,11 @@
 package org.apache.tika.language;
 
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.List;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 
 /**
  * Language profile based on ngram counts.
@@ -35,20 +32,47 @@ public class LanguageProfile {
 
     public static final int DEFAULT_NGRAM_LENGTH = 3;
 
+    /**
+     * Longest ngrams whose characters can be packed into a single long key.
+     */
+    static final int MAX_PACKED_LENGTH = 3;
+
+    /**
+     * Marks a free slot in the ngram table. Packed ngrams never use the
+     * top 16 bits of a key, so no ngram can be mistaken for a free slot.
+     */
+    static final long FREE = -1;
+
     private final int length;
 
     /**
-     * The ngrams that make up this profile.
+     * The ngrams that make up this profile, as an open addressing table
+     * of packed ngram keys (see {@link #pack(CharSequence)}) and their
+     * counts. Profiles of ngrams too long to pack use the
+     * {@link #longNgrams} map instead.
      */
-    private final Map<String, Counter> ngrams =
-        new HashMap<String, Counter>();
+    private long[] keys;
+
+    private long[] counts;
+
+    private int size = 0;
+
+    private final Map<String, Counter> longNgrams;
 
     /**
      * Sorted ngram cache for faster distance calculation.
      */
-    private Interleaved interleaved = new Interleaved();
+    private long[] sortedKeys = null;
+    private long[] sortedCounts = null;
+    private int sortedAtModification = -1;
     public static boolean useInterleaved = true; // For testing purposes
 
+    /**
+     * Number of changes made to this profile, used to tell when data
+     * derived from the ngrams is out of date.
+     */
+    private int modifications = 0;
+
     /**
      * The sum of all ngram counts in this profile.
      * Used to calculate relative ngram frequency.
@@ -64,6 +88,13 @@ public class LanguageProfile {
 
     public LanguageProfile(int length) {
         this.length = length;
+        if (length <= MAX_PACKED_LENGTH) {
+            this.keys = newKeys(64);
+            this.counts = new long[64];
+            this.longNgrams = null;
+        } else {
+            this.longNgrams = new HashMap<String, Counter>();
+        }
     }
 
     public LanguageProfile() {
@@ -82,19 +113,83 @@ public class LanguageProfile {
         this(content, DEFAULT_NGRAM_LENGTH);
     }
 
+    /**
+     * Packs the characters of a short ngram into a single key, the first
+     * character in the most significant bits. Keys of equally long ngrams
+     * thus sort in the same order as the ngram strings.
+     *
+     * @param ngram ngram of at most {@link #MAX_PACKED_LENGTH} characters
+     * @return packed ngram
+     */
+    static long pack(CharSequence ngram) {
+        long key = 0;
+        for (int i = 0; i < ngram.length(); i++) {
+            key = (key << 16) | ngram.charAt(i);
+        }
+        return key;
+    }
+
+    private String unpack(long key) {
+        char[] ngram = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            ngram[i] = (char) key;
+            key >>>= 16;
+        }
+        return new String(ngram);
+    }
+
+    private static long[] newKeys(int capacity) {
+        long[] keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        return keys;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
     public long getCount() {
         return count;
     }
 
     public long getCount(String ngram) {
-        Counter counter = ngrams.get(ngram);
-        if (counter != null) {
-            return counter.count;
+        if (longNgrams != null) {
+            Counter counter = longNgrams.get(ngram);
+            if (counter != null) {
+                return counter.count;
+            } else {
+                return 0;
+            }
+        } else if (ngram.length() == length) {
+            return getCount(pack(ngram));
         } else {
             return 0;
         }
     }
 
+    long getCount(long ngram) {
+        int slot = slot(ngram);
+        if (keys[slot] != FREE) {
+            return counts[slot];
+        } else {
+            return 0;
+        }
+    }
+
+    private boolean contains(long ngram) {
+        return keys[slot(ngram)] != FREE;
+    }
+
     /**
      * Adds a single occurrence of the given ngram to this profile.
      *
@@ -111,19 +206,102 @@ public class LanguageProfile {
      * @param count number of occurrences to add
      */
     public void add(String ngram, long count) {
-        if (length != ngram.length()) {
+        checkLength(ngram.length());
+
+        if (longNgrams != null) {
+            Counter counter = longNgrams.get(ngram);
+            if (counter == null) {
+                counter = new Counter();
+                longNgrams.put(ngram, counter);
+            }
+            counter.count += count;
+            this.count += count;
+            modifications++;
+        } else {
+            increment(pack(ngram), count);
+        }
+    }
+
+    /**
+     * Adds a single occurrence of an ngram of the given length, already
+     * packed with {@link #pack(CharSequence)}, to this profile.
+     *
+     * @param ngram the packed ngram
+     * @param ngramLength number of characters in the ngram
+     * @return number of occurrences of the ngram after adding this one
+     */
+    long add(long ngram, int ngramLength) {
+        checkLength(ngramLength);
+        return increment(ngram, 1);
+    }
+
+    private long increment(long ngram, long count) {
+        int slot = slot(ngram);
+        long total;
+        if (keys[slot] == FREE) {
+            keys[slot] = ngram;
+            counts[slot] = count;
+            total = count;
+            if (2 * ++size > keys.length) {
+                rehash();
+            }
+        } else {
+            total = counts[slot] += count;
+        }
+        this.count += count;
+        modifications++;
+        return total;
+    }
+
+    private void checkLength(int ngramLength) {
+        if (length != ngramLength) {
             throw new IllegalArgumentException(
                     "Unable to add an ngram of incorrect length: "
-                    + ngram.length() + " != " + length);
+                    + ngramLength + " != " + length);
         }
+    }
 
-        Counter counter = ngrams.get(ngram);
-        if (counter == null) {
-            counter = new Counter();
-            ngrams.put(ngram, counter);
+    private void rehash() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = newKeys(2 * oldKeys.length);
+        counts = new long[keys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
         }
-        counter.count += count;
-        this.count += count;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Tells whether the ngrams of this profile are kept as packed keys.
+     */
+    boolean isPacked() {
+        return longNgrams == null;
+    }
+
+    int getModifications() {
+        return modifications;
+    }
+
+    /**
+     * Returns the packed ngram table of this profile, where slots equal to
+     * {@link #FREE} are unused and {@link #getNgramCounts()} holds the
+     * count of each used slot. Only valid for {@link #isPacked() packed}
+     * profiles, and only until the next change to the profile.
+     */
+    long[] getNgramKeys() {
+        return keys;
+    }
+
+    long[] getNgramCounts() {
+        return counts;
     }
 
     /**
@@ -134,10 +312,6 @@ public class LanguageProfile {
      * @return distance between the profiles
      */
     public double distance(LanguageProfile that) {
-        return useInterleaved ? distanceInterleaved(that) : distanceStandard(that);
-    }
-
-    private double distanceStandard(LanguageProfile that) {
         if (length != that.length) {
             throw new IllegalArgumentException(
                     "Unable to calculage distance of language profiles"
@@ -145,13 +319,20 @@ public class LanguageProfile {
                     + that.length + " != " + length);
         }
 
+        if (longNgrams != null) {
+            return distanceStandard(that);
+        }
+        return useInterleaved ? distanceInterleaved(that) : distancePacked(that);
+    }
+
+    private double distanceStandard(LanguageProfile that) {
         double sumOfSquares = 0.0;
         double thisCount = Math.max(this.count, 1.0);
         double thatCount = Math.max(that.count, 1.0);
 
         Set<String> ngrams = new HashSet<String>();
-        ngrams.addAll(this.ngrams.keySet());
-        ngrams.addAll(that.ngrams.keySet());
+        ngrams.addAll(this.longNgrams.keySet());
+        ngrams.addAll(that.longNgrams.keySet());
         for (String ngram : ngrams) {
             double thisFrequency = this.getCount(ngram) / thisCount;
             double thatFrequency = that.getCount(ngram) / thatCount;
@@ -162,153 +343,104 @@ public class LanguageProfile {
         return Math.sqrt(sumOfSquares);
     }
 
+    private double distancePacked(LanguageProfile that) {
+        double sumOfSquares = 0.0;
+        double thisCount = Math.max(this.count, 1.0);
+        double thatCount = Math.max(that.count, 1.0);
+
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                double thisFrequency = counts[i] / thisCount;
+                double thatFrequency = that.getCount(keys[i]) / thatCount;
+                double difference = thisFrequency - thatFrequency;
+                sumOfSquares += difference * difference;
+            }
+        }
+        for (int i = 0; i < that.keys.length; i++) {
+            if (that.keys[i] != FREE && !contains(that.keys[i])) {
+                sumOfSquares += square(that.counts[i] / thatCount);
+            }
+        }
+
+        return Math.sqrt(sumOfSquares);
+    }
+
     @Override
     public String toString() {
-        return ngrams.toString();
+        if (longNgrams != null) {
+            return longNgrams.toString();
+        }
+
+        updateSorted();
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < sortedKeys.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(unpack(sortedKeys[i]));
+            builder.append('=');
+            builder.append(sortedCounts[i]);
+        }
+        return builder.append('}').toString();
     }
 
     /* Code for interleaved distance calculation below */
 
     private double distanceInterleaved(LanguageProfile that) {
-        if (length != that.length) {
-            throw new IllegalArgumentException(
-                    "Unable to calculage distance of language profiles"
-                    + " with different ngram lengths: "
-                    + that.length + " != " + length);
-        }
-       
         double sumOfSquares = 0.0;
         double thisCount = Math.max(this.count, 1.0);
         double thatCount = Math.max(that.count, 1.0);
-        
-        Interleaved.Entry thisEntry = updateInterleaved().firstEntry();
-        Interleaved.Entry thatEntry = that.updateInterleaved().firstEntry();
-
-        // Iterate the lists in parallel, until both lists has been depleted
-        while (thisEntry.hasNgram() || thatEntry.hasNgram()) {
-            if (!thisEntry.hasNgram()) { // Depleted this
-                sumOfSquares += square(thatEntry.count / thatCount);
-                thatEntry.next();
-                continue;
-            }
-
-            if (!thatEntry.hasNgram()) { // Depleted that
-                sumOfSquares += square(thisEntry.count / thisCount);
-                thisEntry.next();
-                continue;
-            }
 
-            final int compare = thisEntry.compareTo(thatEntry);
+        this.updateSorted();
+        that.updateSorted();
+        long[] thisKeys = this.sortedKeys;
+        long[] thatKeys = that.sortedKeys;
+        int i = 0;
+        int j = 0;
 
-            if (compare == 0) { // Term exists both in this and that
-                double difference = thisEntry.count/thisCount - thatEntry.count/thatCount;
+        // Iterate the lists in parallel, until both lists has been depleted
+        while (i < thisKeys.length || j < thatKeys.length) {
+            if (i == thisKeys.length) { // Depleted this
+                sumOfSquares += square(that.sortedCounts[j++] / thatCount);
+            } else if (j == thatKeys.length) { // Depleted that
+                sumOfSquares += square(this.sortedCounts[i++] / thisCount);
+            } else if (thisKeys[i] == thatKeys[j]) { // Term exists both in this and that
+                double difference = this.sortedCounts[i++] / thisCount
+                        - that.sortedCounts[j++] / thatCount;
                 sumOfSquares += square(difference);
-                thisEntry.next();
-                thatEntry.next();
-            } else if (compare < 0) { // Term exists only in this
-                sumOfSquares += square(thisEntry.count/thisCount);
-                thisEntry.next();
+            } else if (thisKeys[i] < thatKeys[j]) { // Term exists only in this
+                sumOfSquares += square(this.sortedCounts[i++] / thisCount);
             } else { // Term exists only in that
-                sumOfSquares += square(thatEntry.count/thatCount);
-                thatEntry.next();
+                sumOfSquares += square(that.sortedCounts[j++] / thatCount);
             }
         }
         return Math.sqrt(sumOfSquares);
     }
+
     private double square(double count) {
         return count * count;
     }
 
-    private class Interleaved {
-
-        private char[] entries = null; // <ngram(length chars)><count(2 chars)>*
-        private int size = 0; // Number of entries (one entry = length+2 chars)
-        private long entriesGeneratedAtCount = -1; // Keeps track of when the sequential structure was current
-
-        /**
-         * Ensure that the entries array is in sync with the ngrams.
-         */
-        public void update() {
-            if (count == entriesGeneratedAtCount) { // Already up to date
-                return;
-            }
-            size = ngrams.size();
-            final int numChars = (length+2)*size;
-            if (entries == null || entries.length < numChars) {
-                entries = new char[numChars];
-            }
-            int pos = 0;
-            for (Map.Entry<String, Counter> entry: getSortedNgrams()) {
-                for (int l = 0 ; l < length ; l++) {
-                    entries[pos + l] = entry.getKey().charAt(l);
-                }
-                entries[pos + length] = (char)(entry.getValue().count / 65536); // Upper 16 bit
-                entries[pos + length + 1] = (char)(entry.getValue().count % 65536); // lower 16 bit
-                pos += length + 2;
-            }
-            entriesGeneratedAtCount = count;
+    /**
+     * Ensure that the sorted ngram cache is in sync with the ngram table.
+     */
+    private void updateSorted() {
+        if (sortedAtModification == modifications) { // Already up to date
+            return;
         }
-
-        public Entry firstEntry() {
-            Entry entry = new Entry();
-            if (size > 0) {
-                entry.update(0);
+        sortedKeys = new long[size];
+        sortedCounts = new long[size];
+        int pos = 0;
+        for (long key : keys) {
+            if (key != FREE) {
+                sortedKeys[pos++] = key;
             }
-            return entry;
-        }
-        
-        private List<Map.Entry<String, Counter>> getSortedNgrams() {
-            List<Map.Entry<String, Counter>> entries = new ArrayList<Map.Entry<String, Counter>>(ngrams.size());
-            entries.addAll(ngrams.entrySet());
-            Collections.sort(entries, new Comparator<Map.Entry<String, Counter>>() {
-                @Override
-                public int compare(Map.Entry<String, Counter> o1, Map.Entry<String, Counter> o2) {
-                    return o1.getKey().compareTo(o2.getKey());
-                }
-            });
-            return entries;
         }
-        
-        private class Entry implements Comparable<Entry> {
-            char[] ngram = new char[length];
-            int count = 0;
-            int pos = 0;
-
-            private void update(int pos) {
-                this.pos = pos;
-                if (pos >= size) { // Reached the end
-                    return;
-                }
-                final int origo = pos*(length+2);
-                System.arraycopy(entries, origo, ngram, 0, length);
-                count = entries[origo+length] * 65536 + entries[origo+length+1];
-            }
-
-            @Override
-            public int compareTo(Entry other) {
-                for (int i = 0 ; i < ngram.length ; i++) {
-                    if (ngram[i] != other.ngram[i]) {
-                        return ngram[i] - other.ngram[i];
-                    }
-                }
-                return 0;
-            }
-            public boolean hasNext() {
-                return pos < size-1;
-            }
-            public boolean hasNgram() {
-                return pos < size;
-            }
-            public void next() {
-                update(pos+1);
-            }
-            public String toString() {
-                return new String(ngram) + "(" + count + ")";
-            }
+        Arrays.sort(sortedKeys);
+        for (pos = 0; pos < size; pos++) {
+            sortedCounts[pos] = getCount(sortedKeys[pos]);
         }
+        sortedAtModification = modifications;
     }
-    private Interleaved updateInterleaved() {
-        interleaved.update();
-        return interleaved;
-    }
+
 }
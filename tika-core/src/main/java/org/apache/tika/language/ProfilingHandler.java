@@ -16,7 +16,11 @@
  */
 package org.apache.tika.language;
 
+import java.io.Serializable;
+import java.util.UUID;
+
 import org.apache.tika.sax.WriteOutContentHandler;
+import org.xml.sax.SAXException;
 
 /**
  * SAX content handler that builds a language profile based on all the
@@ -26,11 +30,51 @@ import org.apache.tika.sax.WriteOutContentHandler;
  */
 public class ProfilingHandler extends WriteOutContentHandler {
 
+    /**
+     * The unique tag associated with exceptions from this handler.
+     */
+    private final Serializable tag = UUID.randomUUID();
+
     private final ProfilingWriter writer;
 
+    /**
+     * Whether to stop profiling once the identified language is stable.
+     */
+    private final boolean stopWhenStable;
+
+    /**
+     * Whether to abort the parsing process once profiling has stopped.
+     */
+    private final boolean stopParse;
+
+    private boolean stopped = false;
+
     public ProfilingHandler(ProfilingWriter writer) {
         super(writer);
         this.writer = writer;
+        this.stopWhenStable = false;
+        this.stopParse = false;
+    }
+
+    /**
+     * Creates a content handler that stops profiling as soon as the
+     * identified language has stabilized (see
+     * {@link ProfilingWriter#isLanguageStable()}), ignoring any further
+     * character content. If the <code>stopParse</code> flag is set, a
+     * {@link SAXException} is also thrown at that point to abort the
+     * parsing process. The {@link #isLanguageStable(Throwable)} method
+     * can be used to detect this case, after which {@link #getLanguage()}
+     * still returns the identified language.
+     *
+     * @since Apache Tika 1.10
+     * @param writer profiling writer
+     * @param stopParse whether to abort parsing once the language is stable
+     */
+    public ProfilingHandler(ProfilingWriter writer, boolean stopParse) {
+        super(writer);
+        this.writer = writer;
+        this.stopWhenStable = true;
+        this.stopParse = stopParse;
     }
 
     public ProfilingHandler(LanguageProfile profile) {
@@ -64,4 +108,69 @@ public class ProfilingHandler extends WriteOutContentHandler {
         return writer.getLanguage();
     }
 
+    @Override
+    public void characters(char[] ch, int start, int length)
+            throws SAXException {
+        if (!stopped) {
+            super.characters(ch, start, length);
+            checkLanguage();
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length)
+            throws SAXException {
+        if (!stopped) {
+            super.ignorableWhitespace(ch, start, length);
+            checkLanguage();
+        }
+    }
+
+    private void checkLanguage() throws SAXException {
+        if (stopWhenStable && writer.isLanguageStable()) {
+            stopped = true;
+            if (stopParse) {
+                throw new LanguageStableException(
+                        "Stopped parsing once the document language was"
+                        + " identified as " + writer.getLanguage(), tag);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the given exception (or any of its root causes) was
+     * thrown by this handler to stop parsing once the identified language
+     * had stabilized.
+     *
+     * @since Apache Tika 1.10
+     * @param t throwable
+     * @return <code>true</code> if parsing was stopped by this handler,
+     *         <code>false</code> otherwise
+     */
+    public boolean isLanguageStable(Throwable t) {
+        if (t instanceof LanguageStableException) {
+            return tag.equals(((LanguageStableException) t).tag);
+        } else {
+            return t.getCause() != null && isLanguageStable(t.getCause());
+        }
+    }
+
+    /**
+     * The exception used as a signal when the identified language is stable.
+     */
+    private static class LanguageStableException extends SAXException {
+
+        /** Serial version UID */
+        private static final long serialVersionUID = 4470271563285815393L;
+
+        /** Serializable tag of the handler that caused this exception */
+        private final Serializable tag;
+
+        public LanguageStableException(String message, Serializable tag) {
+           super(message);
+           this.tag = tag;
+        }
+
+    }
+
 }
@@ -28,10 +28,59 @@ public class ProfilingWriter extends Writer {
 
     private final LanguageProfile profile;
 
-    private char[] buffer = new char[] { 0, 0, '_' };
+    private static final int NGRAM_LENGTH = 3;
+
+    private static final long NGRAM_MASK = (1L << (16 * NGRAM_LENGTH)) - 1;
+
+    /**
+     * The last {@value #NGRAM_LENGTH} characters, packed into one key the
+     * way {@link LanguageProfile} stores its ngrams.
+     */
+    private long ngram = '_';
 
     private int n = 1;
 
+    /**
+     * Number of ngrams between checks of whether the identified language
+     * has stabilized.
+     */
+    private static final int CHECK_INTERVAL = 1000;
+
+    /**
+     * Number of consecutive checks that must identify the same language
+     * with reasonable certainty for it to be considered stable.
+     */
+    private static final int STABLE_CHECKS = 3;
+
+    /**
+     * Language profile matrix the running sums below refer to, or
+     * <code>null</code> if the sums are not being kept.
+     */
+    private LanguageIdentifier.ProfileMatrix matrix = null;
+
+    /**
+     * Per-language sums of ngram count times language frequency.
+     */
+    private double[] products = null;
+
+    /**
+     * Sum of the squared ngram counts of the profile.
+     */
+    private double sumOfSquares = 0.0;
+
+    /**
+     * Modification count of the profile that the sums reflect.
+     */
+    private int trackedModifications = -1;
+
+    private boolean checking = false;
+
+    private int uncheckedNgrams = 0;
+
+    private String stableLanguage = null;
+
+    private int stableChecks = 0;
+
     public ProfilingWriter(LanguageProfile profile) {
         this.profile = profile;
     }
@@ -59,7 +108,57 @@ public class ProfilingWriter extends Writer {
      * @return language that best matches the current profile
      */
     public LanguageIdentifier getLanguage() {
-        return new LanguageIdentifier(profile);
+        LanguageIdentifier.ProfileMatrix current = LanguageIdentifier.getMatrix();
+        if (current == null || !current.accepts(profile)) {
+            matrix = null;
+            return new LanguageIdentifier(profile);
+        }
+
+        if (current != matrix
+                || trackedModifications != profile.getModifications()) {
+            matrix = current;
+            products = new double[matrix.size()];
+            sumOfSquares = matrix.addProducts(profile, products);
+            trackedModifications = profile.getModifications();
+        }
+        return matrix.identify(products, sumOfSquares, profile.getCount());
+    }
+
+    /**
+     * Tells whether the language identified for the content written so
+     * far has stabilized, i.e. the same language has been identified with
+     * reasonable certainty at each of the last few checks made as more
+     * content was written. Further content of the same document is then
+     * unlikely to change the result, so callers interested only in the
+     * language can stop writing.
+     * <p>
+     * The distances to the language profiles are updated incrementally
+     * from the first call on, so this method is cheap enough to call
+     * after every write.
+     *
+     * @since Apache Tika 1.10
+     * @return <code>true</code> if the identified language is stable,
+     *         <code>false</code> otherwise
+     */
+    public boolean isLanguageStable() {
+        if (!checking) {
+            checking = true;
+            checkLanguage();
+        }
+        return stableChecks >= STABLE_CHECKS;
+    }
+
+    private void checkLanguage() {
+        uncheckedNgrams = 0;
+        LanguageIdentifier identifier = getLanguage();
+        if (!identifier.isReasonablyCertain()) {
+            stableChecks = 0;
+        } else if (identifier.getLanguage().equals(stableLanguage)) {
+            stableChecks++;
+        } else {
+            stableLanguage = identifier.getLanguage();
+            stableChecks = 1;
+        }
     }
 
     @Override
@@ -75,11 +174,19 @@ public class ProfilingWriter extends Writer {
     }
 
     private void addLetter(char c) {
-        System.arraycopy(buffer, 1, buffer, 0, buffer.length - 1);
-        buffer[buffer.length - 1] = c;
+        ngram = ((ngram << 16) | c) & NGRAM_MASK;
         n++;
-        if (n >= buffer.length) {
-            profile.add(new String(buffer));
+        if (n >= NGRAM_LENGTH) {
+            long count = profile.add(ngram, NGRAM_LENGTH);
+            if (matrix != null
+                    && trackedModifications + 1 == profile.getModifications()) {
+                sumOfSquares += 2 * count - 1;
+                matrix.addProducts(ngram, 1.0, products);
+                trackedModifications++;
+            }
+            if (checking && ++uncheckedNgrams >= CHECK_INTERVAL) {
+                checkLanguage();
+            }
         }
     }
 
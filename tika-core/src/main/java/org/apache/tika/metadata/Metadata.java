@@ -20,11 +20,16 @@ import static org.apache.tika.utils.DateUtils.MIDDAY;
 import static org.apache.tika.utils.DateUtils.UTC;
 import static org.apache.tika.utils.DateUtils.formatDate;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.text.DateFormat;
 import java.text.DateFormatSymbols;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Enumeration;
@@ -46,10 +51,18 @@ public class Metadata implements CreativeCommons, Geographic, HttpHeaders,
     /** Serial version UID */
     private static final long serialVersionUID = 5623926545693153182L;
 
+    /**
+     * The serialized form is still a map from names to value arrays,
+     * see {@link #writeObject(ObjectOutputStream)}.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("metadata", Map.class)
+    };
+
     /**
      * A map of all metadata attributes.
      */
-    private Map<String, String[]> metadata = null;
+    private transient Map<String, Values> metadata = null;
 
     /**
      * The common delimiter used between the namespace abbreviation and the property name
@@ -97,19 +110,33 @@ public class Metadata implements CreativeCommons, Geographic, HttpHeaders,
      *  variants that we try when processing a date based
      *  property.
      */
-    private static final DateFormat[] iso8601InputFormats = new DateFormat[] {
-        // yyyy-mm-ddThh...
-        createDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", UTC),   // UTC/Zulu
-        createDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", null),    // With timezone
-        createDateFormat("yyyy-MM-dd'T'HH:mm:ss", null),     // Without timezone
-        // yyyy-mm-dd hh...
-        createDateFormat("yyyy-MM-dd' 'HH:mm:ss'Z'", UTC),   // UTC/Zulu
-        createDateFormat("yyyy-MM-dd' 'HH:mm:ssZ", null),    // With timezone
-        createDateFormat("yyyy-MM-dd' 'HH:mm:ss", null),     // Without timezone
-        // Date without time, set to Midday UTC
-        createDateFormat("yyyy-MM-dd", MIDDAY),              // Normal date format
-        createDateFormat("yyyy:MM:dd", MIDDAY),              // Image (IPTC/EXIF) format
-    };
+    private static DateFormat[] createIso8601InputFormats() {
+        return new DateFormat[] {
+            // yyyy-mm-ddThh...
+            createDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", UTC),   // UTC/Zulu
+            createDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", null),    // With timezone
+            createDateFormat("yyyy-MM-dd'T'HH:mm:ss", null),     // Without timezone
+            // yyyy-mm-dd hh...
+            createDateFormat("yyyy-MM-dd' 'HH:mm:ss'Z'", UTC),   // UTC/Zulu
+            createDateFormat("yyyy-MM-dd' 'HH:mm:ssZ", null),    // With timezone
+            createDateFormat("yyyy-MM-dd' 'HH:mm:ss", null),     // Without timezone
+            // Date without time, set to Midday UTC
+            createDateFormat("yyyy-MM-dd", MIDDAY),              // Normal date format
+            createDateFormat("yyyy:MM:dd", MIDDAY),              // Image (IPTC/EXIF) format
+        };
+    }
+
+    /**
+     * The date formats are not thread-safe, so each thread gets its own
+     * copies instead of all threads contending for a single global lock.
+     */
+    private static final ThreadLocal<DateFormat[]> iso8601InputFormats =
+            new ThreadLocal<DateFormat[]>() {
+                @Override
+                protected DateFormat[] initialValue() {
+                    return createIso8601InputFormats();
+                }
+            };
 
     private static DateFormat createDateFormat(String format, TimeZone timezone) {
         SimpleDateFormat sdf =
@@ -121,14 +148,14 @@ public class Metadata implements CreativeCommons, Geographic, HttpHeaders,
     }
 
     /**
-     * Parses the given date string. This method is synchronized to prevent
-     * concurrent access to the thread-unsafe date formats.
+     * Parses the given date string. The thread-unsafe date formats are
+     * kept per thread, so no synchronization is needed.
      *
      * @see <a href="https://issues.apache.org/jira/browse/TIKA-495">TIKA-495</a>
      * @param date date string
      * @return parsed date, or <code>null</code> if the date can't be parsed
      */
-    private static synchronized Date parseDate(String date) {
+    private static Date parseDate(String date) {
         // Java doesn't like timezones in the form ss+hh:mm
         // It only likes the hhmm form, without the colon
         int n = date.length();
@@ -138,7 +165,7 @@ public class Metadata implements CreativeCommons, Geographic, HttpHeaders,
         }
 
         // Try several different ISO-8601 variants
-        for (DateFormat format : iso8601InputFormats) {
+        for (DateFormat format : iso8601InputFormats.get()) {
             try {
                 return format.parse(date);
             } catch (ParseException ignore) {
@@ -151,7 +178,21 @@ public class Metadata implements CreativeCommons, Geographic, HttpHeaders,
      * Constructs a new, empty metadata.
      */
     public Metadata() {
-        metadata = new HashMap<String, String[]>();
+        metadata = new HashMap<String, Values>();
+    }
+
+    /**
+     * Returns the value list of the given metadata name, creating an
+     * empty one if needed. New names are interned to the names of the
+     * matching property constants, if any.
+     */
+    private Values values(String name) {
+        Values values = metadata.get(name);
+        if (values == null) {
+            values = new Values();
+            metadata.put(Property.intern(name), values);
+        }
+        return values;
     }
 
     /**
@@ -162,7 +203,7 @@ public class Metadata implements CreativeCommons, Geographic, HttpHeaders,
      * @return true is named value is multivalued, false if single value or null
      */
     public boolean isMultiValued(final Property property) {
-        return metadata.get(property.getName()) != null && metadata.get(property.getName()).length > 1;
+        return isMultiValued(property.getName());
     }
     
     /**
@@ -173,7 +214,8 @@ public class Metadata implements CreativeCommons, Geographic, HttpHeaders,
      * @return true is named value is multivalued, false if single value or null
      */
     public boolean isMultiValued(final String name) {
-        return metadata.get(name) != null && metadata.get(name).length > 1;
+        Values values = metadata.get(name);
+        return values != null && values.size > 1;
     }
 
     /**
@@ -194,11 +236,11 @@ public class Metadata implements CreativeCommons, Geographic, HttpHeaders,
      * @return the value associated to the specified metadata name.
      */
     public String get(final String name) {
-        String[] values = metadata.get(name);
+        Values values = metadata.get(name);
         if (values == null) {
             return null;
         } else {
-            return values[0];
+            return values.get(0);
         }
     }
 
@@ -285,18 +327,11 @@ public class Metadata implements CreativeCommons, Geographic, HttpHeaders,
     }
 
     private String[] _getValues(final String name) {
-        String[] values = metadata.get(name);
+        Values values = metadata.get(name);
         if (values == null) {
-            values = new String[0];
+            return new String[0];
         }
-        return values;
-    }
-    
-    private String[] appendedValues(String[] values, final String value) {
-        String[] newValues = new String[values.length + 1];
-        System.arraycopy(values, 0, newValues, 0, values.length);
-        newValues[newValues.length - 1] = value;
-        return newValues;
+        return values.toArray();
     }
 
     /**
@@ -309,11 +344,11 @@ public class Metadata implements CreativeCommons, Geographic, HttpHeaders,
      *          the metadata value.
      */
     public void add(final String name, final String value) {
-        String[] values = metadata.get(name);
+        Values values = metadata.get(name);
         if (values == null) {
             set(name, value);
         } else {
-            metadata.put(name, appendedValues(values, value));
+            values.add(value);
         }
     }
     
@@ -327,15 +362,17 @@ public class Metadata implements CreativeCommons, Geographic, HttpHeaders,
      *          the metadata value.
      */
     public void add(final Property property, final String value) {
-        String[] values = metadata.get(property.getName());
+        Values values = metadata.get(property.getName());
         if (values == null) {
             set(property, value);
+        } else if (!property.isMultiValuePermitted()) {
+            throw new PropertyTypeException(property.getPropertyType());
+        } else if (property.getPropertyType() == PropertyType.COMPOSITE) {
+            String[] appended = Arrays.copyOf(values.toArray(), values.size + 1);
+            appended[values.size] = value;
+            set(property, appended);
         } else {
-             if (property.isMultiValuePermitted()) {
-                 set(property, appendedValues(values, value));
-             } else {
-                 throw new PropertyTypeException(property.getPropertyType());
-             }
+            values.add(value);
         }
     }
 
@@ -351,7 +388,7 @@ public class Metadata implements CreativeCommons, Geographic, HttpHeaders,
             (Enumeration<String>) properties.propertyNames();
         while (names.hasMoreElements()) {
             String name = names.nextElement();
-            metadata.put(name, new String[] { properties.getProperty(name) });
+            values(name).set(properties.getProperty(name));
         }
     }
 
@@ -366,7 +403,7 @@ public class Metadata implements CreativeCommons, Geographic, HttpHeaders,
      */
     public void set(String name, String value) {
         if (value != null) {
-            metadata.put(name, new String[] { value });
+            values(name).set(value);
         } else {
             metadata.remove(name);
         }
@@ -413,8 +450,10 @@ public class Metadata implements CreativeCommons, Geographic, HttpHeaders,
                     set(secondaryExtractProperty, values);
                 }
             }
+        } else if (values == null) {
+            metadata.remove(property.getName());
         } else {
-            metadata.put(property.getName(), values);
+            values(property.getName()).set(values);
         }
     }
 
@@ -559,4 +598,77 @@ public class Metadata implements CreativeCommons, Geographic, HttpHeaders,
         return buf.toString();
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        Map<String, String[]> map = new HashMap<String, String[]>();
+        for (Map.Entry<String, Values> entry : metadata.entrySet()) {
+            map.put(entry.getKey(), entry.getValue().toArray());
+        }
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("metadata", map);
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        Map<String, String[]> map =
+            (Map<String, String[]>) fields.get("metadata", null);
+        metadata = new HashMap<String, Values>();
+        if (map != null) {
+            for (Map.Entry<String, String[]> entry : map.entrySet()) {
+                values(entry.getKey()).set(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Growable list of the values of a metadata name. Values are appended
+     * in place, and the backing array is trimmed only when it is handed
+     * out by {@link Metadata#getValues(String)}. An array once handed out
+     * is never modified afterwards, as the next addition to a full array
+     * always copies it.
+     */
+    private static final class Values {
+
+        private static final String[] EMPTY = new String[0];
+
+        private String[] array = EMPTY;
+
+        private int size = 0;
+
+        String get(int index) {
+            if (index < size) {
+                return array[index];
+            } else {
+                return null;
+            }
+        }
+
+        void add(String value) {
+            if (size == array.length) {
+                array = Arrays.copyOf(array, Math.max(4, size * 2));
+            }
+            array[size++] = value;
+        }
+
+        void set(String value) {
+            array = new String[] { value };
+            size = 1;
+        }
+
+        void set(String[] values) {
+            array = values;
+            size = values.length;
+        }
+
+        String[] toArray() {
+            if (array.length != size) {
+                array = Arrays.copyOf(array, size);
+            }
+            return array;
+        }
+
+    }
+
 }
@@ -18,12 +18,12 @@ package org.apache.tika.metadata;
 
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * XMP property definition. Each instance of this class defines a single
@@ -56,7 +56,7 @@ public final class Property implements Comparable<Property> {
     }
 
     private static final Map<String, Property> properties =
-            new HashMap<String, Property>();
+            new ConcurrentHashMap<String, Property>();
 
     private final String name;
 
@@ -97,9 +97,7 @@ public final class Property implements Comparable<Property> {
             this.secondaryExtractProperties = null;
             
             // Only store primary properties for lookup, not composites
-            synchronized (properties) {
-               properties.put(name, this);
-           }
+            properties.put(name, this);
         }
     }
     
@@ -158,7 +156,7 @@ public final class Property implements Comparable<Property> {
      */
     public static PropertyType getPropertyType(String key) {
         PropertyType type = null;
-        Property prop = properties.get(key);
+        Property prop = get(key);
         if (prop != null) {
             type = prop.getPropertyType();
         }
@@ -171,9 +169,31 @@ public final class Property implements Comparable<Property> {
      * @return the Property object
      */
     public static Property get(String key) {
+        if (key == null) {
+            // The concurrent registry doesn't accept null keys
+            return null;
+        }
         return properties.get(key);
     }
 
+    /**
+     * Returns the canonical instance of the given property name, i.e. the
+     * name string of the matching registered property, so that metadata
+     * keys set by name share the strings of the property constants.
+     *
+     * @param key property name
+     * @return canonical name string, or the given key if no such
+     *         property has been defined
+     */
+    static String intern(String key) {
+        Property property = get(key);
+        if (property != null) {
+            return property.getName();
+        } else {
+            return key;
+        }
+    }
+
     public PropertyType getPropertyType() {
         return propertyType;
     }
@@ -214,11 +234,9 @@ public final class Property implements Comparable<Property> {
     public static SortedSet<Property> getProperties(String prefix) {
         SortedSet<Property> set = new TreeSet<Property>();
         String p = prefix + ":";
-        synchronized (properties) {
-            for (String name : properties.keySet()) {
-                if (name.startsWith(p)) {
-                    set.add(properties.get(name));
-                }
+        for (Map.Entry<String, Property> entry : properties.entrySet()) {
+            if (entry.getKey().startsWith(p)) {
+                set.add(entry.getValue());
             }
         }
         return set;
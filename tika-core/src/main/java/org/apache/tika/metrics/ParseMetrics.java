@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.sax.ContentHandlerDecorator;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * Collects timings, throughput and failure counts of parse operations,
+ * per parser class and per media type, along with the time spent in
+ * type detection and the number of bytes spooled into temporary files.
+ * <p>
+ * The {@link #getDefault() default instance} is fed automatically by
+ * {@link org.apache.tika.parser.CompositeParser},
+ * {@link org.apache.tika.parser.AutoDetectParser} and
+ * {@link org.apache.tika.io.TikaInputStream}. Since parsers of container
+ * formats parse their embedded documents from within their own parse
+ * call, the times and characters recorded for a container include those
+ * of its embedded documents. Use {@link #register()} to expose the
+ * metrics through JMX.
+ *
+ * @since Apache Tika 1.10
+ */
+public class ParseMetrics implements ParseMetricsMXBean {
+
+    /**
+     * Name under which the default instance is registered in the
+     * platform MBean server.
+     */
+    public static final String OBJECT_NAME =
+            "org.apache.tika:type=ParseMetrics";
+
+    private static final ParseMetrics DEFAULT = new ParseMetrics();
+
+    /**
+     * Per-thread allocation counter of the JVM, or <code>null</code> if
+     * this JVM does not support one.
+     */
+    private static final Method ALLOCATED_BYTES = getAllocatedBytesMethod();
+
+    /**
+     * Returns the instance fed by the Tika parsing components.
+     *
+     * @return default metrics
+     */
+    public static ParseMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    private volatile boolean enabled = true;
+
+    private volatile boolean allocationSampling = false;
+
+    private volatile Collectors collectors = new Collectors();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isAllocationSampling() {
+        return allocationSampling;
+    }
+
+    public void setAllocationSampling(boolean sampling) {
+        this.allocationSampling = sampling && ALLOCATED_BYTES != null;
+    }
+
+    /**
+     * Starts measuring an operation on the current thread.
+     *
+     * @return sample, or <code>null</code> if recording is disabled
+     */
+    public Sample start() {
+        if (enabled) {
+            return new Sample(allocationSampling);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Records a parse operation.
+     *
+     * @param sample sample returned by {@link #start()}, or
+     *               <code>null</code> to record nothing
+     * @param parser parser class
+     * @param type media type of the document, or <code>null</code>
+     * @param bytes number of bytes read from the document
+     * @param failed whether parsing ended with an exception
+     */
+    public void recordParse(
+            Sample sample, Class<?> parser, MediaType type,
+            long bytes, boolean failed) {
+        if (sample == null) {
+            return;
+        }
+        long time = sample.getElapsedTime();
+        long allocated = sample.getAllocatedBytes();
+        Collectors c = collectors;
+        get(c.parsers, parser.getName()).record(
+                time, bytes, sample.characters, allocated, failed);
+        String name = type != null ? type.getBaseType().toString() : "unknown";
+        get(c.types, name).record(
+                time, bytes, sample.characters, allocated, failed);
+    }
+
+    /**
+     * Records a type detection.
+     *
+     * @param sample sample returned by {@link #start()}, or
+     *               <code>null</code> to record nothing
+     * @param failed whether detection ended with an exception
+     */
+    public void recordDetection(Sample sample, boolean failed) {
+        if (sample != null) {
+            collectors.detection.record(
+                    sample.getElapsedTime(), 0, 0,
+                    sample.getAllocatedBytes(), failed);
+        }
+    }
+
+    /**
+     * Records bytes spooled into a temporary file.
+     *
+     * @param bytes number of bytes
+     */
+    public void addTemporaryFileBytes(long bytes) {
+        if (enabled) {
+            collectors.temporaryFileBytes.addAndGet(bytes);
+        }
+    }
+
+    public Map<String, ParseStatistics> getParserStatistics() {
+        return getStatistics(collectors.parsers);
+    }
+
+    public Map<String, ParseStatistics> getMediaTypeStatistics() {
+        return getStatistics(collectors.types);
+    }
+
+    public ParseStatistics getDetectionStatistics() {
+        return collectors.detection.getStatistics();
+    }
+
+    public long getTemporaryFileBytes() {
+        return collectors.temporaryFileBytes.get();
+    }
+
+    public void reset() {
+        collectors = new Collectors();
+    }
+
+    /**
+     * Registers this instance in the platform MBean server under
+     * {@link #OBJECT_NAME}.
+     *
+     * @return registered name
+     * @throws JMException if the registration fails, for example because
+     *                     the name is already taken
+     */
+    public ObjectName register() throws JMException {
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        return name;
+    }
+
+    /**
+     * Removes this instance from the platform MBean server, if it is
+     * registered under {@link #OBJECT_NAME}.
+     *
+     * @throws JMException if the registration can not be removed
+     */
+    public void unregister() throws JMException {
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+    }
+
+    /**
+     * Returns a multi-line report of all the statistics, with one line
+     * per parser class and media type.
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append("Detection: ");
+        report.append(getDetectionStatistics());
+        report.append("\nTemporary file bytes: ");
+        report.append(getTemporaryFileBytes());
+        for (Map.Entry<String, ParseStatistics> entry
+                : getParserStatistics().entrySet()) {
+            report.append("\nParser ").append(entry.getKey());
+            report.append(": ").append(entry.getValue());
+        }
+        for (Map.Entry<String, ParseStatistics> entry
+                : getMediaTypeStatistics().entrySet()) {
+            report.append("\nType ").append(entry.getKey());
+            report.append(": ").append(entry.getValue());
+        }
+        return report.toString();
+    }
+
+    private static StatisticsCollector get(
+            ConcurrentMap<String, StatisticsCollector> map, String key) {
+        StatisticsCollector collector = map.get(key);
+        if (collector == null) {
+            collector = new StatisticsCollector();
+            StatisticsCollector previous = map.putIfAbsent(key, collector);
+            if (previous != null) {
+                collector = previous;
+            }
+        }
+        return collector;
+    }
+
+    private static Map<String, ParseStatistics> getStatistics(
+            Map<String, StatisticsCollector> map) {
+        Map<String, ParseStatistics> statistics =
+                new TreeMap<String, ParseStatistics>();
+        for (Map.Entry<String, StatisticsCollector> entry : map.entrySet()) {
+            statistics.put(entry.getKey(), entry.getValue().getStatistics());
+        }
+        return statistics;
+    }
+
+    private static Method getAllocatedBytesMethod() {
+        try {
+            Object bean = ManagementFactory.getThreadMXBean();
+            Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+            if (type.isInstance(bean)) {
+                Method method =
+                        type.getMethod("getThreadAllocatedBytes", long.class);
+                Object bytes = method.invoke(
+                        bean, Thread.currentThread().getId());
+                if (bytes instanceof Long && (Long) bytes >= 0) {
+                    return method;
+                }
+            }
+        } catch (Throwable t) {
+            // Not supported by this JVM
+        }
+        return null;
+    }
+
+    private static long getCurrentThreadAllocatedBytes() {
+        try {
+            Object bytes = ALLOCATED_BYTES.invoke(
+                    ManagementFactory.getThreadMXBean(),
+                    Thread.currentThread().getId());
+            return (Long) bytes;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The collectors that {@link #reset()} replaces at once.
+     */
+    private static class Collectors {
+
+        private final ConcurrentMap<String, StatisticsCollector> parsers =
+                new ConcurrentHashMap<String, StatisticsCollector>();
+
+        private final ConcurrentMap<String, StatisticsCollector> types =
+                new ConcurrentHashMap<String, StatisticsCollector>();
+
+        private final StatisticsCollector detection =
+                new StatisticsCollector();
+
+        private final AtomicLong temporaryFileBytes = new AtomicLong();
+
+    }
+
+    /**
+     * Measurement of a single operation on the thread that started it.
+     */
+    public static final class Sample {
+
+        private final long startTime = System.nanoTime();
+
+        private final long startAllocated;
+
+        private long characters = 0;
+
+        private Sample(boolean allocationSampling) {
+            if (allocationSampling) {
+                startAllocated = getCurrentThreadAllocatedBytes();
+            } else {
+                startAllocated = -1;
+            }
+        }
+
+        private long getElapsedTime() {
+            return System.nanoTime() - startTime;
+        }
+
+        private long getAllocatedBytes() {
+            if (startAllocated >= 0) {
+                long allocated = getCurrentThreadAllocatedBytes();
+                if (allocated >= startAllocated) {
+                    return allocated - startAllocated;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Decorates the given content handler to count the text
+         * characters written through it for this sample.
+         *
+         * @param handler content handler
+         * @return decorated content handler
+         */
+        public ContentHandler countCharacters(ContentHandler handler) {
+            return new ContentHandlerDecorator(handler) {
+                @Override
+                public void characters(char[] ch, int start, int length)
+                        throws SAXException {
+                    characters += length;
+                    super.characters(ch, start, length);
+                }
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link ParseMetrics}.
+ *
+ * @since Apache Tika 1.10
+ */
+public interface ParseMetricsMXBean {
+
+    /**
+     * Returns <code>true</code> if parse operations are being recorded.
+     */
+    boolean isEnabled();
+
+    /**
+     * Enables or disables the recording of parse operations.
+     *
+     * @param enabled whether to record parse operations
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Returns <code>true</code> if the bytes allocated by the parsing
+     * threads are being sampled.
+     */
+    boolean isAllocationSampling();
+
+    /**
+     * Enables or disables the sampling of the bytes allocated by the
+     * parsing threads. Sampling is only supported on JVMs that measure
+     * per-thread allocation, and is disabled by default.
+     *
+     * @param sampling whether to sample allocations
+     */
+    void setAllocationSampling(boolean sampling);
+
+    /**
+     * Returns the statistics per parser class.
+     *
+     * @return parser class names mapped to statistics
+     */
+    Map<String, ParseStatistics> getParserStatistics();
+
+    /**
+     * Returns the statistics per media type.
+     *
+     * @return media types mapped to statistics
+     */
+    Map<String, ParseStatistics> getMediaTypeStatistics();
+
+    /**
+     * Returns the statistics of type detection.
+     */
+    ParseStatistics getDetectionStatistics();
+
+    /**
+     * Returns the number of bytes spooled into temporary files.
+     */
+    long getTemporaryFileBytes();
+
+    /**
+     * Discards all the statistics collected so far.
+     */
+    void reset();
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.metrics;
+
+import java.util.Locale;
+
+/**
+ * Snapshot of the statistics collected by {@link ParseMetrics} for a
+ * single parser class, media type or detection. Times are given in
+ * milliseconds. The time percentiles are estimated from a histogram
+ * whose bucket limits grow in powers of two, starting at one microsecond.
+ *
+ * @since Apache Tika 1.10
+ */
+public class ParseStatistics {
+
+    /**
+     * Number of histogram buckets. Bucket 0 counts durations below one
+     * microsecond, and bucket <code>i</code> those from
+     * 2<sup>i-1</sup> up to 2<sup>i</sup> microseconds. The last bucket
+     * also counts all longer durations.
+     */
+    static final int BUCKETS = 40;
+
+    private final long count;
+
+    private final long exceptions;
+
+    /** Total time, in nanoseconds */
+    private final long totalTime;
+
+    /** Maximum time, in nanoseconds */
+    private final long maxTime;
+
+    private final long bytes;
+
+    private final long characters;
+
+    private final long allocatedBytes;
+
+    private final long[] histogram;
+
+    ParseStatistics(
+            long count, long exceptions, long totalTime, long maxTime,
+            long bytes, long characters, long allocatedBytes,
+            long[] histogram) {
+        this.count = count;
+        this.exceptions = exceptions;
+        this.totalTime = totalTime;
+        this.maxTime = maxTime;
+        this.bytes = bytes;
+        this.characters = characters;
+        this.allocatedBytes = allocatedBytes;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Returns the histogram bucket of the given duration.
+     *
+     * @param micros duration, in microseconds
+     * @return bucket index
+     */
+    static int getBucket(long micros) {
+        if (micros <= 0) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * Returns the exclusive upper limit of the given histogram bucket.
+     *
+     * @param bucket bucket index
+     * @return bucket limit, in microseconds
+     */
+    public static long getBucketLimit(int bucket) {
+        return 1L << bucket;
+    }
+
+    /**
+     * Returns the number of recorded operations.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of recorded operations that ended with an
+     * exception.
+     */
+    public long getExceptions() {
+        return exceptions;
+    }
+
+    /**
+     * Returns the total time of all the recorded operations.
+     */
+    public double getTotalTime() {
+        return totalTime / 1000000.0;
+    }
+
+    /**
+     * Returns the mean time of the recorded operations, or zero if
+     * nothing has been recorded.
+     */
+    public double getMeanTime() {
+        if (count > 0) {
+            return totalTime / 1000000.0 / count;
+        } else {
+            return 0.0;
+        }
+    }
+
+    /**
+     * Returns the time of the slowest recorded operation.
+     */
+    public double getMaxTime() {
+        return maxTime / 1000000.0;
+    }
+
+    /**
+     * Returns the estimated median time of the recorded operations.
+     */
+    public double getMedianTime() {
+        return getTimePercentile(50);
+    }
+
+    /**
+     * Returns the estimated 95th percentile of the recorded times.
+     */
+    public double getP95Time() {
+        return getTimePercentile(95);
+    }
+
+    /**
+     * Returns the estimated 99th percentile of the recorded times.
+     */
+    public double getP99Time() {
+        return getTimePercentile(99);
+    }
+
+    /**
+     * Estimates the given percentile of the recorded times, by linear
+     * interpolation within the matching histogram bucket.
+     *
+     * @param percentile percentile, between 0 and 100
+     * @return estimated time, or zero if nothing has been recorded
+     */
+    public double getTimePercentile(double percentile) {
+        long total = 0;
+        for (long n : histogram) {
+            total += n;
+        }
+        if (total == 0) {
+            return 0.0;
+        }
+
+        double rank = Math.max(1.0, Math.ceil(total * percentile / 100.0));
+        long before = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            if (before + histogram[i] >= rank) {
+                double lower = i > 0 ? getBucketLimit(i - 1) : 0;
+                double upper = getBucketLimit(i);
+                double micros = lower
+                        + (upper - lower) * (rank - before) / histogram[i];
+                return Math.min(micros / 1000.0, getMaxTime());
+            }
+            before += histogram[i];
+        }
+        return getMaxTime();
+    }
+
+    /**
+     * Returns the counts of the histogram buckets.
+     *
+     * @return copy of the bucket counts
+     * @see #getBucketLimit(int)
+     */
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    /**
+     * Returns the number of bytes read from the documents.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of text characters written to the content
+     * handlers.
+     */
+    public long getCharacters() {
+        return characters;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the parsing threads, or
+     * -1 if allocation sampling was not enabled.
+     *
+     * @see ParseMetrics#setAllocationSampling(boolean)
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        String s = String.format(
+                Locale.ROOT,
+                "count=%d exceptions=%d mean=%.3fms median=%.3fms"
+                + " p95=%.3fms p99=%.3fms max=%.3fms"
+                + " bytes=%d characters=%d",
+                count, exceptions, getMeanTime(), getMedianTime(),
+                getP95Time(), getP99Time(), getMaxTime(),
+                bytes, characters);
+        if (allocatedBytes >= 0) {
+            s += " allocated=" + allocatedBytes;
+        }
+        return s;
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe accumulator behind a {@link ParseStatistics} snapshot.
+ * Durations are kept in a histogram with power-of-two microsecond
+ * buckets, so recording a sample is a handful of atomic additions.
+ */
+class StatisticsCollector {
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong exceptions = new AtomicLong();
+
+    private final AtomicLong totalTime = new AtomicLong();
+
+    private final AtomicLong maxTime = new AtomicLong();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final AtomicLong characters = new AtomicLong();
+
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    private final AtomicLong allocationSamples = new AtomicLong();
+
+    private final AtomicLongArray histogram =
+            new AtomicLongArray(ParseStatistics.BUCKETS);
+
+    /**
+     * Records a single sample.
+     *
+     * @param time elapsed time, in nanoseconds
+     * @param bytes bytes read, or zero
+     * @param characters characters written, or zero
+     * @param allocated bytes allocated, or -1 if not sampled
+     * @param failed whether the operation ended with an exception
+     */
+    void record(
+            long time, long bytes, long characters,
+            long allocated, boolean failed) {
+        count.incrementAndGet();
+        if (failed) {
+            exceptions.incrementAndGet();
+        }
+        totalTime.addAndGet(time);
+        long max = maxTime.get();
+        while (time > max && !maxTime.compareAndSet(max, time)) {
+            max = maxTime.get();
+        }
+        histogram.incrementAndGet(ParseStatistics.getBucket(time / 1000));
+        if (bytes > 0) {
+            this.bytes.addAndGet(bytes);
+        }
+        if (characters > 0) {
+            this.characters.addAndGet(characters);
+        }
+        if (allocated >= 0) {
+            allocatedBytes.addAndGet(allocated);
+            allocationSamples.incrementAndGet();
+        }
+    }
+
+    ParseStatistics getStatistics() {
+        long[] buckets = new long[histogram.length()];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = histogram.get(i);
+        }
+        long allocated = -1;
+        if (allocationSamples.get() > 0) {
+            allocated = allocatedBytes.get();
+        }
+        return new ParseStatistics(
+                count.get(), exceptions.get(),
+                totalTime.get(), maxTime.get(),
+                bytes.get(), characters.get(), allocated, buckets);
+    }
+
+}
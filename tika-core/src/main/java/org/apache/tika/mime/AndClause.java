@@ -43,6 +43,10 @@ class AndClause implements Clause {
         return size;
     }
 
+    Clause[] getClauses() {
+        return clauses;
+    }
+
     public String toString() {
         return "and" + Arrays.toString(clauses);
     }
@@ -0,0 +1,321 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.mime;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.tika.detect.MagicDetector;
+
+/**
+ * Compiled index of a sorted list of magics. Every magic whose clauses
+ * can only match when some byte in a fixed offset window has one of a
+ * known set of values is indexed under that window and those byte values.
+ * A single scan over the indexed windows of a document prefix then finds
+ * the few magics that can possibly match, and only those (plus the magics
+ * that could not be indexed, such as pure regular expression matches) are
+ * evaluated. Evaluation still happens in the original priority order, so
+ * the results are exactly the same as when evaluating every magic in turn.
+ * <p>
+ * Instances are immutable and can be safely shared between threads.
+ */
+class MagicIndex {
+
+    /**
+     * Shared trigger list of byte values that trigger no magics.
+     */
+    private static final int[] NO_MAGICS = new int[0];
+
+    /**
+     * All the indexed magics, in priority order.
+     */
+    private final Magic[] magics;
+
+    /**
+     * Flags for the magics that only need to be evaluated when triggered
+     * by one of the {@link #windows}. Magics without the flag are always
+     * evaluated.
+     */
+    private final boolean[] anchored;
+
+    /**
+     * Offset windows of the document prefix that trigger the anchored
+     * magics.
+     */
+    private final Window[] windows;
+
+    MagicIndex(List<Magic> sorted) {
+        this.magics = sorted.toArray(new Magic[sorted.size()]);
+        this.anchored = new boolean[magics.length];
+
+        Map<String, WindowBuilder> builders =
+                new LinkedHashMap<String, WindowBuilder>();
+        for (int i = 0; i < magics.length; i++) {
+            List<MagicDetector> anchors = getAnchors(magics[i].getClause());
+            if (anchors != null) {
+                anchored[i] = true;
+                for (MagicDetector anchor : anchors) {
+                    int begin = anchor.getOffsetRangeBegin();
+                    int end = anchor.getOffsetRangeEnd();
+                    String key = begin + ":" + end;
+                    WindowBuilder builder = builders.get(key);
+                    if (builder == null) {
+                        builder = new WindowBuilder(begin, end);
+                        builders.put(key, builder);
+                    }
+                    for (int value = 0; value < 256; value++) {
+                        if (anchor.matchesFirstByte(value)) {
+                            builder.add(value, i);
+                        }
+                    }
+                }
+            }
+        }
+
+        this.windows = new Window[builders.size()];
+        int w = 0;
+        for (WindowBuilder builder : builders.values()) {
+            windows[w++] = builder.build();
+        }
+    }
+
+    private MagicIndex(Magic[] magics, boolean[] anchored, Window[] windows) {
+        this.magics = magics;
+        this.anchored = anchored;
+        this.windows = windows;
+    }
+
+    /**
+     * Returns all the indexed magics, in priority order.
+     */
+    Magic[] getMagics() {
+        return magics;
+    }
+
+    /**
+     * Writes the compiled windows of this index. The magics themselves
+     * are not written, they are referred to by their position.
+     *
+     * @see MimeTypesImage
+     */
+    void write(DataOutputStream output) throws IOException {
+        for (boolean a : anchored) {
+            output.writeBoolean(a);
+        }
+        output.writeInt(windows.length);
+        for (Window window : windows) {
+            output.writeInt(window.begin);
+            output.writeInt(window.end);
+            for (int[] triggers : window.triggers) {
+                output.writeShort(triggers.length);
+                for (int i : triggers) {
+                    output.writeShort(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #write(DataOutputStream)}.
+     *
+     * @param input compiled windows
+     * @param magics the same sorted magics as those of the written index
+     */
+    static MagicIndex read(DataInputStream input, Magic[] magics)
+            throws IOException {
+        boolean[] anchored = new boolean[magics.length];
+        for (int i = 0; i < anchored.length; i++) {
+            anchored[i] = input.readBoolean();
+        }
+        Window[] windows = new Window[input.readInt()];
+        for (int w = 0; w < windows.length; w++) {
+            int begin = input.readInt();
+            int end = input.readInt();
+            int[][] triggers = new int[256][];
+            for (int value = 0; value < 256; value++) {
+                int n = input.readUnsignedShort();
+                if (n == 0) {
+                    triggers[value] = NO_MAGICS;
+                } else {
+                    triggers[value] = new int[n];
+                    for (int i = 0; i < n; i++) {
+                        triggers[value][i] = input.readUnsignedShort();
+                    }
+                }
+            }
+            windows[w] = new Window(begin, end, triggers);
+        }
+        return new MagicIndex(magics, anchored, windows);
+    }
+
+    /**
+     * Returns the types of the highest priority magics that match the
+     * given document prefix, or an empty list if none match.
+     *
+     * @param data first few bytes of a document stream
+     * @return matching MIME types
+     */
+    List<MimeType> eval(byte[] data) {
+        boolean[] triggered = new boolean[magics.length];
+        for (Window window : windows) {
+            window.trigger(data, triggered);
+        }
+
+        List<MimeType> result = new ArrayList<MimeType>(1);
+        int currentPriority = -1;
+        for (int i = 0; i < magics.length; i++) {
+            Magic magic = magics[i];
+            if (currentPriority > 0 && currentPriority > magic.getPriority()) {
+                break;
+            }
+            if ((triggered[i] || !anchored[i]) && magic.eval(data)) {
+                result.add(magic.getType());
+                currentPriority = magic.getPriority();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the leaf matches of the given clause one of which must have
+     * its first byte matched for the clause to match, or <code>null</code>
+     * if no such set of matches can be determined.
+     */
+    private static List<MagicDetector> getAnchors(Clause clause) {
+        if (clause instanceof MagicMatch) {
+            MagicDetector detector = ((MagicMatch) clause).getDetector();
+            if (detector.isRegex() || detector.getLength() == 0) {
+                return null;
+            }
+            return Collections.singletonList(detector);
+        } else if (clause instanceof AndClause) {
+            // Any single part of a conjunction is a necessary condition
+            for (Clause part : ((AndClause) clause).getClauses()) {
+                List<MagicDetector> anchors = getAnchors(part);
+                if (anchors != null) {
+                    return anchors;
+                }
+            }
+            return null;
+        } else if (clause instanceof OrClause) {
+            // All the alternatives of a disjunction need to be anchored
+            List<MagicDetector> anchors = new ArrayList<MagicDetector>();
+            for (Clause part : ((OrClause) clause).getClauses()) {
+                List<MagicDetector> partAnchors = getAnchors(part);
+                if (partAnchors == null) {
+                    return null;
+                }
+                anchors.addAll(partAnchors);
+            }
+            return anchors;
+        } else if (clause instanceof Magic) {
+            return getAnchors(((Magic) clause).getClause());
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Range of offsets at which the indexed magics can start to match,
+     * with the magics triggered by each byte value.
+     */
+    private static class Window {
+
+        private final int begin;
+
+        private final int end;
+
+        private final int[][] triggers;
+
+        Window(int begin, int end, int[][] triggers) {
+            this.begin = begin;
+            this.end = end;
+            this.triggers = triggers;
+        }
+
+        void trigger(byte[] data, boolean[] triggered) {
+            int last = Math.min(end, data.length - 1);
+            for (int offset = begin; offset <= last; offset++) {
+                for (int i : triggers[data[offset] & 0xff]) {
+                    triggered[i] = true;
+                }
+            }
+            // Magic detection treats bytes past the end of the prefix as
+            // zeros, so a window reaching beyond the prefix also sees those
+            if (end >= data.length) {
+                for (int i : triggers[0]) {
+                    triggered[i] = true;
+                }
+            }
+        }
+
+    }
+
+    private static class WindowBuilder {
+
+        private final int begin;
+
+        private final int end;
+
+        private final List<List<Integer>> triggers =
+                new ArrayList<List<Integer>>(256);
+
+        WindowBuilder(int begin, int end) {
+            this.begin = begin;
+            this.end = end;
+            for (int value = 0; value < 256; value++) {
+                triggers.add(null);
+            }
+        }
+
+        void add(int value, int magic) {
+            List<Integer> magics = triggers.get(value);
+            if (magics == null) {
+                magics = new ArrayList<Integer>();
+                triggers.set(value, magics);
+            }
+            // Magics are added in order, so duplicates are always adjacent
+            if (magics.isEmpty() || magics.get(magics.size() - 1) != magic) {
+                magics.add(magic);
+            }
+        }
+
+        Window build() {
+            int[][] compiled = new int[256][];
+            for (int value = 0; value < 256; value++) {
+                List<Integer> magics = triggers.get(value);
+                if (magics == null) {
+                    compiled[value] = NO_MAGICS;
+                } else {
+                    compiled[value] = new int[magics.size()];
+                    for (int i = 0; i < magics.size(); i++) {
+                        compiled[value][i] = magics.get(i);
+                    }
+                }
+            }
+            return new Window(begin, end, compiled);
+        }
+
+    }
+
+}
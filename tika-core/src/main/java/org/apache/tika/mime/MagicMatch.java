@@ -16,11 +16,7 @@
  */
 package org.apache.tika.mime;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-
 import org.apache.tika.detect.MagicDetector;
-import org.apache.tika.metadata.Metadata;
 
 /**
  * Defines a magic match.
@@ -37,7 +33,7 @@ class MagicMatch implements Clause {
 
     private final String mask;
 
-    private MagicDetector detector = null;
+    private transient volatile MagicDetector detector = null;
 
     MagicMatch(
             MediaType mediaType,
@@ -49,22 +45,37 @@ class MagicMatch implements Clause {
         this.mask = mask;
     }
 
-    private synchronized MagicDetector getDetector() {
-        if (detector == null) {
-            detector = MagicDetector.parse(mediaType, type, offset, value, mask);
+    String getType() {
+        return type;
+    }
+
+    String getOffset() {
+        return offset;
+    }
+
+    String getValue() {
+        return value;
+    }
+
+    String getMask() {
+        return mask;
+    }
+
+    /**
+     * Returns the detector of this match. The detector is immutable, so
+     * if two threads race to create it the extra instance is harmless.
+     */
+    MagicDetector getDetector() {
+        MagicDetector d = detector;
+        if (d == null) {
+            d = MagicDetector.parse(mediaType, type, offset, value, mask);
+            detector = d;
         }
-        return detector;
+        return d;
     }
 
     public boolean eval(byte[] data) {
-        try {
-            return getDetector().detect(
-                    new ByteArrayInputStream(data), new Metadata())
-                    != MediaType.OCTET_STREAM;
-        } catch (IOException e) {
-            // Should never happen with a ByteArrayInputStream
-            return false;
-        }
+        return getDetector().matches(data);
     }
 
     public int size() {
@@ -100,6 +100,21 @@ public class MediaTypeRegistry implements Serializable {
         return children;
     }
 
+    /**
+     * Returns the registered canonical types and aliases, mapped to the
+     * corresponding canonical types.
+     */
+    Map<MediaType, MediaType> getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Returns the explicitly registered type inheritance relationships.
+     */
+    Map<MediaType, MediaType> getInheritance() {
+        return inheritance;
+    }
+
     public void addType(MediaType type) {
         registry.put(type, type);
     }
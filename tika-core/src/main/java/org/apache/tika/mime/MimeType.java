@@ -263,6 +263,14 @@ public final class MimeType implements Comparable<MimeType>, Serializable {
         return rootXML != null;
     }
 
+    List<RootXML> getRootXMLs() {
+        if (rootXML != null) {
+            return rootXML;
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
     List<Magic> getMagics() {
         if (magics != null) {
             return magics;
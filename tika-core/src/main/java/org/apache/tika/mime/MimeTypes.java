@@ -37,6 +37,7 @@ import org.apache.tika.Tika;
 import org.apache.tika.detect.Detector;
 import org.apache.tika.detect.TextDetector;
 import org.apache.tika.detect.XmlRootExtractor;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 
 /**
@@ -106,6 +107,9 @@ public final class MimeTypes implements Detector, Serializable {
     /** Sorted list of all registered magics */
     private final List<Magic> magics = new ArrayList<Magic>();
 
+    /** Compiled index of the registered magics, rebuilt when they change */
+    private transient volatile MagicIndex magicIndex = null;
+
     /** Sorted list of all registered rootXML */
     private final List<MimeType> xmls = new ArrayList<MimeType>();
 
@@ -181,17 +185,7 @@ public final class MimeTypes implements Detector, Serializable {
         }
 
         // Then, check for magic bytes
-        List<MimeType> result = new ArrayList<MimeType>(1);
-        int currentPriority = -1;
-        for (Magic magic : magics) {
-            if (currentPriority > 0 && currentPriority > magic.getPriority()) {
-                break;
-            }
-            if (magic.eval(data)) {
-                result.add(magic.getType());
-                currentPriority = magic.getPriority();
-            }
-        }
+        List<MimeType> result = getMagicIndex().eval(data);
  
         if (!result.isEmpty()) {
             for (int i=0; i<result.size(); i++) {
@@ -252,6 +246,13 @@ public final class MimeTypes implements Detector, Serializable {
             throw new IllegalArgumentException("InputStream is missing");
         }
 
+        TikaInputStream tis = TikaInputStream.cast(stream);
+        if (tis != null) {
+            // Copy the header straight from the file in one go, or share
+            // the prefix already read ahead by other detectors
+            return tis.peekBytes(getMinLength());
+        }
+
         byte[] bytes = new byte[getMinLength()];
         int totalRead = 0;
 
@@ -407,6 +408,7 @@ public final class MimeTypes implements Detector, Serializable {
         // Update the magics index...
         if (type.hasMagic()) {
             magics.addAll(type.getMagics());
+            magicIndex = null;
         }
 
         // Update the xml (xmlRoot) index...
@@ -417,7 +419,7 @@ public final class MimeTypes implements Detector, Serializable {
 
     /**
      * Called after all configured types have been loaded.
-     * Initializes the magics and xmls sets.
+     * Initializes the magics and xmls sets, and compiles the magics index.
      */
     void init() {
         for (MimeType type : types.values()) {
@@ -428,6 +430,54 @@ public final class MimeTypes implements Detector, Serializable {
         }
         Collections.sort(magics);
         Collections.sort(xmls);
+        magicIndex = new MagicIndex(magics);
+    }
+
+    /**
+     * Called after all types have been loaded from a pre-compiled image.
+     * Unlike {@link #init()} this neither sorts the magics nor compiles
+     * their index, as both come from the image.
+     *
+     * @param sorted all the magics, already sorted
+     * @param index compiled index of the sorted magics
+     * @see MimeTypesImage
+     */
+    void init(List<Magic> sorted, MagicIndex index) {
+        magics.addAll(sorted);
+        for (MimeType type : types.values()) {
+            if (type.hasRootXML()) {
+                xmls.add(type);
+            }
+        }
+        Collections.sort(xmls);
+        magicIndex = index;
+    }
+
+    /**
+     * Returns all the registered types, indexed on their canonical names.
+     */
+    Map<MediaType, MimeType> getTypes() {
+        return types;
+    }
+
+    /**
+     * Returns the file name patterns.
+     */
+    Patterns getPatterns() {
+        return patterns;
+    }
+
+    /**
+     * Returns the compiled index of the registered magics, building it
+     * if the magics have changed since the index was last built.
+     */
+    MagicIndex getMagicIndex() {
+        MagicIndex index = magicIndex;
+        if (index == null) {
+            index = new MagicIndex(magics);
+            magicIndex = index;
+        }
+        return index;
     }
 
     /**
@@ -448,7 +498,10 @@ public final class MimeTypes implements Detector, Serializable {
         List<MimeType> possibleTypes = null;
 
         // Get type based on magic prefix
-        if (input != null) {
+        if (input != null && TikaInputStream.cast(input) != null) {
+            // Peeking leaves the stream untouched, no need to mark it
+            possibleTypes = getMimeType(readMagicHeader(input));
+        } else if (input != null) {
             input.mark(getMinLength());
             try {
                 byte[] prefix = readMagicHeader(input);
@@ -162,6 +162,20 @@ public class MimeTypesFactory {
         List<URL> extensionURLs = Collections.list(
                 classLoader.getResources(classPrefix+extensionFilePath));
 
+        // Without custom types, use the pre-compiled image of the core
+        //  types if it is up to date, see MimeTypesImage
+        if (extensionURLs.isEmpty() && coreURL != null) {
+            URL imageURL = classLoader.getResource(
+                    classPrefix + MimeTypesImage.getImageName(coreFilePath));
+            if (imageURL != null) {
+                MimeTypes types = MimeTypesImage.read(
+                        imageURL, MimeTypesImage.getChecksum(coreURL));
+                if (types != null) {
+                    return types;
+                }
+            }
+        }
+
         // Swap that into an Array, and process
         List<URL> urls = new ArrayList<URL>();
         urls.add(coreURL);
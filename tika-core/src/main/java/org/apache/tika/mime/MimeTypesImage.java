@@ -0,0 +1,405 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.mime;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+
+/**
+ * Pre-compiled binary image of a fully built {@link MimeTypes} registry.
+ * Loading the image skips the XML parsing of the type definitions, the
+ * sorting of the magics and the compilation of the magic index, which
+ * otherwise dominate the time to the first type detection in a new JVM.
+ * <p>
+ * The image records the CRC-32 checksum of the XML definitions it was
+ * built from, and is ignored if the definitions have changed since.
+ * The image of the built-in <code>tika-mimetypes.xml</code> is kept
+ * next to it as <code>tika-mimetypes.image</code>, and is regenerated
+ * with:
+ * <pre>
+ * java -cp target/classes org.apache.tika.mime.MimeTypesImage \
+ *      src/main/resources/org/apache/tika/mime/tika-mimetypes.image
+ * </pre>
+ *
+ * @since Apache Tika 1.10
+ */
+class MimeTypesImage {
+
+    /** Identifies an image and its format version */
+    private static final long HEADER = 0x54696b614d494d01L; // "TikaMIM", 1
+
+    private static final byte MATCH = 1;
+
+    private static final byte AND = 2;
+
+    private static final byte OR = 3;
+
+    /**
+     * Returns the name of the image of the given type definitions file,
+     * with the ".xml" suffix replaced by ".image".
+     */
+    static String getImageName(String xmlName) {
+        if (xmlName.endsWith(".xml")) {
+            xmlName = xmlName.substring(0, xmlName.length() - 4);
+        }
+        return xmlName + ".image";
+    }
+
+    /**
+     * Returns the CRC-32 checksum of the given resource. The checksum of
+     * a jar file entry is taken from the jar directory, without reading
+     * the entry.
+     */
+    static long getChecksum(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        if (connection instanceof JarURLConnection) {
+            JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+            if (entry != null && entry.getCrc() != -1) {
+                return entry.getCrc();
+            }
+        }
+        CRC32 crc = new CRC32();
+        InputStream stream = connection.getInputStream();
+        try {
+            byte[] buffer = new byte[8192];
+            int n = stream.read(buffer);
+            while (n != -1) {
+                crc.update(buffer, 0, n);
+                n = stream.read(buffer);
+            }
+        } finally {
+            stream.close();
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Loads the image at the given location.
+     *
+     * @param image image location
+     * @param checksum checksum of the type definitions that the image
+     *                 must have been built from
+     * @return loaded types, or <code>null</code> if the image was built
+     *         from different type definitions or in a different format
+     * @throws IOException if the image can not be read
+     */
+    static MimeTypes read(URL image, long checksum) throws IOException {
+        DataInputStream input = new DataInputStream(
+                new BufferedInputStream(image.openStream(), 65536));
+        try {
+            if (input.readLong() != HEADER || input.readLong() != checksum) {
+                return null;
+            }
+            return read(input);
+        } catch (MimeTypeException e) {
+            throw new IOException("Invalid media type image: " + image, e);
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid media type image: " + image, e);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static MimeTypes read(DataInputStream input)
+            throws IOException, MimeTypeException, URISyntaxException {
+        MimeTypes types = new MimeTypes();
+        MediaTypeRegistry registry = types.getMediaTypeRegistry();
+
+        MimeType[] mimes = new MimeType[input.readInt()];
+        for (int i = 0; i < mimes.length; i++) {
+            MimeType mime = types.forName(input.readUTF());
+            mime.setDescription(input.readUTF());
+            mime.setAcronym(input.readUTF());
+            mime.setUniformTypeIdentifier(input.readUTF());
+            int links = input.readShort();
+            for (int j = 0; j < links; j++) {
+                mime.addLink(new URI(input.readUTF()));
+            }
+            int extensions = input.readShort();
+            for (int j = 0; j < extensions; j++) {
+                mime.addExtension(input.readUTF());
+            }
+            int xmls = input.readShort();
+            for (int j = 0; j < xmls; j++) {
+                mime.addRootXML(readString(input), readString(input));
+            }
+            mimes[i] = mime;
+        }
+
+        int aliases = input.readInt();
+        for (int i = 0; i < aliases; i++) {
+            MediaType alias = MediaType.parse(input.readUTF());
+            registry.addAlias(mimes[input.readInt()].getType(), alias);
+        }
+        int supertypes = input.readInt();
+        for (int i = 0; i < supertypes; i++) {
+            MediaType type = MediaType.parse(input.readUTF());
+            registry.addSuperType(type, MediaType.parse(input.readUTF()));
+        }
+
+        Patterns patterns = types.getPatterns();
+        int names = input.readInt();
+        for (int i = 0; i < names; i++) {
+            patterns.addName(input.readUTF(), mimes[input.readInt()]);
+        }
+        int extensions = input.readInt();
+        for (int i = 0; i < extensions; i++) {
+            patterns.addExtension(input.readUTF(), mimes[input.readInt()]);
+        }
+        int globs = input.readInt();
+        for (int i = 0; i < globs; i++) {
+            patterns.addGlob(input.readUTF(), mimes[input.readInt()]);
+        }
+
+        // Magics are stored in priority order, followed by the magics
+        // of each type in their original order
+        Magic[] magics = new Magic[input.readInt()];
+        for (int i = 0; i < magics.length; i++) {
+            MimeType mime = mimes[input.readInt()];
+            int priority = input.readInt();
+            magics[i] = new Magic(mime, priority, readClause(input, mime));
+        }
+        for (MimeType mime : mimes) {
+            int n = input.readShort();
+            for (int j = 0; j < n; j++) {
+                mime.addMagic(magics[input.readInt()]);
+            }
+        }
+
+        MagicIndex index = MagicIndex.read(input, magics);
+        types.init(Arrays.asList(magics), index);
+        return types;
+    }
+
+    private static Clause readClause(DataInputStream input, MimeType mime)
+            throws IOException {
+        byte kind = input.readByte();
+        if (kind == MATCH) {
+            return new MagicMatch(
+                    mime.getType(), readString(input), readString(input),
+                    readString(input), readString(input));
+        } else if (kind == AND) {
+            Clause[] clauses = new Clause[input.readShort()];
+            for (int i = 0; i < clauses.length; i++) {
+                clauses[i] = readClause(input, mime);
+            }
+            return new AndClause(clauses);
+        } else if (kind == OR) {
+            int n = input.readShort();
+            List<Clause> clauses = new ArrayList<Clause>(n);
+            for (int i = 0; i < n; i++) {
+                clauses.add(readClause(input, mime));
+            }
+            return new OrClause(clauses);
+        } else {
+            throw new IOException("Unknown magic clause: " + kind);
+        }
+    }
+
+    private static String readString(DataInputStream input)
+            throws IOException {
+        if (input.readBoolean()) {
+            return input.readUTF();
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the image of the given types. The output only depends on the
+     * registered types, so the same definitions always give the same image.
+     *
+     * @param types fully built types
+     * @param checksum checksum of the type definitions
+     * @param stream output stream, not closed
+     * @throws IOException if the image can not be written
+     */
+    static void write(MimeTypes types, long checksum, OutputStream stream)
+            throws IOException {
+        DataOutputStream output = new DataOutputStream(stream);
+        output.writeLong(HEADER);
+        output.writeLong(checksum);
+
+        Map<MimeType, Integer> ids = new HashMap<MimeType, Integer>();
+        MimeType[] mimes = new TreeMap<MediaType, MimeType>(
+                types.getTypes()).values().toArray(new MimeType[0]);
+        output.writeInt(mimes.length);
+        for (int i = 0; i < mimes.length; i++) {
+            MimeType mime = mimes[i];
+            ids.put(mime, i);
+            output.writeUTF(mime.getName());
+            output.writeUTF(mime.getDescription());
+            output.writeUTF(mime.getAcronym());
+            output.writeUTF(mime.getUniformTypeIdentifier());
+            output.writeShort(mime.getLinks().size());
+            for (URI link : mime.getLinks()) {
+                output.writeUTF(link.toString());
+            }
+            output.writeShort(mime.getExtensions().size());
+            for (String extension : mime.getExtensions()) {
+                output.writeUTF(extension);
+            }
+            output.writeShort(mime.getRootXMLs().size());
+            for (MimeType.RootXML xml : mime.getRootXMLs()) {
+                writeString(output, xml.getNameSpaceURI());
+                writeString(output, xml.getLocalName());
+            }
+        }
+
+        MediaTypeRegistry registry = types.getMediaTypeRegistry();
+        Map<String, Integer> aliases = new TreeMap<String, Integer>();
+        for (Map.Entry<MediaType, MediaType> entry
+                : registry.getRegistry().entrySet()) {
+            if (!entry.getKey().equals(entry.getValue())) {
+                aliases.put(entry.getKey().toString(),
+                        ids.get(types.getTypes().get(entry.getValue())));
+            }
+        }
+        output.writeInt(aliases.size());
+        for (Map.Entry<String, Integer> entry : aliases.entrySet()) {
+            output.writeUTF(entry.getKey());
+            output.writeInt(entry.getValue());
+        }
+        Map<String, String> supertypes = new TreeMap<String, String>();
+        for (Map.Entry<MediaType, MediaType> entry
+                : registry.getInheritance().entrySet()) {
+            supertypes.put(
+                    entry.getKey().toString(), entry.getValue().toString());
+        }
+        output.writeInt(supertypes.size());
+        for (Map.Entry<String, String> entry : supertypes.entrySet()) {
+            output.writeUTF(entry.getKey());
+            output.writeUTF(entry.getValue());
+        }
+
+        Patterns patterns = types.getPatterns();
+        writePatterns(output, patterns.getNames(), ids);
+        writePatterns(output, patterns.getExtensions(), ids);
+        writePatterns(output, patterns.getGlobs(), ids);
+
+        Magic[] magics = types.getMagicIndex().getMagics();
+        Map<Magic, Integer> magicIds = new IdentityHashMap<Magic, Integer>();
+        output.writeInt(magics.length);
+        for (int i = 0; i < magics.length; i++) {
+            Magic magic = magics[i];
+            magicIds.put(magic, i);
+            output.writeInt(ids.get(magic.getType()));
+            output.writeInt(magic.getPriority());
+            writeClause(output, magic.getClause());
+        }
+        for (MimeType mime : mimes) {
+            output.writeShort(mime.getMagics().size());
+            for (Magic magic : mime.getMagics()) {
+                output.writeInt(magicIds.get(magic));
+            }
+        }
+
+        types.getMagicIndex().write(output);
+        output.flush();
+    }
+
+    private static void writePatterns(
+            DataOutputStream output, Map<String, MimeType> patterns,
+            Map<MimeType, Integer> ids) throws IOException {
+        output.writeInt(patterns.size());
+        for (Map.Entry<String, MimeType> entry
+                : new TreeMap<String, MimeType>(patterns).entrySet()) {
+            output.writeUTF(entry.getKey());
+            output.writeInt(ids.get(entry.getValue()));
+        }
+    }
+
+    private static void writeClause(DataOutputStream output, Clause clause)
+            throws IOException {
+        if (clause instanceof MagicMatch) {
+            MagicMatch match = (MagicMatch) clause;
+            output.writeByte(MATCH);
+            writeString(output, match.getType());
+            writeString(output, match.getOffset());
+            writeString(output, match.getValue());
+            writeString(output, match.getMask());
+        } else if (clause instanceof AndClause) {
+            Clause[] clauses = ((AndClause) clause).getClauses();
+            output.writeByte(AND);
+            output.writeShort(clauses.length);
+            for (Clause part : clauses) {
+                writeClause(output, part);
+            }
+        } else if (clause instanceof OrClause) {
+            List<Clause> clauses = ((OrClause) clause).getClauses();
+            output.writeByte(OR);
+            output.writeShort(clauses.size());
+            for (Clause part : clauses) {
+                writeClause(output, part);
+            }
+        } else {
+            throw new IOException("Unsupported magic clause: " + clause);
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value)
+            throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    /**
+     * Builds the image of the built-in type definitions, without any
+     * custom types.
+     *
+     * @param args path of the image file to write
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: MimeTypesImage <image file>");
+            System.exit(1);
+        }
+        URL xml = MimeTypesImage.class.getResource("tika-mimetypes.xml");
+        MimeTypes types = MimeTypesFactory.create(xml);
+        OutputStream stream = new BufferedOutputStream(
+                new FileOutputStream(new File(args[0])));
+        try {
+            write(types, getChecksum(xml), stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+}
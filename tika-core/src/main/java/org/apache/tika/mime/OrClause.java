@@ -43,6 +43,10 @@ class OrClause implements Clause {
         return size;
     }
 
+    List<Clause> getClauses() {
+        return clauses;
+    }
+
     public String toString() {
         return "or" + clauses;
     }
@@ -17,11 +17,13 @@
 package org.apache.tika.mime;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.regex.Pattern;
 
 /**
  * Defines a MimeType pattern.
@@ -46,10 +48,6 @@ class Patterns implements Serializable {
     private final Map<String, MimeType> extensions =
         new HashMap<String, MimeType>();
 
-    private int minExtensionLength = Integer.MAX_VALUE;
-
-    private int maxExtensionLength = 0;
-
     /**
      * Index of generic glob patterns, sorted by length.
      */
@@ -74,6 +72,12 @@ class Patterns implements Serializable {
 
     }
 
+    /**
+     * Matcher compiled from the extension and glob patterns on first use,
+     * or <code>null</code> if patterns have been added since.
+     */
+    private transient volatile Matcher matcher = null;
+
     public Patterns(MediaTypeRegistry registry) {
         this.registry = registry;
     }
@@ -109,7 +113,7 @@ class Patterns implements Serializable {
         }
     }
     
-    private void addName(String name, MimeType type) throws MimeTypeException {
+    void addName(String name, MimeType type) throws MimeTypeException {
         MimeType previous = names.get(name);
         if (previous == null
                 || registry.isSpecializationOf(previous.getType(), type.getType())) {
@@ -122,15 +126,13 @@ class Patterns implements Serializable {
         }
     }
 
-    private void addExtension(String extension, MimeType type)
+    void addExtension(String extension, MimeType type)
             throws MimeTypeException {
         MimeType previous = extensions.get(extension);
         if (previous == null
                 || registry.isSpecializationOf(previous.getType(), type.getType())) {
             extensions.put(extension, type);
-            int length = extension.length();
-            minExtensionLength = Math.min(minExtensionLength, length);
-            maxExtensionLength = Math.max(maxExtensionLength, length);
+            matcher = null;
         } else if (previous == type
                 || registry.isSpecializationOf(type.getType(), previous.getType())) {
             // do nothing
@@ -140,12 +142,13 @@ class Patterns implements Serializable {
         }
     }
 
-    private void addGlob(String glob, MimeType type)
+    void addGlob(String glob, MimeType type)
             throws MimeTypeException {
         MimeType previous = globs.get(glob);
         if (previous == null
                 || registry.isSpecializationOf(previous.getType(), type.getType())) {
             globs.put(glob, type);
+            matcher = null;
         } else if (previous == type
                 || registry.isSpecializationOf(type.getType(), previous.getType())) {
             // do nothing
@@ -154,6 +157,27 @@ class Patterns implements Serializable {
         }
     }
 
+    /**
+     * Returns the exact name patterns.
+     */
+    Map<String, MimeType> getNames() {
+        return names;
+    }
+
+    /**
+     * Returns the extension patterns, without the leading "*".
+     */
+    Map<String, MimeType> getExtensions() {
+        return extensions;
+    }
+
+    /**
+     * Returns the generic glob patterns, compiled to regular expressions.
+     */
+    Map<String, MimeType> getGlobs() {
+        return globs;
+    }
+
     /**
      * Find the MimeType corresponding to a resource name.
      * 
@@ -178,23 +202,19 @@ class Patterns implements Serializable {
             return names.get(name);
         }
 
-        // Then try "extension" (*.xxx) matching
-        int maxLength = Math.min(maxExtensionLength, name.length());
-        for (int n = maxLength; n >= minExtensionLength; n--) {
-            String extension = name.substring(name.length() - n);
-            if (extensions.containsKey(extension)) {
-                return extensions.get(extension);
-            }
+        Matcher matcher = this.matcher;
+        if (matcher == null) {
+            matcher = new Matcher(extensions, globs);
+            this.matcher = matcher;
         }
 
-        // And finally, try complex regexp matching
-        for (Map.Entry<String, MimeType> entry : globs.entrySet()) {
-            if (name.matches(entry.getKey())) {
-                return entry.getValue();
-            }
+        // Then try "extension" (*.xxx) matching, and finally the more
+        // complex glob and regexp patterns
+        MimeType type = matcher.matchExtension(name);
+        if (type == null) {
+            type = matcher.matchGlob(name);
         }
-
-        return null;
+        return type;
     }
 
     private String compile(String glob) {
@@ -217,4 +237,238 @@ class Patterns implements Serializable {
         return pattern.toString();
     }
 
+    /**
+     * Compiled form of the extension and glob patterns. Extensions are
+     * kept in a trie of reversed extensions, so that the longest matching
+     * extension is found in a single backwards scan of the name. Globs
+     * that only use the <code>*</code> and <code>?</code> wildcards are
+     * matched directly, and only the remaining Java regular expressions
+     * go through {@link Pattern}. Globs are tried in the same order as
+     * in the sorted glob index, so the longest pattern still wins.
+     */
+    private static final class Matcher {
+
+        /**
+         * Sorted child characters of each trie node.
+         */
+        private final char[][] keys;
+
+        /**
+         * Child node indexes of each trie node, parallel to {@link #keys}.
+         */
+        private final int[][] children;
+
+        /**
+         * Type of the extension ending at each trie node, if any.
+         */
+        private final MimeType[] types;
+
+        /**
+         * Wildcard globs, or <code>null</code> for regular expressions.
+         */
+        private final String[] wildcards;
+
+        /**
+         * Compiled regular expressions, or <code>null</code> for wildcards.
+         */
+        private final Pattern[] patterns;
+
+        private final MimeType[] globTypes;
+
+        Matcher(Map<String, MimeType> extensions,
+                SortedMap<String, MimeType> globs) {
+            TrieNode root = new TrieNode();
+            int count = 1;
+            for (Map.Entry<String, MimeType> entry : extensions.entrySet()) {
+                String extension = entry.getKey();
+                TrieNode node = root;
+                for (int i = extension.length() - 1; i >= 0; i--) {
+                    Character ch = extension.charAt(i);
+                    TrieNode child = node.children.get(ch);
+                    if (child == null) {
+                        child = new TrieNode();
+                        node.children.put(ch, child);
+                        count++;
+                    }
+                    node = child;
+                }
+                node.type = entry.getValue();
+            }
+            keys = new char[count][];
+            children = new int[count][];
+            types = new MimeType[count];
+            flatten(root, 0, 1);
+
+            int n = globs.size();
+            wildcards = new String[n];
+            patterns = new Pattern[n];
+            globTypes = new MimeType[n];
+            int i = 0;
+            for (Map.Entry<String, MimeType> entry : globs.entrySet()) {
+                wildcards[i] = toWildcard(entry.getKey());
+                if (wildcards[i] == null) {
+                    patterns[i] = Pattern.compile(entry.getKey());
+                }
+                globTypes[i++] = entry.getValue();
+            }
+        }
+
+        /**
+         * Stores the given node at the given index and its descendants
+         * from the given free index onwards.
+         *
+         * @return next free index
+         */
+        private int flatten(TrieNode node, int index, int free) {
+            int n = node.children.size();
+            keys[index] = new char[n];
+            children[index] = new int[n];
+            types[index] = node.type;
+            int i = 0;
+            for (Map.Entry<Character, TrieNode> entry
+                    : node.children.entrySet()) {
+                keys[index][i] = entry.getKey();
+                children[index][i++] = free++;
+            }
+            i = 0;
+            for (TrieNode child : node.children.values()) {
+                free = flatten(child, children[index][i++], free);
+            }
+            return free;
+        }
+
+        /**
+         * Returns the type of the longest extension the name ends with.
+         */
+        MimeType matchExtension(String name) {
+            int node = 0;
+            MimeType type = types[0];
+            for (int i = name.length() - 1; i >= 0; i--) {
+                int child = Arrays.binarySearch(keys[node], name.charAt(i));
+                if (child < 0) {
+                    break;
+                }
+                node = children[node][child];
+                if (types[node] != null) {
+                    type = types[node];
+                }
+            }
+            return type;
+        }
+
+        /**
+         * Returns the type of the first glob that matches the name.
+         */
+        MimeType matchGlob(String name) {
+            for (int i = 0; i < globTypes.length; i++) {
+                if (wildcards[i] != null) {
+                    if (matchWildcard(wildcards[i], name)) {
+                        return globTypes[i];
+                    }
+                } else if (patterns[i].matcher(name).matches()) {
+                    return globTypes[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Converts a regular expression produced by
+         * {@link Patterns#compile(String)} back to the wildcard glob,
+         * or returns <code>null</code> for any other regular expression.
+         */
+        private static String toWildcard(String regex) {
+            if (!regex.startsWith("\\A") || !regex.endsWith("\\z")) {
+                return null;
+            }
+            StringBuilder glob = new StringBuilder();
+            int end = regex.length() - 2;
+            for (int i = 2; i < end; i++) {
+                char ch = regex.charAt(i);
+                if (ch == '\\' && i + 1 < end
+                        && "\\[]^.-$+(){}|".indexOf(regex.charAt(i + 1)) != -1) {
+                    ch = regex.charAt(++i);
+                    if (ch == '*' || ch == '?') {
+                        return null;
+                    }
+                    glob.append(ch);
+                } else if (ch == '.' && i + 1 < end
+                        && regex.charAt(i + 1) == '*') {
+                    glob.append('*');
+                    i++;
+                } else if (ch == '.') {
+                    glob.append('?');
+                } else if ("\\[]^-$+(){}|*?".indexOf(ch) != -1) {
+                    return null;
+                } else {
+                    glob.append(ch);
+                }
+            }
+            return glob.toString();
+        }
+
+        /**
+         * Matches the name against a glob with <code>*</code> and
+         * <code>?</code> wildcards. Like the <code>.</code> of a regular
+         * expression, wildcards don't match line terminators and
+         * <code>?</code> matches a whole surrogate pair.
+         */
+        private static boolean matchWildcard(String glob, String name) {
+            int g = 0;
+            int n = 0;
+            int star = -1;
+            int mark = 0;
+            while (n < name.length()) {
+                char ch = name.charAt(n);
+                if (g < glob.length() && glob.charAt(g) == '*') {
+                    star = g++;
+                    mark = n;
+                } else if (g < glob.length() && glob.charAt(g) == ch) {
+                    g++;
+                    n++;
+                } else if (g < glob.length() && glob.charAt(g) == '?'
+                        && !isLineTerminator(ch)) {
+                    g++;
+                    n = skipCharacter(name, n);
+                } else if (star != -1 && !isLineTerminator(name.charAt(mark))) {
+                    g = star + 1;
+                    n = ++mark;
+                } else {
+                    return false;
+                }
+            }
+            while (g < glob.length() && glob.charAt(g) == '*') {
+                g++;
+            }
+            return g == glob.length();
+        }
+
+        /**
+         * Returns the index after the code point at the given index.
+         */
+        private static int skipCharacter(String name, int n) {
+            if (Character.isHighSurrogate(name.charAt(n))
+                    && n + 1 < name.length()
+                    && Character.isLowSurrogate(name.charAt(n + 1))) {
+                return n + 2;
+            }
+            return n + 1;
+        }
+
+        private static boolean isLineTerminator(char ch) {
+            return ch == '\n' || ch == '\r' || ch == '\u0085'
+                    || ch == '\u2028' || ch == '\u2029';
+        }
+
+    }
+
+    private static final class TrieNode {
+
+        private final SortedMap<Character, TrieNode> children =
+                new TreeMap<Character, TrieNode>();
+
+        private MimeType type = null;
+
+    }
+
 }
@@ -26,6 +26,7 @@ import org.apache.tika.exception.TikaException;
 import org.apache.tika.io.TemporaryResources;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metrics.ParseMetrics;
 import org.apache.tika.mime.MediaType;
 import org.apache.tika.mime.MediaTypeRegistry;
 import org.apache.tika.sax.SecureContentHandler;
@@ -104,17 +105,38 @@ public class AutoDetectParser extends CompositeParser {
             InputStream stream, ContentHandler handler,
             Metadata metadata, ParseContext context)
             throws IOException, SAXException, TikaException {
+        ParseBudget budget = context.get(ParseBudget.class);
+        boolean outermost = budget != null && budget.start();
         TemporaryResources tmp = new TemporaryResources();
+        TikaInputStream tis = null;
+        boolean budgeted = false;
         try {
-            TikaInputStream tis = TikaInputStream.get(stream, tmp);
+            tis = TikaInputStream.get(stream, tmp);
+            if (budget != null && tis.getParseBudget() == null) {
+                budget.check();
+                tis.setParseBudget(budget);
+                budgeted = true;
+            }
 
             // Automatically detect the MIME type of the document
-            MediaType type = detector.detect(tis, metadata);
+            ParseMetrics metrics = ParseMetrics.getDefault();
+            ParseMetrics.Sample sample = metrics.start();
+            MediaType type = null;
+            try {
+                type = detector.detect(tis, metadata);
+            } finally {
+                metrics.recordDetection(sample, type == null);
+            }
             metadata.set(Metadata.CONTENT_TYPE, type.toString());
 
             // TIKA-216: Zip bomb prevention
             SecureContentHandler sch = 
-                handler != null ? new SecureContentHandler(handler, tis) : null;
+                handler != null ? SecureContentHandler.decorate(handler, tis) : null;
+            if (outermost && sch != null) {
+                // Count the output characters only once, including
+                // the output of all embedded documents
+                sch.setParseBudget(budget);
+            }
             try {
                 // Parse the document
                 super.parse(tis, sch, metadata, context);
@@ -123,11 +145,38 @@ public class AutoDetectParser extends CompositeParser {
                 sch.throwIfCauseOf(e);
                 throw e;
             }
+
+            // The parser may have ignored the failures caused by an
+            // exceeded budget, but the result is still incomplete
+            throwIfExceeded(budget, null);
+        } catch (IOException e) {
+            throwIfExceeded(budget, e);
+            throw e;
+        } catch (SAXException e) {
+            throwIfExceeded(budget, e);
+            throw e;
+        } catch (TikaException e) {
+            throwIfExceeded(budget, e);
+            throw e;
         } finally {
+            if (budgeted) {
+                tis.setParseBudget(null);
+            }
             tmp.dispose();
         }
     }
 
+    /**
+     * Converts an exception caused by an exceeded parse budget to a
+     * {@link org.apache.tika.exception.ParseBudgetExceededException}.
+     */
+    private static void throwIfExceeded(ParseBudget budget, Exception e)
+            throws TikaException {
+        if (budget != null) {
+            budget.throwIfExceeded(e);
+        }
+    }
+
     public void parse(
             InputStream stream, ContentHandler handler, Metadata metadata)
             throws IOException, SAXException, TikaException {
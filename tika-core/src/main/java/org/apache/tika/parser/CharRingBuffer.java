@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded character pipe between exactly one writer thread and one reader
+ * thread. Characters are passed through a ring buffer whose read and write
+ * positions are each updated by only one of the two threads, so no locks
+ * are needed. A thread that finds the buffer full (writer) or empty
+ * (reader) parks until the other side makes progress or closes the pipe,
+ * and is woken up immediately when that happens.
+ * <p>
+ * The writer can close the pipe with an exception, which is then thrown
+ * to the reader instead of further characters.
+ */
+class CharRingBuffer {
+
+    private final char[] buffer;
+
+    private final int mask;
+
+    /**
+     * Total number of characters written. Only updated by the writer.
+     */
+    private volatile long written = 0;
+
+    /**
+     * Total number of characters read. Only updated by the reader.
+     */
+    private volatile long read = 0;
+
+    /**
+     * Exception the writer failed with, if any. Set before
+     * {@link #writerClosed}.
+     */
+    private volatile Throwable failure = null;
+
+    private volatile boolean writerClosed = false;
+
+    private volatile boolean readerClosed = false;
+
+    private volatile Thread waitingReader = null;
+
+    private volatile Thread waitingWriter = null;
+
+    /**
+     * Creates a pipe that buffers at least the given number of characters.
+     *
+     * @param size buffer size, rounded up to the next power of two
+     */
+    CharRingBuffer(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException(
+                    "Invalid buffer size: " + size);
+        }
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        this.buffer = new char[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Writes the given characters, waiting for the reader to make room
+     * in the buffer as needed.
+     *
+     * @param cbuf characters
+     * @param off start offset within the array
+     * @param len number of characters to write
+     * @throws IOException if the reader has closed the pipe, or
+     *                     the writing thread was interrupted
+     */
+    void write(char[] cbuf, int off, int len) throws IOException {
+        while (len > 0) {
+            long w = written;
+            int free;
+            while ((free = buffer.length - (int) (w - read)) == 0) {
+                if (readerClosed) {
+                    throw new IOException("Pipe closed");
+                }
+                waitingWriter = Thread.currentThread();
+                try {
+                    if (w - read == buffer.length && !readerClosed) {
+                        LockSupport.park(this);
+                    }
+                } finally {
+                    waitingWriter = null;
+                }
+                checkInterrupted();
+            }
+            if (readerClosed) {
+                throw new IOException("Pipe closed");
+            }
+
+            int n = Math.min(len, free);
+            int start = (int) (w & mask);
+            int first = Math.min(n, buffer.length - start);
+            System.arraycopy(cbuf, off, buffer, start, first);
+            System.arraycopy(cbuf, off + first, buffer, 0, n - first);
+            written = w + n;
+            unpark(waitingReader);
+
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Closes the write end of the pipe. The reader gets the end of stream
+     * once the buffered characters have been read or, if the given
+     * exception is not <code>null</code>, that exception on its next read.
+     *
+     * @param t exception the writer failed with, or <code>null</code>
+     */
+    void closeWriter(Throwable t) {
+        if (t != null && failure == null) {
+            failure = t;
+        }
+        writerClosed = true;
+        unpark(waitingReader);
+    }
+
+    /**
+     * Reads up to the given number of characters, waiting until at least
+     * one is available or the write end of the pipe has been closed.
+     *
+     * @param cbuf character buffer
+     * @param off start offset within the buffer
+     * @param len maximum number of characters to read
+     * @return number of characters read, or -1 at the end of the stream
+     * @throws IOException if the reader has been closed, the writer has
+     *                     failed or the reading thread was interrupted
+     */
+    int read(char[] cbuf, int off, int len) throws IOException {
+        if (readerClosed) {
+            throw new IOException("Stream closed");
+        }
+        checkFailure();
+        if (len == 0) {
+            return 0;
+        }
+
+        long r = read;
+        int available = await(r);
+        checkFailure();
+        if (available == 0) {
+            return -1;
+        }
+
+        int n = Math.min(len, available);
+        int start = (int) (r & mask);
+        int first = Math.min(n, buffer.length - start);
+        System.arraycopy(buffer, start, cbuf, off, first);
+        System.arraycopy(buffer, 0, cbuf, off + first, n - first);
+        read = r + n;
+        unpark(waitingWriter);
+        return n;
+    }
+
+    /**
+     * Waits until there are characters to read or the pipe has been closed.
+     * Unlike {@link #read(char[], int, int)} this method does not throw
+     * the exception the writer failed with.
+     *
+     * @throws IOException if the reading thread was interrupted
+     */
+    void await() throws IOException {
+        await(read);
+    }
+
+    /**
+     * Closes the read end of the pipe. The writer fails on its next
+     * attempt to write.
+     */
+    void closeReader() {
+        readerClosed = true;
+        unpark(waitingWriter);
+        unpark(waitingReader);
+    }
+
+    private int await(long r) throws IOException {
+        while (true) {
+            // Read the closed flags first, so that a closed writer
+            // implies that all its characters are visible below
+            boolean closed = writerClosed || readerClosed;
+            int available = (int) (written - r);
+            if (available > 0 || closed) {
+                return available;
+            }
+            waitingReader = Thread.currentThread();
+            try {
+                if (written == r && !writerClosed && !readerClosed) {
+                    LockSupport.park(this);
+                }
+            } finally {
+                waitingReader = null;
+            }
+            checkInterrupted();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable t = failure;
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        } else if (t != null) {
+            IOException exception = new IOException("");
+            exception.initCause(t);
+            throw exception;
+        }
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.interrupted()) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static void unpark(Thread thread) {
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+}
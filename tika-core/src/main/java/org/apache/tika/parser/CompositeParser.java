@@ -16,10 +16,12 @@
  */
 package org.apache.tika.parser;
 
+import org.apache.tika.config.ServiceLoader;
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.io.TemporaryResources;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metrics.ParseMetrics;
 import org.apache.tika.mime.MediaType;
 import org.apache.tika.mime.MediaTypeRegistry;
 import org.apache.tika.sax.TaggedContentHandler;
@@ -63,6 +65,13 @@ public class CompositeParser extends AbstractParser {
      */
     private Parser fallback = new EmptyParser();
 
+    /**
+     * Dispatch table built from the supported types the component parsers
+     * last reported, or <code>null</code> if the component parsers or the
+     * media type registry have changed since then.
+     */
+    private transient volatile DispatchTable dispatchTable = null;
+
     public CompositeParser(MediaTypeRegistry registry, List<Parser> parsers,
                            Collection<Class<? extends Parser>> excludeParsers) {
         if (excludeParsers == null || excludeParsers.isEmpty()) {
@@ -162,6 +171,7 @@ public class CompositeParser extends AbstractParser {
      */
     public void setMediaTypeRegistry(MediaTypeRegistry registry) {
         this.registry = registry;
+        this.dispatchTable = null;
     }
 
     /**
@@ -193,6 +203,7 @@ public class CompositeParser extends AbstractParser {
             this.parsers.add(ParserDecorator.withTypes(
                     entry.getValue(), Collections.singleton(entry.getKey())));
         }
+        this.dispatchTable = null;
     }
 
     /**
@@ -231,27 +242,70 @@ public class CompositeParser extends AbstractParser {
     }
 
     protected Parser getParser(Metadata metadata, ParseContext context) {
-        Map<MediaType, Parser> map = getParsers(context);
         MediaType type = MediaType.parse(metadata.get(Metadata.CONTENT_TYPE));
         if (type != null) {
            // We always work on the normalised, canonical form
            type = registry.normalize(type);
         }
-        while (type != null) {
-            // Try finding a parser for the type
-            Parser parser = map.get(type);
-            if (parser != null) {
-                return parser;
-            }
-            
-            // Failing that, try for the parent of the type
-            type = registry.getSupertype(type);
+        Parser parser = getDispatchTable(context).getParser(type);
+        while (parser instanceof LazyParser
+                && !((LazyParser) parser).isAvailable()) {
+            // It no longer claims any types, so look for another candidate
+            dispatchTable = null;
+            parser = getDispatchTable(context).getParser(type);
+        }
+        if (parser != null) {
+            return parser;
         }
         return fallback;
     }
 
     public Set<MediaType> getSupportedTypes(ParseContext context) {
-        return getParsers(context).keySet();
+        return getDispatchTable(context).getTypes();
+    }
+
+    /**
+     * Returns the parsers that documents get dispatched to, keyed by media
+     * type. The same as {@link #getParsers(ParseContext)}, except that
+     * {@link DefaultParser} keeps parsers that have not yet been needed
+     * unloaded here.
+     *
+     * @param context parse context
+     * @return component parsers, keyed by media type
+     */
+    Map<MediaType, Parser> getDispatchParsers(ParseContext context) {
+        return getParsers(context);
+    }
+
+    /**
+     * Returns the dispatch table for the given parse context. The table
+     * built for the previous call is reused as long as the component
+     * parsers still report the same supported types, the media type
+     * registry has not been replaced, and no dynamic parser services have
+     * come or gone in the meantime. Other objects in the parse context,
+     * such as per-request parser configuration, don't affect the table
+     * unless they change what some component parser supports.
+     * <p>
+     * Only the component parsers that looked at the parse context when
+     * reporting their supported types are asked again, and only when
+     * the objects they looked at have changed. Nested composite parsers
+     * are always asked, as their components may have changed.
+     *
+     * @param context parse context
+     * @return dispatch table
+     */
+    private DispatchTable getDispatchTable(ParseContext context) {
+        int changes = ServiceLoader.getDynamicServiceChanges();
+        List<Parser> components = parsers;
+        DispatchTable table = dispatchTable;
+        if (table == null
+                || !table.isValidFor(registry, components, context, changes)) {
+            table = new DispatchTable(
+                    registry, components, context,
+                    getDispatchParsers(context), changes);
+            dispatchTable = table;
+        }
+        return table;
     }
 
     /**
@@ -267,18 +321,35 @@ public class CompositeParser extends AbstractParser {
             Metadata metadata, ParseContext context)
             throws IOException, SAXException, TikaException {
         Parser parser = getParser(metadata, context);
+        MediaType type = MediaType.parse(metadata.get(Metadata.CONTENT_TYPE));
+        if (type != null) {
+            type = registry.normalize(type);
+        }
+        Parser wrapped = parser;
+        if (parser instanceof ParserDecorator) {
+            wrapped = ((ParserDecorator) parser).getWrappedParser();
+        }
+        Class<?> parserClass = wrapped.getClass();
+        // Nested composite parsers record the parsers they delegate to
+        ParseMetrics metrics = ParseMetrics.getDefault();
+        ParseMetrics.Sample sample = null;
+        if (!(wrapped instanceof CompositeParser)) {
+            sample = metrics.start();
+        }
         TemporaryResources tmp = new TemporaryResources();
+        TikaInputStream taggedStream = null;
+        boolean failed = true;
         try {
-            TikaInputStream taggedStream = TikaInputStream.get(stream, tmp);
+            taggedStream = TikaInputStream.get(stream, tmp);
+            if (sample != null && handler != null) {
+                handler = sample.countCharacters(handler);
+            }
             TaggedContentHandler taggedHandler = 
                 handler != null ? new TaggedContentHandler(handler) : null;
-            if (parser instanceof ParserDecorator){
-                metadata.add("X-Parsed-By", ((ParserDecorator) parser).getWrappedParser().getClass().getName());
-            } else {
-                metadata.add("X-Parsed-By", parser.getClass().getName());
-            }
+            metadata.add("X-Parsed-By", parserClass.getName());
             try {
                 parser.parse(taggedStream, taggedHandler, metadata, context);
+                failed = false;
             } catch (RuntimeException e) {
                 throw new TikaException(
                         "Unexpected RuntimeException from " + parser, e);
@@ -292,8 +363,189 @@ public class CompositeParser extends AbstractParser {
                         "TIKA-237: Illegal SAXException from " + parser, e);
             }
         } finally {
+            if (sample != null) {
+                long bytes = taggedStream != null ? taggedStream.getPosition() : 0;
+                metrics.recordParse(sample, parserClass, type, bytes, failed);
+            }
             tmp.dispose();
         }
     }
 
+    /**
+     * Immutable mapping from normalised media types to the component
+     * parsers responsible for them, with the supertype chains of all the
+     * types known to the media type registry already resolved. Also
+     * records what the table was built from, so it can tell when it has
+     * gone stale.
+     */
+    private static final class DispatchTable {
+
+        private final MediaTypeRegistry registry;
+
+        private final int dynamicServiceChanges;
+
+        /**
+         * The component parsers the table was built from.
+         */
+        private final List<Parser> components;
+
+        /**
+         * The types each of the component parsers reported as supported
+         * when the table was built.
+         */
+        private final List<Set<MediaType>> componentTypes;
+
+        /**
+         * The parse context objects each of the component parsers looked
+         * at when reporting their supported types, keyed by class.
+         */
+        private final List<Map<Class<?>, Object>> componentContexts;
+
+        /**
+         * Parsers keyed by the types they explicitly support.
+         */
+        private final Map<MediaType, Parser> parsers;
+
+        /**
+         * Parsers (or <code>null</code> for no parser) keyed by all the
+         * types whose supertype chain has been resolved.
+         */
+        private final Map<MediaType, Parser> resolved;
+
+        DispatchTable(
+                MediaTypeRegistry registry, List<Parser> components,
+                ParseContext context, Map<MediaType, Parser> parsers,
+                int dynamicServiceChanges) {
+            this.registry = registry;
+            this.dynamicServiceChanges = dynamicServiceChanges;
+            this.components = components;
+            this.componentTypes =
+                    new ArrayList<Set<MediaType>>(components.size());
+            this.componentContexts =
+                    new ArrayList<Map<Class<?>, Object>>(components.size());
+            for (Parser component : components) {
+                RecordingParseContext recording =
+                        new RecordingParseContext(context);
+                componentTypes.add(component.getSupportedTypes(recording));
+                componentContexts.add(recording.getRecorded());
+            }
+            this.parsers = Collections.unmodifiableMap(parsers);
+
+            this.resolved = new HashMap<MediaType, Parser>(parsers);
+            for (MediaType type : registry.getTypes()) {
+                resolve(type);
+            }
+        }
+
+        /**
+         * Checks whether this table is still valid for the given registry,
+         * component parsers and parse context. Most parsers don't look at
+         * the parse context to report their supported types, so this is
+         * usually just a few identity checks.
+         */
+        boolean isValidFor(
+                MediaTypeRegistry registry, List<Parser> components,
+                ParseContext context, int dynamicServiceChanges) {
+            if (this.registry != registry
+                    || this.components != components
+                    || this.dynamicServiceChanges != dynamicServiceChanges
+                    || components.size() != componentTypes.size()) {
+                return false;
+            }
+            for (int i = 0; i < componentTypes.size(); i++) {
+                Parser component = components.get(i);
+                if (!(component instanceof CompositeParser)
+                        && isSameContext(componentContexts.get(i), context)) {
+                    continue;
+                }
+                Set<MediaType> types = component.getSupportedTypes(context);
+                Set<MediaType> previous = componentTypes.get(i);
+                if (types != previous && !types.equals(previous)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isSameContext(
+                Map<Class<?>, Object> recorded, ParseContext context) {
+            for (Map.Entry<Class<?>, Object> entry : recorded.entrySet()) {
+                if (context.get(entry.getKey()) != entry.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Set<MediaType> getTypes() {
+            return parsers.keySet();
+        }
+
+        /**
+         * Returns the parser for the given normalised type or its closest
+         * supertype, or <code>null</code> if there is none.
+         */
+        Parser getParser(MediaType type) {
+            while (type != null) {
+                Parser parser = resolved.get(type);
+                if (parser != null || resolved.containsKey(type)) {
+                    return parser;
+                }
+                // Unknown types (or ones with parameters) are resolved
+                // through the registry, like when there was no table
+                type = registry.getSupertype(type);
+            }
+            return null;
+        }
+
+        private Parser resolve(MediaType type) {
+            if (resolved.containsKey(type)) {
+                return resolved.get(type);
+            }
+            // Mark as being resolved, in case of an inheritance loop
+            resolved.put(type, null);
+            Parser parser = null;
+            MediaType supertype = registry.getSupertype(type);
+            if (supertype != null) {
+                parser = resolve(supertype);
+            }
+            resolved.put(type, parser);
+            return parser;
+        }
+
+    }
+
+    /**
+     * Parse context that passes lookups on to another context, and
+     * records the objects that were looked up.
+     */
+    private static final class RecordingParseContext extends ParseContext {
+
+        /** Serial version UID */
+        private static final long serialVersionUID = 3127254183283616517L;
+
+        private final ParseContext context;
+
+        private Map<Class<?>, Object> recorded = Collections.emptyMap();
+
+        RecordingParseContext(ParseContext context) {
+            this.context = context;
+        }
+
+        Map<Class<?>, Object> getRecorded() {
+            return recorded;
+        }
+
+        @Override
+        public <T> T get(Class<T> key) {
+            T value = context.get(key);
+            if (recorded.isEmpty()) {
+                recorded = new HashMap<Class<?>, Object>();
+            }
+            recorded.put(key, value);
+            return value;
+        }
+
+    }
+
 }
@@ -19,10 +19,13 @@ package org.apache.tika.parser;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.tika.config.ServiceLoader;
+import org.apache.tika.exception.TikaException;
 import org.apache.tika.mime.MediaType;
 import org.apache.tika.mime.MediaTypeRegistry;
 import org.apache.tika.utils.ServiceLoaderUtils;
@@ -44,21 +47,82 @@ public class DefaultParser extends CompositeParser {
      * rather than discovery order. CompositeParser takes the last
      * parser for any given media type, so put the Tika parsers first
      * so that non-Tika (user supplied) parsers can take precedence.
+     * Parsers listed in a parser types manifest are not loaded until
+     * they are first needed, see {@link LazyParser}.
      *
      * @param loader service loader
+     * @param excludeParsers parser classes to leave out, or <code>null</code>
      * @return ordered list of statically loadable parsers
      */
-    private static List<Parser> getDefaultParsers(ServiceLoader loader) {
-        List<Parser> parsers = loader.loadStaticServiceProviders(Parser.class);
-        ServiceLoaderUtils.sortLoadedClasses(parsers);
+    private static List<Parser> getDefaultParsers(
+            ServiceLoader loader,
+            Collection<Class<? extends Parser>> excludeParsers) {
+        List<String> names = loader.identifyStaticServiceProviders(Parser.class);
+        ServiceLoaderUtils.sortClassNames(names);
+        Map<String, Set<MediaType>> manifest =
+                Collections.<String, Set<MediaType>>emptyMap();
+        if (!names.isEmpty()) {
+            manifest = LazyParser.getManifest(loader);
+        }
+
+        List<Parser> parsers = new ArrayList<Parser>(names.size());
+        for (String name : names) {
+            Set<MediaType> types = manifest.get(name);
+            try {
+                if (types == null) {
+                    parsers.add(loader.getServiceClass(
+                            Parser.class, name).newInstance());
+                } else if (!isExcluded(excludeParsers, name)) {
+                    parsers.add(new LazyParser(
+                            loader, name, types, excludeParsers));
+                }
+            } catch (Throwable t) {
+                loader.getLoadErrorHandler().handleLoadError(name, t);
+            }
+        }
         return parsers;
     }
 
+    /**
+     * Checks whether the given parser class is excluded, itself or
+     * through one of its superclasses or interfaces.
+     */
+    static boolean isExcluded(
+            Collection<Class<? extends Parser>> excludeParsers,
+            Class<? extends Parser> parser) {
+        if (excludeParsers != null) {
+            for (Class<? extends Parser> exclude : excludeParsers) {
+                if (exclude.isAssignableFrom(parser)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the named parser class is excluded by name, without
+     * loading it. Exclusions through a superclass or interface are only
+     * found once the class gets loaded, see {@link LazyParser}.
+     */
+    private static boolean isExcluded(
+            Collection<Class<? extends Parser>> excludeParsers,
+            String name) {
+        if (excludeParsers != null) {
+            for (Class<? extends Parser> exclude : excludeParsers) {
+                if (exclude.getName().equals(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private transient final ServiceLoader loader;
 
     public DefaultParser(MediaTypeRegistry registry, ServiceLoader loader,
                          Collection<Class<? extends Parser>> excludeParsers) {
-        super(registry, getDefaultParsers(loader), excludeParsers);
+        super(registry, getDefaultParsers(loader, excludeParsers), excludeParsers);
         this.loader = loader;
     }
     
@@ -83,7 +147,7 @@ public class DefaultParser extends CompositeParser {
     }
 
     @Override
-    public Map<MediaType, Parser> getParsers(ParseContext context) {
+    Map<MediaType, Parser> getDispatchParsers(ParseContext context) {
         Map<MediaType, Parser> map = super.getParsers(context);
 
         if (loader != null) {
@@ -102,11 +166,48 @@ public class DefaultParser extends CompositeParser {
         return map;
     }
 
+    /**
+     * Returns the component parsers, keyed by media type. Any parsers
+     * that have not been needed yet get loaded, and are left out if
+     * that fails.
+     */
+    @Override
+    public Map<MediaType, Parser> getParsers(ParseContext context) {
+        Map<MediaType, Parser> map = getDispatchParsers(context);
+        Iterator<Map.Entry<MediaType, Parser>> iterator =
+                map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<MediaType, Parser> entry = iterator.next();
+            if (entry.getValue() instanceof LazyParser) {
+                try {
+                    entry.setValue(((LazyParser) entry.getValue()).getParser());
+                } catch (TikaException e) {
+                    iterator.remove();
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Returns all the component parsers, loading any parsers that have
+     * not been needed yet, and leaving them out if that fails.
+     */
     @Override
     public List<Parser> getAllComponentParsers() {
-        List<Parser> parsers = super.getAllComponentParsers();
+        List<Parser> parsers = new ArrayList<Parser>();
+        for (Parser parser : super.getAllComponentParsers()) {
+            if (parser instanceof LazyParser) {
+                try {
+                    parsers.add(((LazyParser) parser).getParser());
+                } catch (TikaException e) {
+                    // already reported to the load error handler
+                }
+            } else {
+                parsers.add(parser);
+            }
+        }
         if (loader != null) {
-            parsers = new ArrayList<Parser>(parsers);
             parsers.addAll(loader.loadDynamicServiceProviders(Parser.class));
         }
         return parsers;
@@ -0,0 +1,441 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.tika.config.ServiceLoader;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.IOUtils;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * Stand-in for a statically loadable parser whose supported types are
+ * listed in a parser types manifest. The parser class is only loaded and
+ * instantiated when the first document of one of those types is
+ * dispatched to it, so that {@link DefaultParser} doesn't need to load
+ * the libraries behind every available parser up front.
+ * <p>
+ * A manifest is a <code>META-INF/tika/org.apache.tika.parser.Parser.types</code>
+ * resource with one line per supported media type, consisting of the
+ * parser class name, a space and the media type. Parsers that consult the
+ * parse context for their supported types, and composite parsers whose
+ * types depend on the component parsers that are available at run time,
+ * are not listed and get loaded eagerly as before. The manifest of a
+ * service file is regenerated with:
+ * <pre>
+ * java org.apache.tika.parser.LazyParser \
+ *      src/main/resources/META-INF/services/org.apache.tika.parser.Parser \
+ *      src/main/resources/META-INF/tika/org.apache.tika.parser.Parser.types
+ * </pre>
+ * This class extends {@link ParserDecorator} so that code inspecting the
+ * component parsers sees the real parser through
+ * {@link #getWrappedParser()}, which loads it if needed.
+ *
+ * @since Apache Tika 1.10
+ */
+class LazyParser extends ParserDecorator {
+
+    /** Serial version UID */
+    private static final long serialVersionUID = -2380719421512402532L;
+
+    /** Name of the parser types manifest resources */
+    static final String MANIFEST =
+            "META-INF/tika/" + Parser.class.getName() + ".types";
+
+    /**
+     * Reads all the parser types manifests available through the given
+     * service loader.
+     *
+     * @param loader service loader
+     * @return supported types, keyed by parser class name
+     */
+    static Map<String, Set<MediaType>> getManifest(ServiceLoader loader) {
+        Map<String, Set<MediaType>> manifest =
+                new HashMap<String, Set<MediaType>>();
+        Enumeration<URL> resources = loader.findServiceResources(MANIFEST);
+        for (URL resource : Collections.list(resources)) {
+            try {
+                readManifest(resource, manifest);
+            } catch (IOException e) {
+                loader.getLoadErrorHandler().handleLoadError(MANIFEST, e);
+            }
+        }
+        return manifest;
+    }
+
+    private static void readManifest(
+            URL resource, Map<String, Set<MediaType>> manifest)
+            throws IOException {
+        // Only use the manifest if all of it is valid
+        Map<String, Set<MediaType>> entries =
+                new HashMap<String, Set<MediaType>>();
+        InputStream stream = resource.openStream();
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(stream, IOUtils.UTF_8));
+            String line = reader.readLine();
+            while (line != null) {
+                line = line.trim();
+                int space = line.indexOf(' ');
+                if (line.length() > 0 && !line.startsWith("#")) {
+                    MediaType type = null;
+                    if (space != -1) {
+                        type = MediaType.parse(line.substring(space + 1));
+                    }
+                    if (type == null) {
+                        throw new IOException(
+                                "Invalid parser type in " + resource
+                                + ": " + line);
+                    }
+                    String name = line.substring(0, space);
+                    Set<MediaType> types = entries.get(name);
+                    if (types == null) {
+                        types = new HashSet<MediaType>();
+                        entries.put(name, types);
+                    }
+                    types.add(type);
+                }
+                line = reader.readLine();
+            }
+        } finally {
+            stream.close();
+        }
+        for (Map.Entry<String, Set<MediaType>> entry : entries.entrySet()) {
+            manifest.put(entry.getKey(),
+                    Collections.unmodifiableSet(entry.getValue()));
+        }
+    }
+
+    /**
+     * Name of the parser class.
+     */
+    private final String className;
+
+    /**
+     * Types supported by the parser, according to the manifest.
+     */
+    private final Set<MediaType> types;
+
+    /**
+     * Loader of the parser class, or <code>null</code> after
+     * deserialization, in which case the context class loader is used.
+     */
+    private final transient ServiceLoader loader;
+
+    /**
+     * Parser classes to leave out, or <code>null</code>. Checked once the
+     * parser class has been loaded, as an excluded superclass or
+     * interface can't be told from the class name alone.
+     */
+    private final transient Collection<Class<? extends Parser>> excludeParsers;
+
+    /**
+     * The parser, once loaded.
+     */
+    private transient volatile Parser parser = null;
+
+    /**
+     * Whether the parser failed to load or turned out to be excluded, in
+     * which case it no longer claims any types.
+     */
+    private transient volatile boolean unavailable = false;
+
+    LazyParser(
+            ServiceLoader loader, String className, Set<MediaType> types,
+            Collection<Class<? extends Parser>> excludeParsers) {
+        super(null);
+        this.loader = loader;
+        this.className = className;
+        this.types = types;
+        this.excludeParsers = excludeParsers;
+    }
+
+    /**
+     * Returns the name of the parser class, without loading it.
+     *
+     * @return parser class name
+     */
+    String getClassName() {
+        return className;
+    }
+
+    /**
+     * Returns the parser, loading and instantiating it on first access.
+     * A parser that can't be loaded is reported once to the load error
+     * handler of the service loader, like during eager loading, and from
+     * then on no longer claims any types, so that documents of those types
+     * go to other parsers or the fallback parser instead.
+     *
+     * @return parser instance
+     * @throws TikaException if the parser can not be loaded
+     */
+    Parser getParser() throws TikaException {
+        Parser instance = parser;
+        if (instance == null) {
+            synchronized (this) {
+                instance = parser;
+                if (instance == null) {
+                    if (unavailable) {
+                        throw new TikaException(
+                                "Unable to load parser " + className);
+                    }
+                    ServiceLoader serviceLoader = loader;
+                    if (serviceLoader == null) {
+                        serviceLoader = new ServiceLoader();
+                    }
+                    try {
+                        Class<? extends Parser> type =
+                                serviceLoader.getServiceClass(
+                                        Parser.class, className);
+                        if (!DefaultParser.isExcluded(excludeParsers, type)) {
+                            instance = type.newInstance();
+                        }
+                    } catch (Throwable t) {
+                        unavailable = true;
+                        serviceLoader.getLoadErrorHandler().handleLoadError(
+                                className, t);
+                        throw new TikaException(
+                                "Unable to load parser " + className, t);
+                    }
+                    if (instance == null) {
+                        unavailable = true;
+                        throw new TikaException(
+                                "Parser " + className + " is excluded");
+                    }
+                    parser = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns whether the parser can be used, loading it if needed.
+     *
+     * @return <code>false</code> if the parser can not be loaded
+     */
+    boolean isAvailable() {
+        try {
+            getParser();
+            return true;
+        } catch (TikaException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the parser has already been loaded.
+     *
+     * @return whether the parser is loaded
+     */
+    boolean isLoaded() {
+        return parser != null;
+    }
+
+    @Override
+    public Set<MediaType> getSupportedTypes(ParseContext context) {
+        if (unavailable) {
+            return Collections.emptySet();
+        }
+        return types;
+    }
+
+    @Override
+    public void parse(
+            InputStream stream, ContentHandler handler,
+            Metadata metadata, ParseContext context)
+            throws IOException, SAXException, TikaException {
+        getParser().parse(stream, handler, metadata, context);
+    }
+
+    /**
+     * Returns the parser, loading it if needed, or the
+     * {@link EmptyParser} if the parser can't be loaded.
+     */
+    @Override
+    public Parser getWrappedParser() {
+        try {
+            return getParser();
+        } catch (TikaException e) {
+            return EmptyParser.INSTANCE;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LazyParser[" + className + "]";
+    }
+
+    /**
+     * Parse context that records whether a parser looked anything up in it.
+     */
+    private static class RecordingParseContext extends ParseContext {
+
+        private static final long serialVersionUID = 6403460823958766143L;
+
+        private boolean used = false;
+
+        @Override
+        public <T> T get(Class<T> key) {
+            used = true;
+            return super.get(key);
+        }
+
+        @Override
+        public <T> T get(Class<T> key, T defaultValue) {
+            used = true;
+            return super.get(key, defaultValue);
+        }
+
+    }
+
+    /**
+     * Writes the parser types manifest of the parsers listed in the given
+     * service file. Parsers that can not be loaded, that consult the
+     * parse context for their supported types, composite parsers and
+     * parsers without any supported types are left out.
+     *
+     * @param service service file listing parser class names
+     * @param writer manifest output, not closed
+     * @throws IOException if the service file can not be read
+     */
+    static void writeManifest(URL service, Writer writer) throws IOException {
+        ClassLoader loader = LazyParser.class.getClassLoader();
+        Map<String, Set<String>> manifest =
+                new TreeMap<String, Set<String>>();
+        for (String name : readServiceFile(service)) {
+            Parser parser;
+            try {
+                parser = (Parser) Class.forName(name, true, loader).newInstance();
+            } catch (Throwable t) {
+                continue;
+            }
+            if (parser instanceof CompositeParser
+                    || parser instanceof ParserDecorator) {
+                continue;
+            }
+            RecordingParseContext context = new RecordingParseContext();
+            Set<MediaType> types = parser.getSupportedTypes(context);
+            if (context.used || types.isEmpty()) {
+                continue;
+            }
+            Set<String> strings = new TreeSet<String>();
+            for (MediaType type : types) {
+                strings.add(type.toString());
+            }
+            manifest.put(name, strings);
+        }
+
+        writer.write("#  Licensed to the Apache Software Foundation (ASF) under one or more\n");
+        writer.write("#  contributor license agreements.  See the NOTICE file distributed with\n");
+        writer.write("#  this work for additional information regarding copyright ownership.\n");
+        writer.write("#  The ASF licenses this file to You under the Apache License, Version 2.0\n");
+        writer.write("#  (the \"License\"); you may not use this file except in compliance with\n");
+        writer.write("#  the License.  You may obtain a copy of the License at\n");
+        writer.write("#\n");
+        writer.write("#       http://www.apache.org/licenses/LICENSE-2.0\n");
+        writer.write("#\n");
+        writer.write("#  Unless required by applicable law or agreed to in writing, software\n");
+        writer.write("#  distributed under the License is distributed on an \"AS IS\" BASIS,\n");
+        writer.write("#  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.\n");
+        writer.write("#  See the License for the specific language governing permissions and\n");
+        writer.write("#  limitations under the License.\n");
+        writer.write("\n");
+        writer.write("# Generated by " + LazyParser.class.getName() + ", do not edit\n");
+        writer.write("\n");
+        for (Map.Entry<String, Set<String>> entry : manifest.entrySet()) {
+            for (String type : entry.getValue()) {
+                writer.write(entry.getKey());
+                writer.write(' ');
+                writer.write(type);
+                writer.write('\n');
+            }
+        }
+        writer.flush();
+    }
+
+    private static List<String> readServiceFile(URL service)
+            throws IOException {
+        List<String> names = new ArrayList<String>();
+        InputStream stream = service.openStream();
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(stream, IOUtils.UTF_8));
+            String line = reader.readLine();
+            while (line != null) {
+                int hash = line.indexOf('#');
+                if (hash != -1) {
+                    line = line.substring(0, hash);
+                }
+                line = line.trim();
+                if (line.length() > 0) {
+                    names.add(line);
+                }
+                line = reader.readLine();
+            }
+        } finally {
+            stream.close();
+        }
+        return names;
+    }
+
+    /**
+     * Writes the parser types manifest of a service file.
+     *
+     * @param args service file and manifest file paths
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println(
+                    "Usage: LazyParser <service file> <manifest file>");
+            System.exit(1);
+        }
+        File manifest = new File(args[1]);
+        manifest.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(
+                new FileOutputStream(manifest), IOUtils.UTF_8);
+        try {
+            writeManifest(new File(args[0]).toURI().toURL(), writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+}
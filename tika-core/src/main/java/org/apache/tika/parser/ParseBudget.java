@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tika.exception.ParseBudgetExceededException;
+
+/**
+ * Limits on the resources a single parse may use: wall-clock time, bytes
+ * read, output characters and the number of embedded documents. A budget
+ * is set in the {@link ParseContext}, and the limits are then checked
+ * cooperatively by {@link AutoDetectParser}, the streams it parses and
+ * the embedded document extractors:
+ * <pre>
+ * ParseBudget budget = new ParseBudget();
+ * budget.setMaxTime(60 * 1000);
+ * context.set(ParseBudget.class, budget);
+ * </pre>
+ * Once any limit is exceeded, the budget stays exceeded and every later
+ * check fails as well, so that the parse is aborted even if the parser
+ * in question ignores the first failure. The parse ends with a
+ * {@link ParseBudgetExceededException} from the outermost
+ * {@link AutoDetectParser}.
+ * <p>
+ * A budget covers a single parse, including all its embedded documents,
+ * and should not be reused. Its counters are thread-safe, so it can be
+ * shared by embedded documents that are parsed concurrently.
+ *
+ * @since Apache Tika 1.10
+ */
+public class ParseBudget {
+
+    private volatile long maxTime = -1;
+
+    private volatile long maxBytes = -1;
+
+    private volatile long maxCharacters = -1;
+
+    private volatile long maxEmbeddedDocuments = -1;
+
+    /** Time the parse was started, or -1 if not yet started */
+    private final AtomicLong startTime = new AtomicLong(-1);
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final AtomicLong characters = new AtomicLong();
+
+    private final AtomicLong embeddedDocuments = new AtomicLong();
+
+    /** Description of the exceeded limit, or <code>null</code> */
+    private volatile String exceeded = null;
+
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    /**
+     * Sets the maximum wall-clock time of the parse, counted from when the
+     * outermost {@link AutoDetectParser} starts parsing.
+     *
+     * @param maxTime maximum time in milliseconds, or -1 for no limit
+     */
+    public void setMaxTime(long maxTime) {
+        this.maxTime = maxTime;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Sets the maximum number of bytes read from the document and its
+     * embedded documents. Bytes read from an embedded document count in
+     * addition to the bytes of the container they were read from.
+     *
+     * @param maxBytes maximum number of bytes, or -1 for no limit
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxCharacters() {
+        return maxCharacters;
+    }
+
+    /**
+     * Sets the maximum number of output characters of the document,
+     * including the output of its embedded documents.
+     *
+     * @param maxCharacters maximum number of characters, or -1 for no limit
+     */
+    public void setMaxCharacters(long maxCharacters) {
+        this.maxCharacters = maxCharacters;
+    }
+
+    public long getMaxEmbeddedDocuments() {
+        return maxEmbeddedDocuments;
+    }
+
+    /**
+     * Sets the maximum number of embedded documents to parse, at any
+     * level of nesting.
+     *
+     * @param maxEmbeddedDocuments maximum number of embedded documents,
+     *                             or -1 for no limit
+     */
+    public void setMaxEmbeddedDocuments(long maxEmbeddedDocuments) {
+        this.maxEmbeddedDocuments = maxEmbeddedDocuments;
+    }
+
+    /**
+     * Starts the clock of this budget, unless it has already been started.
+     *
+     * @return <code>true</code> if this call started the clock, i.e. it
+     *         was made for the outermost document of the parse
+     */
+    public boolean start() {
+        return startTime.compareAndSet(-1, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the time elapsed since the clock of this budget was started.
+     *
+     * @return elapsed time in milliseconds, or zero if not started
+     */
+    public long getElapsedTime() {
+        long started = startTime.get();
+        if (started >= 0) {
+            return System.currentTimeMillis() - started;
+        } else {
+            return 0;
+        }
+    }
+
+    public long getBytesRead() {
+        return bytes.get();
+    }
+
+    public long getCharacters() {
+        return characters.get();
+    }
+
+    public long getEmbeddedDocuments() {
+        return embeddedDocuments.get();
+    }
+
+    /**
+     * Returns whether any of the limits of this budget has been exceeded.
+     *
+     * @return <code>true</code> if the budget is exceeded
+     */
+    public boolean isExceeded() {
+        return exceeded != null;
+    }
+
+    /**
+     * Checks that no limit has been exceeded, and that there is still
+     * time left.
+     *
+     * @throws ParseBudgetExceededException if the budget is exceeded
+     */
+    public void check() throws ParseBudgetExceededException {
+        if (exceeded != null) {
+            throw new ParseBudgetExceededException(exceeded);
+        }
+        long time = maxTime;
+        if (time >= 0 && getElapsedTime() > time) {
+            exceed("Parse time exceeded the limit of " + time + " ms");
+        }
+    }
+
+    /**
+     * Records bytes read from a document being parsed.
+     *
+     * @param n number of bytes read
+     * @throws ParseBudgetExceededException if the budget is exceeded
+     */
+    public void addBytesRead(long n) throws ParseBudgetExceededException {
+        check();
+        long max = maxBytes;
+        if (bytes.addAndGet(n) > max && max >= 0) {
+            exceed("More than " + max + " bytes read");
+        }
+    }
+
+    /**
+     * Records output characters of the document being parsed.
+     *
+     * @param n number of output characters
+     * @throws ParseBudgetExceededException if the budget is exceeded
+     */
+    public void addCharacters(long n) throws ParseBudgetExceededException {
+        check();
+        long max = maxCharacters;
+        if (characters.addAndGet(n) > max && max >= 0) {
+            exceed("More than " + max + " output characters");
+        }
+    }
+
+    /**
+     * Records an embedded document about to be parsed.
+     *
+     * @throws ParseBudgetExceededException if the budget is exceeded
+     */
+    public void addEmbeddedDocument() throws ParseBudgetExceededException {
+        check();
+        long max = maxEmbeddedDocuments;
+        if (embeddedDocuments.incrementAndGet() > max && max >= 0) {
+            exceed("More than " + max + " embedded documents");
+        }
+    }
+
+    /**
+     * Converts the given exception, caught while parsing, to a
+     * {@link ParseBudgetExceededException} if the budget is exceeded.
+     * Components that can not throw a {@link ParseBudgetExceededException}
+     * directly report an exceeded budget with their own exception types.
+     *
+     * @param cause exception caught while parsing
+     * @throws ParseBudgetExceededException if the budget is exceeded
+     */
+    public void throwIfExceeded(Throwable cause)
+            throws ParseBudgetExceededException {
+        if (cause instanceof ParseBudgetExceededException) {
+            throw (ParseBudgetExceededException) cause;
+        } else if (exceeded != null) {
+            throw new ParseBudgetExceededException(exceeded, cause);
+        }
+    }
+
+    private void exceed(String message) throws ParseBudgetExceededException {
+        if (exceeded == null) {
+            exceeded = message;
+        }
+        throw new ParseBudgetExceededException(exceeded);
+    }
+
+}
@@ -16,17 +16,19 @@
  */
 package org.apache.tika.parser;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PipedReader;
-import java.io.PipedWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.sax.BodyContentHandler;
@@ -39,26 +41,74 @@ import org.xml.sax.ContentHandler;
  * a given input stream. The {@link BodyContentHandler} class and a pipe
  * is used to convert the push-based SAX event stream to the pull-based
  * character stream defined by the {@link Reader} interface.
+ * <p>
+ * Unless another executor is given, the parsing tasks run in a shared
+ * pool of daemon threads that are reused across documents.
  *
  * @since Apache Tika 0.2
  */
 public class ParsingReader extends Reader {
 
+    /**
+     * Default number of characters buffered between the parsing task
+     * and the reader.
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * Maximum number of idle threads kept around for later parsing tasks.
+     */
+    private static final int MAX_POOLED_THREADS =
+            2 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Shared executor for the background parsing tasks. Threads are reused
+     * while there are at most {@link #MAX_POOLED_THREADS} tasks running.
+     * Any further tasks get a thread of their own instead of waiting, since
+     * a task can not complete before its reader has consumed the parsed
+     * text and might otherwise hold up the readers of the queued tasks.
+     */
+    private static final Executor EXECUTOR;
+
+    static {
+        final ThreadFactory factory = new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Apache Tika");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        EXECUTOR = new ThreadPoolExecutor(
+                0, MAX_POOLED_THREADS, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), factory,
+                new RejectedExecutionHandler() {
+                    public void rejectedExecution(
+                            Runnable r, ThreadPoolExecutor executor) {
+                        factory.newThread(r).start();
+                    }
+                });
+    }
+
     /**
      * Parser instance used for parsing the given binary stream.
      */
     private final Parser parser;
 
     /**
-     * Buffered read end of the pipe.
+     * The pipe between the parsing task and this reader.
      */
-    private final Reader reader;
+    private final CharRingBuffer buffer;
 
     /**
      * Write end of the pipe.
      */
     private final Writer writer;
 
+    /**
+     * Buffer used by {@link #read()}.
+     */
+    private final char[] single = new char[1];
+
     /**
      * The binary stream being parsed.
      */
@@ -74,11 +124,6 @@ public class ParsingReader extends Reader {
      */
     private final ParseContext context;
 
-    /**
-     * An exception (if any) thrown by the parsing thread.
-     */
-    private transient Throwable throwable;
-
     /**
      * Utility method that returns a {@link Metadata} instance
      * for a document with the given name.
@@ -132,7 +177,8 @@ public class ParsingReader extends Reader {
     /**
      * Creates a reader for the text content of the given binary stream
      * with the given document metadata. The given parser is used for
-     * parsing. A new background thread is started for the parsing task.
+     * parsing. The parsing task is run in a background thread taken from
+     * a shared pool.
      * <p>
      * The created reader will be responsible for closing the given stream.
      * The stream and any associated resources will be closed at or before
@@ -147,16 +193,26 @@ public class ParsingReader extends Reader {
             Parser parser, InputStream stream, final Metadata metadata,
             ParseContext context) throws IOException {
         this(parser, stream, metadata, context, new Executor() {
-            public void execute(Runnable command) {
+            public void execute(final Runnable command) {
                 String name = metadata.get(Metadata.RESOURCE_NAME_KEY);
                 if (name != null) {
                     name = "Apache Tika: " + name;
                 } else {
                     name = "Apache Tika";
                 }
-                Thread thread = new Thread(command, name);
-                thread.setDaemon(true);
-                thread.start();
+                final String taskName = name;
+                EXECUTOR.execute(new Runnable() {
+                    public void run() {
+                        Thread thread = Thread.currentThread();
+                        String threadName = thread.getName();
+                        thread.setName(taskName);
+                        try {
+                            command.run();
+                        } finally {
+                            thread.setName(threadName);
+                        }
+                    }
+                });
             }
         });
     }
@@ -184,24 +240,54 @@ public class ParsingReader extends Reader {
     public ParsingReader(
             Parser parser, InputStream stream, Metadata metadata,
             ParseContext context, Executor executor) throws IOException {
+        this(parser, stream, metadata, context, executor, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a reader for the text content of the given binary stream
+     * with the given document metadata, like
+     * {@link #ParsingReader(Parser, InputStream, Metadata, ParseContext, Executor)}.
+     * At most the given number of parsed characters (rounded up to the
+     * next power of two) are buffered before the parsing task waits for
+     * them to be read.
+     *
+     * @param parser parser instance
+     * @param stream binary stream
+     * @param metadata document metadata
+     * @param context parsing context
+     * @param executor executor for the parsing task
+     * @param bufferSize size of the character buffer
+     * @throws IOException if the document can not be parsed
+     * @since Apache Tika 1.10
+     */
+    public ParsingReader(
+            Parser parser, InputStream stream, Metadata metadata,
+            ParseContext context, Executor executor, int bufferSize)
+            throws IOException {
         this.parser = parser;
-        PipedReader pipedReader = new PipedReader();
-        this.reader = new BufferedReader(pipedReader);
-        try {
-            this.writer = new PipedWriter(pipedReader);
-        } catch (IOException e) {
-            throw new IllegalStateException(e); // Should never happen
-        }
+        this.buffer = new CharRingBuffer(bufferSize);
+        this.writer = new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len)
+                    throws IOException {
+                buffer.write(cbuf, off, len);
+            }
+            @Override
+            public void flush() {
+            }
+            @Override
+            public void close() {
+                buffer.closeWriter(null);
+            }
+        };
         this.stream = stream;
         this.metadata = metadata;
         this.context = context;
 
         executor.execute(new ParsingTask());
 
-        // TIKA-203: Buffer first character to force metadata extraction
-        reader.mark(1);
-        reader.read();
-        reader.reset();
+        // TIKA-203: Wait for the first character to force metadata extraction
+        buffer.await();
     }
 
     /**
@@ -213,9 +299,11 @@ public class ParsingReader extends Reader {
          * Parses the given binary stream and writes the text content
          * to the write end of the pipe. Potential exceptions (including
          * the one caused if the read end is closed unexpectedly) are
-         * stored before the input stream is closed and processing is stopped.
+         * passed on to the reader when the input stream has been closed
+         * and the pipe is closed to stop processing.
          */
         public void run() {
+            Throwable throwable = null;
             try {
                 ContentHandler handler = new BodyContentHandler(writer);
                 parser.parse(stream, handler, metadata, context);
@@ -231,13 +319,7 @@ public class ParsingReader extends Reader {
                 }
             }
 
-            try {
-                writer.close();
-            } catch (Throwable t) {
-                if (throwable == null) {
-                    throwable = t;
-                }
-            }
+            buffer.closeWriter(throwable);
         }
 
     }
@@ -254,14 +336,15 @@ public class ParsingReader extends Reader {
      */
     @Override
     public int read(char[] cbuf, int off, int len) throws IOException {
-        if (throwable instanceof IOException) {
-            throw (IOException) throwable;
-        } else if (throwable != null) {
-            IOException exception = new IOException("");
-            exception.initCause(throwable);
-            throw exception;
+        return buffer.read(cbuf, off, len);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (buffer.read(single, 0, 1) == -1) {
+            return -1;
         }
-        return reader.read(cbuf, off, len);
+        return single[0];
     }
 
     /**
@@ -273,7 +356,7 @@ public class ParsingReader extends Reader {
      */
     @Override
     public void close() throws IOException {
-        reader.close();
+        buffer.closeReader();
     }
 
 }
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser;
+
+import org.apache.tika.metadata.Metadata;
+import org.xml.sax.SAXException;
+
+/**
+ * Callback interface for receiving the metadata of each document as soon
+ * as it has been parsed by a {@link RecursiveParserWrapper}, instead of
+ * collecting all of it in memory until the end of the parse.
+ *
+ * @see RecursiveParserWrapper#setListener(RecursiveMetadataListener)
+ * @since Apache Tika 1.10
+ */
+public interface RecursiveMetadataListener {
+
+    /**
+     * Called when an embedded document has been parsed. Documents
+     * embedded in this document have already been reported.
+     *
+     * @param metadata metadata of the embedded document, including
+     *                 its content and embedded resource path
+     * @throws SAXException if the metadata could not be processed
+     */
+    void embeddedDocument(Metadata metadata) throws SAXException;
+
+    /**
+     * Called when the container document has been parsed. This is the
+     * last call for a document, after all its embedded documents.
+     *
+     * @param metadata metadata of the container document
+     * @throws SAXException if the metadata could not be processed
+     */
+    void containerDocument(Metadata metadata) throws SAXException;
+
+}
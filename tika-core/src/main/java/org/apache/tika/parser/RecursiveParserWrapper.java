@@ -61,7 +61,10 @@ import org.xml.sax.helpers.DefaultHandler;
  * <a href="http://wiki.apache.org/tika/RecursiveMetadata#Jukka.27s_RecursiveMetadata_Parser">RecursiveMetadataParser</a>.
  * <p>
  * Note that this wrapper holds all data in memory and is not appropriate
- * for files with content too large to be held in memory.
+ * for files with content too large to be held in memory. Alternatively,
+ * a {@link RecursiveMetadataListener} can be set to receive the metadata
+ * of each document as soon as it has been parsed, in which case nothing
+ * is kept in memory and {@link #getMetadata()} returns an empty list.
  * <p>
  * Note, too, that this wrapper is not thread safe because it stores state.  
  * The client must initialize a new wrapper for each thread, and the client
@@ -101,6 +104,8 @@ public class RecursiveParserWrapper implements Parser {
     private int unknownCount = 0;   
     private int maxEmbeddedResources = -1;
     private boolean hitMaxEmbeddedResources = false;
+    private int embeddedResources = 0;
+    private RecursiveMetadataListener listener = null;
 
     /**
      * Initialize the wrapper with {@link #catchEmbeddedExceptions} set
@@ -171,7 +176,11 @@ public class RecursiveParserWrapper implements Parser {
         if (hitMaxEmbeddedResources) {
             metadata.set(EMBEDDED_RESOURCE_LIMIT_REACHED, "true");
         }
-        metadatas.add(0, deepCopy(metadata));
+        if (listener != null) {
+            listener.containerDocument(deepCopy(metadata));
+        } else {
+            metadatas.add(0, deepCopy(metadata));
+        }
     }
 
     /**
@@ -199,15 +208,31 @@ public class RecursiveParserWrapper implements Parser {
     public void setMaxEmbeddedResources(int max) {
         maxEmbeddedResources = max;
     }
+
+    /**
+     * Sets the listener that receives the metadata of each document as
+     * soon as it has been parsed. The embedded documents are reported
+     * first, in the order in which their parsing completes, followed by
+     * the container document. When a listener is set, the metadata is
+     * not collected for {@link #getMetadata()}.
+     *
+     * @since Apache Tika 1.10
+     * @param listener metadata listener, or <code>null</code> to collect
+     *                 the metadata in memory
+     */
+    public void setListener(RecursiveMetadataListener listener) {
+        this.listener = listener;
+    }
     
 
     /**
-     * This clears the metadata list and resets {@link #unknownCount} and
-     * {@link #hitMaxEmbeddedResources}
+     * This clears the metadata list and resets {@link #unknownCount},
+     * {@link #embeddedResources} and {@link #hitMaxEmbeddedResources}
      */
     public void reset() {
         metadatas.clear();
         unknownCount = 0;
+        embeddedResources = 0;
         hitMaxEmbeddedResources = false;
     }
     
@@ -296,7 +321,7 @@ public class RecursiveParserWrapper implements Parser {
                 SAXException, TikaException {
             //Test to see if we should avoid parsing
             if (maxEmbeddedResources > -1 && 
-                    metadatas.size() >= maxEmbeddedResources) {
+                    embeddedResources >= maxEmbeddedResources) {
                 hitMaxEmbeddedResources = true;
                 return;
             }
@@ -349,12 +374,17 @@ public class RecursiveParserWrapper implements Parser {
             //to re-test to make sure that we limit the 
             //number of stored resources
             if (maxEmbeddedResources > -1 && 
-                    metadatas.size() >= maxEmbeddedResources) {
+                    embeddedResources >= maxEmbeddedResources) {
                 hitMaxEmbeddedResources = true;
                 return;
             }
             addContent(localHandler, metadata);
-            metadatas.add(deepCopy(metadata));
+            embeddedResources++;
+            if (listener != null) {
+                listener.embeddedDocument(deepCopy(metadata));
+            } else {
+                metadatas.add(deepCopy(metadata));
+            }
         }        
     }
 
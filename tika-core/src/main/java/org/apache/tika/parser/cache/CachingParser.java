@@ -0,0 +1,360 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.extractor.EmbeddedDocumentExtractor;
+import org.apache.tika.extractor.ParsingEmbeddedDocumentExtractor;
+import org.apache.tika.io.NullOutputStream;
+import org.apache.tika.io.TemporaryResources;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseBudget;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.ParserDecorator;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * Parser decorator that caches parse results by a digest of the document
+ * content, so that repeated copies of a document, such as the same logo
+ * or forwarded message attached to thousands of emails, only get parsed
+ * once. On a cache hit the recorded SAX events and metadata values are
+ * replayed to the caller instead of parsing the document again.
+ * <p>
+ * The document is first made available for random access with
+ * {@link TikaInputStream#getLength()}, so small documents are digested
+ * straight from memory and larger ones from the file they are spooled
+ * into, after which the same stream is given to the decorated parser on
+ * a cache miss.
+ * <p>
+ * Results are keyed by the document content together with the input
+ * metadata, such as the file name or declared content type, and the
+ * objects in the parse context, such as parser configuration, as all of
+ * them can change the result. Documents are parsed without the cache if
+ * the parse context holds objects that can not be serialized, such as most
+ * {@link org.apache.tika.parser.PasswordProvider}s, as their effect on the
+ * result can not be told. The component parsers themselves are only
+ * identified by class, so a cache should only be shared by parsers with
+ * the same configuration. Results are not cached
+ * if parsing fails, or if embedded documents are handed to parsers or
+ * extractors in the parse context whose output would not be part of the
+ * recorded events, as with a
+ * {@link org.apache.tika.parser.RecursiveParserWrapper} or a custom
+ * {@link EmbeddedDocumentExtractor}. To cache embedded documents
+ * individually, set this parser as the {@link Parser} in the parse context
+ * (for the {@link ParsingEmbeddedDocumentExtractor}) or wrap it in a
+ * {@link org.apache.tika.parser.RecursiveParserWrapper}.
+ *
+ * @since Apache Tika 1.10
+ */
+public class CachingParser extends ParserDecorator {
+
+    /** Serial version UID */
+    private static final long serialVersionUID = 6480457317584722154L;
+
+    /**
+     * Default limit for the size of the recorded SAX events of a single
+     * document.
+     */
+    public static final long DEFAULT_MAX_RESULT_SIZE = 4 * 1024 * 1024;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ParseResultCache cache;
+
+    private volatile long maxResultSize = DEFAULT_MAX_RESULT_SIZE;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong uncacheable = new AtomicLong();
+
+    /**
+     * Creates a caching decorator for the given parser.
+     *
+     * @param parser parser to be decorated
+     * @param cache store of parse results
+     */
+    public CachingParser(Parser parser, ParseResultCache cache) {
+        super(parser);
+        this.cache = cache;
+    }
+
+    public ParseResultCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the largest recorded result that is stored in the cache.
+     *
+     * @return maximum result size in bytes
+     */
+    public long getMaxResultSize() {
+        return maxResultSize;
+    }
+
+    /**
+     * Sets the largest recorded result that is stored in the cache, to
+     * avoid buffering the output of large documents that are unlikely to
+     * be repeated. The default is {@link #DEFAULT_MAX_RESULT_SIZE}.
+     *
+     * @param maxResultSize maximum result size in bytes
+     */
+    public void setMaxResultSize(long maxResultSize) {
+        this.maxResultSize = maxResultSize;
+    }
+
+    /**
+     * Returns the number of documents whose results were replayed from
+     * the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of documents that were parsed because their
+     * results were not found in the cache.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of documents that were parsed without using the
+     * cache, because they could not be digested or their results could
+     * not be recorded.
+     */
+    public long getUncacheable() {
+        return uncacheable.get();
+    }
+
+    @Override
+    public void parse(
+            InputStream stream, ContentHandler handler,
+            Metadata metadata, ParseContext context)
+            throws IOException, SAXException, TikaException {
+        TemporaryResources tmp = new TemporaryResources();
+        try {
+            TikaInputStream tis = TikaInputStream.get(stream, tmp);
+            String key = getKey(tis, metadata, context);
+            if (key == null) {
+                uncacheable.incrementAndGet();
+                super.parse(tis, handler, metadata, context);
+                return;
+            }
+
+            ParseResult result = cache.get(key);
+            if (result != null) {
+                hits.incrementAndGet();
+                result.replay(handler, metadata);
+                return;
+            }
+
+            misses.incrementAndGet();
+            result = record(tis, handler, metadata, context);
+            if (result != null) {
+                cache.put(key, result);
+            } else {
+                uncacheable.incrementAndGet();
+            }
+        } finally {
+            tmp.dispose();
+        }
+    }
+
+    /**
+     * Parses the document while recording the parse result.
+     *
+     * @return recorded result, or <code>null</code> if it can not be cached
+     */
+    private ParseResult record(
+            TikaInputStream stream, ContentHandler handler,
+            Metadata metadata, ParseContext context)
+            throws IOException, SAXException, TikaException {
+        Metadata before = new Metadata();
+        for (String name : metadata.names()) {
+            for (String value : metadata.getValues(name)) {
+                before.add(name, value);
+            }
+        }
+
+        // Watch for embedded documents whose output bypasses our handler
+        final boolean[] bypassed = new boolean[1];
+        Parser contextParser = context.get(Parser.class);
+        if (contextParser != null && contextParser != this) {
+            context.set(Parser.class, new ParserDecorator(contextParser) {
+                private static final long serialVersionUID =
+                        -3018937451466512296L;
+                @Override
+                public void parse(
+                        InputStream stream, ContentHandler handler,
+                        Metadata metadata, ParseContext context)
+                        throws IOException, SAXException, TikaException {
+                    bypassed[0] = true;
+                    super.parse(stream, handler, metadata, context);
+                }
+            });
+        }
+        final EmbeddedDocumentExtractor extractor =
+            context.get(EmbeddedDocumentExtractor.class);
+        if (extractor != null
+                && extractor.getClass() != ParsingEmbeddedDocumentExtractor.class) {
+            context.set(EmbeddedDocumentExtractor.class,
+                    new EmbeddedDocumentExtractor() {
+                public boolean shouldParseEmbedded(Metadata metadata) {
+                    return extractor.shouldParseEmbedded(metadata);
+                }
+                public void parseEmbedded(
+                        InputStream stream, ContentHandler handler,
+                        Metadata metadata, boolean outputHtml)
+                        throws SAXException, IOException {
+                    bypassed[0] = true;
+                    extractor.parseEmbedded(
+                            stream, handler, metadata, outputHtml);
+                }
+            });
+        }
+
+        ParseResultRecorder recorder =
+            new ParseResultRecorder(handler, maxResultSize);
+        try {
+            super.parse(stream, recorder, metadata, context);
+        } finally {
+            if (contextParser != null && contextParser != this) {
+                context.set(Parser.class, contextParser);
+            }
+            if (extractor != null) {
+                context.set(EmbeddedDocumentExtractor.class, extractor);
+            }
+        }
+
+        if (bypassed[0]) {
+            return null;
+        } else {
+            return recorder.getResult(before, metadata);
+        }
+    }
+
+    /**
+     * Computes the cache key of the document: a hex encoded SHA-256 digest
+     * of the whole document content, the input metadata and the parse
+     * context.
+     *
+     * @return cache key, or <code>null</code> if the document can not
+     *         be digested
+     */
+    private static String getKey(
+            TikaInputStream stream, Metadata metadata, ParseContext context)
+            throws IOException {
+        if (stream.getPosition() > 0) {
+            return null;
+        }
+
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+
+        stream.getLength(); // buffers or spools the document
+        if (stream.hasFile()) {
+            // Digest in chunks, rather than reading the whole file at once
+            FileChannel channel = stream.getFileChannel();
+            ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+            long offset = 0;
+            int n = channel.read(chunk, offset);
+            while (n != -1) {
+                chunk.flip();
+                md.update(chunk);
+                chunk.clear();
+                offset += n;
+                n = channel.read(chunk, offset);
+            }
+        } else {
+            md.update(stream.getByteBuffer());
+        }
+
+        ObjectOutputStream out = new KeyOutputStream(
+                new DigestOutputStream(new NullOutputStream(), md));
+        try {
+            String[] names = metadata.names();
+            Arrays.sort(names);
+            for (String name : names) {
+                out.writeObject(name);
+                out.writeObject(metadata.getValues(name));
+            }
+            out.writeObject(context);
+        } catch (IOException e) {
+            // Such as a NotSerializableException from a context object
+            return null;
+        } finally {
+            out.close();
+        }
+        byte[] digest = md.digest();
+
+        char[] key = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            key[2 * i] = HEX[(digest[i] >> 4) & 0x0f];
+            key[2 * i + 1] = HEX[digest[i] & 0x0f];
+        }
+        return new String(key);
+    }
+
+    /**
+     * Serializes the input metadata and parse context into the cache key.
+     * Parsers and embedded document extractors only decide what happens
+     * to embedded documents, which is checked while recording, and the
+     * parse budget doesn't change a successful result, so those are only
+     * identified by class.
+     */
+    private static class KeyOutputStream extends ObjectOutputStream {
+
+        KeyOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            if (obj instanceof Parser
+                    || obj instanceof EmbeddedDocumentExtractor
+                    || obj instanceof ParseBudget) {
+                return obj.getClass().getName();
+            }
+            return obj;
+        }
+
+    }
+
+}
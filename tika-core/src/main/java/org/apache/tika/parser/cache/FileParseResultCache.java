@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * On-disk cache of parse results, with one serialized file per result in
+ * the given directory. The cache is not bounded; remove files from the
+ * directory to reclaim space. Failures to read or write the files are
+ * treated as cache misses.
+ *
+ * @since Apache Tika 1.10
+ */
+public class FileParseResultCache implements ParseResultCache {
+
+    private final File directory;
+
+    /**
+     * Creates an on-disk cache in the given directory, which is created
+     * if it does not already exist.
+     *
+     * @param directory cache directory
+     * @throws IOException if the directory can not be created
+     */
+    public FileParseResultCache(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(
+                    "Unable to create cache directory " + directory);
+        }
+        this.directory = directory;
+    }
+
+    public ParseResult get(String key) {
+        File file = new File(directory, key + ".ser");
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            ObjectInputStream input = new ObjectInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            try {
+                return (ParseResult) input.readObject();
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            return null;
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ClassCastException e) {
+            return null;
+        }
+    }
+
+    public void put(String key, ParseResult result) {
+        File file = new File(directory, key + ".ser");
+        if (file.isFile()) {
+            return;
+        }
+        try {
+            // Write to a temporary file first, so that concurrent readers
+            // never see a partially written result
+            File tmp = File.createTempFile(key, ".tmp", directory);
+            try {
+                ObjectOutputStream output = new ObjectOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(tmp)));
+                try {
+                    output.writeObject(result);
+                } finally {
+                    output.close();
+                }
+                if (!tmp.renameTo(file)) {
+                    tmp.delete();
+                }
+            } finally {
+                if (tmp.exists()) {
+                    tmp.delete();
+                }
+            }
+        } catch (IOException e) {
+            // Not cached
+        }
+    }
+
+    /**
+     * Returns the directory where the results are stored.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+}
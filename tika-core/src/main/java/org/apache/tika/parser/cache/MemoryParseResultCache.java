@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of parse results, bounded by the total size of the
+ * cached results. The least recently used results are evicted first.
+ * <p>
+ * An optional second tier, such as a {@link FileParseResultCache}, can be
+ * given. All results are then also stored in the second tier, and results
+ * not found in memory are looked up from there.
+ *
+ * @since Apache Tika 1.10
+ */
+public class MemoryParseResultCache implements ParseResultCache {
+
+    private final long maxSize;
+
+    private final ParseResultCache next;
+
+    private final LinkedHashMap<String, ParseResult> results =
+        new LinkedHashMap<String, ParseResult>(16, 0.75f, true);
+
+    private long size = 0;
+
+    /**
+     * Creates an in-memory cache without a second tier.
+     *
+     * @param maxSize maximum total size of the cached results, in bytes
+     */
+    public MemoryParseResultCache(long maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * Creates an in-memory cache in front of the given second tier.
+     *
+     * @param maxSize maximum total size of the cached results, in bytes
+     * @param next second tier, or <code>null</code>
+     */
+    public MemoryParseResultCache(long maxSize, ParseResultCache next) {
+        this.maxSize = maxSize;
+        this.next = next;
+    }
+
+    public ParseResult get(String key) {
+        ParseResult result;
+        synchronized (results) {
+            result = results.get(key);
+        }
+        if (result == null && next != null) {
+            result = next.get(key);
+            if (result != null) {
+                store(key, result);
+            }
+        }
+        return result;
+    }
+
+    public void put(String key, ParseResult result) {
+        store(key, result);
+        if (next != null) {
+            next.put(key, result);
+        }
+    }
+
+    private void store(String key, ParseResult result) {
+        long resultSize = result.getSize();
+        if (resultSize > maxSize) {
+            return;
+        }
+        synchronized (results) {
+            ParseResult previous = results.put(key, result);
+            if (previous != null) {
+                size -= previous.getSize();
+            }
+            size += resultSize;
+
+            Iterator<Map.Entry<String, ParseResult>> iterator =
+                results.entrySet().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                Map.Entry<String, ParseResult> eldest = iterator.next();
+                if (eldest.getValue() != result) {
+                    size -= eldest.getValue().getSize();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of results held in memory.
+     */
+    public int getCount() {
+        synchronized (results) {
+            return results.size();
+        }
+    }
+
+    /**
+     * Returns the total size of the results held in memory, in bytes.
+     */
+    public long getSize() {
+        synchronized (results) {
+            return size;
+        }
+    }
+
+    /**
+     * Returns the maximum total size of the results held in memory.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+}
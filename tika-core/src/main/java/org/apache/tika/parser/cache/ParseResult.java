@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.tika.metadata.Metadata;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * The recorded outcome of parsing a document: the SAX events sent to the
+ * content handler, and the metadata values set by the parser. A result can
+ * be replayed any number of times to reproduce the original parse.
+ *
+ * @since Apache Tika 1.10
+ */
+public class ParseResult implements Serializable {
+
+    /** Serial version UID */
+    private static final long serialVersionUID = -2196455893201858125L;
+
+    static final byte START_DOCUMENT = 1;
+
+    static final byte END_DOCUMENT = 2;
+
+    static final byte START_PREFIX_MAPPING = 3;
+
+    static final byte END_PREFIX_MAPPING = 4;
+
+    static final byte START_ELEMENT = 5;
+
+    static final byte END_ELEMENT = 6;
+
+    static final byte CHARACTERS = 7;
+
+    static final byte IGNORABLE_WHITESPACE = 8;
+
+    static final byte PROCESSING_INSTRUCTION = 9;
+
+    static final byte SKIPPED_ENTITY = 10;
+
+    /** Encoded SAX events, see {@link ParseResultRecorder} */
+    private final byte[] events;
+
+    /** Metadata values set by the parser */
+    private final Map<String, String[]> metadata;
+
+    ParseResult(byte[] events, Map<String, String[]> metadata) {
+        this.events = events;
+        this.metadata = metadata;
+    }
+
+    /**
+     * Returns the approximate amount of memory used by this result,
+     * in bytes.
+     *
+     * @return size of this result
+     */
+    public long getSize() {
+        long size = events.length;
+        for (Map.Entry<String, String[]> entry : metadata.entrySet()) {
+            size += 2 * entry.getKey().length();
+            for (String value : entry.getValue()) {
+                size += 2 * value.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the metadata values set by the parser.
+     *
+     * @return unmodifiable map of metadata names to values
+     */
+    public Map<String, String[]> getMetadata() {
+        return Collections.unmodifiableMap(metadata);
+    }
+
+    /**
+     * Replays the recorded parse: sends the recorded SAX events to the
+     * given content handler and sets the recorded metadata values.
+     *
+     * @param handler content handler
+     * @param target metadata of the document being parsed
+     * @throws SAXException if the content handler fails
+     */
+    public void replay(ContentHandler handler, Metadata target)
+            throws SAXException {
+        try {
+            DataInputStream input =
+                new DataInputStream(new ByteArrayInputStream(events));
+            int type = input.read();
+            while (type != -1) {
+                replay(type, input, handler);
+                type = input.read();
+            }
+        } catch (IOException e) {
+            throw new SAXException("Corrupted parse result", e);
+        }
+
+        for (Map.Entry<String, String[]> entry : metadata.entrySet()) {
+            target.remove(entry.getKey());
+            for (String value : entry.getValue()) {
+                target.add(entry.getKey(), value);
+            }
+        }
+    }
+
+    private static void replay(
+            int type, DataInputStream input, ContentHandler handler)
+            throws IOException, SAXException {
+        if (type == START_DOCUMENT) {
+            handler.startDocument();
+        } else if (type == END_DOCUMENT) {
+            handler.endDocument();
+        } else if (type == START_PREFIX_MAPPING) {
+            handler.startPrefixMapping(readString(input), readString(input));
+        } else if (type == END_PREFIX_MAPPING) {
+            handler.endPrefixMapping(readString(input));
+        } else if (type == START_ELEMENT) {
+            String uri = readString(input);
+            String localName = readString(input);
+            String qName = readString(input);
+            AttributesImpl atts = new AttributesImpl();
+            int n = input.readInt();
+            for (int i = 0; i < n; i++) {
+                atts.addAttribute(
+                        readString(input), readString(input),
+                        readString(input), readString(input),
+                        readString(input));
+            }
+            handler.startElement(uri, localName, qName, atts);
+        } else if (type == END_ELEMENT) {
+            handler.endElement(
+                    readString(input), readString(input), readString(input));
+        } else if (type == CHARACTERS) {
+            char[] ch = readCharacters(input);
+            handler.characters(ch, 0, ch.length);
+        } else if (type == IGNORABLE_WHITESPACE) {
+            char[] ch = readCharacters(input);
+            handler.ignorableWhitespace(ch, 0, ch.length);
+        } else if (type == PROCESSING_INSTRUCTION) {
+            handler.processingInstruction(
+                    readString(input), readString(input));
+        } else if (type == SKIPPED_ENTITY) {
+            handler.skippedEntity(readString(input));
+        } else {
+            throw new IOException("Unknown SAX event type: " + type);
+        }
+    }
+
+    private static String readString(DataInputStream input)
+            throws IOException {
+        char[] ch = readCharacters(input);
+        if (ch != null) {
+            return new String(ch);
+        } else {
+            return null;
+        }
+    }
+
+    private static char[] readCharacters(DataInputStream input)
+            throws IOException {
+        int n = input.readInt();
+        if (n < 0) {
+            return null;
+        }
+        char[] ch = new char[n];
+        for (int i = 0; i < n; i++) {
+            ch[i] = input.readChar();
+        }
+        return ch;
+    }
+
+    /**
+     * Collects the metadata values that differ between the metadata given
+     * to a parser and the metadata after parsing.
+     *
+     * @param before metadata given to the parser
+     * @param after metadata after parsing
+     * @return changed metadata values
+     */
+    static Map<String, String[]> getChanges(Metadata before, Metadata after) {
+        Map<String, String[]> changes = new LinkedHashMap<String, String[]>();
+        for (String name : after.names()) {
+            String[] values = after.getValues(name);
+            if (!Arrays.equals(values, before.getValues(name))) {
+                changes.put(name, values);
+            }
+        }
+        return changes;
+    }
+
+}
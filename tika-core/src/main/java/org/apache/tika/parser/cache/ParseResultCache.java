@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser.cache;
+
+/**
+ * Store of parse results, keyed by a digest of the parsed document.
+ * Implementations must be safe for use by multiple threads.
+ *
+ * @since Apache Tika 1.10
+ * @see CachingParser
+ */
+public interface ParseResultCache {
+
+    /**
+     * Returns the cached result for the given key, if any.
+     *
+     * @param key document digest
+     * @return cached result, or <code>null</code> if not found
+     */
+    ParseResult get(String key);
+
+    /**
+     * Stores the result of parsing a document. The cache may decide to
+     * not keep the result, for example if it is too large.
+     *
+     * @param key document digest
+     * @param result parse result
+     */
+    void put(String key, ParseResult result);
+
+}
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.sax.ContentHandlerDecorator;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * Content handler decorator that records all the SAX events passed
+ * through it, for a {@link ParseResult}. Strings and characters are
+ * stored as an int length (-1 for <code>null</code>) followed by UTF-16
+ * code units. Recording stops once the recorded events exceed a given
+ * size, in which case no result is available. Subclasses can keep track
+ * of the size of the recording through {@link #afterRecord(int)}.
+ *
+ * @since Apache Tika 1.10
+ */
+public class ParseResultRecorder extends ContentHandlerDecorator {
+
+    private final long maxSize;
+
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    private DataOutputStream output = new DataOutputStream(buffer);
+
+    /** Size of the recording before the event being recorded */
+    private int eventStart = 0;
+
+    /**
+     * Creates a recorder that records the events passed to the given
+     * content handler.
+     *
+     * @param handler decorated content handler
+     * @param maxSize maximum size of the recorded events, in bytes
+     */
+    public ParseResultRecorder(ContentHandler handler, long maxSize) {
+        super(handler);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the recorded parse result.
+     *
+     * @param before metadata given to the parser
+     * @param after metadata after parsing
+     * @return parse result, or <code>null</code> if the recorded
+     *         events were too large
+     */
+    public ParseResult getResult(Metadata before, Metadata after) {
+        if (buffer != null) {
+            return new ParseResult(
+                    buffer.toByteArray(), ParseResult.getChanges(before, after));
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the events recorded so far as a result without metadata
+     * changes, and clears the recording, so that the output of a long
+     * parse can be passed on in parts. The size limit applies to each
+     * part separately. Must not be called while an event is being
+     * recorded, for example from a different thread.
+     *
+     * @return recorded events, or <code>null</code> if they were too large
+     */
+    public ParseResult takeEvents() {
+        if (buffer != null) {
+            ParseResult result = new ParseResult(
+                    buffer.toByteArray(),
+                    Collections.<String, String[]>emptyMap());
+            buffer = new ByteArrayOutputStream();
+            output = new DataOutputStream(buffer);
+            return result;
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        if (record(ParseResult.START_DOCUMENT)) {
+            done();
+        }
+        super.startDocument();
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        if (record(ParseResult.END_DOCUMENT)) {
+            done();
+        }
+        super.endDocument();
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri)
+            throws SAXException {
+        if (record(ParseResult.START_PREFIX_MAPPING)) {
+            writeString(prefix);
+            writeString(uri);
+            done();
+        }
+        super.startPrefixMapping(prefix, uri);
+    }
+
+    @Override
+    public void endPrefixMapping(String prefix) throws SAXException {
+        if (record(ParseResult.END_PREFIX_MAPPING)) {
+            writeString(prefix);
+            done();
+        }
+        super.endPrefixMapping(prefix);
+    }
+
+    @Override
+    public void startElement(
+            String uri, String localName, String name, Attributes atts)
+            throws SAXException {
+        if (record(ParseResult.START_ELEMENT)) {
+            writeString(uri);
+            writeString(localName);
+            writeString(name);
+            int n = atts.getLength();
+            writeInt(n);
+            for (int i = 0; i < n; i++) {
+                writeString(atts.getURI(i));
+                writeString(atts.getLocalName(i));
+                writeString(atts.getQName(i));
+                writeString(atts.getType(i));
+                writeString(atts.getValue(i));
+            }
+            done();
+        }
+        super.startElement(uri, localName, name, atts);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String name)
+            throws SAXException {
+        if (record(ParseResult.END_ELEMENT)) {
+            writeString(uri);
+            writeString(localName);
+            writeString(name);
+            done();
+        }
+        super.endElement(uri, localName, name);
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length)
+            throws SAXException {
+        if (record(ParseResult.CHARACTERS)) {
+            writeCharacters(ch, start, length);
+            done();
+        }
+        super.characters(ch, start, length);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length)
+            throws SAXException {
+        if (record(ParseResult.IGNORABLE_WHITESPACE)) {
+            writeCharacters(ch, start, length);
+            done();
+        }
+        super.ignorableWhitespace(ch, start, length);
+    }
+
+    @Override
+    public void processingInstruction(String target, String data)
+            throws SAXException {
+        if (record(ParseResult.PROCESSING_INSTRUCTION)) {
+            writeString(target);
+            writeString(data);
+            done();
+        }
+        super.processingInstruction(target, data);
+    }
+
+    @Override
+    public void skippedEntity(String name) throws SAXException {
+        if (record(ParseResult.SKIPPED_ENTITY)) {
+            writeString(name);
+            done();
+        }
+        super.skippedEntity(name);
+    }
+
+    /**
+     * Starts recording an event, unless recording has already stopped.
+     *
+     * @return <code>true</code> if the event is being recorded
+     */
+    private boolean record(byte type) {
+        if (output != null) {
+            eventStart = output.size();
+            writeByte(type);
+        }
+        return output != null;
+    }
+
+    /**
+     * Finishes recording an event, and stops recording if the recorded
+     * events have grown too large.
+     */
+    private void done() throws SAXException {
+        if (output != null && output.size() > maxSize) {
+            output = null;
+            buffer = null;
+        } else if (output != null) {
+            afterRecord(output.size() - eventStart);
+        }
+    }
+
+    /**
+     * Invoked after an event has been recorded, before it is passed on
+     * to the decorated content handler. Does nothing by default.
+     *
+     * @param size number of bytes taken by the recorded event
+     * @throws SAXException if the event should not be passed on
+     */
+    protected void afterRecord(int size) throws SAXException {
+    }
+
+    private void writeByte(int value) {
+        try {
+            output.writeByte(value);
+        } catch (IOException e) {
+            // Not possible with an in-memory buffer
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeInt(int value) {
+        try {
+            output.writeInt(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeString(String value) {
+        if (value != null) {
+            try {
+                output.writeInt(value.length());
+                output.writeChars(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        } else {
+            writeInt(-1);
+        }
+    }
+
+    private void writeCharacters(char[] ch, int start, int length) {
+        try {
+            output.writeInt(length);
+            for (int i = start; i < start + length; i++) {
+                output.writeChar(ch[i]);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -41,9 +41,14 @@ public class BodyContentHandler extends ContentHandlerDecorator {
     /**
      * The XPath matcher used to select the XHTML body contents.
      */
-    private static final Matcher MATCHER =
+    static final Matcher MATCHER =
         PARSER.parse("/xhtml:html/xhtml:body/descendant::node()");
 
+    /**
+     * The content handler that receives the XHTML body events.
+     */
+    private final ContentHandler handler;
+
     /**
      * Creates a content handler that passes all XHTML body events to the
      * given underlying content handler.
@@ -52,6 +57,14 @@ public class BodyContentHandler extends ContentHandlerDecorator {
      */
     public BodyContentHandler(ContentHandler handler) {
         super(new MatchingContentHandler(handler, MATCHER));
+        this.handler = handler;
+    }
+
+    /**
+     * Returns the content handler that receives the XHTML body events.
+     */
+    ContentHandler getBodyHandler() {
+        return handler;
     }
 
     /**
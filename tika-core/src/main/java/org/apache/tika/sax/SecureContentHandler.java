@@ -19,8 +19,10 @@ package org.apache.tika.sax;
 import java.io.IOException;
 import java.util.LinkedList;
 
+import org.apache.tika.exception.ParseBudgetExceededException;
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.parser.ParseBudget;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
@@ -79,6 +81,11 @@ public class SecureContentHandler extends ContentHandlerDecorator {
      */
     private int maxPackageEntryDepth = 10;
 
+    /**
+     * Budget for the output characters and time of the parse.
+     */
+    private ParseBudget budget = null;
+
     /**
      * Decorates the given content handler with zip bomb prevention based
      * on the count of bytes read from the given counting input stream.
@@ -94,6 +101,32 @@ public class SecureContentHandler extends ContentHandlerDecorator {
         this.stream = stream;
     }
 
+    /**
+     * Decorates the given content handler with zip bomb prevention just
+     * like the {@link #SecureContentHandler(ContentHandler, TikaInputStream)}
+     * constructor, except when the handler is a plain
+     * {@link BodyContentHandler} that writes text out to a character
+     * stream, optionally up to a write limit. Then the returned handler
+     * takes the place of the whole decorator chain, so that each run of
+     * characters gets checked, matched against the body, counted against
+     * the write limit and written out in one step, and element events go
+     * no further. The text written out is exactly the same.
+     *
+     * @since Apache Tika 1.10
+     * @param handler the content handler to be decorated
+     * @param stream the input stream to be parsed
+     * @return zip bomb prevention decorator
+     */
+    public static SecureContentHandler decorate(
+            ContentHandler handler, TikaInputStream stream) {
+        SecureContentHandler text = SecureTextContentHandler.get(handler, stream);
+        if (text != null) {
+            return text;
+        } else {
+            return new SecureContentHandler(handler, stream);
+        }
+    }
+
     /**
      * Returns the configured output threshold.
      *
@@ -178,6 +211,29 @@ public class SecureContentHandler extends ContentHandlerDecorator {
         this.maxDepth = depth;
     }
 
+    /**
+     * Returns the parse budget checked by this handler.
+     *
+     * @since Apache Tika 1.10
+     * @return parse budget, or <code>null</code>
+     */
+    public ParseBudget getParseBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the parse budget to be checked by this handler. All output
+     * characters are then recorded in the budget, and the parse time is
+     * checked on each element. An exception gets thrown once the budget
+     * is exceeded.
+     *
+     * @since Apache Tika 1.10
+     * @param budget parse budget, or <code>null</code>
+     */
+    public void setParseBudget(ParseBudget budget) {
+        this.budget = budget;
+    }
+
     /**
      * Converts the given {@link SAXException} to a corresponding
      * {@link TikaException} if it's caused by this instance detecting
@@ -213,7 +269,14 @@ public class SecureContentHandler extends ContentHandlerDecorator {
      * @param length number of new output characters produced
      * @throws SAXException if a zip bomb is detected
      */
-    private void advance(int length) throws SAXException {
+    void advance(int length) throws SAXException {
+        if (budget != null) {
+            try {
+                budget.addCharacters(length);
+            } catch (ParseBudgetExceededException e) {
+                throw new SAXException(e);
+            }
+        }
         characterCount += length;
         long byteCount = getByteCount();
         if (characterCount > threshold
@@ -229,6 +292,13 @@ public class SecureContentHandler extends ContentHandlerDecorator {
     public void startElement(
             String uri, String localName, String name, Attributes atts)
             throws SAXException {
+        if (budget != null) {
+            try {
+                budget.check();
+            } catch (ParseBudgetExceededException e) {
+                throw new SAXException(e);
+            }
+        }
         currentDepth++;
         if (currentDepth >= maxDepth) {
             throw new SecureSAXException(
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.sax;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedList;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.sax.xpath.Matcher;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Zip bomb prevention fused with the plain text output of a
+ * {@link BodyContentHandler}. Stands in for the whole chain of a
+ * {@link SecureContentHandler} over a {@link BodyContentHandler} over
+ * an optional {@link WriteOutContentHandler} over a
+ * {@link ToTextContentHandler}, which only ever writes out the body
+ * characters and ignores all the other events. Each run of characters
+ * is therefore checked, matched, counted and written in one step, and
+ * the element events are not passed any further than needed to keep
+ * track of the zip bomb checks and of whether we are within the body.
+ *
+ * @see SecureContentHandler#decorate(ContentHandler, TikaInputStream)
+ */
+class SecureTextContentHandler extends SecureContentHandler {
+
+    /**
+     * Returns a fused handler that stands in for the given handler, or
+     * <code>null</code> if the handler does anything else than writing
+     * plain body text out to a character stream. Only the exact classes
+     * qualify, as subclasses may well handle other events.
+     *
+     * @param handler content handler to be decorated
+     * @param stream the input stream to be parsed
+     * @return fused handler, or <code>null</code>
+     */
+    static SecureTextContentHandler get(
+            ContentHandler handler, TikaInputStream stream) {
+        if (handler == null || handler.getClass() != BodyContentHandler.class) {
+            return null;
+        }
+
+        ContentHandler body = ((BodyContentHandler) handler).getBodyHandler();
+        WriteOutContentHandler out = null;
+        if (body.getClass() == WriteOutContentHandler.class) {
+            out = (WriteOutContentHandler) body;
+            body = out.getWrappedHandler();
+        }
+        if (body.getClass() != ToTextContentHandler.class) {
+            return null;
+        }
+
+        Writer writer = ((ToTextContentHandler) body).getWriter();
+        return new SecureTextContentHandler(stream, out, writer);
+    }
+
+    /**
+     * Write limit, or <code>null</code> if there is none.
+     */
+    private final WriteOutContentHandler out;
+
+    /**
+     * The character stream.
+     */
+    private final Writer writer;
+
+    /**
+     * Matchers of the enclosing elements, like in
+     * {@link org.apache.tika.sax.xpath.MatchingContentHandler}.
+     */
+    private final LinkedList<Matcher> matchers = new LinkedList<Matcher>();
+
+    /**
+     * Body matcher of the current element.
+     */
+    private Matcher matcher = BodyContentHandler.MATCHER;
+
+    /**
+     * Whether the characters of the current element are written out.
+     */
+    private boolean text = matcher.matchesText();
+
+    private SecureTextContentHandler(
+            TikaInputStream stream, WriteOutContentHandler out, Writer writer) {
+        super(new DefaultHandler(), stream);
+        this.out = out;
+        this.writer = writer;
+    }
+
+    @Override
+    public void startElement(
+            String uri, String localName, String name, Attributes atts)
+            throws SAXException {
+        super.startElement(uri, localName, name, atts);
+        matchers.addFirst(matcher);
+        matcher = matcher.descend(uri, localName);
+        text = matcher.matchesText();
+    }
+
+    @Override
+    public void endElement(
+            String uri, String localName, String name) throws SAXException {
+        super.endElement(uri, localName, name);
+        // Like MatchingContentHandler, tolerate double end tags
+        if (!matchers.isEmpty()) {
+            matcher = matchers.removeFirst();
+            text = matcher.matchesText();
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length)
+            throws SAXException {
+        advance(length);
+        if (text) {
+            if (out == null || out.reserve(length)) {
+                write(ch, start, length);
+            } else {
+                // Let the handler write what fits and signal the limit
+                out.characters(ch, start, length);
+            }
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length)
+            throws SAXException {
+        advance(length);
+        if (text) {
+            if (out == null || out.reserve(length)) {
+                write(ch, start, length);
+            } else {
+                out.ignorableWhitespace(ch, start, length);
+            }
+        }
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        super.endDocument();
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new SAXException("Error flushing character output", e);
+        }
+    }
+
+    private void write(char[] ch, int start, int length)
+            throws SAXException {
+        try {
+            writer.write(ch, start, length);
+        } catch (IOException e) {
+            throw new SAXException(
+                    "Error writing: " + new String(ch, start, length), e);
+        }
+    }
+
+}
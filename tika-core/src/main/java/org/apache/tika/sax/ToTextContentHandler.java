@@ -83,6 +83,13 @@ public class ToTextContentHandler extends DefaultHandler {
         this(new StringWriter());
     }
 
+    /**
+     * Returns the character stream that the content is written to.
+     */
+    Writer getWriter() {
+        return writer;
+    }
+
     /**
      * Writes the given characters to the given character stream.
      */
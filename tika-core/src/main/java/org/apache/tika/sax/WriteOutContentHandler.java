@@ -49,6 +49,11 @@ public class WriteOutContentHandler extends ContentHandlerDecorator {
      */
     private int writeCount = 0;
 
+    /**
+     * The decorated content handler.
+     */
+    private final ContentHandler handler;
+
     /**
      * Creates a content handler that writes content up to the given
      * write limit to the given content handler.
@@ -60,6 +65,32 @@ public class WriteOutContentHandler extends ContentHandlerDecorator {
     public WriteOutContentHandler(ContentHandler handler, int writeLimit) {
         super(handler);
         this.writeLimit = writeLimit;
+        this.handler = handler;
+    }
+
+    /**
+     * Returns the decorated content handler.
+     */
+    ContentHandler getWrappedHandler() {
+        return handler;
+    }
+
+    /**
+     * Counts the given number of characters as written, if they still fit
+     * within the write limit. Used by {@link SecureTextContentHandler},
+     * which writes the characters out itself.
+     *
+     * @param length number of characters
+     * @return <code>true</code> if the characters fit within the limit,
+     *         <code>false</code> otherwise
+     */
+    boolean reserve(int length) {
+        if (writeLimit == -1 || writeCount + length <= writeLimit) {
+            writeCount += length;
+            return true;
+        } else {
+            return false;
+        }
     }
 
     /**
@@ -31,18 +31,35 @@ public class ServiceLoaderUtils {
     public static <T> void sortLoadedClasses(List<T> loaded) {
         Collections.sort(loaded, new Comparator<T>() {
             public int compare(T c1, T c2) {
-                String n1 = c1.getClass().getName();
-                String n2 = c2.getClass().getName();
-                boolean t1 = n1.startsWith("org.apache.tika.");
-                boolean t2 = n2.startsWith("org.apache.tika.");
-                if (t1 == t2) {
-                    return n1.compareTo(n2);
-                } else if (t1) {
-                    return 1;
-                } else {
-                    return -1;
-                }
+                return compareClassNames(
+                        c1.getClass().getName(), c2.getClass().getName());
             }
         });
     }
+
+    /**
+     * Sorts a list of class names in the same order as
+     *  {@link #sortLoadedClasses(List)}, without loading the classes
+     *
+     * @since Apache Tika 1.10
+     */
+    public static void sortClassNames(List<String> names) {
+        Collections.sort(names, new Comparator<String>() {
+            public int compare(String n1, String n2) {
+                return compareClassNames(n1, n2);
+            }
+        });
+    }
+
+    private static int compareClassNames(String n1, String n2) {
+        boolean t1 = n1.startsWith("org.apache.tika.");
+        boolean t2 = n2.startsWith("org.apache.tika.");
+        if (t1 == t2) {
+            return n1.compareTo(n2);
+        } else if (t1) {
+            return 1;
+        } else {
+            return -1;
+        }
+    }
 }
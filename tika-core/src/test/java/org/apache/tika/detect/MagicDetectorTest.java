@@ -225,6 +225,13 @@ public class MagicDetectorTest {
             InputStream stream = new ByteArrayInputStream(bytes);
             assertEquals(type, detector.detect(stream, new Metadata()));
 
+            // Test that in-place matching agrees with stream detection
+            if (detector instanceof MagicDetector) {
+                assertEquals(
+                        !MediaType.OCTET_STREAM.equals(type),
+                        ((MagicDetector) detector).matches(bytes));
+            }
+
             // Test that the stream has been reset
             for (int i = 0; i < bytes.length; i++) {
                 assertEquals(bytes[i], (byte) stream.read());
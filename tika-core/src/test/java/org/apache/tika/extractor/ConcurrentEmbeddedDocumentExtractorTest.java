@@ -0,0 +1,395 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.extractor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.IOUtils;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.AbstractParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.ToXMLContentHandler;
+import org.apache.tika.sax.XHTMLContentHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+public class ConcurrentEmbeddedDocumentExtractorTest {
+
+    private static final String CONTAINER =
+            "one two three four five six seven eight nine ten";
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testEntryOrder() throws Exception {
+        String expected = parseSerially();
+
+        ParseContext context = createContext();
+        ConcurrentEmbeddedDocumentExtractor extractor =
+            new ConcurrentEmbeddedDocumentExtractor(context, executor);
+        context.set(EmbeddedDocumentExtractor.class, extractor);
+        assertEquals(expected, parse(extractor, context));
+        assertEquals(0, extractor.getMemoryUsed());
+    }
+
+    @Test
+    public void testLimits() throws Exception {
+        String expected = parseSerially();
+
+        ParseContext context = createContext();
+        ConcurrentEmbeddedDocumentExtractor extractor =
+            new ConcurrentEmbeddedDocumentExtractor(context, executor);
+        context.set(EmbeddedDocumentExtractor.class, extractor);
+
+        extractor.setMaxInFlight(1);
+        assertEquals(expected, parse(extractor, context));
+
+        extractor.setMaxInFlight(10);
+        extractor.setMaxMemory(0);
+        assertEquals(expected, parse(extractor, context));
+        assertEquals(0, extractor.getMemoryUsed());
+    }
+
+    @Test
+    public void testMemoryLimit() throws Exception {
+        ParseContext context = new ParseContext();
+        context.set(Parser.class, new LargeOutputParser());
+        String expected = parseSerially(context);
+
+        ConcurrentEmbeddedDocumentExtractor extractor =
+            new ConcurrentEmbeddedDocumentExtractor(context, executor);
+        context.set(EmbeddedDocumentExtractor.class, extractor);
+        extractor.setMaxInFlight(10);
+        extractor.setMaxMemory(64 * 1024);
+        LargeOutputParser.peak.set(0);
+        assertEquals(expected, parse(extractor, context));
+        assertEquals(0, extractor.getMemoryUsed());
+
+        // Each document outputs 1MB, but the output is charged as it is
+        // recorded, and only one event per parsing thread goes over
+        long slack = 5 * LargeOutputParser.EVENT_SIZE;
+        long peak = LargeOutputParser.peak.get();
+        assertTrue("Peak memory use " + peak,
+                peak <= extractor.getMaxMemory() + slack);
+    }
+
+    @Test
+    public void testMetadata() throws Exception {
+        ParseContext context = createContext();
+        ConcurrentEmbeddedDocumentExtractor extractor =
+            new ConcurrentEmbeddedDocumentExtractor(context, executor);
+        context.set(EmbeddedDocumentExtractor.class, extractor);
+        ContainerParser container = new ContainerParser();
+        container.parse(
+                new ByteArrayInputStream(CONTAINER.getBytes(IOUtils.UTF_8)),
+                extractor.getContentHandler(new ToXMLContentHandler()),
+                new Metadata(), context);
+
+        assertEquals(10, container.entries.size());
+        for (Metadata entry : container.entries) {
+            String name = entry.get(Metadata.RESOURCE_NAME_KEY);
+            assertEquals(Integer.toString(name.length()), entry.get("length"));
+        }
+    }
+
+    @Test
+    public void testContainerFailure() throws Exception {
+        String expected = parseSerially();
+
+        ParseContext context = createContext();
+        ConcurrentEmbeddedDocumentExtractor extractor =
+            new ConcurrentEmbeddedDocumentExtractor(context, executor);
+        context.set(EmbeddedDocumentExtractor.class, extractor);
+        extractor.setMaxInFlight(100);
+
+        ContainerParser container = new ContainerParser();
+        container.failAfter = 5;
+        try {
+            container.parse(
+                    new ByteArrayInputStream(CONTAINER.getBytes(IOUtils.UTF_8)),
+                    extractor.getContentHandler(new ToXMLContentHandler()),
+                    new Metadata(), context);
+            fail("Container parse should fail");
+        } catch (TikaException expectedFailure) {
+        } finally {
+            extractor.cancel();
+        }
+        assertEquals(0, extractor.getMemoryUsed());
+
+        // The extractor can still be used for the next container
+        assertEquals(expected, parse(extractor, context));
+        assertEquals(0, extractor.getMemoryUsed());
+    }
+
+    @Test
+    public void testEmbeddedFailure() throws Exception {
+        ParseContext context = new ParseContext();
+        context.set(Parser.class, new FailingParser());
+        ConcurrentEmbeddedDocumentExtractor extractor =
+            new ConcurrentEmbeddedDocumentExtractor(context, executor);
+        context.set(EmbeddedDocumentExtractor.class, extractor);
+        try {
+            parse(extractor, context);
+            fail("Embedded failure should be passed on");
+        } catch (SAXException expected) {
+        }
+        // Released without an explicit cancel()
+        assertEquals(0, extractor.getMemoryUsed());
+
+        context.set(Parser.class, new SlowParser());
+        assertEquals(parseSerially(), parse(extractor, context));
+    }
+
+    /**
+     * Without the ordering content handler, embedded documents are
+     * parsed on the calling thread.
+     */
+    @Test
+    public void testWithoutOrdering() throws Exception {
+        String expected = parseSerially();
+
+        ParseContext context = createContext();
+        ConcurrentEmbeddedDocumentExtractor extractor =
+            new ConcurrentEmbeddedDocumentExtractor(context, executor);
+        context.set(EmbeddedDocumentExtractor.class, extractor);
+        ToXMLContentHandler handler = new ToXMLContentHandler();
+        new ContainerParser().parse(
+                new ByteArrayInputStream(CONTAINER.getBytes(IOUtils.UTF_8)),
+                handler, new Metadata(), context);
+        assertEquals(expected, handler.toString());
+    }
+
+    private static ParseContext createContext() {
+        ParseContext context = new ParseContext();
+        context.set(Parser.class, new SlowParser());
+        return context;
+    }
+
+    private static String parseSerially() throws Exception {
+        return parseSerially(createContext());
+    }
+
+    private static String parseSerially(ParseContext context)
+            throws Exception {
+        context.set(
+                EmbeddedDocumentExtractor.class,
+                new ParsingEmbeddedDocumentExtractor(context));
+        ToXMLContentHandler handler = new ToXMLContentHandler();
+        new ContainerParser().parse(
+                new ByteArrayInputStream(CONTAINER.getBytes(IOUtils.UTF_8)),
+                handler, new Metadata(), context);
+        return handler.toString();
+    }
+
+    private static String parse(
+            ConcurrentEmbeddedDocumentExtractor extractor, ParseContext context)
+            throws Exception {
+        ToXMLContentHandler handler = new ToXMLContentHandler();
+        new ContainerParser().parse(
+                new ByteArrayInputStream(CONTAINER.getBytes(IOUtils.UTF_8)),
+                extractor.getContentHandler(handler), new Metadata(), context);
+        return handler.toString();
+    }
+
+    /**
+     * Test container parser that treats each word of the document as
+     * an embedded document.
+     */
+    private static class ContainerParser extends AbstractParser {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Metadata> entries = new ArrayList<Metadata>();
+
+        /** Number of embedded documents after which to fail, or -1 */
+        private int failAfter = -1;
+
+        public Set<MediaType> getSupportedTypes(ParseContext context) {
+            return Collections.singleton(MediaType.TEXT_PLAIN);
+        }
+
+        public void parse(
+                InputStream stream, ContentHandler handler,
+                Metadata metadata, ParseContext context)
+                throws IOException, SAXException, TikaException {
+            EmbeddedDocumentExtractor extractor =
+                context.get(EmbeddedDocumentExtractor.class);
+            XHTMLContentHandler xhtml =
+                new XHTMLContentHandler(handler, metadata);
+            xhtml.startDocument();
+            xhtml.element("h1", "container");
+            String text = IOUtils.toString(stream, IOUtils.UTF_8.name());
+            for (String word : text.split(" ")) {
+                Metadata entry = new Metadata();
+                entry.set(Metadata.RESOURCE_NAME_KEY, word);
+                if (entries.size() == failAfter) {
+                    throw new TikaException("Broken container");
+                }
+                entries.add(entry);
+                extractor.parseEmbedded(
+                        new ByteArrayInputStream(word.getBytes(IOUtils.UTF_8)),
+                        xhtml, entry, true);
+                xhtml.element("p", "after " + word);
+            }
+            xhtml.endDocument();
+        }
+
+    }
+
+    /**
+     * Test parser that outputs the document text after a delay that
+     * is shorter for longer documents, so that documents get parsed
+     * out of order.
+     */
+    private static class SlowParser extends AbstractParser {
+
+        private static final long serialVersionUID = 1L;
+
+        public Set<MediaType> getSupportedTypes(ParseContext context) {
+            return Collections.singleton(MediaType.TEXT_PLAIN);
+        }
+
+        public void parse(
+                InputStream stream, ContentHandler handler,
+                Metadata metadata, ParseContext context)
+                throws IOException, SAXException, TikaException {
+            String text = IOUtils.toString(stream, IOUtils.UTF_8.name());
+            try {
+                Thread.sleep(50 / text.length());
+            } catch (InterruptedException e) {
+                throw new TikaException("Interrupted", e);
+            }
+            metadata.set("length", Integer.toString(text.length()));
+
+            XHTMLContentHandler xhtml =
+                new XHTMLContentHandler(handler, metadata);
+            xhtml.startDocument();
+            xhtml.element("p", text);
+            xhtml.endDocument();
+        }
+
+    }
+
+    /**
+     * Test parser that outputs 1MB of text for each document, and keeps
+     * track of the highest memory use of the extractor seen between
+     * its events.
+     */
+    private static class LargeOutputParser extends AbstractParser {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final int CHUNK = 1024;
+
+        /** Recorded size of a chunk: type, length and UTF-16 code units */
+        private static final long EVENT_SIZE = 1 + 4 + 2 * CHUNK;
+
+        private static final AtomicLong peak = new AtomicLong();
+
+        public Set<MediaType> getSupportedTypes(ParseContext context) {
+            return Collections.singleton(MediaType.TEXT_PLAIN);
+        }
+
+        public void parse(
+                InputStream stream, ContentHandler handler,
+                Metadata metadata, ParseContext context)
+                throws IOException, SAXException, TikaException {
+            EmbeddedDocumentExtractor extractor =
+                context.get(EmbeddedDocumentExtractor.class);
+            char[] chunk = new char[CHUNK];
+            Arrays.fill(chunk, IOUtils.toString(stream, IOUtils.UTF_8.name()).charAt(0));
+
+            XHTMLContentHandler xhtml =
+                new XHTMLContentHandler(handler, metadata);
+            xhtml.startDocument();
+            xhtml.startElement("p");
+            for (int i = 0; i < 1024 * 1024 / CHUNK; i++) {
+                xhtml.characters(chunk, 0, chunk.length);
+                if (extractor instanceof ConcurrentEmbeddedDocumentExtractor) {
+                    long used = ((ConcurrentEmbeddedDocumentExtractor)
+                            extractor).getMemoryUsed();
+                    long max = peak.get();
+                    while (used > max && !peak.compareAndSet(max, used)) {
+                        max = peak.get();
+                    }
+                }
+            }
+            xhtml.endElement("p");
+            xhtml.endDocument();
+        }
+
+    }
+
+    /**
+     * Test parser that fails to read the "three" document.
+     */
+    private static class FailingParser extends AbstractParser {
+
+        private static final long serialVersionUID = 1L;
+
+        public Set<MediaType> getSupportedTypes(ParseContext context) {
+            return Collections.singleton(MediaType.TEXT_PLAIN);
+        }
+
+        public void parse(
+                InputStream stream, ContentHandler handler,
+                Metadata metadata, ParseContext context)
+                throws IOException, SAXException, TikaException {
+            String text = IOUtils.toString(stream, IOUtils.UTF_8.name());
+            if (text.equals("three")) {
+                throw new IOException("Unreadable embedded document");
+            }
+            XHTMLContentHandler xhtml =
+                new XHTMLContentHandler(handler, metadata);
+            xhtml.startDocument();
+            xhtml.element("p", text);
+            xhtml.endDocument();
+        }
+
+    }
+
+}
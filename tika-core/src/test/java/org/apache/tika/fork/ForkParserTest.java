@@ -21,16 +21,22 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.concurrent.Semaphore;
 
+import org.apache.tika.io.IOUtils;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.ToXMLContentHandler;
 import org.junit.Test;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.helpers.DefaultHandler;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class ForkParserTest {
 
@@ -177,4 +183,174 @@ public class ForkParserTest {
         }
     }
 
+    @Test
+    public void testLargeDocument() throws Exception {
+        String text = createText(1024 * 1024);
+        ForkParser parser = new ForkParser(
+                ForkParserTest.class.getClassLoader(),
+                new ForkTestParser.EchoParser());
+        try {
+            ToXMLContentHandler output = new ToXMLContentHandler();
+            InputStream stream =
+                new ByteArrayInputStream(text.getBytes(IOUtils.UTF_8));
+            parser.parse(stream, output, new Metadata(), new ParseContext());
+            assertContains(text, output.toString());
+            assertContains("title=\"" + text + "\"", output.toString());
+        } finally {
+            parser.close();
+        }
+    }
+
+    @Test
+    public void testProtocolNegotiation() throws Exception {
+        // Short enough for the 64kB string limit of the original protocol
+        String text = createText(10 * 1000);
+        for (int protocol = ForkServer.PROTOCOL_1;
+                protocol <= ForkServer.PROTOCOL; protocol++) {
+            ForkClient client = new ForkClient(
+                    ForkParserTest.class.getClassLoader(),
+                    new ForkTestParser.EchoParser(),
+                    Arrays.asList("java", "-Xmx32m"), protocol);
+            try {
+                assertEquals(protocol, client.getProtocol());
+
+                BodyContentHandler output = new BodyContentHandler(-1);
+                InputStream stream =
+                    new ByteArrayInputStream(text.getBytes(IOUtils.UTF_8));
+                assertNull(client.call(
+                        "parse", stream, output,
+                        new Metadata(), new ParseContext()));
+                assertEquals(text, output.toString().trim());
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void testPrestart() throws Exception {
+        ForkParser parser = new ForkParser(
+                ForkParserTest.class.getClassLoader(),
+                new ForkTestParser());
+        try {
+            parser.setPoolSize(3);
+            parser.prestart(5);
+            ForkParserStatistics statistics = parser.getStatistics();
+            assertEquals(3, statistics.getProcesses());
+            assertEquals(3, statistics.getIdleProcesses());
+            assertEquals(3, statistics.getStartedProcesses());
+
+            for (int i = 0; i < 4; i++) {
+                parseHelloWorld(parser);
+            }
+            statistics = parser.getStatistics();
+            assertEquals(3, statistics.getStartedProcesses());
+            assertEquals(0, statistics.getRestartedProcesses());
+            assertEquals(4, statistics.getFilesProcessed());
+        } finally {
+            parser.close();
+        }
+        assertEquals(0, parser.getStatistics().getProcesses());
+    }
+
+    @Test
+    public void testRecycling() throws Exception {
+        ForkParser parser = new ForkParser(
+                ForkParserTest.class.getClassLoader(),
+                new ForkTestParser());
+        try {
+            parser.setMaxFilesProcessedPerClient(2);
+            for (int i = 0; i < 5; i++) {
+                parseHelloWorld(parser);
+            }
+            ForkParserStatistics statistics = parser.getStatistics();
+            assertEquals(3, statistics.getStartedProcesses());
+            assertEquals(2, statistics.getRecycledProcesses());
+            assertEquals(1, statistics.getProcesses());
+            assertEquals(1, statistics.getFilesProcessed());
+
+            // Any process uses more than one byte of heap
+            parser.setMaxFilesProcessedPerClient(-1);
+            parser.setMaxHeapUsedPerClient(1);
+            parseHelloWorld(parser);
+            parseHelloWorld(parser);
+            statistics = parser.getStatistics();
+            assertEquals(4, statistics.getStartedProcesses());
+            assertEquals(4, statistics.getRecycledProcesses());
+            assertEquals(0, statistics.getProcesses());
+        } finally {
+            parser.close();
+        }
+    }
+
+    @Test
+    public void testWarmSpares() throws Exception {
+        ForkParser parser = new ForkParser(
+                ForkParserTest.class.getClassLoader(),
+                new ForkTestParser());
+        try {
+            parser.setPoolSize(3);
+            parser.setHealthCheckInterval(500);
+            parser.setWarmSpares(2);
+            waitForIdleProcesses(parser, 2);
+
+            parseHelloWorld(parser);
+            parser.setMaxFilesProcessedPerClient(1);
+            parseHelloWorld(parser);
+
+            // The recycled process gets replaced in the background,
+            // and the idle processes report their heap use when pinged
+            waitForIdleProcesses(parser, 2);
+            Thread.sleep(1500);
+            ForkParserStatistics statistics = parser.getStatistics();
+            assertEquals(1, statistics.getRecycledProcesses());
+            for (ForkParserStatistics.ProcessStatistics process
+                    : statistics.getProcessStatistics()) {
+                assertTrue(process.isIdle());
+                assertTrue(process.getHeapUsed() > 0);
+            }
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static void parseHelloWorld(ForkParser parser) throws Exception {
+        ContentHandler output = new BodyContentHandler();
+        InputStream stream = new ByteArrayInputStream(new byte[0]);
+        parser.parse(stream, output, new Metadata(), new ParseContext());
+        assertEquals("Hello, World!", output.toString().trim());
+    }
+
+    private static void waitForIdleProcesses(ForkParser parser, int count)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (parser.getStatistics().getIdleProcesses() < count
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(count, parser.getStatistics().getIdleProcesses());
+    }
+
+    private static String createText(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        Random random = new Random(42);
+        while (builder.length() < length) {
+            // Mix single and multi-byte characters, including surrogates
+            int type = random.nextInt(20);
+            if (type == 0) {
+                builder.append("\u00e4\u20ac\ud83d\ude00");
+            } else if (type == 1) {
+                builder.append(' ');
+            } else {
+                builder.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void assertContains(String needle, String haystack) {
+        assertTrue("Missing " + needle.length() + " characters",
+                haystack.contains(needle));
+    }
+
 }
@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.Set;
 
 import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.IOUtils;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
 import org.apache.tika.parser.AbstractParser;
@@ -54,4 +55,34 @@ class ForkTestParser extends AbstractParser {
         xhtml.endDocument();
     }
 
-}
\ No newline at end of file
+    /**
+     * Test parser that outputs the whole document as text, both as a
+     * single block of character content and as an attribute value.
+     */
+    static class EchoParser extends AbstractParser {
+
+        /** Serial version UID */
+        private static final long serialVersionUID = 3475917286463428715L;
+
+        public Set<MediaType> getSupportedTypes(ParseContext context) {
+            return Collections.singleton(MediaType.TEXT_PLAIN);
+        }
+
+        public void parse(
+                InputStream stream, ContentHandler handler,
+                Metadata metadata, ParseContext context)
+                throws IOException, SAXException, TikaException {
+            String text = IOUtils.toString(stream, IOUtils.UTF_8.name());
+
+            XHTMLContentHandler xhtml = new XHTMLContentHandler(handler, metadata);
+            xhtml.startDocument();
+            xhtml.startElement("p", "title", text);
+            char[] ch = text.toCharArray();
+            xhtml.characters(ch, 0, ch.length);
+            xhtml.endElement("p");
+            xhtml.endDocument();
+        }
+
+    }
+
+}
@@ -19,9 +19,11 @@ package org.apache.tika.io;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -29,8 +31,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
+import org.apache.tika.detect.CompositeDetector;
+import org.apache.tika.detect.Detector;
+import org.apache.tika.detect.TextDetector;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MimeTypes;
+import org.apache.tika.parser.ParseBudget;
 import org.junit.Test;
 
 public class TikaInputStreamTest {
@@ -85,6 +95,130 @@ public class TikaInputStreamTest {
                 file.exists());
     }
 
+    @Test
+    public void testMapped() throws IOException {
+        File file = createTempFile("Hello, World!");
+        TikaInputStream stream = TikaInputStream.getMapped(file);
+        try {
+            assertTrue(stream.hasFile());
+            assertEquals(13, stream.getLength());
+            assertEquals("World", readBuffer(stream.peek(7, 5)));
+            assertTrue(stream.peek(7, 5).isDirect());
+
+            stream.mark(100);
+            assertEquals("Hello, World!", readStream(stream));
+            assertEquals(13, stream.getPosition());
+            stream.reset();
+            assertEquals(0, stream.getPosition());
+
+            assertEquals(5, stream.skip(5));
+            assertEquals(',', stream.read());
+            assertEquals(" World!", readStream(stream));
+        } finally {
+            stream.close();
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testPeekFile() throws IOException {
+        File file = createTempFile("Hello, World!");
+        TikaInputStream stream = TikaInputStream.get(file);
+        try {
+            assertEquals(5, stream.skip(5));
+
+            // Any part of the file can be looked at
+            assertEquals("Hello", readBuffer(stream.peek(0, 5)));
+            assertEquals("d!", readBuffer(stream.peek(11, 10)));
+            assertEquals("", readBuffer(stream.peek(20, 10)));
+
+            // Only streams from getMapped() map the file
+            assertFalse(stream.peek(0, 5).isDirect());
+
+            byte[] buffer = new byte[4];
+            assertEquals(4, stream.peek(buffer));
+            assertEquals(", Wo", new String(buffer, IOUtils.UTF_8));
+            assertEquals(5, stream.getPosition());
+            assertEquals(", World!", readStream(stream));
+        } finally {
+            stream.close();
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testPeekStream() throws IOException {
+        TikaInputStream stream = TikaInputStream.get(new ByteArrayInputStream(
+                "Hello, World!".getBytes(IOUtils.UTF_8)));
+        try {
+            assertEquals(5, stream.skip(5));
+            assertEquals("World", readBuffer(stream.peek(7, 5)));
+            assertEquals("d!", readBuffer(stream.peek(11, 10)));
+            assertEquals(5, stream.getPosition());
+            try {
+                stream.peek(0, 5);
+                fail("Already read bytes should not be available");
+            } catch (IOException expected) {
+            }
+            assertEquals(", World!", readStream(stream));
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void testBufferedInMemory() throws IOException {
+        TikaInputStream stream = TikaInputStream.get(new ByteArrayInputStream(
+                "Hello, World!".getBytes(IOUtils.UTF_8)));
+        try {
+            assertFalse(stream.hasLength());
+            assertEquals(13, stream.getLength());
+            assertFalse(
+                    "Small streams should not be spooled into a file",
+                    stream.hasFile());
+
+            byte[] hello = new byte[5];
+            assertEquals(5, stream.read(hello));
+            assertEquals("Hello", new String(hello, IOUtils.UTF_8));
+            assertEquals(
+                    "Hello, World!", readBuffer(stream.getByteBuffer()));
+            assertEquals("Hello", readBuffer(stream.peek(0, 5)));
+
+            // A file can still be created for the buffered contents
+            File file = stream.getFile();
+            assertEquals("Hello, World!", readFile(file));
+            assertEquals(", World!", readStream(stream));
+
+            stream.close();
+            assertFalse(file.exists());
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void testSpillThreshold() throws IOException {
+        TikaInputStream stream = TikaInputStream.get(new ByteArrayInputStream(
+                "Hello, World!".getBytes(IOUtils.UTF_8)));
+        try {
+            stream.setSpillThreshold(5);
+            assertEquals(13, stream.getLength());
+            assertTrue(stream.hasFile());
+            assertEquals("Hello, World!", readFile(stream.getFile()));
+            assertEquals(
+                    "Hello, World!", readBuffer(stream.getByteBuffer()));
+            assertEquals("Hello, World!", readStream(stream));
+        } finally {
+            stream.close();
+        }
+    }
+
+    private String readBuffer(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return new String(data, IOUtils.UTF_8);
+    }
+
     private File createTempFile(String data) throws IOException {
         File file = File.createTempFile("tika-", ".tmp");
         OutputStream stream = new FileOutputStream(file);
@@ -122,4 +256,70 @@ public class TikaInputStreamTest {
                 metadata.get(Metadata.CONTENT_LENGTH));
     }
 
+    @Test
+    public void testSharedPeekPrefix() throws Exception {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + i % 26);
+        }
+        ParseBudget budget = new ParseBudget();
+        CountingInputStream counter =
+                new CountingInputStream(new ByteArrayInputStream(data));
+        TikaInputStream stream =
+                TikaInputStream.get(counter, new TemporaryResources());
+        stream.setParseBudget(budget);
+
+        assertEquals(1000, stream.peek(0, 1000).remaining());
+        long count = counter.getByteCount();
+
+        // Peeks within the bytes read ahead don't read the stream again
+        ByteBuffer view = stream.peek(10, 20);
+        assertEquals(20, view.remaining());
+        assertEquals('k', view.get());
+        assertEquals(8, stream.peek(new byte[8]));
+        assertEquals(count, counter.getByteCount());
+        assertEquals(0, stream.getPosition());
+
+        // A longer peek reads further ahead
+        assertEquals(2000, stream.peek(0, 2000).remaining());
+        assertEquals('x', stream.peek(1999, 1).get());
+
+        // Peeked bytes are only charged to the budget once read
+        assertEquals(0, budget.getBytesRead());
+        new DataInputStream(stream).readFully(new byte[1500]);
+        assertEquals(1500, budget.getBytesRead());
+
+        // Reading moves past the peeked bytes
+        assertEquals('s', stream.read());
+        assertEquals('t', stream.peek(1501, 1).get());
+        stream.skip(4000);
+        assertEquals(1, stream.peek(5501, 1).remaining());
+        stream.close();
+    }
+
+    @Test
+    public void testDetectorsSharePrefix() throws Exception {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + i % 26);
+        }
+        ParseBudget budget = new ParseBudget();
+        TikaInputStream stream = TikaInputStream.get(
+                new ByteArrayInputStream(data), new TemporaryResources());
+        stream.setParseBudget(budget);
+
+        MimeTypes types = MimeTypes.getDefaultMimeTypes();
+        Detector detector = new CompositeDetector(
+                types.getMediaTypeRegistry(), Arrays.<Detector>asList(
+                        new TextDetector(), types, new TextDetector(100)));
+        assertEquals(MediaType.TEXT_PLAIN, detector.detect(stream, new Metadata()));
+        assertEquals(0, budget.getBytesRead());
+        assertEquals(0, stream.getPosition());
+
+        // Each byte is charged once, whether peeked at before or not
+        assertEquals(data.length, IOUtils.toByteArray(stream).length);
+        assertEquals(data.length, budget.getBytesRead());
+        stream.close();
+    }
+
 }
@@ -106,6 +106,24 @@ public class LanguageIdentifierTest {
         assertTrue(identifier.isReasonablyCertain());
   }
 
+    @Test
+    public void testChangedProfile() throws IOException {
+        ProfilingWriter enWriter = new ProfilingWriter();
+        writeTo("en", enWriter);
+
+        // Profiles may still change after they have been added
+        ProfilingWriter writer = new ProfilingWriter();
+        LanguageIdentifier.clearProfiles();
+        LanguageIdentifier.addProfile("en", writer.getProfile());
+        LanguageIdentifier identifier = new LanguageIdentifier(enWriter.getProfile());
+        assertFalse(identifier.isReasonablyCertain());
+
+        writeTo("en", writer);
+        identifier = new LanguageIdentifier(enWriter.getProfile());
+        assertEquals("en", identifier.getLanguage());
+        assertTrue(identifier.isReasonablyCertain());
+    }
+
     // Enable this to compare performance
     public void testPerformance() throws IOException {
         final int MRUNS = 8;
@@ -55,4 +55,37 @@ public class LanguageProfileTest {
         assertTrue(foo.distance(foobar) == bar.distance(foobar));
     }
 
+    @Test
+    public void testDistanceCalculations() {
+        LanguageProfile foo = new LanguageProfile("the quick brown fox jumps over the lazy dog");
+        LanguageProfile bar = new LanguageProfile("der schnelle braune fuchs springt \u00fcber den faulen hund");
+
+        boolean interleaved = LanguageProfile.useInterleaved;
+        try {
+            LanguageProfile.useInterleaved = true;
+            double distance = foo.distance(bar);
+            LanguageProfile.useInterleaved = false;
+            assertEquals(distance, foo.distance(bar), 1e-12);
+            assertEquals(distance, bar.distance(foo), 1e-12);
+        } finally {
+            LanguageProfile.useInterleaved = interleaved;
+        }
+
+        assertEquals(2, foo.getCount("the"));
+        assertEquals(1, bar.getCount("\u00fcbe"));
+        assertEquals(0, bar.getCount("\u00fcber"));
+    }
+
+    @Test
+    public void testLongNgrams() {
+        LanguageProfile foo = new LanguageProfile(5);
+        foo.add("quick", 2);
+        assertEquals(2, foo.getCount("quick"));
+        assertEquals("{quick=2}", foo.toString());
+
+        LanguageProfile bar = new LanguageProfile(5);
+        bar.add("brown");
+        assertEquals(Math.sqrt(2.0), foo.distance(bar), 1e-8);
+    }
+
 }
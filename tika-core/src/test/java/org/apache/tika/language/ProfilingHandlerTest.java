@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.language;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+public class ProfilingHandlerTest {
+
+    @Test
+    public void testStopParse() throws Exception {
+        char[] text = ProfilingWriterTest.readTestText("fr").toCharArray();
+        ProfilingHandler handler =
+                new ProfilingHandler(new ProfilingWriter(), true);
+        try {
+            sendCharacters(handler, text);
+            fail("Parsing should stop once the language is stable");
+        } catch (SAXException e) {
+            assertTrue(handler.isLanguageStable(e));
+            assertTrue(handler.isLanguageStable(new Exception(e)));
+            assertFalse(new ProfilingHandler().isLanguageStable(e));
+        }
+        assertEquals("fr", handler.getLanguage().getLanguage());
+        assertTrue(handler.getProfile().getCount() < text.length);
+    }
+
+    @Test
+    public void testStopProfiling() throws Exception {
+        char[] text = ProfilingWriterTest.readTestText("fr").toCharArray();
+        ProfilingHandler handler =
+                new ProfilingHandler(new ProfilingWriter(), false);
+        sendCharacters(handler, text);
+        assertEquals("fr", handler.getLanguage().getLanguage());
+        long count = handler.getProfile().getCount();
+        assertTrue(count < text.length);
+
+        // Further content is ignored
+        handler.characters(text, 0, text.length);
+        assertEquals(count, handler.getProfile().getCount());
+    }
+
+    @Test
+    public void testProfileAll() throws Exception {
+        char[] text = ProfilingWriterTest.readTestText("fr").toCharArray();
+        ProfilingHandler handler = new ProfilingHandler();
+        sendCharacters(handler, text);
+        assertEquals("fr", handler.getLanguage().getLanguage());
+        assertEquals(
+                new LanguageProfile(new String(text)).getCount(),
+                handler.getProfile().getCount());
+    }
+
+    private static void sendCharacters(ProfilingHandler handler, char[] text)
+            throws SAXException {
+        handler.startDocument();
+        for (int i = 0; i < text.length; i += 100) {
+            handler.characters(text, i, Math.min(100, text.length - i));
+        }
+        handler.endDocument();
+    }
+
+}
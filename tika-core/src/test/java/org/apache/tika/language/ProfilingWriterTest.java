@@ -17,10 +17,14 @@
 package org.apache.tika.language;
 
 import java.io.IOException;
+import java.io.InputStream;
 
+import org.apache.tika.io.IOUtils;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class ProfilingWriterTest {
 
@@ -41,4 +45,52 @@ public class ProfilingWriterTest {
         assertEquals(2, profile.getCount("ar_"));
     }
 
+    @Test
+    public void testLanguageStable() throws IOException {
+        String text = readTestText("de");
+        ProfilingWriter writer = new ProfilingWriter();
+        assertFalse(writer.isLanguageStable());
+
+        int written = 0;
+        while (written < text.length() && !writer.isLanguageStable()) {
+            int n = Math.min(100, text.length() - written);
+            writer.write(text, written, n);
+            written += n;
+        }
+        assertTrue(writer.isLanguageStable());
+        assertTrue(written < text.length());
+
+        LanguageIdentifier identifier = writer.getLanguage();
+        assertEquals("de", identifier.getLanguage());
+        assertTrue(identifier.isReasonablyCertain());
+
+        // The incrementally tracked result matches a full comparison
+        LanguageIdentifier full = new LanguageIdentifier(writer.getProfile());
+        assertEquals(full.getLanguage(), identifier.getLanguage());
+        assertEquals(distance(full), distance(identifier), 1e-12);
+
+        // Adding text keeps the running sums in sync with the profile
+        writer.write(text, written, text.length() - written);
+        full = new LanguageIdentifier(writer.getProfile());
+        identifier = writer.getLanguage();
+        assertEquals(full.getLanguage(), identifier.getLanguage());
+        assertEquals(distance(full), distance(identifier), 1e-12);
+    }
+
+    private static double distance(LanguageIdentifier identifier) {
+        String s = identifier.toString();
+        return Double.parseDouble(
+                s.substring(s.indexOf('(') + 1, s.lastIndexOf(')')));
+    }
+
+    static String readTestText(String language) throws IOException {
+        InputStream stream =
+            ProfilingWriterTest.class.getResourceAsStream(language + ".test");
+        try {
+            return IOUtils.toString(stream, IOUtils.UTF_8.name());
+        } finally {
+            stream.close();
+        }
+    }
+
 }
@@ -17,8 +17,16 @@
 package org.apache.tika.metadata;
 
 //JDK imports
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Date;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.tika.utils.DateUtils;
 import org.junit.Test;
@@ -373,4 +381,98 @@ public class TestMetadata {
        assertEquals(message, meta.get(Metadata.DESCRIPTION));
        assertEquals(message, meta.get("testDescriptionAlt"));
     }    
+
+    /**
+     * Values handed out by getValues() must not change when more values
+     * are added afterwards.
+     */
+    @Test
+    public void testAddMany() {
+        Metadata meta = new Metadata();
+        for (int i = 0; i < 1000; i++) {
+            meta.add(TikaCoreProperties.KEYWORDS, "keyword" + i);
+        }
+        String[] values = meta.getValues(TikaCoreProperties.KEYWORDS);
+        assertEquals(1000, values.length);
+        assertEquals("keyword0", values[0]);
+        assertEquals("keyword999", values[999]);
+
+        meta.add(TikaCoreProperties.KEYWORDS, "keyword1000");
+        assertEquals(1000, values.length);
+        assertEquals(1001, meta.getValues(TikaCoreProperties.KEYWORDS).length);
+        assertEquals("keyword0", meta.get(TikaCoreProperties.KEYWORDS));
+    }
+
+    @Test
+    public void testNullNames() {
+        assertNull(Property.get(null));
+        assertNull(Property.getPropertyType(null));
+
+        Metadata meta = new Metadata();
+        meta.set((String) null, "one");
+        meta.add((String) null, "two");
+        assertEquals("one", meta.get((String) null));
+        assertEquals(2, meta.getValues((String) null).length);
+        assertEquals(1, meta.size());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        Metadata meta = new Metadata();
+        meta.set(TikaCoreProperties.TITLE, "title");
+        meta.add("custom", "a");
+        meta.add("custom", "b");
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ObjectOutputStream output = new ObjectOutputStream(buffer);
+        output.writeObject(meta);
+        output.close();
+        ObjectInputStream input = new ObjectInputStream(
+                new ByteArrayInputStream(buffer.toByteArray()));
+        Metadata copy = (Metadata) input.readObject();
+        input.close();
+
+        assertEquals(meta, copy);
+        assertEquals("title", copy.get(TikaCoreProperties.TITLE));
+        assertEquals(2, copy.getValues("custom").length);
+        copy.add("custom", "c");
+        assertEquals(3, copy.getValues("custom").length);
+    }
+
+    /**
+     * Dates are parsed without a global lock, so concurrent parsing
+     * must still give correct results.
+     */
+    @Test
+    public void testConcurrentGetDate() throws Exception {
+        final Metadata meta = new Metadata();
+        meta.set(TikaCoreProperties.CREATED, "2010-12-25T12:00:00+01:00");
+        meta.set(TikaCoreProperties.MODIFIED, "1970:01:01");
+        final long created = meta.getDate(TikaCoreProperties.CREATED).getTime();
+        final long modified = meta.getDate(TikaCoreProperties.MODIFIED).getTime();
+
+        final AtomicInteger errors = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(new Runnable() {
+                    public void run() {
+                        for (int j = 0; j < 1000; j++) {
+                            if (meta.getDate(TikaCoreProperties.CREATED).getTime() != created
+                                    || meta.getDate(TikaCoreProperties.MODIFIED).getTime() != modified) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, errors.get());
+    }
 }
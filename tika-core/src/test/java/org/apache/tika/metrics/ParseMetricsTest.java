@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.apache.tika.detect.Detector;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.IOUtils;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.AbstractParser;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.XHTMLContentHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+public class ParseMetricsTest {
+
+    private static final MediaType TYPE =
+            MediaType.application("x-metrics-test");
+
+    private final ParseMetrics metrics = ParseMetrics.getDefault();
+
+    @Before
+    public void setUp() {
+        metrics.reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        metrics.setEnabled(true);
+        metrics.setAllocationSampling(false);
+        metrics.unregister();
+        metrics.reset();
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        parse(new TestParser(false), 100);
+        parse(new TestParser(false), 50);
+
+        ParseStatistics parser = metrics.getParserStatistics().get(
+                TestParser.class.getName());
+        assertNotNull(parser);
+        assertEquals(2, parser.getCount());
+        assertEquals(0, parser.getExceptions());
+        assertEquals(150, parser.getBytes());
+        assertEquals("hello world".length() * 2, parser.getCharacters());
+        assertTrue(parser.getMaxTime() >= parser.getMedianTime());
+        assertEquals(-1, parser.getAllocatedBytes());
+
+        ParseStatistics type =
+                metrics.getMediaTypeStatistics().get(TYPE.toString());
+        assertNotNull(type);
+        assertEquals(2, type.getCount());
+
+        assertEquals(2, metrics.getDetectionStatistics().getCount());
+    }
+
+    @Test
+    public void testException() throws Exception {
+        try {
+            parse(new TestParser(true), 10);
+            fail("Expected TikaException");
+        } catch (TikaException expected) {
+        }
+        ParseStatistics parser = metrics.getParserStatistics().get(
+                TestParser.class.getName());
+        assertEquals(1, parser.getCount());
+        assertEquals(1, parser.getExceptions());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        metrics.setEnabled(false);
+        parse(new TestParser(false), 10);
+        assertTrue(metrics.getParserStatistics().isEmpty());
+        assertEquals(0, metrics.getDetectionStatistics().getCount());
+    }
+
+    @Test
+    public void testAllocationSampling() throws Exception {
+        metrics.setAllocationSampling(true);
+        parse(new TestParser(false), 10);
+        ParseStatistics parser = metrics.getParserStatistics().get(
+                TestParser.class.getName());
+        if (metrics.isAllocationSampling()) {
+            assertTrue(parser.getAllocatedBytes() >= 0);
+        } else {
+            // Not supported by this JVM
+            assertEquals(-1, parser.getAllocatedBytes());
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        StatisticsCollector collector = new StatisticsCollector();
+        for (int i = 0; i < 99; i++) {
+            collector.record(1000000, 0, 0, -1, false); // 1ms
+        }
+        collector.record(1000000000, 0, 0, -1, false); // 1s
+
+        ParseStatistics statistics = collector.getStatistics();
+        assertEquals(100, statistics.getCount());
+        assertEquals(1000.0, statistics.getMaxTime(), 0.001);
+        assertEquals(1099.0, statistics.getTotalTime(), 0.001);
+        // Estimates are within the factor of two of a histogram bucket
+        assertTrue(statistics.getMedianTime() >= 0.5);
+        assertTrue(statistics.getMedianTime() <= 2.0);
+        assertTrue(statistics.getP99Time() <= 2.0);
+        assertTrue(statistics.getTimePercentile(100) >= 500.0);
+        assertFalse(statistics.toString().contains("allocated"));
+        assertEquals(0.0, new StatisticsCollector()
+                .getStatistics().getMedianTime(), 0.0);
+    }
+
+    @Test
+    public void testJMX() throws Exception {
+        parse(new TestParser(false), 10);
+
+        ObjectName name = metrics.register();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        TabularData parsers =
+                (TabularData) server.getAttribute(name, "ParserStatistics");
+        CompositeData row = parsers.get(
+                new Object[] { TestParser.class.getName() });
+        CompositeData statistics = (CompositeData) row.get("value");
+        assertEquals(1L, statistics.get("count"));
+        assertEquals(10L, statistics.get("bytes"));
+
+        server.invoke(name, "reset", new Object[0], new String[0]);
+        assertTrue(metrics.getParserStatistics().isEmpty());
+
+        metrics.unregister();
+        assertFalse(server.isRegistered(name));
+    }
+
+    private static void parse(TestParser parser, int length)
+            throws IOException, SAXException, TikaException {
+        AutoDetectParser auto = new AutoDetectParser(parser);
+        auto.setDetector(new Detector() {
+            public MediaType detect(InputStream input, Metadata metadata) {
+                return TYPE;
+            }
+        });
+        auto.parse(
+                new ByteArrayInputStream(new byte[length]),
+                new BodyContentHandler(), new Metadata(), new ParseContext());
+    }
+
+    private static class TestParser extends AbstractParser {
+
+        private final boolean fail;
+
+        private TestParser(boolean fail) {
+            this.fail = fail;
+        }
+
+        public Set<MediaType> getSupportedTypes(ParseContext context) {
+            return Collections.singleton(TYPE);
+        }
+
+        public void parse(
+                InputStream stream, ContentHandler handler,
+                Metadata metadata, ParseContext context)
+                throws IOException, SAXException, TikaException {
+            IOUtils.toByteArray(stream);
+            if (fail) {
+                throw new TikaException("Test failure");
+            }
+            XHTMLContentHandler xhtml =
+                    new XHTMLContentHandler(handler, metadata);
+            xhtml.startDocument();
+            xhtml.element("p", "hello world");
+            xhtml.endDocument();
+        }
+
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.mime;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.tika.detect.MagicDetector;
+import org.apache.tika.io.IOUtils;
+import org.apache.tika.metadata.Metadata;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test cases for the {@link MagicIndex} class. The index must always
+ * give exactly the same results as evaluating every magic in turn.
+ */
+public class MagicIndexTest {
+
+    private List<Magic> magics;
+
+    private MagicIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        MimeTypes types = MimeTypes.getDefaultMimeTypes();
+        magics = new ArrayList<Magic>();
+        for (MediaType type : types.getMediaTypeRegistry().getTypes()) {
+            magics.addAll(types.forName(type.toString()).getMagics());
+        }
+        Collections.sort(magics);
+        index = new MagicIndex(magics);
+    }
+
+    @Test
+    public void testTestDocuments() throws Exception {
+        String[] names = {
+                "circles.svg", "circles-with-prefix.svg", "datamatrix.png",
+                "test.html", "test-iso-8859-1.xml", "test-utf8.xml",
+                "test-utf8-bom.xml", "test-utf16le.xml", "test-utf16be.xml",
+                "test-long-comment.xml", "stylesheet.xsl",
+                "test-difficult-rdf1.xml", "test-difficult-rdf2.xml",
+                "test-tika-327.html", "testlargerbuffer.html", "htmlfragment",
+                "plotutils-bin-cgm-v3.cgm", "test-malformed-header.html.bin",
+                "brwNIMS_2014.dif", "test.xls",
+                "GLDAS_CLM10SUBP_3H.A19790202.0000.001.grb",
+                "gdas1.forecmwf.2014062612.grib2" };
+        for (String name : names) {
+            InputStream stream = getClass().getResourceAsStream(name);
+            try {
+                byte[] data = IOUtils.toByteArray(stream);
+                assertSameAsLinear(data);
+                // Also check truncated prefixes, which exercise the
+                // zero padding past the end of the data
+                for (int length = 0; length < Math.min(data.length, 64); length++) {
+                    byte[] prefix = new byte[length];
+                    System.arraycopy(data, 0, prefix, 0, length);
+                    assertSameAsLinear(prefix);
+                }
+            } finally {
+                stream.close();
+            }
+        }
+    }
+
+    @Test
+    public void testMagicPrefixes() throws Exception {
+        String[] prefixes = {
+                "%PDF-1.4", "PK\003\004", "GIF89a", "\u0089PNG\r\n\u001a\n",
+                "<?xml version=\"1.0\"?><html>", "<!DOCTYPE HTML>", "{\\rtf1",
+                "\u00d0\u00cf\u0011\u00e0\u00a1\u00b1\u001a\u00e1", "From: a",
+                "\u00ff\u00d8\u00ff\u00e0", "BZh91AY", "\u001f\u008b\b" };
+        for (String prefix : prefixes) {
+            assertSameAsLinear(prefix.getBytes("ISO-8859-1"));
+        }
+    }
+
+    @Test
+    public void testRandomData() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            byte[] data = new byte[random.nextInt(2048)];
+            random.nextBytes(data);
+            assertSameAsLinear(data);
+        }
+    }
+
+    private void assertSameAsLinear(byte[] data) throws Exception {
+        for (Magic magic : magics) {
+            assertSameAsStream(magic.getClause(), data);
+        }
+
+        List<MimeType> expected = new ArrayList<MimeType>();
+        int currentPriority = -1;
+        for (Magic magic : magics) {
+            if (currentPriority > 0 && currentPriority > magic.getPriority()) {
+                break;
+            }
+            if (magic.eval(data)) {
+                expected.add(magic.getType());
+                currentPriority = magic.getPriority();
+            }
+        }
+        assertEquals(expected, index.eval(data));
+    }
+
+    /**
+     * Checks that in-place evaluation of all the matches in the given
+     * clause agrees with the stream based detection.
+     */
+    private void assertSameAsStream(Clause clause, byte[] data)
+            throws Exception {
+        if (clause instanceof MagicMatch) {
+            MagicDetector detector = ((MagicMatch) clause).getDetector();
+            MediaType type = detector.detect(
+                    new ByteArrayInputStream(data), new Metadata());
+            assertEquals(
+                    clause.toString(),
+                    !MediaType.OCTET_STREAM.equals(type),
+                    detector.matches(data));
+        } else if (clause instanceof AndClause) {
+            for (Clause part : ((AndClause) clause).getClauses()) {
+                assertSameAsStream(part, data);
+            }
+        } else if (clause instanceof OrClause) {
+            for (Clause part : ((OrClause) clause).getClauses()) {
+                assertSameAsStream(part, data);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.mime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+
+import org.apache.tika.io.IOUtils;
+import org.apache.tika.metadata.Metadata;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MimeTypesImageTest {
+
+    private URL xml;
+
+    private URL image;
+
+    private long checksum;
+
+    private MimeTypes types;
+
+    @Before
+    public void setUp() throws Exception {
+        xml = MimeTypes.class.getResource("tika-mimetypes.xml");
+        image = MimeTypes.class.getResource("tika-mimetypes.image");
+        checksum = MimeTypesImage.getChecksum(xml);
+        types = MimeTypesFactory.create(xml);
+    }
+
+    /**
+     * The checked in image must match the type definitions. If this
+     * fails after a change to tika-mimetypes.xml, regenerate the image
+     * as described in {@link MimeTypesImage}.
+     */
+    @Test
+    public void testImageIsUpToDate() throws Exception {
+        assertNotNull(image);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        MimeTypesImage.write(types, checksum, expected);
+        assertArrayEquals(
+                "tika-mimetypes.image is out of date, see MimeTypesImage",
+                expected.toByteArray(), IOUtils.toByteArray(image.openStream()));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        MimeTypes loaded = MimeTypesImage.read(image, checksum);
+        assertNotNull(loaded);
+
+        // The image of the loaded types must be identical
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        MimeTypesImage.write(types, checksum, expected);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        MimeTypesImage.write(loaded, checksum, actual);
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+
+        for (MimeType type : types.getTypes().values()) {
+            MimeType other = loaded.forName(type.getName());
+            assertEquals(type.getDescription(), other.getDescription());
+            assertEquals(type.getExtensions(), other.getExtensions());
+            assertEquals(type.getLinks(), other.getLinks());
+            assertEquals(
+                    String.valueOf(type.getMagics()),
+                    String.valueOf(other.getMagics()));
+        }
+        assertEquals(
+                types.getMediaTypeRegistry().getInheritance(),
+                loaded.getMediaTypeRegistry().getInheritance());
+        assertEquals(
+                types.getMediaTypeRegistry().getRegistry(),
+                loaded.getMediaTypeRegistry().getRegistry());
+    }
+
+    @Test
+    public void testDetection() throws Exception {
+        MimeTypes loaded = MimeTypesImage.read(image, checksum);
+        assertDetection(types, loaded, "%PDF-1.4\n", null);
+        assertDetection(types, loaded, "<?xml version=\"1.0\"?>"
+                + "<svg xmlns=\"http://www.w3.org/2000/svg\"/>", null);
+        assertDetection(types, loaded, "<html><body></body></html>", null);
+        assertDetection(types, loaded, "PK\003\004", "test.docx");
+        assertDetection(types, loaded, "", "Makefile");
+        assertDetection(types, loaded, "", "report.tar.gz");
+        assertDetection(types, loaded, "plain text", "notes.txt");
+    }
+
+    private void assertDetection(
+            MimeTypes expected, MimeTypes actual, String data, String name)
+            throws Exception {
+        Metadata metadata = new Metadata();
+        if (name != null) {
+            metadata.set(Metadata.RESOURCE_NAME_KEY, name);
+        }
+        byte[] bytes = data.getBytes("UTF-8");
+        assertEquals(
+                expected.detect(new ByteArrayInputStream(bytes), metadata),
+                actual.detect(new ByteArrayInputStream(bytes), metadata));
+    }
+
+    @Test
+    public void testChecksumMismatch() throws Exception {
+        assertNull(MimeTypesImage.read(image, checksum + 1));
+    }
+
+    @Test
+    public void testDefaultTypesUseImage() throws Exception {
+        MimeTypes defaults = MimeTypesFactory.create(
+                "tika-mimetypes.xml", "no-such-custom-mimetypes.xml");
+        assertEquals(
+                MediaType.application("pdf"),
+                defaults.detect(new ByteArrayInputStream(
+                        "%PDF-1.4\n".getBytes("US-ASCII")), new Metadata()));
+        assertEquals(
+                types.getTypes().keySet(), defaults.getTypes().keySet());
+    }
+
+}
@@ -17,8 +17,10 @@
 package org.apache.tika.mime;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -93,4 +95,83 @@ public class PatternsTest {
         assertTrue(extensions.contains(".jpeg"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testLongestExtension() throws MimeTypeException {
+        MimeType gzip = types.forName("application/gzip");
+        MimeType tgz = types.forName("application/x-gtar");
+        patterns.add("*.gz", gzip);
+        patterns.add("*.tar.gz", tgz);
+
+        assertEquals(tgz, patterns.matches("data.tar.gz"));
+        assertEquals(gzip, patterns.matches("data.gz"));
+        assertEquals(gzip, patterns.matches("tar.gz"));
+        assertNull(patterns.matches("data.tgz"));
+
+        // Patterns added after matching are taken into account
+        MimeType tar = types.forName("application/x-tar");
+        patterns.add("*.tar", tar);
+        assertEquals(tar, patterns.matches("data.tar"));
+    }
+
+    @Test
+    public void testGlobs() throws MimeTypeException {
+        MimeType a = types.forName("text/x-a");
+        MimeType b = types.forName("text/x-b");
+        MimeType c = types.forName("text/x-c");
+        patterns.add("a_*.txt", a);
+        patterns.add("a_?.txt.*", b);
+        patterns.add("^b+\\.[0-9]$", true, c);
+
+        assertEquals(a, patterns.matches("a_1.txt"));
+        assertEquals(a, patterns.matches("a_.txt"));
+        assertEquals(b, patterns.matches("a_1.txt.bak"));
+        assertEquals(a, patterns.matches("a_12.txt"));
+        assertEquals(c, patterns.matches("bbb.7"));
+        assertNull(patterns.matches("a_1.txt\n"));
+        assertNull(patterns.matches("b_1.txt"));
+        assertNull(patterns.matches("bbb.77"));
+    }
+
+    /**
+     * The compiled matcher must give the same results as matching the
+     * extensions and the glob regular expressions one by one.
+     */
+    @Test
+    public void testSameAsRegexMatching() throws MimeTypeException {
+        Patterns full = fullTypes.getPatterns();
+        String[] names = {
+                "test.txt", "TEST.TXT", "data.tar.gz", "a.b.c.tar.bz2",
+                "Makefile", "makefile", ".htaccess", "x.htaccess",
+                "i_investigation.txt", "s_study.txt", "a_assay.txt",
+                "a_.txt", "xa_assay.txt", "rdf", "owl", "x.owl",
+                "file-gz", "file.", "", "*", "?", "\u00e9t\u00e9.odt",
+                "noextension", "weird.\ud83d\ude00", "line\nbreak.txt" };
+        for (String name : names) {
+            assertEquals(name, matchByRegex(full, name), full.matches(name));
+        }
+        for (String extension : full.getExtensions().keySet()) {
+            String name = "name" + extension;
+            assertEquals(name, matchByRegex(full, name), full.matches(name));
+        }
+    }
+
+    private MimeType matchByRegex(Patterns patterns, String name) {
+        MimeType type = patterns.getNames().get(name);
+        if (type != null) {
+            return type;
+        }
+        for (int n = name.length(); n >= 0; n--) {
+            type = patterns.getExtensions().get(name.substring(name.length() - n));
+            if (type != null) {
+                return type;
+            }
+        }
+        for (Map.Entry<String, MimeType> entry : patterns.getGlobs().entrySet()) {
+            if (name.matches(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.apache.tika.exception.TikaException;
+import org.junit.Test;
+
+public class CharRingBufferTest {
+
+    @Test
+    public void testHandOff() throws Exception {
+        // Many more characters than fit in the buffer, written in chunks
+        // of varying size so that they wrap around at different offsets
+        final char[] text = new char[100000];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (char) ('a' + i % 26);
+        }
+        final CharRingBuffer buffer = new CharRingBuffer(10);
+        final Throwable[] failure = new Throwable[1];
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    int off = 0;
+                    int chunk = 1;
+                    while (off < text.length) {
+                        int len = Math.min(chunk, text.length - off);
+                        buffer.write(text, off, len);
+                        off += len;
+                        chunk = chunk % 37 + 1;
+                    }
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+                buffer.closeWriter(null);
+            }
+        };
+        writer.start();
+
+        StringBuilder builder = new StringBuilder();
+        char[] chars = new char[7];
+        int n = buffer.read(chars, 0, chars.length);
+        while (n != -1) {
+            assertTrue(n > 0 && n <= 16);
+            builder.append(chars, 0, n);
+            n = buffer.read(chars, 0, chars.length);
+        }
+        writer.join();
+
+        assertEquals(null, failure[0]);
+        assertEquals(new String(text), builder.toString());
+        assertEquals(-1, buffer.read(chars, 0, chars.length));
+    }
+
+    @Test
+    public void testWriterFailure() throws Exception {
+        final CharRingBuffer buffer = new CharRingBuffer(16);
+        final TikaException exception = new TikaException("test");
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    buffer.write("abc".toCharArray(), 0, 3);
+                } catch (IOException e) {
+                    // ignore
+                }
+                buffer.closeWriter(exception);
+            }
+        };
+
+        char[] chars = new char[16];
+        writer.start();
+        buffer.await();
+        writer.join();
+        try {
+            buffer.read(chars, 0, chars.length);
+            fail("Writer failure not passed to the reader");
+        } catch (IOException e) {
+            assertSame(exception, e.getCause());
+        }
+    }
+
+    @Test
+    public void testReaderClosed() throws Exception {
+        final CharRingBuffer buffer = new CharRingBuffer(4);
+        final Throwable[] failure = new Throwable[1];
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    // Blocks once the buffer is full
+                    buffer.write("0123456789".toCharArray(), 0, 10);
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        };
+        writer.start();
+        buffer.await();
+        buffer.closeReader();
+        writer.join();
+
+        assertTrue(failure[0] instanceof IOException);
+        try {
+            buffer.read(new char[1], 0, 1);
+            fail("Read from a closed reader");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+}
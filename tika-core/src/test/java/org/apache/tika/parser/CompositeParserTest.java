@@ -18,16 +18,21 @@ package org.apache.tika.parser;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.tika.config.LoadErrorHandler;
+import org.apache.tika.config.ServiceLoader;
 import org.apache.tika.config.TikaConfig;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
@@ -153,4 +158,155 @@ public class CompositeParserTest {
        assertEquals("True", metadata.get("BMP"));
        assertEquals("True", metadata.get("Alias"));
     }
+
+    @Test
+    @SuppressWarnings("serial")
+    public void testDispatchTableReuse() throws Exception {
+        final Set<MediaType> textTypes =
+                Collections.singleton(MediaType.TEXT_PLAIN);
+        Parser text = new EmptyParser() {
+            public Set<MediaType> getSupportedTypes(ParseContext context) {
+                // Only supports anything if the context says so
+                if (context.get(Locale.class) != null) {
+                    return textTypes;
+                }
+                return Collections.emptySet();
+            }
+        };
+        CompositeParser composite = new CompositeParser(
+                MediaTypeRegistry.getDefaultRegistry(), text);
+
+        ParseContext context = new ParseContext();
+        context.set(Locale.class, Locale.ENGLISH);
+        context.set(StringBuilder.class, new StringBuilder("first config"));
+        assertSame(text, getParser(composite, "text/plain", context));
+        assertSame(text, getParser(composite, "text/html", context));
+        assertSame(text, getParser(composite, "text/csv; charset=UTF-8", context));
+        assertSame(composite.getFallback(),
+                getParser(composite, "image/png", context));
+        Set<MediaType> types = composite.getSupportedTypes(context);
+
+        // Per-request configuration objects don't invalidate the table
+        ParseContext other = new ParseContext();
+        other.set(Locale.class, Locale.GERMAN);
+        other.set(StringBuilder.class, new StringBuilder("second config"));
+        other.set(Parser.class, composite);
+        assertSame(text, getParser(composite, "text/plain", other));
+        assertSame(types, composite.getSupportedTypes(other));
+        assertSame(types, composite.getSupportedTypes(new ParseContext() {{
+            set(Locale.class, Locale.FRENCH);
+        }}));
+
+        // A context that changes the supported types rebuilds it
+        ParseContext empty = new ParseContext();
+        assertSame(composite.getFallback(),
+                getParser(composite, "text/plain", empty));
+        assertEquals(0, composite.getSupportedTypes(empty).size());
+        assertSame(text, getParser(composite, "text/plain", context));
+
+        // So do new component parsers
+        final Parser image = new EmptyParser();
+        composite.setParsers(Collections.singletonMap(MediaType.image("png"), image));
+        Parser parser = getParser(composite, "image/png", context);
+        assertSame(image, ((ParserDecorator) parser).getWrappedParser());
+        assertSame(composite.getFallback(),
+                getParser(composite, "text/plain", context));
+    }
+
+    @Test
+    @SuppressWarnings("serial")
+    public void testDispatchTableLookupsDontPoll() throws Exception {
+        final int[] calls = new int[1];
+        Parser text = new EmptyParser() {
+            public Set<MediaType> getSupportedTypes(ParseContext context) {
+                // A new set every time, but independent of the context
+                calls[0]++;
+                return new HashSet<MediaType>(
+                        Collections.singleton(MediaType.TEXT_PLAIN));
+            }
+        };
+        CompositeParser composite = new CompositeParser(
+                MediaTypeRegistry.getDefaultRegistry(), text);
+
+        assertSame(text, getParser(composite, "text/plain", new ParseContext()));
+        int built = calls[0];
+        for (int i = 0; i < 10; i++) {
+            ParseContext context = new ParseContext();
+            context.set(Locale.class, Locale.ENGLISH);
+            assertSame(text, getParser(composite, "text/plain", context));
+            composite.getSupportedTypes(context);
+        }
+        assertEquals(built, calls[0]);
+    }
+
+    @Test
+    public void testUnloadableLazyParser() throws Exception {
+        final List<String> errors = new ArrayList<String>();
+        ServiceLoader loader = new ServiceLoader(
+                CompositeParserTest.class.getClassLoader(),
+                new LoadErrorHandler() {
+                    public void handleLoadError(String classname, Throwable t) {
+                        errors.add(classname);
+                    }
+                });
+        Set<MediaType> textTypes = Collections.singleton(MediaType.TEXT_PLAIN);
+        Parser text = new DummyParser(
+                textTypes, Collections.singletonMap("Parser", "Dummy"), null);
+        LazyParser missing = new LazyParser(
+                loader, "org.apache.tika.parser.NoSuchParser", textTypes, null);
+        CompositeParser composite = new CompositeParser(
+                MediaTypeRegistry.getDefaultRegistry(), text, missing);
+
+        // The first parse of a claimed type falls through to the next
+        // candidate, and the failure is only reported once
+        for (int i = 0; i < 3; i++) {
+            Metadata metadata = new Metadata();
+            metadata.set(Metadata.CONTENT_TYPE, "text/plain");
+            composite.parse(
+                    new ByteArrayInputStream(new byte[0]),
+                    new BodyContentHandler(), metadata, new ParseContext());
+            assertEquals("Dummy", metadata.get("Parser"));
+        }
+        assertEquals(
+                Arrays.asList("org.apache.tika.parser.NoSuchParser"), errors);
+        assertEquals(0, missing.getSupportedTypes(new ParseContext()).size());
+
+        // Types claimed by no one else go to the fallback parser
+        composite = new CompositeParser(
+                MediaTypeRegistry.getDefaultRegistry(), new LazyParser(
+                        loader, "org.apache.tika.parser.NoSuchParser",
+                        textTypes, null));
+        assertSame(composite.getFallback(),
+                getParser(composite, "text/plain", new ParseContext()));
+
+        // Parsers excluded through a superclass are only found on loading
+        composite = new CompositeParser(
+                MediaTypeRegistry.getDefaultRegistry(), new LazyParser(
+                        loader, EmptyParser.class.getName(), textTypes,
+                        Collections.<Class<? extends Parser>>singleton(
+                                AbstractParser.class)));
+        assertSame(composite.getFallback(),
+                getParser(composite, "text/plain", new ParseContext()));
+        // and aren't load errors
+        assertEquals(2, errors.size());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testUnloadableLazyParserFailsFast() throws Exception {
+        ServiceLoader loader = new ServiceLoader(
+                CompositeParserTest.class.getClassLoader(),
+                LoadErrorHandler.THROW);
+        CompositeParser composite = new CompositeParser(
+                MediaTypeRegistry.getDefaultRegistry(), new LazyParser(
+                        loader, "org.apache.tika.parser.NoSuchParser",
+                        Collections.singleton(MediaType.TEXT_PLAIN), null));
+        getParser(composite, "text/plain", new ParseContext());
+    }
+
+    private Parser getParser(
+            CompositeParser composite, String type, ParseContext context) {
+        Metadata metadata = new Metadata();
+        metadata.set(Metadata.CONTENT_TYPE, type);
+        return composite.getParser(metadata, context);
+    }
 }
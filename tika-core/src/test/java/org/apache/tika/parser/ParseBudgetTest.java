@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Set;
+
+import org.apache.tika.detect.Detector;
+import org.apache.tika.exception.ParseBudgetExceededException;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.extractor.ParsingEmbeddedDocumentExtractor;
+import org.apache.tika.io.IOUtils;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.XHTMLContentHandler;
+import org.junit.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * Test cases for the {@link ParseBudget} class.
+ */
+public class ParseBudgetTest {
+
+    private static final MediaType TYPE =
+            MediaType.application("x-budget-test");
+
+    @Test
+    public void testWithinBudget() throws Exception {
+        ParseBudget budget = new ParseBudget();
+        budget.setMaxTime(60000);
+        budget.setMaxBytes(10000);
+        budget.setMaxCharacters(10000);
+        budget.setMaxEmbeddedDocuments(10);
+
+        TestParser parser = new TestParser();
+        parser.paragraphs = 10;
+        parser.embedded = 2;
+        String text = parse(parser, budget, 100);
+
+        assertTrue(text.contains("paragraph 9"));
+        assertFalse(budget.isExceeded());
+        assertEquals(300, budget.getBytesRead());
+        assertEquals(2, budget.getEmbeddedDocuments());
+        assertTrue(budget.getCharacters() > 0);
+    }
+
+    @Test
+    public void testMaxBytes() throws Exception {
+        ParseBudget budget = new ParseBudget();
+        budget.setMaxBytes(1000);
+        assertExceeded(new TestParser(), budget, 10000);
+        assertTrue(budget.getBytesRead() > 1000);
+    }
+
+    @Test
+    public void testMaxCharacters() throws Exception {
+        ParseBudget budget = new ParseBudget();
+        budget.setMaxCharacters(100);
+        TestParser parser = new TestParser();
+        parser.paragraphs = 1000;
+        assertExceeded(parser, budget, 10);
+        assertTrue(budget.getCharacters() > 100);
+    }
+
+    @Test
+    public void testMaxEmbeddedDocuments() throws Exception {
+        ParseBudget budget = new ParseBudget();
+        budget.setMaxEmbeddedDocuments(3);
+        TestParser parser = new TestParser();
+        parser.embedded = 100;
+        assertExceeded(parser, budget, 10);
+        assertEquals(4, budget.getEmbeddedDocuments());
+    }
+
+    @Test
+    public void testMaxTime() throws Exception {
+        ParseBudget budget = new ParseBudget();
+        budget.setMaxTime(100);
+        TestParser parser = new TestParser();
+        parser.paragraphs = 1000;
+        parser.sleep = 10;
+        long start = System.currentTimeMillis();
+        assertExceeded(parser, budget, 10);
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    /**
+     * A parser that ignores the failures of its embedded documents must
+     * still not produce a result once the budget is exceeded.
+     */
+    @Test
+    public void testIgnoredFailure() throws Exception {
+        ParseBudget budget = new ParseBudget();
+        budget.setMaxEmbeddedDocuments(3);
+        TestParser parser = new TestParser();
+        parser.embedded = 10;
+        parser.lenient = true;
+        assertExceeded(parser, budget, 10);
+    }
+
+    private static void assertExceeded(
+            Parser parser, ParseBudget budget, int length) throws Exception {
+        try {
+            parse(parser, budget, length);
+            fail("Parse budget not enforced");
+        } catch (ParseBudgetExceededException expected) {
+            assertTrue(budget.isExceeded());
+        }
+    }
+
+    private static String parse(Parser parser, ParseBudget budget, int length)
+            throws IOException, SAXException, TikaException {
+        AutoDetectParser auto = new AutoDetectParser(parser);
+        auto.setDetector(new Detector() {
+            public MediaType detect(InputStream input, Metadata metadata) {
+                return TYPE;
+            }
+        });
+
+        ParseContext context = new ParseContext();
+        context.set(ParseBudget.class, budget);
+        context.set(Parser.class, auto);
+
+        ContentHandler handler = new BodyContentHandler(-1);
+        auto.parse(
+                new ByteArrayInputStream(new byte[length]),
+                handler, new Metadata(), context);
+        return handler.toString();
+    }
+
+    /**
+     * Parser that reads the whole document, outputs a number of
+     * paragraphs and parses a number of copies of the document as
+     * embedded documents. Embedded documents are told apart by their
+     * resource name, and do not contain further embedded documents.
+     */
+    private static class TestParser extends AbstractParser {
+
+        private int paragraphs = 1;
+
+        private int embedded = 0;
+
+        private long sleep = 0;
+
+        private boolean lenient = false;
+
+        public Set<MediaType> getSupportedTypes(ParseContext context) {
+            return Collections.singleton(TYPE);
+        }
+
+        public void parse(
+                InputStream stream, ContentHandler handler,
+                Metadata metadata, ParseContext context)
+                throws IOException, SAXException, TikaException {
+            byte[] data = IOUtils.toByteArray(stream);
+
+            XHTMLContentHandler xhtml =
+                    new XHTMLContentHandler(handler, metadata);
+            xhtml.startDocument();
+            for (int i = 0; i < paragraphs; i++) {
+                xhtml.element("p", "paragraph " + i);
+                if (sleep > 0) {
+                    try {
+                        Thread.sleep(sleep);
+                    } catch (InterruptedException e) {
+                        throw new TikaException("Interrupted", e);
+                    }
+                }
+            }
+
+            ParsingEmbeddedDocumentExtractor extractor =
+                    new ParsingEmbeddedDocumentExtractor(context);
+            boolean container =
+                    metadata.get(Metadata.RESOURCE_NAME_KEY) == null;
+            for (int i = 0; container && i < embedded; i++) {
+                Metadata entry = new Metadata();
+                entry.set(Metadata.RESOURCE_NAME_KEY, "embedded-" + i);
+                try {
+                    extractor.parseEmbedded(
+                            new ByteArrayInputStream(data),
+                            xhtml, entry, true);
+                } catch (IOException e) {
+                    if (!lenient) {
+                        throw e;
+                    }
+                }
+            }
+            xhtml.endDocument();
+        }
+
+    }
+
+}
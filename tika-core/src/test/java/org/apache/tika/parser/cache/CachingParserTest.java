@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.extractor.EmbeddedDocumentExtractor;
+import org.apache.tika.io.IOUtils;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.AbstractParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.PasswordProvider;
+import org.apache.tika.sax.ToXMLContentHandler;
+import org.apache.tika.sax.XHTMLContentHandler;
+import org.junit.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class CachingParserTest {
+
+    @Test
+    public void testCacheHit() throws Exception {
+        CountingParser counter = new CountingParser();
+        CachingParser parser = new CachingParser(
+                counter, new MemoryParseResultCache(1024 * 1024));
+
+        Metadata first = new Metadata();
+        first.set(Metadata.RESOURCE_NAME_KEY, "hello.txt");
+        String expected = parse(parser, "Hello, World!", first);
+
+        Metadata second = new Metadata();
+        second.set(Metadata.RESOURCE_NAME_KEY, "hello.txt");
+        assertEquals(expected, parse(parser, "Hello, World!", second));
+
+        assertEquals(1, counter.count);
+        assertEquals(1, parser.getHits());
+        assertEquals(1, parser.getMisses());
+        assertEquals("hello.txt", second.get(Metadata.RESOURCE_NAME_KEY));
+        assertEquals("13", second.get("length"));
+        assertEquals(2, second.getValues("tags").length);
+
+        parse(parser, "Hello, Moon!", new Metadata());
+        assertEquals(2, counter.count);
+        assertEquals(2, parser.getMisses());
+    }
+
+    @Test
+    public void testInputsInKey() throws Exception {
+        CountingParser counter = new CountingParser();
+        CachingParser parser = new CachingParser(
+                counter, new MemoryParseResultCache(1024 * 1024));
+
+        // Metadata hints can change the result
+        Metadata metadata = new Metadata();
+        metadata.set(Metadata.RESOURCE_NAME_KEY, "first.txt");
+        parse(parser, "Hello, World!", metadata);
+        metadata = new Metadata();
+        metadata.set(Metadata.RESOURCE_NAME_KEY, "second.txt");
+        parse(parser, "Hello, World!", metadata);
+        metadata = new Metadata();
+        metadata.set(Metadata.CONTENT_TYPE, "text/plain");
+        parse(parser, "Hello, World!", metadata);
+        assertEquals(3, parser.getMisses());
+
+        // So can the configuration in the parse context
+        ParseContext context = new ParseContext();
+        context.set(Locale.class, Locale.ENGLISH);
+        parse(parser, "Hello, World!", new Metadata(), context);
+        context.set(Locale.class, Locale.GERMAN);
+        parse(parser, "Hello, World!", new Metadata(), context);
+        assertEquals(5, parser.getMisses());
+        context.set(Locale.class, Locale.GERMAN);
+        parse(parser, "Hello, World!", new Metadata(), context);
+        assertEquals(1, parser.getHits());
+
+        // Objects that can't be serialized bypass the cache
+        context = new ParseContext();
+        context.set(PasswordProvider.class, new PasswordProvider() {
+            public String getPassword(Metadata metadata) {
+                return "secret";
+            }
+        });
+        parse(parser, "Hello, World!", new Metadata(), context);
+        parse(parser, "Hello, World!", new Metadata(), context);
+        assertEquals(2, parser.getUncacheable());
+        assertEquals(1, parser.getHits());
+        assertEquals(7, counter.count);
+    }
+
+    @Test
+    public void testMemoryBound() throws Exception {
+        CountingParser counter = new CountingParser();
+        MemoryParseResultCache cache = new MemoryParseResultCache(16 * 1024);
+        CachingParser parser = new CachingParser(counter, cache);
+
+        for (int i = 0; i < 100; i++) {
+            parse(parser, "Document " + i, new Metadata());
+        }
+        assertEquals(100, parser.getMisses());
+        assertTrue(cache.getSize() <= 16 * 1024);
+        assertTrue(cache.getCount() > 1);
+        assertTrue(cache.getCount() < 100);
+
+        // The most recent documents are still cached
+        parse(parser, "Document 99", new Metadata());
+        assertEquals(1, parser.getHits());
+    }
+
+    @Test
+    public void testFileCache() throws Exception {
+        File directory = File.createTempFile("tika-cache-", "");
+        directory.delete();
+        try {
+            CountingParser counter = new CountingParser();
+            String expected = parse(
+                    new CachingParser(counter, new MemoryParseResultCache(
+                            1024, new FileParseResultCache(directory))),
+                    "Hello, World!", new Metadata());
+
+            CachingParser parser = new CachingParser(
+                    counter, new MemoryParseResultCache(
+                            1024, new FileParseResultCache(directory)));
+            assertEquals(
+                    expected, parse(parser, "Hello, World!", new Metadata()));
+            assertEquals(1, counter.count);
+            assertEquals(1, parser.getHits());
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testEmbeddedDocumentsNotCached() throws Exception {
+        CountingParser counter = new CountingParser();
+        CachingParser parser = new CachingParser(
+                counter, new MemoryParseResultCache(1024 * 1024));
+
+        // Output of the extractor is not part of the parse result
+        final int[] extracted = new int[1];
+        ParseContext context = new ParseContext();
+        context.set(EmbeddedDocumentExtractor.class,
+                new EmbeddedDocumentExtractor() {
+            public boolean shouldParseEmbedded(Metadata metadata) {
+                return true;
+            }
+            public void parseEmbedded(
+                    InputStream stream, ContentHandler handler,
+                    Metadata metadata, boolean outputHtml) {
+                extracted[0]++;
+            }
+        });
+
+        for (int i = 0; i < 2; i++) {
+            parser.parse(
+                    new ByteArrayInputStream(
+                            "container".getBytes(IOUtils.UTF_8)),
+                    new DefaultHandler(), new Metadata(), context);
+        }
+        assertEquals(2, counter.count);
+        assertEquals(2, extracted[0]);
+        assertEquals(2, parser.getUncacheable());
+        assertNotNull(context.get(EmbeddedDocumentExtractor.class));
+        assertNull(context.get(Parser.class));
+    }
+
+    private static String parse(
+            Parser parser, String text, Metadata metadata) throws Exception {
+        return parse(parser, text, metadata, new ParseContext());
+    }
+
+    private static String parse(
+            Parser parser, String text, Metadata metadata,
+            ParseContext context) throws Exception {
+        ToXMLContentHandler handler = new ToXMLContentHandler();
+        parser.parse(
+                new ByteArrayInputStream(text.getBytes(IOUtils.UTF_8)),
+                handler, metadata, context);
+        return handler.toString();
+    }
+
+    /**
+     * Test parser that outputs the document text, and counts the number
+     * of documents it has parsed. Documents with the text "container"
+     * are passed to the embedded document extractor.
+     */
+    private static class CountingParser extends AbstractParser {
+
+        private static final long serialVersionUID = 1L;
+
+        private int count = 0;
+
+        public Set<MediaType> getSupportedTypes(ParseContext context) {
+            return Collections.singleton(MediaType.TEXT_PLAIN);
+        }
+
+        public void parse(
+                InputStream stream, ContentHandler handler,
+                Metadata metadata, ParseContext context)
+                throws IOException, SAXException, TikaException {
+            count++;
+            String text = IOUtils.toString(stream, IOUtils.UTF_8.name());
+            metadata.set("length", Integer.toString(text.length()));
+            metadata.add("tags", "a");
+            metadata.add("tags", "b");
+
+            XHTMLContentHandler xhtml =
+                new XHTMLContentHandler(handler, metadata);
+            xhtml.startDocument();
+            xhtml.element("p", text);
+            if (text.equals("container")) {
+                EmbeddedDocumentExtractor extractor =
+                    context.get(EmbeddedDocumentExtractor.class);
+                extractor.parseEmbedded(
+                        new ByteArrayInputStream(new byte[0]),
+                        xhtml, new Metadata(), true);
+            }
+            xhtml.endDocument();
+        }
+
+    }
+
+}
@@ -17,13 +17,21 @@
 package org.apache.tika.sax;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 
 import org.apache.tika.io.IOUtils;
+import org.apache.tika.io.NullInputStream;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
 import org.junit.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
 
 /**
  * Test cases for the {@link BodyContentHandler} class.
@@ -49,4 +57,70 @@ public class BodyContentHandlerTest {
         assertEquals("Test text\n", buffer.toString(IOUtils.UTF_8.name()));
     }
 
+    /**
+     * Test that the fused text output path of
+     * {@link SecureContentHandler#decorate(ContentHandler, TikaInputStream)}
+     * writes out exactly the same text as the full decorator chain.
+     */
+    @Test
+    public void testFusedTextOutput() throws Exception {
+        BodyContentHandler plain = new BodyContentHandler();
+        BodyContentHandler fused = new BodyContentHandler();
+        writeDocument(new SecureContentHandler(plain, getStream()));
+        SecureContentHandler handler =
+                SecureContentHandler.decorate(fused, getStream());
+        assertTrue(handler instanceof SecureTextContentHandler);
+        writeDocument(handler);
+        assertEquals(plain.toString(), fused.toString());
+        assertFalse(fused.toString().contains("Title"));
+        assertTrue(fused.toString().contains("Bold \ufffd text"));
+
+        // Subclasses may handle other events, so they are left alone
+        assertFalse(SecureContentHandler.decorate(
+                new BodyContentHandler(new ToXMLContentHandler()), getStream())
+                instanceof SecureTextContentHandler);
+    }
+
+    @Test
+    public void testFusedWriteLimit() throws Exception {
+        WriteOutContentHandler plain = new WriteOutContentHandler(12);
+        WriteOutContentHandler fused = new WriteOutContentHandler(12);
+        try {
+            writeDocument(new SecureContentHandler(
+                    new BodyContentHandler(plain), getStream()));
+            fail("Write limit not reached");
+        } catch (SAXException e) {
+            assertTrue(plain.isWriteLimitReached(e));
+        }
+        try {
+            writeDocument(SecureContentHandler.decorate(
+                    new BodyContentHandler(fused), getStream()));
+            fail("Write limit not reached");
+        } catch (SAXException e) {
+            assertTrue(fused.isWriteLimitReached(e));
+        }
+        assertEquals(plain.toString(), fused.toString());
+    }
+
+    private static TikaInputStream getStream() {
+        return TikaInputStream.get(new NullInputStream(1000));
+    }
+
+    private static void writeDocument(ContentHandler handler)
+            throws SAXException {
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.TITLE, "Title");
+        XHTMLContentHandler xhtml = new XHTMLContentHandler(handler, metadata);
+        xhtml.startDocument();
+        xhtml.element("h1", "Heading");
+        xhtml.startElement("p");
+        xhtml.characters("Some ");
+        xhtml.element("b", "Bold \u0000 text");
+        xhtml.endElement("p");
+        xhtml.startElement("div", "class", "package-entry");
+        xhtml.element("p", "Entry");
+        xhtml.endElement("div");
+        xhtml.endDocument();
+    }
+
 }
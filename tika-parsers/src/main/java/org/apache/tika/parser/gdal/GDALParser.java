@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -68,37 +69,9 @@ public class GDALParser extends AbstractParser {
 
     private static final long serialVersionUID = -3869130527323941401L;
 
-    private String command;
-
-    public GDALParser() {
-        setCommand("gdalinfo ${INPUT}");
-    }
-
-    public void setCommand(String command) {
-        this.command = command;
-    }
-
-    public String getCommand() {
-        return this.command;
-    }
-
-    public String processCommand(InputStream stream) {
-        TikaInputStream tis = (TikaInputStream) stream;
-        String pCommand = this.command;
-        try {
-            if (this.command.contains(INPUT_FILE_TOKEN)) {
-                pCommand = this.command.replace(INPUT_FILE_TOKEN, tis.getFile()
-                        .getPath());
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        return pCommand;
-    }
+    private static final Set<MediaType> SUPPORTED_TYPES;
 
-    @Override
-    public Set<MediaType> getSupportedTypes(ParseContext context) {
+    static {
         Set<MediaType> types = new HashSet<MediaType>();
         types.add(MediaType.application("x-netcdf"));
         types.add(MediaType.application("vrt"));
@@ -222,7 +195,41 @@ public class GDALParser extends AbstractParser {
         types.add(MediaType.application("x-mbtiles"));
         types.add(MediaType.application("x-ppi"));
         types.add(MediaType.application("x-cappi"));
-        return types;
+        SUPPORTED_TYPES = Collections.unmodifiableSet(types);
+    }
+
+    private String command;
+
+    public GDALParser() {
+        setCommand("gdalinfo ${INPUT}");
+    }
+
+    public void setCommand(String command) {
+        this.command = command;
+    }
+
+    public String getCommand() {
+        return this.command;
+    }
+
+    public String processCommand(InputStream stream) {
+        TikaInputStream tis = (TikaInputStream) stream;
+        String pCommand = this.command;
+        try {
+            if (this.command.contains(INPUT_FILE_TOKEN)) {
+                pCommand = this.command.replace(INPUT_FILE_TOKEN, tis.getFile()
+                        .getPath());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return pCommand;
+    }
+
+    @Override
+    public Set<MediaType> getSupportedTypes(ParseContext context) {
+        return SUPPORTED_TYPES;
     }
 
     @Override
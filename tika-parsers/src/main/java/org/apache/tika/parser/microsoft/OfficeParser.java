@@ -104,12 +104,11 @@ public class OfficeParser extends AbstractParser {
             } else if (container instanceof DirectoryNode) {
                 root = (DirectoryNode) container;
             } else {
-                NPOIFSFileSystem fs;
-                if (tstream.hasFile()) {
-                    fs = new NPOIFSFileSystem(tstream.getFile(), true);
-                } else {
-                    fs = new NPOIFSFileSystem(new CloseShieldInputStream(tstream));
-                }
+                // Open the file system from a (possibly temporary) file
+                // rather than loading all of it in memory, as the container
+                // detection may have left the stream without a file
+                NPOIFSFileSystem fs =
+                        new NPOIFSFileSystem(tstream.getFile(), true);
                 tstream.setOpenContainer(fs);
                 root = fs.getRoot();
             }
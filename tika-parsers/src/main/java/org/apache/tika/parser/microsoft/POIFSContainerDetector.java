@@ -21,8 +21,12 @@ import static org.apache.tika.mime.MediaType.application;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -146,6 +150,13 @@ public class POIFSContainerDetector implements Detector {
     private static final byte[] WORKS_QUILL96 = new byte[]{
             0x51, 0x75, 0x69, 0x6c, 0x6c, 0x39, 0x36
     };
+    /**
+     * Number of bytes at the start of an OLE2 document that is not backed
+     * by a file, within which the directory is looked for before spooling
+     * the whole document to a temporary file. Matches the magic prefix that
+     * the other detectors already read ahead.
+     */
+    private static final int STREAMING_WINDOW = 64 * 1024;
     /**
      * Regexp for matching the MPP Project Data stream
      */
@@ -367,6 +378,83 @@ public class POIFSContainerDetector implements Detector {
         }
     }
 
+    /**
+     * Reads the names of the top level entries straight from the directory
+     * sectors of an OLE2 document, as long as the FAT and directory sectors
+     * needed for that all fall within the given window at the start of the
+     * document. Returns <code>null</code> otherwise.
+     */
+    private static Set<String> getTopLevelNames(ByteBuffer window) {
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        int limit = window.limit();
+        if (limit < 512) {
+            return null;
+        }
+        int shift = window.getShort(0x1e);
+        if (shift != 9 && shift != 12) {
+            return null;
+        }
+        int size = 1 << shift;
+        int perFatSector = size / 4;
+
+        // Follow the FAT chain of directory sectors, as far as it's known
+        List<Integer> directory = new ArrayList<Integer>();
+        int sector = window.getInt(0x30);
+        while (sector != -2) { // ENDOFCHAIN
+            if (sector < 0 || directory.size() >= limit / size
+                    || (sector + 2L) * size > limit) {
+                return null;
+            }
+            directory.add(sector);
+            int index = sector / perFatSector;
+            if (index >= 109) { // Only the header DIFAT entries are read
+                return null;
+            }
+            int fat = window.getInt(0x4c + 4 * index);
+            if (fat < 0 || (fat + 2L) * size > limit) {
+                return null;
+            }
+            sector = window.getInt(
+                    (fat + 1) * size + 4 * (sector % perFatSector));
+        }
+
+        // Walk the tree of siblings below the root entry
+        int perSector = size / 128;
+        int count = directory.size() * perSector;
+        if (count == 0) {
+            return null;
+        }
+        Set<String> names = new HashSet<String>();
+        List<Integer> pending = new ArrayList<Integer>();
+        pending.add(window.getInt(getEntryOffset(directory, 0, size) + 76));
+        int visited = 0;
+        while (!pending.isEmpty()) {
+            int id = pending.remove(pending.size() - 1);
+            if (id == -1) { // NOSTREAM
+                continue;
+            } else if (id < 0 || id >= count || ++visited > count) {
+                return null;
+            }
+            int offset = getEntryOffset(directory, id, size);
+            int length = Math.min(window.getShort(offset + 64) / 2 - 1, 31);
+            char[] name = new char[Math.max(length, 0)];
+            for (int i = 0; i < name.length; i++) {
+                name[i] = window.getChar(offset + 2 * i);
+            }
+            names.add(new String(name));
+            pending.add(window.getInt(offset + 68));
+            pending.add(window.getInt(offset + 72));
+        }
+        return names;
+    }
+
+    private static int getEntryOffset(
+            List<Integer> directory, int id, int size) {
+        int perSector = size / 128;
+        return (directory.get(id / perSector) + 1) * size
+                + (id % perSector) * 128;
+    }
+
     private static Set<String> getTopLevelNames(DirectoryNode root) {
         Set<String> names = new HashSet<String>();
         for (Entry entry : root) {
@@ -396,7 +484,28 @@ public class POIFSContainerDetector implements Detector {
             }
         }
 
-        if (names == null) {
+        if (names == null && tis != null) {
+            // Check the OLE header in the prefix shared with other detectors
+            byte[] header = new byte[8];
+            if (tis.peek(header) < header.length
+                    || header[0] != (byte) 0xd0 || header[1] != (byte) 0xcf
+                    || header[2] != (byte) 0x11 || header[3] != (byte) 0xe0
+                    || header[4] != (byte) 0xa1 || header[5] != (byte) 0xb1
+                    || header[6] != (byte) 0x1a || header[7] != (byte) 0xe1) {
+                return MediaType.OCTET_STREAM;
+            }
+            if (!tis.hasFile()) {
+                // Try to avoid spooling the whole stream to a file, unless
+                // the names call for a look at the CompObj stream
+                names = getTopLevelNames(
+                        tis.peek(tis.getPosition(), STREAMING_WINDOW));
+                if (names != null && (names.contains("StarDrawDocument3")
+                        || (names.contains("CONTENTS")
+                            && names.contains("\u0001CompObj")))) {
+                    names = null;
+                }
+            }
+        } else if (names == null) {
             // Check if the document starts with the OLE header
             input.mark(8);
             try {
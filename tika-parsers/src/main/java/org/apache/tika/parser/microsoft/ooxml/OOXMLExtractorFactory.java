@@ -65,7 +65,10 @@ public class OOXMLExtractorFactory {
             TikaInputStream tis = TikaInputStream.cast(stream);
             if (tis != null && tis.getOpenContainer() instanceof OPCPackage) {
                 pkg = (OPCPackage) tis.getOpenContainer();
-            } else if (tis != null && tis.hasFile()) {
+            } else if (tis != null) {
+                // Open the package from a (possibly temporary) file rather
+                // than loading all of it in memory, as the streaming zip
+                // detection may have left the stream without a file
                 pkg = OPCPackage.open(tis.getFile().getPath(), PackageAccess.READ);
                 tis.setOpenContainer(pkg);
             } else {
@@ -127,10 +127,10 @@ public class OpenDocumentParser extends AbstractParser {
             Object container = ((TikaInputStream) stream).getOpenContainer();
             if (container instanceof ZipFile) {
                 zipFile = (ZipFile) container;
-            } else if (tis.hasFile()) {
-                zipFile = new ZipFile(tis.getFile());
             } else {
-                zipStream = new ZipInputStream(stream);
+                // Spool to a (possibly temporary) file if needed, as the
+                // container detection may have left the stream without one
+                zipFile = new ZipFile(tis.getFile());
             }
         } else {
             zipStream = new ZipInputStream(stream);
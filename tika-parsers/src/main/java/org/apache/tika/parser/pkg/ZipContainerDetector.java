@@ -19,12 +19,23 @@ package org.apache.tika.parser.pkg;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+import javax.xml.parsers.SAXParser;
 
 import org.apache.commons.compress.archivers.ArchiveException;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
@@ -48,8 +59,13 @@ import org.apache.tika.io.TemporaryResources;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.iwork.IWorkPackageParser;
 import org.apache.tika.parser.iwork.IWorkPackageParser.IWORKDocumentType;
+import org.apache.tika.sax.OfflineContentHandler;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * A detector that works on Zip documents and other archive and compression
@@ -65,6 +81,20 @@ public class ZipContainerDetector implements Detector {
     private static final String STRICT_CORE_DOCUMENT = 
             "http://purl.oclc.org/ooxml/officeDocument/relationships/officeDocument";
     
+    /**
+     * Number of bytes at the start of a Zip document that is not backed
+     * by a file, within which the local file headers are looked at before
+     * spooling the whole document to a temporary file. Matches the magic
+     * prefix that the other detectors already read ahead.
+     */
+    private static final int STREAMING_WINDOW = 64 * 1024;
+
+    /** Signature of a local file header */
+    private static final int LOCAL_HEADER = 0x04034b50;
+
+    /** Signature of an (optional) data descriptor */
+    private static final int DATA_DESCRIPTOR = 0x08074b50;
+
     /** Serial version UID */
     private static final long serialVersionUID = 2891763938430295453L;
 
@@ -85,6 +115,13 @@ public class ZipContainerDetector implements Detector {
             MediaType type = detectArchiveFormat(prefix, length);
             if (PackageParser.isZipArchive(type)
                     && TikaInputStream.isTikaInputStream(input)) {
+                if (!tis.hasFile()) {
+                    // Try to avoid spooling the whole stream to a file
+                    MediaType streamed = detectStreamingZipFormat(tis);
+                    if (streamed != null) {
+                        return streamed;
+                    }
+                }
                 return detectZipFormat(tis);
             } else if (!type.equals(MediaType.OCTET_STREAM)) {
                 return type;
@@ -136,9 +173,231 @@ public class ZipContainerDetector implements Detector {
         }
     }
 
+    /**
+     * Detects the type of a Zip document that is not backed by a file from
+     * the local file headers within the first {@link #STREAMING_WINDOW}
+     * bytes. This covers the OpenDocument and EPub formats, whose mimetype
+     * entry comes first, and the Office Open XML formats, whose content
+     * types and package relationships usually come first. Returns
+     * <code>null</code> if the answer is not clear from those headers, in
+     * which case the caller falls back to {@link #detectZipFormat}.
+     */
+    private static MediaType detectStreamingZipFormat(TikaInputStream tis)
+            throws IOException {
+        ByteBuffer window = tis.peek(tis.getPosition(), STREAMING_WINDOW);
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        int limit = window.limit();
+
+        byte[] mimetype = null;
+        byte[] contentTypes = null;
+        byte[] relationships = null;
+
+        int pos = 0;
+        while (pos + 30 <= limit && window.getInt(pos) == LOCAL_HEADER) {
+            int flags = window.getShort(pos + 6) & 0xffff;
+            int method = window.getShort(pos + 8) & 0xffff;
+            long compressed = window.getInt(pos + 18) & 0xffffffffL;
+            long size = window.getInt(pos + 22) & 0xffffffffL;
+            int nameLength = window.getShort(pos + 26) & 0xffff;
+            int extraLength = window.getShort(pos + 28) & 0xffff;
+            int start = pos + 30 + nameLength + extraLength;
+            if (start > limit
+                    || (compressed == 0 && (flags & 8) != 0) // size unknown
+                    || compressed == 0xffffffffL             // Zip64
+                    || start + compressed > limit) {
+                break;
+            }
+
+            byte[] bytes = new byte[nameLength];
+            for (int i = 0; i < nameLength; i++) {
+                bytes[i] = window.get(pos + 30 + i);
+            }
+            String name = new String(bytes, IOUtils.UTF_8);
+            if ("mimetype".equals(name)
+                    || "[Content_Types].xml".equals(name)
+                    || "_rels/.rels".equals(name)) {
+                byte[] data = getEntryData(
+                        window, start, (int) compressed, size, flags, method);
+                if (data == null) {
+                    break;
+                } else if ("mimetype".equals(name)) {
+                    mimetype = data;
+                } else if ("[Content_Types].xml".equals(name)) {
+                    contentTypes = data;
+                } else {
+                    relationships = data;
+                }
+            }
+
+            pos = start + (int) compressed;
+            if ((flags & 8) != 0) {
+                // Skip the data descriptor, with or without its signature
+                if (pos + 4 <= limit
+                        && window.getInt(pos) == DATA_DESCRIPTOR) {
+                    pos += 16;
+                } else {
+                    pos += 12;
+                }
+            }
+        }
+
+        if (mimetype != null) {
+            MediaType type = MediaType.parse(
+                    new String(mimetype, IOUtils.UTF_8));
+            if (type != null) {
+                return type;
+            }
+        }
+        if (contentTypes != null && relationships != null) {
+            return detectOfficeOpenXML(contentTypes, relationships);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the uncompressed data of a stored or deflated Zip entry
+     * within the given window, or <code>null</code> if it can't be read.
+     */
+    private static byte[] getEntryData(
+            ByteBuffer window, int start, int compressed, long size,
+            int flags, int method) {
+        if ((flags & 1) != 0 || size > STREAMING_WINDOW) {
+            // Encrypted, or suspiciously large for a detection hint
+            return null;
+        }
+
+        byte[] data = new byte[compressed];
+        for (int i = 0; i < compressed; i++) {
+            data[i] = window.get(start + i);
+        }
+        if (method == ZipEntry.STORED) {
+            return data;
+        } else if (method != ZipEntry.DEFLATED || size == 0) {
+            return null;
+        }
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            byte[] inflated = new byte[(int) size];
+            int n = 0;
+            while (n < inflated.length && !inflater.finished()) {
+                int m = inflater.inflate(inflated, n, inflated.length - n);
+                if (m == 0 && (inflater.needsInput()
+                        || inflater.needsDictionary())) {
+                    return null;
+                }
+                n += m;
+            }
+            return n == inflated.length ? inflated : null;
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Detects the type of an Office Open XML file from the raw content
+     * types and package relationships, in the same way as
+     * {@link #detectOfficeOpenXML(OPCPackage)} does for an opened package.
+     */
+    private static MediaType detectOfficeOpenXML(
+            byte[] contentTypes, byte[] relationships) {
+        final Map<String, String> defaults = new HashMap<String, String>();
+        final Map<String, String> overrides = new HashMap<String, String>();
+        final Map<String, List<String>> targets =
+                new HashMap<String, List<String>>();
+        try {
+            SAXParser parser = new ParseContext().getSAXParser();
+            parser.parse(
+                    new ByteArrayInputStream(contentTypes),
+                    new OfflineContentHandler(new DefaultHandler() {
+                        @Override
+                        public void startElement(
+                                String uri, String local, String name,
+                                Attributes attributes) {
+                            String type = attributes.getValue("ContentType");
+                            if (type == null) {
+                                return;
+                            } else if ("Default".equals(local)) {
+                                String extension =
+                                        attributes.getValue("Extension");
+                                if (extension != null) {
+                                    defaults.put(extension.toLowerCase(
+                                            Locale.ROOT), type);
+                                }
+                            } else if ("Override".equals(local)) {
+                                String part = attributes.getValue("PartName");
+                                if (part != null) {
+                                    overrides.put(part.toLowerCase(
+                                            Locale.ROOT), type);
+                                }
+                            }
+                        }
+                    }));
+            parser.parse(
+                    new ByteArrayInputStream(relationships),
+                    new OfflineContentHandler(new DefaultHandler() {
+                        @Override
+                        public void startElement(
+                                String uri, String local, String name,
+                                Attributes attributes) {
+                            String type = attributes.getValue("Type");
+                            String target = attributes.getValue("Target");
+                            if ("Relationship".equals(local)
+                                    && type != null && target != null) {
+                                List<String> list = targets.get(type);
+                                if (list == null) {
+                                    list = new ArrayList<String>();
+                                    targets.put(type, list);
+                                }
+                                list.add(target);
+                            }
+                        }
+                    }));
+        } catch (IOException e) {
+            return null;
+        } catch (SAXException e) {
+            return null;
+        } catch (TikaException e) {
+            return null;
+        }
+
+        // Same order of preference as for an opened package
+        List<String> core = targets.get(PackageRelationshipTypes.CORE_DOCUMENT);
+        if (core == null) {
+            core = targets.get(STRICT_CORE_DOCUMENT);
+        }
+        if (core == null) {
+            core = targets.get(VISIO_DOCUMENT);
+        }
+        if (core == null || core.size() != 1) {
+            return null;
+        }
+
+        // Resolve the content type of the core document part
+        String part = core.get(0);
+        if (!part.startsWith("/")) {
+            part = "/" + part;
+        }
+        part = part.toLowerCase(Locale.ROOT);
+        String coreType = overrides.get(part);
+        if (coreType == null) {
+            int dot = part.lastIndexOf('.');
+            if (dot != -1) {
+                coreType = defaults.get(part.substring(dot + 1));
+            }
+        }
+        if (coreType == null || coreType.lastIndexOf('.') == -1) {
+            return null;
+        }
+        return getOfficeOpenXMLType(coreType);
+    }
+
     private static MediaType detectZipFormat(TikaInputStream tis) {
         try {
-            ZipFile zip = new ZipFile(tis.getFile()); // TODO: hasFile()?
+            ZipFile zip = new ZipFile(tis.getFile());
             try {
                 MediaType type = detectOpenDocument(zip);
                 if (type == null) {
@@ -257,9 +516,14 @@ public class ZipContainerDetector implements Detector {
 
         // Get the type of the core document part
         PackagePart corePart = pkg.getPart(core.getRelationship(0));
-        String coreType = corePart.getContentType();
+        return getOfficeOpenXMLType(corePart.getContentType());
+    }
 
-        // Turn that into the type of the overall document
+    /**
+     * Turns the content type of the core document part of an Office Open
+     *  XML package into the type of the overall document
+     */
+    private static MediaType getOfficeOpenXMLType(String coreType) {
         String docType = coreType.substring(0, coreType.lastIndexOf('.'));
 
         // The Macro Enabled formats are a little special
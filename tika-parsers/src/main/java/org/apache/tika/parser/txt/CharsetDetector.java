@@ -66,6 +66,10 @@ public class CharsetDetector {
             new short[256];  //   Value is percent, not absolute.
     boolean fC1Bytes =          // True if any bytes in the range 0x80 - 0x9F are in the input;
             false;
+    boolean fRawHighBytes =     // True if any bytes in the range 0x80 - 0xFF are in the raw input;
+            false;
+    CharsetRecog_sbcs.NGramParser fNGramParser =  // ngram statistics of the input, shared by
+            new CharsetRecog_sbcs.NGramParser(); //   the single byte recognizers.
     String fDeclaredEncoding;
     //
     //  Stuff private to CharsetDetector
@@ -277,11 +281,7 @@ public class CharsetDetector {
      * @stable ICU 3.4
      */
     public CharsetMatch detect() {
-//   TODO:  A better implementation would be to copy the detect loop from
-//          detectAll(), and cut it short as soon as a match with a high confidence
-//          is found.  This is something to be done later, after things are otherwise
-//          working.
-        CharsetMatch matches[] = detectAll();
+        CharsetMatch matches[] = detectAll(true);
 
         if (matches == null || matches.length == 0) {
             return null;
@@ -306,16 +306,31 @@ public class CharsetDetector {
      * @stable ICU 3.4
      */
     public CharsetMatch[] detectAll() {
+        return detectAll(false);
+    }
+
+    /*
+     *  detectAll - when only the best match is wanted, stop running the single
+     *              byte recognizers once some other charset has been matched with
+     *              full confidence. Their ngram scores stay below MAX_CONFIDENCE,
+     *              even with the declared encoding applied, so they could never
+     *              displace that match.
+     */
+    private CharsetMatch[] detectAll(boolean bestOnly) {
         CharsetRecognizer csr;
         int i;
         int detectResults;
         int confidence;
+        int bestConfidence = 0;
         ArrayList<CharsetMatch> matches = new ArrayList<CharsetMatch>();
 
         //  Iterate over all possible charsets, remember all that
         //    give a match quality > 0.
         for (i = 0; i < fCSRecognizers.size(); i++) {
             csr = fCSRecognizers.get(i);
+            if (bestOnly && bestConfidence >= MAX_CONFIDENCE && csr instanceof CharsetRecog_sbcs) {
+                continue;
+            }
             detectResults = csr.match(this);
             confidence = detectResults & 0x000000ff;
             if (confidence > 0) {
@@ -330,6 +345,7 @@ public class CharsetDetector {
 
                 CharsetMatch m = new CharsetMatch(this, csr, confidence);
                 matches.add(m);
+                bestConfidence = Math.max(bestConfidence, confidence);
             }
         }
 
@@ -540,5 +556,27 @@ public class CharsetDetector {
                 break;
             }
         }
+
+        fRawHighBytes = false;
+        for (srci = 0; srci < fRawLength; srci++) {
+            if (fRawInput[srci] < 0) {
+                fRawHighBytes = true;
+                break;
+            }
+        }
+
+        fNGramParser.reset();
+    }
+
+    /*
+     *  getNGramParser - the ngram statistics of the input for the given byte map,
+     *                   parsing the input only if the previous single byte
+     *                   recognizer used a different byte map.
+     */
+    CharsetRecog_sbcs.NGramParser getNGramParser(byte[] byteMap, byte spaceChar) {
+        if (!fNGramParser.isParsed(byteMap, spaceChar)) {
+            fNGramParser.parse(this, byteMap, spaceChar);
+        }
+        return fNGramParser;
     }
 }
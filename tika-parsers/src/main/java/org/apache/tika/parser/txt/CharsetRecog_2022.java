@@ -19,6 +19,22 @@ package org.apache.tika.parser.txt;
 abstract class CharsetRecog_2022 extends CharsetRecognizer {
 
 
+    /**
+     * Matching function shared among the 2022 detectors JP, CN and KR.
+     * Input without a single escape byte cannot match any of them, which
+     * the byte statistics of the detector tell without scanning the text.
+     *
+     * @param det             the detector holding the text to analyse
+     * @param escapeSequences the byte escape sequences to test for.
+     * @return match quality, in the range of 0-100.
+     */
+    int match(CharsetDetector det, byte[][] escapeSequences) {
+        if (det.fByteStats[0x1b] == 0) {
+            return 0;
+        }
+        return match(det.fInputBytes, det.fInputLen, escapeSequences);
+    }
+
     /**
      * Matching function shared among the 2022 detectors JP, CN and KR
      * Counts up the number of legal an unrecognized escape sequences in
@@ -115,7 +131,7 @@ abstract class CharsetRecog_2022 extends CharsetRecognizer {
         }
 
         int match(CharsetDetector det) {
-            return match(det.fInputBytes, det.fInputLen, escapeSequences);
+            return match(det, escapeSequences);
         }
     }
 
@@ -129,7 +145,7 @@ abstract class CharsetRecog_2022 extends CharsetRecognizer {
         }
 
         int match(CharsetDetector det) {
-            return match(det.fInputBytes, det.fInputLen, escapeSequences);
+            return match(det, escapeSequences);
         }
 
     }
@@ -155,7 +171,7 @@ abstract class CharsetRecog_2022 extends CharsetRecognizer {
 
 
         int match(CharsetDetector det) {
-            return match(det.fInputBytes, det.fInputLen, escapeSequences);
+            return match(det, escapeSequences);
         }
     }
 
@@ -29,6 +29,11 @@ class CharsetRecog_UTF8 extends CharsetRecognizer {
         int trailBytes = 0;
         int confidence;
 
+        if (!det.fRawHighBytes) {
+            // Plain ASCII, without so much as a BOM.
+            return 10;
+        }
+
         if (det.fRawLength >= 3 &&
                 (input[0] & 0xFF) == 0xef && (input[1] & 0xFF) == 0xbb && (input[2] & 0xFF) == 0xbf) {
             hasBOM = true;
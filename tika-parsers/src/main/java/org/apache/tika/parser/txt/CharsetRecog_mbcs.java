@@ -54,6 +54,12 @@ abstract class CharsetRecog_mbcs extends CharsetRecognizer {
         int confidence = 0;
         iteratedChar iter = new iteratedChar();
 
+        // 7 bit input is all single byte chars in every mbcs charset, so skip the
+        //   scan and score it the way the loop below would.
+        if (!det.fRawHighBytes) {
+            return det.fRawLength < 10 ? 0 : 10;
+        }
+
         detectBlock:
         {
             for (iter.reset(); nextChar(iter, det); ) {
@@ -8,6 +8,7 @@
 package org.apache.tika.parser.txt;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * This class recognizes single-byte encodings. Because the encoding scheme is so
@@ -48,120 +49,105 @@ abstract class CharsetRecog_sbcs extends CharsetRecognizer {
     }
 
     int match(CharsetDetector det, int[] ngrams, byte[] byteMap, byte spaceChar) {
-        NGramParser parser = new NGramParser(ngrams, byteMap);
-
         haveC1Bytes = det.fC1Bytes;
 
-        return parser.parse(det, spaceChar);
+        return det.getNGramParser(byteMap, spaceChar).score(ngrams);
     }
 
+    /*
+     * Maps the input text into the ngram space of one byte map and counts how
+     * often each distinct ngram occurs. Every language that shares the byte map
+     * is then scored against this one histogram, looking up its 64 ngrams rather
+     * than re-reading the whole input.
+     */
     static class NGramParser {
         //        private static final int N_GRAM_SIZE = 3;
         private static final int N_GRAM_MASK = 0xFFFFFF;
 
-        private int byteIndex = 0;
-        private int ngram = 0;
-
-        private int[] ngramList;
         private byte[] byteMap;
-
-        private int ngramCount;
-        private int hitCount;
-
         private byte spaceChar;
 
-        public NGramParser(int[] theNgramList, byte[] theByteMap) {
-            ngramList = theNgramList;
-            byteMap = theByteMap;
+        // Open addressing table from ngram to number of occurences. An ngram always
+        // ends in a non-zero mapped byte, so zero marks an empty slot.
+        private int[] ngrams = new int[0];
+        private int[] counts = new int[0];
+        private int mask;
 
-            ngram = 0;
+        private int ngramCount;
 
-            ngramCount = hitCount = 0;
+        boolean isParsed(byte[] theByteMap, byte spaceCh) {
+            return byteMap == theByteMap && spaceChar == spaceCh;
         }
 
-        /*
-         * Binary search for value in table, which must have exactly 64 entries.
-         */
-        private static int search(int[] table, int value) {
-            int index = 0;
-
-            if (table[index + 32] <= value) {
-                index += 32;
-            }
-
-            if (table[index + 16] <= value) {
-                index += 16;
-            }
-
-            if (table[index + 8] <= value) {
-                index += 8;
-            }
-
-            if (table[index + 4] <= value) {
-                index += 4;
-            }
+        void reset() {
+            byteMap = null;
+        }
 
-            if (table[index + 2] <= value) {
-                index += 2;
-            }
+        private static int hash(int ngram) {
+            int h = ngram * 0x9E3779B1;
+            return h ^ (h >>> 16);
+        }
 
-            if (table[index + 1] <= value) {
-                index += 1;
-            }
+        private void addNGram(int ngram) {
+            ngramCount += 1;
 
-            if (table[index] > value) {
-                index -= 1;
+            int i = hash(ngram) & mask;
+            while (ngrams[i] != 0 && ngrams[i] != ngram) {
+                i = (i + 1) & mask;
             }
-
-            if (index < 0 || table[index] != value) {
-                return -1;
+            if (ngrams[i] == 0) {
+                ngrams[i] = ngram;
+                counts[i] = 1;
+            } else {
+                counts[i] += 1;
             }
-
-            return index;
         }
 
-        private void lookup(int thisNgram) {
-            ngramCount += 1;
-
-            if (search(ngramList, thisNgram) >= 0) {
-                hitCount += 1;
+        private int count(int ngram) {
+            int i = hash(ngram) & mask;
+            while (ngrams[i] != 0) {
+                if (ngrams[i] == ngram) {
+                    return counts[i];
+                }
+                i = (i + 1) & mask;
             }
-
+            return 0;
         }
 
-        private void addByte(int b) {
-            ngram = ((ngram << 8) + (b & 0xFF)) & N_GRAM_MASK;
-            lookup(ngram);
-        }
+        void parse(CharsetDetector det, byte[] theByteMap, byte spaceCh) {
+            byteMap = theByteMap;
+            spaceChar = spaceCh;
 
-        private int nextByte(CharsetDetector det) {
-            if (byteIndex >= det.fInputLen) {
-                return -1;
+            // Every input byte adds at most one ngram, plus the trailing space
+            int capacity = 64;
+            while (capacity < 2 * (det.fInputLen + 1)) {
+                capacity <<= 1;
             }
+            if (ngrams.length < capacity) {
+                ngrams = new int[capacity];
+                counts = new int[capacity];
+            } else {
+                Arrays.fill(ngrams, 0, capacity, 0);
+            }
+            mask = capacity - 1;
+            ngramCount = 0;
 
-            return det.fInputBytes[byteIndex++] & 0xFF;
-        }
-
-        public int parse(CharsetDetector det) {
-            return parse(det, (byte) 0x20);
-        }
-
-        public int parse(CharsetDetector det, byte spaceCh) {
-            int b;
+            int ngram = 0;
             boolean ignoreSpace = false;
-            this.spaceChar = spaceCh;
 
-            while ((b = nextByte(det)) >= 0) {
+            for (int i = 0; i < det.fInputLen; i++) {
+                int b = det.fInputBytes[i] & 0xFF;
                 byte mb = byteMap[b];
 
                 // TODO: 0x20 might not be a space in all character sets...
                 if (mb != 0) {
                     if (!(mb == spaceChar && ignoreSpace)) {
-                        addByte(mb);
+                        ngram = ((ngram << 8) + (mb & 0xFF)) & N_GRAM_MASK;
+                        addNGram(ngram);
                     }
 
                     ignoreSpace = (mb == spaceChar);
-                } else if (mb == 0 && b != 0) {
+                } else if (b != 0) {
                     // Indicates an invalid character in the charset
                     // Bump the ngram count up a bit to indicate uncertainty
                     ngramCount += 4;
@@ -169,7 +155,19 @@ abstract class CharsetRecog_sbcs extends CharsetRecognizer {
             }
 
             // TODO: Is this OK? The buffer could have ended in the middle of a word...
-            addByte(spaceChar);
+            ngram = ((ngram << 8) + (spaceChar & 0xFF)) & N_GRAM_MASK;
+            addNGram(ngram);
+        }
+
+        /*
+         * Scores one language, whose table must hold distinct ngrams, against the
+         * parsed input.
+         */
+        int score(int[] ngramList) {
+            int hitCount = 0;
+            for (int ngram : ngramList) {
+                hitCount += count(ngram);
+            }
 
             double rawPercent = (double) hitCount / (double) ngramCount;
 
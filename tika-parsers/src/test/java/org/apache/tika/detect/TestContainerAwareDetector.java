@@ -17,6 +17,7 @@
 package org.apache.tika.detect;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -179,6 +180,37 @@ public class TestContainerAwareDetector {
         }
     }
 
+    /**
+     * Container documents that are not backed by a file should be detected
+     * from their first bytes where possible, without spooling them to disk
+     */
+    @Test
+    public void testStreamingContainerDetection() throws Exception {
+        assertStreamingType("testWORD.docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document");
+        assertStreamingType("testEXCEL.xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        assertStreamingType("testPPT.pptx", "application/vnd.openxmlformats-officedocument.presentationml.presentation");
+        assertStreamingType("testODFwithOOo3.odt", "application/vnd.oasis.opendocument.text");
+        assertStreamingType("testEPUB.epub", "application/epub+zip");
+        assertStreamingType("testWORD.doc", "application/msword");
+        assertStreamingType("testEXCEL.xls", "application/vnd.ms-excel");
+        assertStreamingType("testPPT.ppt", "application/vnd.ms-powerpoint");
+    }
+
+    private void assertStreamingType(String file, String type)
+            throws Exception {
+        TikaInputStream stream = TikaInputStream.get(
+                TestContainerAwareDetector.class.getResourceAsStream(
+                        "/test-documents/" + file));
+        try {
+            assertEquals(
+                    MediaType.parse(type),
+                    detector.detect(stream, new Metadata()));
+            assertFalse(stream.hasFile());
+        } finally {
+            stream.close();
+        }
+    }
+
     /**
      * EPub uses a similar mimetype entry to OpenDocument for storing
      *  the mimetype within the parent zip file
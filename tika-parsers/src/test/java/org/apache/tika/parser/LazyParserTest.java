@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Map;
+
+import org.apache.tika.io.IOUtils;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.ocr.TesseractOCRParser;
+import org.apache.tika.parser.pdf.PDFParser;
+import org.apache.tika.parser.txt.TXTParser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.junit.Test;
+
+public class LazyParserTest {
+
+    /**
+     * The checked in parser types manifest must match the parsers. If this
+     * fails after changing the types of a parser, regenerate the manifest
+     * as described in {@link LazyParser}.
+     */
+    @Test
+    public void testManifestIsUpToDate() throws Exception {
+        File service = new File(
+                "src/main/resources/META-INF/services/" + Parser.class.getName());
+        File manifest = new File("src/main/resources/" + LazyParser.MANIFEST);
+        StringWriter expected = new StringWriter();
+        LazyParser.writeManifest(service.toURI().toURL(), expected);
+        assertEquals(
+                "The parser types manifest is out of date, see LazyParser",
+                expected.toString(),
+                IOUtils.toString(manifest.toURI().toURL().openStream(), "UTF-8"));
+    }
+
+    @Test
+    public void testParsersLoadedOnDemand() throws Exception {
+        DefaultParser parser = new DefaultParser();
+        ParseContext context = new ParseContext();
+        Map<MediaType, Parser> parsers = parser.getDispatchParsers(context);
+
+        Parser pdf = parsers.get(MediaType.application("pdf"));
+        Parser txt = parsers.get(MediaType.TEXT_PLAIN);
+        assertTrue(pdf instanceof LazyParser);
+        assertTrue(txt instanceof LazyParser);
+        assertFalse(((LazyParser) pdf).isLoaded());
+        assertFalse(((LazyParser) txt).isLoaded());
+
+        Metadata metadata = new Metadata();
+        metadata.set(Metadata.CONTENT_TYPE, "text/plain; charset=UTF-8");
+        BodyContentHandler handler = new BodyContentHandler();
+        parser.parse(
+                new ByteArrayInputStream("Hello, World!".getBytes("UTF-8")),
+                handler, metadata, context);
+        assertEquals("Hello, World!", handler.toString().trim());
+        assertEquals(TXTParser.class.getName(), metadata.get("X-Parsed-By"));
+        assertTrue(((LazyParser) txt).isLoaded());
+        assertFalse(((LazyParser) pdf).isLoaded());
+
+        // Inspecting the component parsers loads them
+        assertEquals(
+                PDFParser.class,
+                parser.getParsers(context).get(MediaType.application("pdf")).getClass());
+        assertTrue(((LazyParser) pdf).isLoaded());
+    }
+
+    @Test
+    public void testContextDependentParsersLoadedEagerly() throws Exception {
+        for (Parser parser : new DefaultParser().getAllComponentParsers()) {
+            assertFalse(parser instanceof LazyParser);
+        }
+        String manifest = IOUtils.toString(
+                getClass().getClassLoader().getResourceAsStream(LazyParser.MANIFEST),
+                "UTF-8");
+        assertFalse(manifest.contains(TesseractOCRParser.class.getName()));
+        assertTrue(manifest.contains(PDFParser.class.getName()));
+    }
+
+}
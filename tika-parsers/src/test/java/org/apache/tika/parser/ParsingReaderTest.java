@@ -17,14 +17,20 @@
 package org.apache.tika.parser;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.concurrent.Executor;
+
+import org.apache.tika.exception.TikaException;
 import org.apache.tika.io.IOUtils;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.TikaCoreProperties;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class ParsingReaderTest {
 
@@ -103,4 +109,65 @@ public class ParsingReaderTest {
         }
     }
 
+    @Test
+    public void testSmallBuffer() throws Exception {
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            data.append("line ").append(i).append('\n');
+        }
+        InputStream stream = new ByteArrayInputStream(
+                data.toString().getBytes(IOUtils.UTF_8));
+        Metadata metadata = new Metadata();
+        metadata.set(Metadata.RESOURCE_NAME_KEY, "test.txt");
+        Executor executor = new Executor() {
+            public void execute(Runnable command) {
+                Thread thread = new Thread(command);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        };
+        Reader reader = new ParsingReader(
+                new AutoDetectParser(), stream, metadata,
+                new ParseContext(), executor, 16);
+        try {
+            assertEquals(data + "\n", IOUtils.toString(reader));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testParseFailure() throws Exception {
+        InputStream stream = new ByteArrayInputStream(new byte[0]);
+        Reader reader = new ParsingReader(
+                ErrorParser.INSTANCE, stream, new Metadata(), new ParseContext());
+        try {
+            reader.read();
+            fail("Parse failure not passed to the reader");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof TikaException);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testCloseBeforeEnd() throws Exception {
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            data.append("line ").append(i).append('\n');
+        }
+        InputStream stream = new ByteArrayInputStream(
+                data.toString().getBytes(IOUtils.UTF_8));
+        Reader reader = new ParsingReader(stream, "test.txt");
+        assertEquals('l', (char) reader.read());
+        reader.close();
+        try {
+            reader.read();
+            fail("Read from a closed reader");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
 }
@@ -20,10 +20,12 @@ package org.apache.tika.parser;
 
 import static org.apache.tika.TikaTest.assertContains;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -158,6 +160,42 @@ public class RecursiveParserWrapperTest {
         assertNull(limitReached);
     }
 
+    @Test
+    public void testListener() throws Exception {
+        final List<Metadata> embedded = new ArrayList<Metadata>();
+        final List<Metadata> containers = new ArrayList<Metadata>();
+
+        RecursiveParserWrapper wrapper = new RecursiveParserWrapper(
+                new AutoDetectParser(),
+                new BasicContentHandlerFactory(BasicContentHandlerFactory.HANDLER_TYPE.TEXT, -1));
+        wrapper.setListener(new RecursiveMetadataListener() {
+            public void embeddedDocument(Metadata metadata) {
+                assertTrue(containers.isEmpty());
+                embedded.add(metadata);
+            }
+            public void containerDocument(Metadata metadata) {
+                containers.add(metadata);
+            }
+        });
+        InputStream stream = RecursiveParserWrapperTest.class.getResourceAsStream(
+                "/test-documents/test_recursive_embedded.docx");
+        try {
+            wrapper.parse(stream, new DefaultHandler(), new Metadata(), new ParseContext());
+        } finally {
+            stream.close();
+        }
+
+        //nothing is kept in memory
+        assertEquals(0, wrapper.getMetadata().size());
+        assertEquals(11, embedded.size());
+        assertEquals(1, containers.size());
+        assertContains("embed_0",
+                containers.get(0).get(RecursiveParserWrapper.TIKA_CONTENT));
+        for (Metadata m : embedded) {
+            assertNotNull(m.get(RecursiveParserWrapper.EMBEDDED_RESOURCE_PATH));
+        }
+    }
+
     @Test
     public void testEmbeddedResourcePath() throws Exception {
 
@@ -17,15 +17,21 @@
 package org.apache.tika.parser.microsoft;
 
 import static junit.framework.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
 
 import java.io.InputStream;
 
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
 import org.apache.tika.TikaTest;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
 import org.apache.tika.parser.microsoft.ooxml.OOXMLParserTest;
+import org.apache.tika.sax.BodyContentHandler;
 import org.junit.Test;
+import org.xml.sax.ContentHandler;
 
 
 public class OfficeParserTest extends TikaTest {
@@ -40,6 +46,30 @@ public class OfficeParserTest extends TikaTest {
         assertTrue(xml.contains("test"));
     }
 
+    @Test
+    public void parseOfficeWordFromStream() throws Exception {
+        // Container detection no longer spools a plain stream, so the
+        // parser opens the file system from a file it spools itself
+        TikaInputStream stream = TikaInputStream.get(
+                OfficeParserTest.class.getResourceAsStream(
+                        "/test-documents/testWORD.doc"));
+        try {
+            Metadata metadata = new Metadata();
+            ContentHandler handler = new BodyContentHandler();
+            new AutoDetectParser().parse(
+                    stream, handler, metadata, new ParseContext());
+
+            assertEquals(
+                    "application/msword",
+                    metadata.get(Metadata.CONTENT_TYPE));
+            assertContains("Sample Word Document", handler.toString());
+            assertTrue(stream.hasFile());
+            assertTrue(stream.getOpenContainer() instanceof NPOIFSFileSystem);
+        } finally {
+            stream.close();
+        }
+    }
+
     private InputStream getTestDocument(String name) {
         return TikaInputStream.get(OOXMLParserTest.class.getResourceAsStream("/test-documents/" + name));
     }
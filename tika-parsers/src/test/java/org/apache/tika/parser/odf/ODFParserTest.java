@@ -73,6 +73,29 @@ public class ODFParserTest extends TikaTest {
        }
     }
 
+    @Test
+    public void testOO3FromStream() throws Exception {
+       // Container detection no longer spools a plain stream, so the
+       // parser opens the zip from a file it spools itself
+       TikaInputStream input = TikaInputStream.get(
+             ODFParserTest.class.getResourceAsStream(
+                   "/test-documents/testODFwithOOo3.odt"));
+       try {
+          Metadata metadata = new Metadata();
+          ContentHandler handler = new BodyContentHandler();
+          new AutoDetectParser().parse(
+                input, handler, metadata, new ParseContext());
+
+          assertEquals(
+                "application/vnd.oasis.opendocument.text",
+                metadata.get(Metadata.CONTENT_TYPE));
+          assertContains("Tika is part of the Lucene project.", handler.toString());
+          assertTrue(input.hasFile());
+       } finally {
+          input.close();
+       }
+    }
+
     @Test
     public void testOO2() throws Exception {
        for (Parser parser : getParsers()) {
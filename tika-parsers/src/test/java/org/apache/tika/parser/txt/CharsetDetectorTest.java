@@ -69,4 +69,42 @@ public class CharsetDetectorTest {
             in.close();
         }
     }
+
+    @Test
+    public void testDetectMatchesDetectAll() throws IOException {
+        String[] texts = {
+                // 7 bit English, scored by the ISO-8859-1 ngram tables
+                "The quick brown fox jumps over the lazy dog, and then the dog "
+                        + "chases the fox all the way back to the farm house.",
+                // German, sharing one ngram parse with the other Latin-1 languages
+                "Die W\u00fcrde des Menschen ist unantastbar. Sie zu achten und zu "
+                        + "sch\u00fctzen ist Verpflichtung aller staatlichen Gewalt. F\u00fcr "
+                        + "die Gew\u00e4hrleistung sind alle verantwortlich."
+        };
+        String[] charsets = {"ISO-8859-1", "UTF-8"};
+
+        for (String text : texts) {
+            for (String charset : charsets) {
+                CharsetDetector detector = new CharsetDetector();
+                detector.setText(text.getBytes(charset));
+                CharsetMatch best = detector.detectAll()[0];
+
+                detector = new CharsetDetector();
+                detector.setText(text.getBytes(charset));
+                CharsetMatch match = detector.detect();
+                assertEquals(best.getName(), match.getName());
+                assertEquals(best.getLanguage(), match.getLanguage());
+                assertEquals(best.getConfidence(), match.getConfidence());
+                assertEquals(text, match.getString());
+            }
+        }
+
+        CharsetDetector detector = new CharsetDetector();
+        detector.setText(texts[0].getBytes("ISO-8859-1"));
+        assertEquals("en", detector.detect().getLanguage());
+        detector.setText(texts[1].getBytes("ISO-8859-1"));
+        assertEquals("de", detector.detect().getLanguage());
+        detector.setText(texts[1].getBytes("UTF-8"));
+        assertEquals("UTF-8", detector.detect().getName());
+    }
 }
@@ -33,6 +33,7 @@ public class JsonMetadataList extends JsonMetadataBase {
     
     private final static Type listType = new TypeToken<List<Metadata>>(){}.getType();
     private static Gson GSON;
+    private static boolean prettyPrinting = false;
     static {
         GSON = defaultInit();
     }
@@ -84,7 +85,16 @@ public class JsonMetadataList extends JsonMetadataBase {
         GSON = gson;
     }
 
+    static Gson getGson() {
+        return GSON;
+    }
+
+    static boolean isPrettyPrinting() {
+        return prettyPrinting;
+    }
+
     public static void setPrettyPrinting(boolean prettyPrint) {
+        prettyPrinting = prettyPrint;
         if (prettyPrint) {
             GSON = prettyInit();
         } else {
@@ -0,0 +1,116 @@
+package org.apache.tika.metadata.serialization;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.RecursiveMetadataListener;
+import org.xml.sax.SAXException;
+
+/**
+ * Writes a JSON array of metadata objects one element at a time, in the
+ * same format as {@link JsonMetadataList#toJson(java.util.List, Writer)},
+ * including the {@link JsonMetadataList#setPrettyPrinting(boolean) pretty
+ * printing} setting at the time this writer is created.
+ * Each metadata object is written out as soon as it is given, so the
+ * memory use is bounded by the size of a single document's metadata.
+ * <p>
+ * This writer can be set as the listener of a
+ * {@link org.apache.tika.parser.RecursiveParserWrapper}, in which case
+ * the embedded documents are written in the order in which they were
+ * parsed, and the container document is written last.
+ * <p>
+ * Call {@link #finish()} to end the array. This does not close the
+ * underlying writer.
+ *
+ * @since Apache Tika 1.10
+ */
+public class JsonMetadataListWriter implements RecursiveMetadataListener {
+
+    private final JsonWriter writer;
+
+    private boolean started = false;
+
+    public JsonMetadataListWriter(Writer writer) {
+        this.writer = new JsonWriter(writer);
+        if (JsonMetadataList.isPrettyPrinting()) {
+            // Same indent as Gson uses for pretty printing
+            this.writer.setIndent("  ");
+        }
+    }
+
+    /**
+     * Writes the given metadata as the next element of the array, and
+     * flushes the underlying writer.
+     *
+     * @param metadata metadata to write
+     * @throws TikaException if there is an IOException during writing
+     */
+    public void write(Metadata metadata) throws TikaException {
+        try {
+            start();
+            JsonMetadataList.getGson().toJson(metadata, Metadata.class, writer);
+            writer.flush();
+        } catch (IOException e) {
+            throw new TikaException(e.getMessage(), e);
+        } catch (JsonIOException e) {
+            throw new TikaException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Ends the array, and flushes the underlying writer. An empty array
+     * is written if no metadata has been written.
+     *
+     * @throws TikaException if there is an IOException during writing
+     */
+    public void finish() throws TikaException {
+        try {
+            start();
+            writer.endArray();
+            writer.flush();
+        } catch (IOException e) {
+            throw new TikaException(e.getMessage(), e);
+        }
+    }
+
+    public void embeddedDocument(Metadata metadata) throws SAXException {
+        try {
+            write(metadata);
+        } catch (TikaException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    public void containerDocument(Metadata metadata) throws SAXException {
+        embeddedDocument(metadata);
+    }
+
+    private void start() throws IOException {
+        if (!started) {
+            writer.beginArray();
+            started = true;
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.apache.tika.metadata.serialization;
+
+/*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements.  See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.tika.metadata.Metadata;
+import org.junit.Test;
+
+public class JsonMetadataListWriterTest {
+
+    @Test
+    public void testSameAsList() throws Exception {
+        assertSameAsList();
+    }
+
+    @Test
+    public void testSameAsPrettyPrintedList() throws Exception {
+        JsonMetadataList.setPrettyPrinting(true);
+        try {
+            assertSameAsList();
+        } finally {
+            JsonMetadataList.setPrettyPrinting(false);
+        }
+    }
+
+    private void assertSameAsList() throws Exception {
+        List<Metadata> metadataList = new LinkedList<Metadata>();
+        for (int i = 0; i < 3; i++) {
+            Metadata m = new Metadata();
+            m.add("k1", "v" + i);
+            m.add("k1", "w" + i);
+            m.set("k2", "\"quoted\"\n" + i);
+            metadataList.add(m);
+        }
+
+        StringWriter expected = new StringWriter();
+        JsonMetadataList.toJson(metadataList, expected);
+
+        StringWriter writer = new StringWriter();
+        JsonMetadataListWriter listWriter = new JsonMetadataListWriter(writer);
+        listWriter.embeddedDocument(metadataList.get(0));
+        listWriter.write(metadataList.get(1));
+        // Each element is written out right away
+        assertEquals(metadataList.subList(0, 2),
+                JsonMetadataList.fromJson(new StringReader(writer + "]")));
+        listWriter.containerDocument(metadataList.get(2));
+        listWriter.finish();
+
+        assertEquals(expected.toString(), writer.toString());
+        assertEquals(metadataList,
+                JsonMetadataList.fromJson(new StringReader(writer.toString())));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        StringWriter writer = new StringWriter();
+        new JsonMetadataListWriter(writer).finish();
+        assertEquals("[]", writer.toString());
+    }
+
+}
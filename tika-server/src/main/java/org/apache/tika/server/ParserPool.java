@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.server.resource.TikaResource;
+
+/**
+ * Server-wide pool of the parsers used to process requests. Building an
+ * {@link AutoDetectParser} for the server (with its customised parser map
+ * and fallback) and warming up its media type dispatch is comparatively
+ * expensive, so instead of doing that for every request the resources
+ * borrow an already configured parser from this pool and return it once
+ * the response has been written.
+ * <p>
+ * A parser is only ever used by one request at a time, so per-request
+ * changes like the detector that honours the Content-Type header are safe,
+ * and are undone when the parser is returned. All other per-request state
+ * (the {@link org.apache.tika.parser.ParseContext} with its password
+ * provider and PDF/OCR configuration, and the metadata) is created afresh
+ * for each request and never stored in the pool.
+ * <p>
+ * The pool never blocks: if all pooled parsers are in use, a new one is
+ * created for the request, and dropped when it is returned to a pool that
+ * is already full.
+ *
+ * @since Apache Tika 1.10
+ */
+public class ParserPool {
+
+    public static final int DEFAULT_SIZE =
+            Runtime.getRuntime().availableProcessors() * 2;
+
+    private final TikaConfig tikaConfig;
+
+    private final int size;
+
+    private final BlockingQueue<AutoDetectParser> idle;
+
+    private final AtomicInteger inUse = new AtomicInteger();
+
+    private final AtomicInteger maxInUse = new AtomicInteger();
+
+    private final AtomicLong borrowed = new AtomicLong();
+
+    private final AtomicLong created = new AtomicLong();
+
+    public ParserPool(TikaConfig tikaConfig) {
+        this(tikaConfig, DEFAULT_SIZE);
+    }
+
+    public ParserPool(TikaConfig tikaConfig, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException(
+                    "Parser pool size must be positive: " + size);
+        }
+        this.tikaConfig = tikaConfig;
+        this.size = size;
+        this.idle = new ArrayBlockingQueue<AutoDetectParser>(size);
+    }
+
+    public TikaConfig getTikaConfig() {
+        return tikaConfig;
+    }
+
+    /**
+     * Takes an idle parser from the pool, or creates a new one if there
+     * are none. The parser must be given back with {@link #release}.
+     *
+     * @return parser for the exclusive use of the caller
+     */
+    public AutoDetectParser borrow() {
+        borrowed.incrementAndGet();
+        int current = inUse.incrementAndGet();
+        int max = maxInUse.get();
+        while (current > max && !maxInUse.compareAndSet(max, current)) {
+            max = maxInUse.get();
+        }
+
+        AutoDetectParser parser = idle.poll();
+        if (parser == null) {
+            created.incrementAndGet();
+            parser = TikaResource.createParser(tikaConfig);
+        }
+        return parser;
+    }
+
+    /**
+     * Returns a parser obtained from {@link #borrow} to the pool, undoing
+     * any per-request changes made to it.
+     *
+     * @param parser borrowed parser, ignored if <code>null</code>
+     */
+    public void release(AutoDetectParser parser) {
+        if (parser != null) {
+            parser.setDetector(tikaConfig.getDetector());
+            inUse.decrementAndGet();
+            idle.offer(parser);
+        }
+    }
+
+    /**
+     * Returns the maximum number of idle parsers kept in the pool.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of parsers waiting in the pool to be borrowed.
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * Returns the number of parsers currently borrowed by requests.
+     */
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    /**
+     * Returns the highest number of parsers borrowed at the same time.
+     */
+    public int getMaxInUse() {
+        return maxInUse.get();
+    }
+
+    /**
+     * Returns the total number of times a parser has been borrowed.
+     */
+    public long getBorrowed() {
+        return borrowed.get();
+    }
+
+    /**
+     * Returns the total number of parsers created by this pool. Borrowing
+     * only creates parsers when the pool has no idle ones left.
+     */
+    public long getCreated() {
+        return created.get();
+    }
+
+}
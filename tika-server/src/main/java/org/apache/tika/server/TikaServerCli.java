@@ -23,6 +23,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.management.JMException;
+
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.GnuParser;
@@ -38,6 +40,7 @@ import org.apache.cxf.jaxrs.lifecycle.SingletonResourceProvider;
 import org.apache.cxf.rs.security.cors.CrossOriginResourceSharingFilter;
 import org.apache.tika.Tika;
 import org.apache.tika.config.TikaConfig;
+import org.apache.tika.metrics.ParseMetrics;
 import org.apache.tika.server.resource.DetectorResource;
 import org.apache.tika.server.resource.MetadataResource;
 import org.apache.tika.server.resource.RecursiveMetadataResource;
@@ -46,7 +49,9 @@ import org.apache.tika.server.resource.LanguageResource;
 import org.apache.tika.server.resource.TikaDetectors;
 import org.apache.tika.server.resource.TikaMimeTypes;
 import org.apache.tika.server.resource.TikaParsers;
+import org.apache.tika.server.resource.TikaMetrics;
 import org.apache.tika.server.resource.TikaResource;
+import org.apache.tika.server.resource.TikaStatus;
 import org.apache.tika.server.resource.TikaVersion;
 import org.apache.tika.server.resource.TikaWelcome;
 import org.apache.tika.server.resource.TranslateResource;
@@ -71,7 +76,9 @@ public class TikaServerCli {
         options.addOption("h", "host", true, "host name (default = " + DEFAULT_HOST + ')');
         options.addOption("p", "port", true, "listen port (default = " + DEFAULT_PORT + ')');
         options.addOption("l", "log", true, "request URI log level ('debug' or 'info')");
+        options.addOption("P", "parserPoolSize", true, "number of parsers kept for reuse between requests (default = " + ParserPool.DEFAULT_SIZE + ')');
         options.addOption("s", "includeStack", false, "whether or not to return a stack trace\nif there is an exception during 'parse'");
+        options.addOption("A", "allocationSampling", false, "whether or not to sample the memory allocated\nby each parse in the metrics");
         options.addOption("?", "help", false, "this help message");
 
         return options;
@@ -105,6 +112,12 @@ public class TikaServerCli {
                 port = Integer.valueOf(line.getOptionValue("port"));
             }
 
+            int parserPoolSize = ParserPool.DEFAULT_SIZE;
+
+            if (line.hasOption("parserPoolSize")) {
+                parserPoolSize = Integer.valueOf(line.getOptionValue("parserPoolSize"));
+            }
+
             boolean returnStackTrace = false;
             if (line.hasOption("includeStack")) {
                 returnStackTrace = true;
@@ -133,20 +146,34 @@ public class TikaServerCli {
             // The Tika Configuration to use throughout
             TikaConfig tika = TikaConfig.getDefaultConfig();
 
+            // The parsers shared by all the parsing resources
+            ParserPool parserPool = new ParserPool(tika, parserPoolSize);
+
+            // The parse metrics, also available through JMX
+            ParseMetrics metrics = ParseMetrics.getDefault();
+            metrics.setAllocationSampling(line.hasOption("allocationSampling"));
+            try {
+                metrics.register();
+            } catch (JMException e) {
+                logger.warn("Parse metrics are not available through JMX", e);
+            }
+
             JAXRSServerFactoryBean sf = new JAXRSServerFactoryBean();
 
             List<ResourceProvider> rCoreProviders = new ArrayList<ResourceProvider>();
-            rCoreProviders.add(new SingletonResourceProvider(new MetadataResource(tika)));
-            rCoreProviders.add(new SingletonResourceProvider(new RecursiveMetadataResource(tika)));
+            rCoreProviders.add(new SingletonResourceProvider(new MetadataResource(parserPool)));
+            rCoreProviders.add(new SingletonResourceProvider(new RecursiveMetadataResource(parserPool)));
             rCoreProviders.add(new SingletonResourceProvider(new DetectorResource(tika)));
             rCoreProviders.add(new SingletonResourceProvider(new LanguageResource(tika)));
             rCoreProviders.add(new SingletonResourceProvider(new TranslateResource(tika)));
-            rCoreProviders.add(new SingletonResourceProvider(new TikaResource(tika)));
-            rCoreProviders.add(new SingletonResourceProvider(new UnpackerResource(tika)));
+            rCoreProviders.add(new SingletonResourceProvider(new TikaResource(parserPool)));
+            rCoreProviders.add(new SingletonResourceProvider(new UnpackerResource(parserPool)));
             rCoreProviders.add(new SingletonResourceProvider(new TikaMimeTypes(tika)));
             rCoreProviders.add(new SingletonResourceProvider(new TikaDetectors(tika)));
             rCoreProviders.add(new SingletonResourceProvider(new TikaParsers(tika)));
             rCoreProviders.add(new SingletonResourceProvider(new TikaVersion(tika)));
+            rCoreProviders.add(new SingletonResourceProvider(new TikaStatus(parserPool)));
+            rCoreProviders.add(new SingletonResourceProvider(new TikaMetrics(metrics)));
             List<ResourceProvider> rAllProviders = new ArrayList<ResourceProvider>(rCoreProviders);
             rAllProviders.add(new SingletonResourceProvider(new TikaWelcome(tika, rCoreProviders)));
             sf.setResourceProviders(rAllProviders);
@@ -19,6 +19,8 @@ package org.apache.tika.server.resource;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
@@ -26,12 +28,12 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.tika.config.TikaConfig;
 import org.apache.tika.language.LanguageIdentifier;
 import org.apache.tika.language.LanguageProfile;
+import org.apache.tika.language.ProfilingWriter;
 
 import com.google.common.base.Charsets;
 
@@ -55,11 +57,17 @@ public class LanguageResource {
 	public String detect(final InputStream is) throws IOException {
 		// comme çi comme ça
 		// this is English!
-		String fileTxt = IOUtils.toString(is, Charsets.UTF_8);
-		logger.debug("File: " + fileTxt);
-		LanguageIdentifier lang = new LanguageIdentifier(new LanguageProfile(
-				fileTxt));
-		String detectedLang = lang.getLanguage();
+		// Only read as much of the stream as it takes for the
+		// identified language to settle
+		Reader reader = new InputStreamReader(is, Charsets.UTF_8);
+		ProfilingWriter writer = new ProfilingWriter();
+		char[] buffer = new char[4096];
+		int n = reader.read(buffer);
+		while (n != -1 && !writer.isLanguageStable()) {
+			writer.write(buffer, 0, n);
+			n = reader.read(buffer);
+		}
+		String detectedLang = writer.getLanguage().getLanguage();
 		logger.info("Detecting language for incoming resource: ["
 				+ detectedLang + "]");
 		return detectedLang;
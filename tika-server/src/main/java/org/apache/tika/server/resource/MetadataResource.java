@@ -40,6 +40,7 @@ import org.apache.tika.language.ProfilingHandler;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
+import org.apache.tika.server.ParserPool;
 import org.xml.sax.helpers.DefaultHandler;
 
 
@@ -47,10 +48,14 @@ import org.xml.sax.helpers.DefaultHandler;
 public class MetadataResource {
     private static final Log logger = LogFactory.getLog(MetadataResource.class);
 
-    private TikaConfig tikaConfig;
+    private final ParserPool parserPool;
 
     public MetadataResource(TikaConfig tikaConfig) {
-        this.tikaConfig = tikaConfig;
+        this(new ParserPool(tikaConfig));
+    }
+
+    public MetadataResource(ParserPool parserPool) {
+        this.parserPool = parserPool;
     }
 
     @POST
@@ -127,17 +132,21 @@ public class MetadataResource {
                                    MultivaluedMap<String, String> httpHeaders, UriInfo info) throws IOException {
         final Metadata metadata = new Metadata();
         final ParseContext context = new ParseContext();
-        AutoDetectParser parser = TikaResource.createParser(tikaConfig);
-        TikaResource.fillMetadata(parser, metadata, context, httpHeaders);
-        //no need to pass parser for embedded document parsing
-        TikaResource.fillParseContext(context, httpHeaders, null);
-        TikaResource.logRequest(logger, info, metadata);
-        TikaResource.parse(parser, logger, info.getPath(), is,
-                new ProfilingHandler() {
-                    public void endDocument() {
-                        metadata.set("language", getLanguage().getLanguage());
-                    }},
-                metadata, context);
+        AutoDetectParser parser = parserPool.borrow();
+        try {
+            TikaResource.fillMetadata(parser, metadata, context, httpHeaders);
+            //no need to pass parser for embedded document parsing
+            TikaResource.fillParseContext(context, httpHeaders, null);
+            TikaResource.logRequest(logger, info, metadata);
+            TikaResource.parse(parser, logger, info.getPath(), is,
+                    new ProfilingHandler() {
+                        public void endDocument() {
+                            metadata.set("language", getLanguage().getLanguage());
+                        }},
+                    metadata, context);
+        } finally {
+            parserPool.release(parser);
+        }
         return metadata;
     }
 }
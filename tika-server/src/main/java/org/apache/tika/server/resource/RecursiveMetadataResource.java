@@ -22,35 +22,52 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.cxf.jaxrs.ext.multipart.Attachment;
 import org.apache.tika.config.TikaConfig;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.IOUtils;
 import org.apache.tika.language.ProfilingHandler;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.metadata.serialization.JsonMetadataListWriter;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.RecursiveMetadataListener;
 import org.apache.tika.parser.RecursiveParserWrapper;
 import org.apache.tika.sax.BasicContentHandlerFactory;
 import org.apache.tika.server.MetadataList;
+import org.apache.tika.server.ParserPool;
+import org.apache.tika.utils.ExceptionUtils;
 import org.xml.sax.helpers.DefaultHandler;
 
 @Path("/rmeta")
 public class RecursiveMetadataResource {
     private static final Log logger = LogFactory.getLog(RecursiveMetadataResource.class);
 
-    private TikaConfig tikaConfig;
+    private final ParserPool parserPool;
 
     public RecursiveMetadataResource(TikaConfig tikaConfig) {
-        this.tikaConfig = tikaConfig;
+        this(new ParserPool(tikaConfig));
+    }
+
+    public RecursiveMetadataResource(ParserPool parserPool) {
+        this.parserPool = parserPool;
     }
 
     @POST
@@ -69,26 +86,81 @@ public class RecursiveMetadataResource {
                 parseMetadata(is, httpHeaders.getRequestHeaders(), info)).build();
     }
 
+    /**
+     * Streaming variant of {@link #getMetadata(InputStream, HttpHeaders, UriInfo)}
+     * that writes the metadata of each embedded document as soon as it has
+     * been parsed, so that the metadata list is never held in memory.
+     * The container document is the last element of the list. As the
+     * response is already being written while parsing, a failed parse
+     * still ends the list with the container document, which then has
+     * the stack trace of the exception in its metadata, like in the
+     * streaming output of tika-batch.
+     */
+    @PUT
+    @Produces("application/json")
+    @Path("stream")
+    public StreamingOutput getMetadataStream(final InputStream is,
+            @Context HttpHeaders httpHeaders, @Context final UriInfo info) {
+        final MultivaluedMap<String, String> headers = httpHeaders.getRequestHeaders();
+        return new StreamingOutput() {
+            public void write(OutputStream os)
+                    throws IOException, WebApplicationException {
+                Writer writer = new OutputStreamWriter(os, IOUtils.UTF_8);
+                JsonMetadataListWriter jsonWriter = new JsonMetadataListWriter(writer);
+                Metadata metadata = new Metadata();
+                try {
+                    try {
+                        parseMetadata(is, headers, info, jsonWriter, metadata);
+                    } catch (Exception e) {
+                        //the container is only written when its parse completes
+                        Throwable t = e;
+                        if (e instanceof WebApplicationException && e.getCause() != null) {
+                            t = e.getCause();
+                        }
+                        metadata.add(TikaCoreProperties.TIKA_META_EXCEPTION_PREFIX + "runtime",
+                                ExceptionUtils.getFilteredStackTrace(t));
+                        jsonWriter.write(metadata);
+                    }
+                    jsonWriter.finish();
+                } catch (TikaException e) {
+                    throw new IOException(e);
+                }
+                writer.flush();
+            }
+        };
+    }
+
 	private MetadataList parseMetadata(InputStream is,
 			MultivaluedMap<String, String> httpHeaders, UriInfo info)
-			throws Exception {
-		final Metadata metadata = new Metadata();
+			throws IOException {
+		return parseMetadata(is, httpHeaders, info, null, new Metadata());
+	}
+
+	private MetadataList parseMetadata(InputStream is,
+			MultivaluedMap<String, String> httpHeaders, UriInfo info,
+			RecursiveMetadataListener listener, final Metadata metadata)
+			throws IOException {
 		final ParseContext context = new ParseContext();
-		AutoDetectParser parser = TikaResource.createParser(tikaConfig);
-		// TODO: parameterize choice of handler and max chars?
-		BasicContentHandlerFactory.HANDLER_TYPE type = BasicContentHandlerFactory.HANDLER_TYPE.TEXT;
-		RecursiveParserWrapper wrapper = new RecursiveParserWrapper(parser,
-				new BasicContentHandlerFactory(type, -1));
-		TikaResource.fillMetadata(parser, metadata, context, httpHeaders);
-		// no need to add parser to parse recursively
-		TikaResource.fillParseContext(context, httpHeaders, null);
-		TikaResource.logRequest(logger, info, metadata);
-		TikaResource.parse(wrapper, logger, info.getPath(), is,
-				new ProfilingHandler() {
-					public void endDocument() {
-						metadata.set("language", getLanguage().getLanguage());
-					}
-				}, metadata, context);
-		return new MetadataList(wrapper.getMetadata());
+		AutoDetectParser parser = parserPool.borrow();
+		try {
+			// TODO: parameterize choice of handler and max chars?
+			BasicContentHandlerFactory.HANDLER_TYPE type = BasicContentHandlerFactory.HANDLER_TYPE.TEXT;
+			RecursiveParserWrapper wrapper = new RecursiveParserWrapper(parser,
+					new BasicContentHandlerFactory(type, -1));
+			wrapper.setListener(listener);
+			TikaResource.fillMetadata(parser, metadata, context, httpHeaders);
+			// no need to add parser to parse recursively
+			TikaResource.fillParseContext(context, httpHeaders, null);
+			TikaResource.logRequest(logger, info, metadata);
+			TikaResource.parse(wrapper, logger, info.getPath(), is,
+					new ProfilingHandler() {
+						public void endDocument() {
+							metadata.set("language", getLanguage().getLanguage());
+						}
+					}, metadata, context);
+			return new MetadataList(wrapper.getMetadata());
+		} finally {
+			parserPool.release(parser);
+		}
 	}
 }
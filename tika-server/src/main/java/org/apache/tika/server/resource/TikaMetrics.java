@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server.resource;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.tika.metrics.ParseMetrics;
+import org.apache.tika.metrics.ParseStatistics;
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>Provides the parse metrics collected by {@link ParseMetrics},
+ * per parser class and media type. The plain text form follows the
+ * Prometheus text exposition format, with times given in seconds.
+ */
+@Path("/metrics")
+public class TikaMetrics {
+    private ParseMetrics metrics;
+
+    public TikaMetrics(ParseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @GET
+    @Produces(javax.ws.rs.core.MediaType.APPLICATION_JSON)
+    public String getMetricsJSON() {
+        Map<String, Object> json = new LinkedHashMap<String, Object>();
+        json.put("detection", toMap(metrics.getDetectionStatistics()));
+        json.put("temporaryFileBytes", metrics.getTemporaryFileBytes());
+        json.put("parsers", toMap(metrics.getParserStatistics()));
+        json.put("types", toMap(metrics.getMediaTypeStatistics()));
+        return JSON.toString(json);
+    }
+
+    @GET
+    @Produces("text/plain")
+    public String getMetricsPlain() {
+        StringBuilder text = new StringBuilder();
+        Map<String, ParseStatistics> parsers = metrics.getParserStatistics();
+        Map<String, ParseStatistics> types = metrics.getMediaTypeStatistics();
+
+        text.append("# TYPE tika_parser_parse_seconds histogram\n");
+        for (Map.Entry<String, ParseStatistics> entry : parsers.entrySet()) {
+            appendHistogram(text, "tika_parser_parse_seconds",
+                    "parser", entry.getKey(), entry.getValue());
+        }
+        text.append("# TYPE tika_type_parse_seconds histogram\n");
+        for (Map.Entry<String, ParseStatistics> entry : types.entrySet()) {
+            appendHistogram(text, "tika_type_parse_seconds",
+                    "type", entry.getKey(), entry.getValue());
+        }
+        text.append("# TYPE tika_parser_exceptions_total counter\n");
+        for (Map.Entry<String, ParseStatistics> entry : parsers.entrySet()) {
+            appendValue(text, "tika_parser_exceptions_total",
+                    "parser", entry.getKey(), entry.getValue().getExceptions());
+        }
+        text.append("# TYPE tika_type_exceptions_total counter\n");
+        for (Map.Entry<String, ParseStatistics> entry : types.entrySet()) {
+            appendValue(text, "tika_type_exceptions_total",
+                    "type", entry.getKey(), entry.getValue().getExceptions());
+        }
+        text.append("# TYPE tika_parse_bytes_total counter\n");
+        for (Map.Entry<String, ParseStatistics> entry : parsers.entrySet()) {
+            appendValue(text, "tika_parse_bytes_total",
+                    "parser", entry.getKey(), entry.getValue().getBytes());
+        }
+        text.append("# TYPE tika_parse_characters_total counter\n");
+        for (Map.Entry<String, ParseStatistics> entry : parsers.entrySet()) {
+            appendValue(text, "tika_parse_characters_total",
+                    "parser", entry.getKey(), entry.getValue().getCharacters());
+        }
+        if (metrics.isAllocationSampling()) {
+            text.append("# TYPE tika_parse_allocated_bytes_total counter\n");
+            for (Map.Entry<String, ParseStatistics> entry : parsers.entrySet()) {
+                appendValue(text, "tika_parse_allocated_bytes_total",
+                        "parser", entry.getKey(),
+                        entry.getValue().getAllocatedBytes());
+            }
+        }
+        text.append("# TYPE tika_detect_seconds histogram\n");
+        appendHistogram(text, "tika_detect_seconds",
+                null, null, metrics.getDetectionStatistics());
+        text.append("# TYPE tika_temporary_file_bytes_total counter\n");
+        text.append("tika_temporary_file_bytes_total ");
+        text.append(metrics.getTemporaryFileBytes()).append("\n");
+        return text.toString();
+    }
+
+    /**
+     * Appends the cumulative buckets of the time histogram. The last
+     * histogram bucket also counts all longer times, so it only shows up
+     * in the <code>+Inf</code> bucket.
+     */
+    private static void appendHistogram(
+            StringBuilder text, String metric, String label, String value,
+            ParseStatistics statistics) {
+        String labels = label != null ? label + "=\"" + escape(value) + "\"" : "";
+        long[] histogram = statistics.getHistogram();
+        long cumulative = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            cumulative += histogram[i];
+            text.append(metric).append("_bucket{");
+            if (label != null) {
+                text.append(labels).append(",");
+            }
+            text.append("le=\"");
+            if (i < histogram.length - 1) {
+                text.append(seconds(
+                        ParseStatistics.getBucketLimit(i) / 1000.0));
+            } else {
+                text.append("+Inf");
+            }
+            text.append("\"} ").append(cumulative).append("\n");
+        }
+        String suffix = label != null ? "{" + labels + "} " : " ";
+        text.append(metric).append("_sum").append(suffix);
+        text.append(seconds(statistics.getTotalTime())).append("\n");
+        text.append(metric).append("_count").append(suffix);
+        text.append(statistics.getCount()).append("\n");
+    }
+
+    private static void appendValue(
+            StringBuilder text, String metric, String label, String value,
+            long number) {
+        text.append(metric).append("{").append(label).append("=\"");
+        text.append(escape(value)).append("\"} ").append(number).append("\n");
+    }
+
+    private static String seconds(double millis) {
+        return String.format(Locale.ROOT, "%.6f", millis / 1000.0);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"")
+                .replace("\n", "\\n");
+    }
+
+    private static Map<String, Object> toMap(
+            Map<String, ParseStatistics> statistics) {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        for (Map.Entry<String, ParseStatistics> entry : statistics.entrySet()) {
+            map.put(entry.getKey(), toMap(entry.getValue()));
+        }
+        return map;
+    }
+
+    private static Map<String, Object> toMap(ParseStatistics statistics) {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("count", statistics.getCount());
+        map.put("exceptions", statistics.getExceptions());
+        map.put("meanTime", statistics.getMeanTime());
+        map.put("medianTime", statistics.getMedianTime());
+        map.put("p95Time", statistics.getP95Time());
+        map.put("p99Time", statistics.getP99Time());
+        map.put("maxTime", statistics.getMaxTime());
+        map.put("bytes", statistics.getBytes());
+        map.put("characters", statistics.getCharacters());
+        if (statistics.getAllocatedBytes() >= 0) {
+            map.put("allocatedBytes", statistics.getAllocatedBytes());
+        }
+        return map;
+    }
+}
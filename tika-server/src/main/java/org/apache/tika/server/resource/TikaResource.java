@@ -70,6 +70,7 @@ import org.apache.tika.parser.ocr.TesseractOCRConfig;
 import org.apache.tika.parser.pdf.PDFParserConfig;
 import org.apache.tika.sax.BodyContentHandler;
 import org.apache.tika.sax.ExpandedTitleContentHandler;
+import org.apache.tika.server.ParserPool;
 import org.apache.tika.server.RichTextContentHandler;
 import org.apache.tika.server.TikaServerParseException;
 import org.xml.sax.ContentHandler;
@@ -84,10 +85,14 @@ public class TikaResource {
 
     private static final Log logger = LogFactory.getLog(TikaResource.class);
 
-    private TikaConfig tikaConfig;
+    private final ParserPool parserPool;
 
     public TikaResource(TikaConfig tikaConfig) {
-        this.tikaConfig = tikaConfig;
+        this(new ParserPool(tikaConfig));
+    }
+
+    public TikaResource(ParserPool parserPool) {
+        this.parserPool = parserPool;
     }
 
     static {
@@ -299,28 +304,33 @@ public class TikaResource {
         return produceText(TikaUtils.getInputSteam(is, httpHeaders), httpHeaders.getRequestHeaders(), info);
     }
 
-    public StreamingOutput produceText(final InputStream is, MultivaluedMap<String, String> httpHeaders, final UriInfo info) {
-        final AutoDetectParser parser = createParser(tikaConfig);
-        final Metadata metadata = new Metadata();
-        final ParseContext context = new ParseContext();
-
-        fillMetadata(parser, metadata, context, httpHeaders);
-        fillParseContext(context, httpHeaders, parser);
-
-        logRequest(logger, info, metadata);
-
+    public StreamingOutput produceText(final InputStream is, final MultivaluedMap<String, String> httpHeaders, final UriInfo info) {
         return new StreamingOutput() {
             public void write(OutputStream outputStream) throws IOException, WebApplicationException {
-                Writer writer = new OutputStreamWriter(outputStream, IOUtils.UTF_8);
+                // Only borrowed once the response gets written, so that
+                // it can't leak if it never is
+                AutoDetectParser parser = parserPool.borrow();
+                try {
+                    Metadata metadata = new Metadata();
+                    ParseContext context = new ParseContext();
+                    fillMetadata(parser, metadata, context, httpHeaders);
+                    fillParseContext(context, httpHeaders, parser);
 
-                BodyContentHandler body = new BodyContentHandler(new RichTextContentHandler(writer));
+                    logRequest(logger, info, metadata);
 
-                TikaInputStream tis = TikaInputStream.get(is);
+                    Writer writer = new OutputStreamWriter(outputStream, IOUtils.UTF_8);
 
-                try {
-                    parse(parser, logger, info.getPath(), tis, body, metadata, context);
+                    BodyContentHandler body = new BodyContentHandler(new RichTextContentHandler(writer));
+
+                    TikaInputStream tis = TikaInputStream.get(is);
+
+                    try {
+                        parse(parser, logger, info.getPath(), tis, body, metadata, context);
+                    } finally {
+                        tis.close();
+                    }
                 } finally {
-                    tis.close();
+                    parserPool.release(parser);
                 }
             }
         };
@@ -358,40 +368,42 @@ public class TikaResource {
 
     private StreamingOutput produceOutput(final InputStream is, final MultivaluedMap<String, String> httpHeaders,
                                           final UriInfo info, final String format) {
-        final AutoDetectParser parser = createParser(tikaConfig);
-        final Metadata metadata = new Metadata();
-        final ParseContext context = new ParseContext();
-
-        fillMetadata(parser, metadata, context, httpHeaders);
-        fillParseContext(context, httpHeaders, parser);
-
-
-        logRequest(logger, info, metadata);
-
         return new StreamingOutput() {
             public void write(OutputStream outputStream)
                     throws IOException, WebApplicationException {
-                Writer writer = new OutputStreamWriter(outputStream, IOUtils.UTF_8);
-                ContentHandler content;
-
+                AutoDetectParser parser = parserPool.borrow();
                 try {
-                    SAXTransformerFactory factory = (SAXTransformerFactory) SAXTransformerFactory.newInstance();
-                    TransformerHandler handler = factory.newTransformerHandler();
-                    handler.getTransformer().setOutputProperty(OutputKeys.METHOD, format);
-                    handler.getTransformer().setOutputProperty(OutputKeys.INDENT, "yes");
-                    handler.getTransformer().setOutputProperty(OutputKeys.ENCODING, IOUtils.UTF_8.name());
-                    handler.setResult(new StreamResult(writer));
-                    content = new ExpandedTitleContentHandler(handler);
-                } catch (TransformerConfigurationException e) {
-                    throw new WebApplicationException(e);
-                }
+                    Metadata metadata = new Metadata();
+                    ParseContext context = new ParseContext();
+                    fillMetadata(parser, metadata, context, httpHeaders);
+                    fillParseContext(context, httpHeaders, parser);
+
+                    logRequest(logger, info, metadata);
+
+                    Writer writer = new OutputStreamWriter(outputStream, IOUtils.UTF_8);
+                    ContentHandler content;
+
+                    try {
+                        SAXTransformerFactory factory = (SAXTransformerFactory) SAXTransformerFactory.newInstance();
+                        TransformerHandler handler = factory.newTransformerHandler();
+                        handler.getTransformer().setOutputProperty(OutputKeys.METHOD, format);
+                        handler.getTransformer().setOutputProperty(OutputKeys.INDENT, "yes");
+                        handler.getTransformer().setOutputProperty(OutputKeys.ENCODING, IOUtils.UTF_8.name());
+                        handler.setResult(new StreamResult(writer));
+                        content = new ExpandedTitleContentHandler(handler);
+                    } catch (TransformerConfigurationException e) {
+                        throw new WebApplicationException(e);
+                    }
 
-                TikaInputStream tis = TikaInputStream.get(is);
+                    TikaInputStream tis = TikaInputStream.get(is);
 
-                try {
-                    parse(parser, logger, info.getPath(), tis, content, metadata, context);
+                    try {
+                        parse(parser, logger, info.getPath(), tis, content, metadata, context);
+                    } finally {
+                        tis.close();
+                    }
                 } finally {
-                    tis.close();
+                    parserPool.release(parser);
                 }
             }
         };
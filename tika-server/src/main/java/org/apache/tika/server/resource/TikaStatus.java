@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server.resource;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.tika.server.ParserPool;
+import org.eclipse.jetty.util.ajax.JSON;
+
+/**
+ * <p>Provides the current utilization of the server-wide
+ * {@link ParserPool} used by the parsing resources.
+ */
+@Path("/status")
+public class TikaStatus {
+    private ParserPool parserPool;
+
+    public TikaStatus(ParserPool parserPool) {
+        this.parserPool = parserPool;
+    }
+
+    @GET
+    @Produces(javax.ws.rs.core.MediaType.APPLICATION_JSON)
+    public String getStatusJSON() {
+        return JSON.toString(getStatus());
+    }
+
+    @GET
+    @Produces("text/plain")
+    public String getStatusPlain() {
+        StringBuffer text = new StringBuffer();
+        for (Map.Entry<String, Object> entry : getStatus().entrySet()) {
+            text.append(entry.getKey());
+            text.append(": ");
+            text.append(entry.getValue());
+            text.append("\n");
+        }
+        return text.toString();
+    }
+
+    private Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<String, Object>();
+        status.put("poolSize", parserPool.getSize());
+        status.put("idle", parserPool.getIdle());
+        status.put("inUse", parserPool.getInUse());
+        status.put("maxInUse", parserPool.getMaxInUse());
+        status.put("borrowed", parserPool.getBorrowed());
+        status.put("created", parserPool.getCreated());
+        return status;
+    }
+}
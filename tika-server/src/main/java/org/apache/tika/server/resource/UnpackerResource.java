@@ -20,10 +20,13 @@ package org.apache.tika.server.resource;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import java.io.ByteArrayInputStream;
@@ -36,8 +39,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.CRC32;
 
 import au.com.bytecode.opencsv.CSVWriter;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.lang.mutable.MutableInt;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -51,6 +59,7 @@ import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.util.IOUtils;
 import org.apache.tika.config.TikaConfig;
 import org.apache.tika.extractor.EmbeddedDocumentExtractor;
+import org.apache.tika.io.TemporaryResources;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.TikaMetadataKeys;
@@ -59,6 +68,7 @@ import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.microsoft.OfficeParser;
 import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.server.ParserPool;
 import org.apache.tika.server.RichTextContentHandler;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
@@ -69,11 +79,19 @@ public class UnpackerResource {
     public static final String TEXT_FILENAME = "__TEXT__";
     private static final Log logger = LogFactory.getLog(UnpackerResource.class);
     private static final String META_FILENAME = "__METADATA__";
+    private static final javax.ws.rs.core.MediaType ZIP_TYPE =
+            javax.ws.rs.core.MediaType.valueOf("application/zip");
+    private static final javax.ws.rs.core.MediaType TAR_TYPE =
+            javax.ws.rs.core.MediaType.valueOf("application/x-tar");
 
-    private TikaConfig tikaConfig;
+    private final ParserPool parserPool;
 
     public UnpackerResource(TikaConfig tikaConfig) {
-        this.tikaConfig = tikaConfig;
+        this(new ParserPool(tikaConfig));
+    }
+
+    public UnpackerResource(ParserPool parserPool) {
+        this.parserPool = parserPool;
     }
 
     public static void metadataToCsv(Metadata metadata, OutputStream outputStream) throws IOException {
@@ -93,39 +111,41 @@ public class UnpackerResource {
     @Path("/{id:(/.*)?}")
     @PUT
     @Produces({"application/zip", "application/x-tar"})
-    public Map<String, byte[]> unpack(
+    public Response unpack(
             InputStream is,
             @Context HttpHeaders httpHeaders,
-            @Context UriInfo info
+            @Context UriInfo info,
+            @QueryParam("stream") boolean stream
     ) throws Exception {
-        return process(is, httpHeaders, info, false);
+        return process(is, httpHeaders, info, false, stream);
     }
 
     @Path("/all{id:(/.*)?}")
     @PUT
     @Produces({"application/zip", "application/x-tar"})
-    public Map<String, byte[]> unpackAll(
+    public Response unpackAll(
             InputStream is,
             @Context HttpHeaders httpHeaders,
-            @Context UriInfo info
+            @Context UriInfo info,
+            @QueryParam("stream") boolean stream
     ) throws Exception {
-        return process(is, httpHeaders, info, true);
+        return process(is, httpHeaders, info, true, stream);
     }
 
-    private Map<String, byte[]> process(
+    private Response process(
             InputStream is,
-            @Context HttpHeaders httpHeaders,
-            @Context UriInfo info,
-            boolean saveAll
+            HttpHeaders httpHeaders,
+            UriInfo info,
+            boolean saveAll,
+            boolean stream
     ) throws Exception {
+        if (stream) {
+            return processStreaming(is, httpHeaders, info, saveAll);
+        }
+
         Metadata metadata = new Metadata();
         ParseContext pc = new ParseContext();
 
-        AutoDetectParser parser = TikaResource.createParser(tikaConfig);
-
-        TikaResource.fillMetadata(parser, metadata, pc, httpHeaders.getRequestHeaders());
-        TikaResource.logRequest(logger, info, metadata);
-
         ContentHandler ch;
         ByteArrayOutputStream text = new ByteArrayOutputStream();
 
@@ -135,11 +155,19 @@ public class UnpackerResource {
             ch = new DefaultHandler();
         }
 
-        Map<String, byte[]> files = new HashMap<String, byte[]>();
+        MapSink files = new MapSink();
         MutableInt count = new MutableInt();
 
-        pc.set(EmbeddedDocumentExtractor.class, new MyEmbeddedDocumentExtractor(count, files));
-        TikaResource.parse(parser, logger, info.getPath(), is, ch, metadata, pc);
+        AutoDetectParser parser = parserPool.borrow();
+        try {
+            TikaResource.fillMetadata(parser, metadata, pc, httpHeaders.getRequestHeaders());
+            TikaResource.logRequest(logger, info, metadata);
+
+            pc.set(EmbeddedDocumentExtractor.class, new MyEmbeddedDocumentExtractor(count, files));
+            TikaResource.parse(parser, logger, info.getPath(), is, ch, metadata, pc);
+        } finally {
+            parserPool.release(parser);
+        }
 
         if (count.intValue() == 0 && !saveAll) {
             throw new WebApplicationException(Response.Status.NO_CONTENT);
@@ -154,14 +182,95 @@ public class UnpackerResource {
             files.put(META_FILENAME, metaStream.toByteArray());
         }
 
-        return files;
+        return Response.ok(files.getFiles()).build();
+    }
+
+    /**
+     * Writes each embedded document to the response archive as soon as the
+     * parser reaches it, instead of collecting them all in memory first. As
+     * the response is already being written while parsing, an archive
+     * without any embedded documents is returned as is, rather than as a
+     * {@link javax.ws.rs.core.Response.Status#NO_CONTENT} response.
+     */
+    private Response processStreaming(
+            final InputStream is,
+            HttpHeaders httpHeaders,
+            final UriInfo info,
+            final boolean saveAll
+    ) {
+        final javax.ws.rs.core.MediaType type = getArchiveType(httpHeaders);
+        final MultivaluedMap<String, String> requestHeaders = httpHeaders.getRequestHeaders();
+
+        StreamingOutput output = new StreamingOutput() {
+            public void write(OutputStream outputStream) throws IOException, WebApplicationException {
+                // Only borrowed once the response gets written, so that
+                // it can't leak if it never is
+                AutoDetectParser parser = parserPool.borrow();
+                try {
+                    Metadata metadata = new Metadata();
+                    ParseContext pc = new ParseContext();
+                    TikaResource.fillMetadata(parser, metadata, pc, requestHeaders);
+                    TikaResource.logRequest(logger, info, metadata);
+
+                    EntrySink sink;
+                    if (TAR_TYPE.isCompatible(type)) {
+                        sink = new TarSink(outputStream);
+                    } else {
+                        sink = new ZipSink(outputStream);
+                    }
+
+                    ContentHandler ch;
+                    ByteArrayOutputStream text = new ByteArrayOutputStream();
+
+                    if (saveAll) {
+                        ch = new BodyContentHandler(new RichTextContentHandler(new OutputStreamWriter(text, org.apache.tika.io.IOUtils.UTF_8)));
+                    } else {
+                        ch = new DefaultHandler();
+                    }
+
+                    pc.set(EmbeddedDocumentExtractor.class, new MyEmbeddedDocumentExtractor(new MutableInt(), sink));
+                    TikaResource.parse(parser, logger, info.getPath(), is, ch, metadata, pc);
+
+                    // The text and metadata are only complete once the whole
+                    // document has been parsed, so they go last
+                    if (saveAll) {
+                        sink.put(TEXT_FILENAME, text.toByteArray());
+
+                        ByteArrayOutputStream metaStream = new ByteArrayOutputStream();
+                        metadataToCsv(metadata, metaStream);
+
+                        sink.put(META_FILENAME, metaStream.toByteArray());
+                    }
+
+                    sink.finish();
+                } finally {
+                    parserPool.release(parser);
+                }
+            }
+        };
+
+        return Response.ok(output, type).build();
+    }
+
+    /**
+     * Returns the archive format the client prefers, zip if it accepts both.
+     */
+    private static javax.ws.rs.core.MediaType getArchiveType(HttpHeaders httpHeaders) {
+        for (javax.ws.rs.core.MediaType accepted : httpHeaders.getAcceptableMediaTypes()) {
+            if (ZIP_TYPE.isCompatible(accepted)) {
+                return ZIP_TYPE;
+            } else if (TAR_TYPE.isCompatible(accepted)) {
+                return TAR_TYPE;
+            }
+        }
+        return ZIP_TYPE;
     }
 
     private class MyEmbeddedDocumentExtractor implements EmbeddedDocumentExtractor {
         private final MutableInt count;
-        private final Map<String, byte[]> zout;
+        private final EntrySink zout;
 
-        MyEmbeddedDocumentExtractor(MutableInt count, Map<String, byte[]> zout) {
+        MyEmbeddedDocumentExtractor(MutableInt count, EntrySink zout) {
             this.count = count;
             this.zout = zout;
         }
@@ -171,10 +280,6 @@ public class UnpackerResource {
         }
 
         public void parseEmbedded(InputStream inputStream, ContentHandler contentHandler, Metadata metadata, boolean b) throws SAXException, IOException {
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            IOUtils.copy(inputStream, bos);
-            byte[] data = bos.toByteArray();
-
             String name = metadata.get(TikaMetadataKeys.RESOURCE_NAME_KEY);
             String contentType = metadata.get(org.apache.tika.metadata.HttpHeaders.CONTENT_TYPE);
 
@@ -184,7 +289,7 @@ public class UnpackerResource {
 
             if (!name.contains(".") && contentType != null) {
                 try {
-                    String ext = tikaConfig.getMimeRepository().forName(contentType).getExtension();
+                    String ext = parserPool.getTikaConfig().getMimeRepository().forName(contentType).getExtension();
 
                     if (ext != null) {
                         name += ext;
@@ -195,6 +300,12 @@ public class UnpackerResource {
             }
 
             if ("application/vnd.openxmlformats-officedocument.oleObject".equals(contentType)) {
+                // The payload of an OLE object can only be found by
+                // opening the whole object in memory
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                IOUtils.copy(inputStream, bos);
+                byte[] data = bos.toByteArray();
+
                 POIFSFileSystem poifs = new POIFSFileSystem(new ByteArrayInputStream(data));
                 OfficeParser.POIFSDocumentType type = OfficeParser.POIFSDocumentType.detectType(poifs);
 
@@ -218,28 +329,34 @@ public class UnpackerResource {
                 } else {
                     name += '.' + type.getExtension();
                 }
-            }
 
-            final String finalName = name;
+                if (data.length > 0) {
+                    zout.put(name, data);
+
+                    count.increment();
+                }
+                return;
+            }
 
-            if (data.length > 0) {
-                zout.put(finalName, data);
+            TemporaryResources tmp = new TemporaryResources();
+            try {
+                TikaInputStream tin = TikaInputStream.get(inputStream, tmp);
 
-                count.increment();
-            } else {
-                if (inputStream instanceof TikaInputStream) {
-                    TikaInputStream tin = (TikaInputStream) inputStream;
+                if (tin.peek(new byte[1]) > 0) {
+                    zout.put(name, tin);
 
-                    if (tin.getOpenContainer() != null && tin.getOpenContainer() instanceof DirectoryEntry) {
-                        POIFSFileSystem fs = new POIFSFileSystem();
-                        copy((DirectoryEntry) tin.getOpenContainer(), fs.getRoot());
-                        ByteArrayOutputStream bos2 = new ByteArrayOutputStream();
-                        fs.writeFilesystem(bos2);
-                        bos2.close();
+                    count.increment();
+                } else if (tin.getOpenContainer() != null && tin.getOpenContainer() instanceof DirectoryEntry) {
+                    POIFSFileSystem fs = new POIFSFileSystem();
+                    copy((DirectoryEntry) tin.getOpenContainer(), fs.getRoot());
+                    ByteArrayOutputStream bos2 = new ByteArrayOutputStream();
+                    fs.writeFilesystem(bos2);
+                    bos2.close();
 
-                        zout.put(finalName, bos2.toByteArray());
-                    }
+                    zout.put(name, bos2.toByteArray());
                 }
+            } finally {
+                tmp.close();
             }
         }
 
@@ -262,4 +379,137 @@ public class UnpackerResource {
             }
         }
     }
+
+    /**
+     * Destination of the unpacked documents.
+     */
+    private static abstract class EntrySink {
+
+        abstract void put(String name, byte[] data) throws IOException;
+
+        /**
+         * Adds an entry with the remaining contents of the given stream.
+         * The stream is not closed.
+         */
+        abstract void put(String name, TikaInputStream stream) throws IOException;
+
+        void finish() throws IOException {
+        }
+
+    }
+
+    /**
+     * Collects the unpacked documents in memory, to be written out by
+     * the {@link org.apache.tika.server.writer.ZipWriter} or
+     * {@link org.apache.tika.server.writer.TarWriter} once parsing is done.
+     */
+    private static class MapSink extends EntrySink {
+
+        private final Map<String, byte[]> files = new HashMap<String, byte[]>();
+
+        Map<String, byte[]> getFiles() {
+            return files;
+        }
+
+        @Override
+        void put(String name, byte[] data) {
+            files.put(name, data);
+        }
+
+        @Override
+        void put(String name, TikaInputStream stream) throws IOException {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            IOUtils.copy(stream, bos);
+            files.put(name, bos.toByteArray());
+        }
+
+    }
+
+    /**
+     * Writes the unpacked documents straight to a zip archive. Documents
+     * of unknown size are compressed, with their size and checksum written
+     * after the data, so they never need to be buffered.
+     */
+    private static class ZipSink extends EntrySink {
+
+        private final ZipArchiveOutputStream zip;
+
+        ZipSink(OutputStream stream) {
+            this.zip = new ZipArchiveOutputStream(stream);
+        }
+
+        @Override
+        void put(String name, byte[] data) throws IOException {
+            ZipArchiveEntry entry = new ZipArchiveEntry(name);
+            entry.setMethod(ZipArchiveEntry.STORED);
+            entry.setSize(data.length);
+            CRC32 crc32 = new CRC32();
+            crc32.update(data);
+            entry.setCrc(crc32.getValue());
+
+            zip.putArchiveEntry(entry);
+            zip.write(data);
+            zip.closeArchiveEntry();
+        }
+
+        @Override
+        void put(String name, TikaInputStream stream) throws IOException {
+            ZipArchiveEntry entry = new ZipArchiveEntry(name);
+            entry.setMethod(ZipArchiveEntry.DEFLATED);
+
+            zip.putArchiveEntry(entry);
+            IOUtils.copy(stream, zip);
+            zip.closeArchiveEntry();
+        }
+
+        @Override
+        void finish() throws IOException {
+            zip.finish();
+            zip.flush();
+        }
+
+    }
+
+    /**
+     * Writes the unpacked documents straight to a tar archive. Tar headers
+     * need the size of each entry up front, so documents of unknown size
+     * are spooled to a temporary file first.
+     */
+    private static class TarSink extends EntrySink {
+
+        private final TarArchiveOutputStream tar;
+
+        TarSink(OutputStream stream) {
+            this.tar = new TarArchiveOutputStream(stream);
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+        }
+
+        @Override
+        void put(String name, byte[] data) throws IOException {
+            TarArchiveEntry entry = new TarArchiveEntry(name);
+            entry.setSize(data.length);
+
+            tar.putArchiveEntry(entry);
+            tar.write(data);
+            tar.closeArchiveEntry();
+        }
+
+        @Override
+        void put(String name, TikaInputStream stream) throws IOException {
+            TarArchiveEntry entry = new TarArchiveEntry(name);
+            entry.setSize(stream.getLength());
+
+            tar.putArchiveEntry(entry);
+            IOUtils.copy(stream, tar);
+            tar.closeArchiveEntry();
+        }
+
+        @Override
+        void finish() throws IOException {
+            tar.finish();
+            tar.flush();
+        }
+
+    }
 }
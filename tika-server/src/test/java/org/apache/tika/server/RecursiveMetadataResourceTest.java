@@ -33,6 +33,7 @@ import org.apache.cxf.jaxrs.client.WebClient;
 import org.apache.cxf.jaxrs.lifecycle.SingletonResourceProvider;
 import org.apache.tika.io.IOUtils;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
 import org.apache.tika.metadata.serialization.JsonMetadataList;
 import org.apache.tika.server.resource.RecursiveMetadataResource;
 import org.apache.tika.server.writer.MetadataListMessageBodyWriter;
@@ -72,6 +73,40 @@ public class RecursiveMetadataResourceTest extends CXFTestBase {
         assertContains("plundered our seas", metadataList.get(6).get("X-TIKA:content"));
     }
 
+    @Test
+    public void testStreaming() throws Exception {
+        Response response = WebClient
+                .create(endPoint + META_PATH + "/stream")
+                .accept("application/json")
+                .put(ClassLoader
+                        .getSystemResourceAsStream(TEST_RECURSIVE_DOC));
+
+        Reader reader = new InputStreamReader((InputStream) response.getEntity(), IOUtils.UTF_8);
+        List<Metadata> metadataList = JsonMetadataList.fromJson(reader);
+
+        assertEquals(12, metadataList.size());
+        // The container document comes last when streaming
+        assertEquals("Microsoft Office Word", metadataList.get(11).get("Application-Name"));
+        assertContains("plundered our seas", metadataList.get(5).get("X-TIKA:content"));
+    }
+
+    @Test
+    public void testStreamingFailure() throws Exception {
+        // No password given, so the parse fails
+        Response response = WebClient
+                .create(endPoint + META_PATH + "/stream")
+                .type("application/vnd.ms-excel")
+                .accept("application/json")
+                .put(ClassLoader
+                        .getSystemResourceAsStream(TikaResourceTest.TEST_PASSWORD_PROTECTED));
+
+        // The list is still complete, ending with the exception
+        Reader reader = new InputStreamReader((InputStream) response.getEntity(), IOUtils.UTF_8);
+        List<Metadata> metadataList = JsonMetadataList.fromJson(reader);
+        Metadata container = metadataList.get(metadataList.size() - 1);
+        assertNotNull(container.get(TikaCoreProperties.TIKA_META_EXCEPTION_PREFIX + "runtime"));
+    }
+
     @Test
     public void testPasswordProtected() throws Exception {
         Response response = WebClient
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import javax.ws.rs.core.Response;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.cxf.jaxrs.JAXRSServerFactoryBean;
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.apache.cxf.jaxrs.lifecycle.ResourceProvider;
+import org.apache.cxf.jaxrs.lifecycle.SingletonResourceProvider;
+import org.apache.tika.metrics.ParseMetrics;
+import org.apache.tika.server.resource.TikaMetrics;
+import org.apache.tika.server.resource.TikaResource;
+import org.apache.tika.server.writer.JSONMessageBodyWriter;
+import org.eclipse.jetty.util.ajax.JSON;
+import org.junit.Test;
+
+public class TikaMetricsTest extends CXFTestBase {
+    private static final String METRICS_PATH = "/metrics";
+    private static final String TIKA_PATH = "/tika";
+
+    @Override
+    protected void setUpResources(JAXRSServerFactoryBean sf) {
+        List<ResourceProvider> providers = new ArrayList<ResourceProvider>();
+        providers.add(new SingletonResourceProvider(
+                new TikaResource(new ParserPool(tika, 1))));
+        providers.add(new SingletonResourceProvider(
+                new TikaMetrics(ParseMetrics.getDefault())));
+        sf.setResourceProviders(providers);
+    }
+
+    @Override
+    protected void setUpProviders(JAXRSServerFactoryBean sf) {
+        List<Object> providers = new ArrayList<Object>();
+        providers.add(new JSONMessageBodyWriter());
+        providers.add(new TikaServerParseExceptionMapper(false));
+        sf.setProviders(providers);
+    }
+
+    @Test
+    public void testJSONMetrics() throws Exception {
+        ParseMetrics.getDefault().reset();
+        parse();
+        parse();
+
+        Response response = WebClient.create(endPoint + METRICS_PATH)
+                .accept("application/json")
+                .get();
+        Map<?, ?> metrics = (Map<?, ?>) JSON.parse(
+                getStringFromInputStream((InputStream) response.getEntity()));
+        Map<?, ?> types = (Map<?, ?>) metrics.get("types");
+        Map<?, ?> msword = (Map<?, ?>) types.get("application/msword");
+        assertEquals(2L, msword.get("count"));
+        assertEquals(0L, msword.get("exceptions"));
+        Map<?, ?> parsers = (Map<?, ?>) metrics.get("parsers");
+        Map<?, ?> office = (Map<?, ?>) parsers.get(
+                "org.apache.tika.parser.microsoft.OfficeParser");
+        assertEquals(2L, office.get("count"));
+    }
+
+    @Test
+    public void testPlainMetrics() throws Exception {
+        ParseMetrics.getDefault().reset();
+        parse();
+
+        Response response = WebClient.create(endPoint + METRICS_PATH)
+                .accept("text/plain")
+                .get();
+        String metrics = getStringFromInputStream((InputStream) response.getEntity());
+        assertContains("# TYPE tika_parser_parse_seconds histogram", metrics);
+        assertContains("tika_parser_parse_seconds_count{parser=\"org.apache.tika.parser.microsoft.OfficeParser\"} 1", metrics);
+        assertContains("tika_type_parse_seconds_count{type=\"application/msword\"} 1", metrics);
+        assertContains("tika_type_parse_seconds_bucket{type=\"application/msword\",le=\"+Inf\"} 1", metrics);
+        assertContains("tika_parser_exceptions_total{parser=\"org.apache.tika.parser.microsoft.OfficeParser\"} 0", metrics);
+        assertContains("tika_type_exceptions_total{type=\"application/msword\"} 0", metrics);
+        assertContains("tika_detect_seconds_count 1", metrics);
+        // Every parse is counted once per metric
+        assertFalse(metrics.contains("tika_parse_seconds"));
+    }
+
+    private void parse() throws Exception {
+        Response response = WebClient.create(endPoint + TIKA_PATH)
+                .type("application/msword")
+                .accept("text/plain")
+                .put(ClassLoader.getSystemResourceAsStream(TikaResourceTest.TEST_DOC));
+        assertContains("test",
+                getStringFromInputStream((InputStream) response.getEntity()));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tika.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import javax.ws.rs.core.Response;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.cxf.jaxrs.JAXRSServerFactoryBean;
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.apache.cxf.jaxrs.lifecycle.ResourceProvider;
+import org.apache.cxf.jaxrs.lifecycle.SingletonResourceProvider;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.server.resource.MetadataResource;
+import org.apache.tika.server.resource.TikaResource;
+import org.apache.tika.server.resource.TikaStatus;
+import org.apache.tika.server.writer.JSONMessageBodyWriter;
+import org.eclipse.jetty.util.ajax.JSON;
+import org.junit.Test;
+
+public class TikaStatusTest extends CXFTestBase {
+    private static final String STATUS_PATH = "/status";
+    private static final String TIKA_PATH = "/tika";
+    private static final String META_PATH = "/meta";
+
+    private ParserPool parserPool;
+
+    @Override
+    protected void setUpResources(JAXRSServerFactoryBean sf) {
+        parserPool = new ParserPool(tika, 2);
+        List<ResourceProvider> providers = new ArrayList<ResourceProvider>();
+        providers.add(new SingletonResourceProvider(new TikaResource(parserPool)));
+        providers.add(new SingletonResourceProvider(new MetadataResource(parserPool)));
+        providers.add(new SingletonResourceProvider(new TikaStatus(parserPool)));
+        sf.setResourceProviders(providers);
+    }
+
+    @Override
+    protected void setUpProviders(JAXRSServerFactoryBean sf) {
+        List<Object> providers = new ArrayList<Object>();
+        providers.add(new JSONMessageBodyWriter());
+        providers.add(new TikaServerParseExceptionMapper(false));
+        sf.setProviders(providers);
+    }
+
+    @Test
+    public void testParsersAreReused() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Response response = WebClient.create(endPoint + TIKA_PATH)
+                    .type("application/msword")
+                    .accept("text/plain")
+                    .put(ClassLoader.getSystemResourceAsStream(TikaResourceTest.TEST_DOC));
+            assertContains("test",
+                    getStringFromInputStream((InputStream) response.getEntity()));
+        }
+        Response response = WebClient.create(endPoint + META_PATH)
+                .type("application/msword")
+                .accept("application/json")
+                .put(ClassLoader.getSystemResourceAsStream(TikaResourceTest.TEST_DOC));
+        getStringFromInputStream((InputStream) response.getEntity());
+
+        Map<?, ?> status = getStatus();
+        assertEquals(2L, status.get("poolSize"));
+        assertEquals(4L, status.get("borrowed"));
+        assertEquals(1L, status.get("created"));
+        assertEquals(0L, status.get("inUse"));
+        assertEquals(1L, status.get("idle"));
+
+        // The Content-Type hint only applies to the request that gave it
+        AutoDetectParser parser = parserPool.borrow();
+        try {
+            assertSame(tika.getDetector(), parser.getDetector());
+        } finally {
+            parserPool.release(parser);
+        }
+    }
+
+    @Test
+    public void testPlainStatus() throws Exception {
+        Response response = WebClient.create(endPoint + STATUS_PATH)
+                .accept("text/plain")
+                .get();
+        String status = getStringFromInputStream((InputStream) response.getEntity());
+        assertContains("poolSize: 2", status);
+        assertContains("inUse: 0", status);
+    }
+
+    private Map<?, ?> getStatus() throws Exception {
+        Response response = WebClient.create(endPoint + STATUS_PATH)
+                .accept("application/json")
+                .get();
+        return (Map<?, ?>) JSON.parse(
+                getStringFromInputStream((InputStream) response.getEntity()));
+    }
+}
@@ -29,7 +29,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.cxf.jaxrs.JAXRSServerFactoryBean;
 import org.apache.cxf.jaxrs.client.WebClient;
 import org.apache.cxf.jaxrs.lifecycle.SingletonResourceProvider;
@@ -196,4 +198,54 @@ public class UnpackerResourceTest extends CXFTestBase {
         assertTrue(responseMsg.contains("test"));
     }
 
+    @Test
+    public void testStreamingDocWAV() throws Exception {
+        Response response = WebClient.create(endPoint + UNPACKER_PATH)
+                .query("stream", "true")
+                .type(APPLICATION_MSWORD).accept("application/zip")
+                .put(ClassLoader.getSystemResourceAsStream(TEST_DOC_WAV));
+
+        Map<String, String> data = readArchiveFromStream(
+                new ZipArchiveInputStream((InputStream) response.getEntity()));
+        assertEquals(WAV1_MD5, data.get(WAV1_NAME));
+        assertEquals(WAV2_MD5, data.get(WAV2_NAME));
+        assertEquals(JPG_MD5, data.get(JPG_NAME));
+        assertFalse(data.containsKey(UnpackerResource.TEXT_FILENAME));
+    }
+
+    @Test
+    public void testStreamingTarDocPicture() throws Exception {
+        Response response = WebClient.create(endPoint + UNPACKER_PATH)
+                .query("stream", "true")
+                .type(APPLICATION_MSWORD).accept("application/x-tar")
+                .put(ClassLoader.getSystemResourceAsStream(TEST_DOC_WAV));
+
+        Map<String, String> data = readArchiveFromStream(
+                new TarArchiveInputStream((InputStream) response.getEntity()));
+        assertEquals(WAV1_MD5, data.get(WAV1_NAME));
+        assertEquals(JPG_MD5, data.get(JPG_NAME));
+    }
+
+    @Test
+    public void testStreamingTextIsLast() throws Exception {
+        Response response = WebClient.create(endPoint + ALL_PATH)
+                .query("stream", "true")
+                .accept("application/zip")
+                .put(ClassLoader.getSystemResourceAsStream(TEST_DOCX_IMAGE));
+
+        ZipArchiveInputStream zip = new ZipArchiveInputStream((InputStream) response.getEntity());
+        List<String> names = new ArrayList<String>();
+        ArchiveEntry entry = zip.getNextEntry();
+        while (entry != null) {
+            names.add(entry.getName());
+            entry = zip.getNextEntry();
+        }
+        zip.close();
+
+        assertTrue(names.contains(DOCX_IMAGE1_NAME));
+        assertTrue(names.contains(DOCX_IMAGE2_NAME));
+        assertEquals(UnpackerResource.TEXT_FILENAME, names.get(names.size() - 2));
+        assertEquals("__METADATA__", names.get(names.size() - 1));
+    }
+
 }